@@ -95,4 +95,13 @@ public abstract class PeriodicallyFlushedBufPool<
   public void append(Lsn lsn, StreamIdentifier<Id> streamIdentifier, PageInputType record) {
     pool.append(lsn, streamIdentifier, record);
   }
+
+  public void appendAll(
+      StreamIdentifier<Id> streamIdentifier, List<Lsn> lsns, List<PageInputType> records) {
+    pool.appendAll(streamIdentifier, lsns, records);
+  }
+
+  public boolean isBackpressured() {
+    return pool.isBackpressured();
+  }
 }
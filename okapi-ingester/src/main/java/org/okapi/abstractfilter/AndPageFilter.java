@@ -5,7 +5,9 @@
 package org.okapi.abstractfilter;
 
 import lombok.Value;
+import org.okapi.abstractio.TrigramPostings;
 import org.okapi.byterange.RangeIterationException;
+import org.roaringbitmap.RoaringBitmap;
 
 @Value
 public class AndPageFilter<R, M> implements PageFilter<R, M> {
@@ -26,4 +28,13 @@ public class AndPageFilter<R, M> implements PageFilter<R, M> {
   public boolean matchesRecord(R record) {
     return left.matchesRecord(record) && right.matchesRecord(record);
   }
+
+  @Override
+  public RoaringBitmap candidateDocs(TrigramPostings postings) {
+    var l = left.candidateDocs(postings);
+    var r = right.candidateDocs(postings);
+    if (l == null) return r;
+    if (r == null) return l;
+    return RoaringBitmap.and(l, r);
+  }
 }
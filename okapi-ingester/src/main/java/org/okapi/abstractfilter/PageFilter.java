@@ -5,7 +5,9 @@
 package org.okapi.abstractfilter;
 
 import java.util.List;
+import org.okapi.abstractio.TrigramPostings;
 import org.okapi.byterange.RangeIterationException;
+import org.roaringbitmap.RoaringBitmap;
 
 public interface PageFilter<R, M> {
   Kind kind();
@@ -18,6 +20,14 @@ public interface PageFilter<R, M> {
 
   boolean matchesRecord(R record);
 
+  /**
+   * Positions of the documents that can match given a page's trigram postings, null when the filter
+   * can't narrow the page down and every document has to be checked.
+   */
+  default RoaringBitmap candidateDocs(TrigramPostings postings) {
+    return null;
+  }
+
   enum Kind {
     REGEX,
     TRACE,
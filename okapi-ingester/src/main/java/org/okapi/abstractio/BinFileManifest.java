@@ -0,0 +1,35 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every bin file uploaded into one stream's time block, kept next to the block so queries can find
+ * the files without listing S3.
+ */
+public record BinFileManifest(List<Entry> files) {
+
+  /**
+   * @param bytes size of the uploaded object, footer included
+   * @param pages pages indexed by the object's footer, -1 if unknown
+   */
+  public record Entry(String key, long bytes, int pages) {}
+
+  /** A copy with {@code entry} added, replacing an entry for the same key. */
+  public BinFileManifest withFile(Entry entry) {
+    var updated = new ArrayList<Entry>(files.size() + 1);
+    for (var file : files) {
+      if (!file.key().equals(entry.key())) updated.add(file);
+    }
+    updated.add(entry);
+    return new BinFileManifest(updated);
+  }
+
+  public List<String> keys() {
+    return files.stream().map(Entry::key).toList();
+  }
+}
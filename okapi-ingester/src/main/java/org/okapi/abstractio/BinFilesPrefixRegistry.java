@@ -14,4 +14,10 @@ public interface BinFilesPrefixRegistry {
 
   List<String> getAllPrefixesForLogBinFile(
       String bucket, String base, String streamId, String partName, long hrBlock);
+
+  /**
+   * Records a bin file that was uploaded to {@code key}, a prefix handed out by {@link
+   * #getRootPrefixForLogBinFileForMe}, so later lookups of its block need not list S3.
+   */
+  default void registerUpload(String bucket, String key, long bytes, int pages) {}
 }
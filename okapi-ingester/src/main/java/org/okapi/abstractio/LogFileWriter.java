@@ -25,7 +25,11 @@ public class LogFileWriter<P extends AppendOnlyPage<?, S, M, B>, S, M, B, Id>
   DiskLogBinPaths<Id> diskLogBinPaths;
   WalResourcesPerStream<Id> resourcesPerStream;
 
-  public synchronized int appendPage(StreamIdentifier<Id> streamIdentifier, P page)
+  /**
+   * Not synchronized: pages of different streams go to different files and are written in
+   * parallel, {@link org.okapi.pages.BufferPool} flushes each stream from a single worker.
+   */
+  public int appendPage(StreamIdentifier<Id> streamIdentifier, P page)
       throws IOException {
     byte[] bytes = codec.serialize(page);
     if (page.range().isEmpty() || page.isEmpty()) {
@@ -4,16 +4,88 @@
  */
 package org.okapi.abstractio;
 
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import java.util.function.LongSupplier;
+import lombok.Locked;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
-@AllArgsConstructor
+/**
+ * Lays out bin files as {@code base/stream/block/node/part.uuid} and finds them through a per-block
+ * {@link BinFileManifest} stored at {@code base/stream/block.manifest.json}.
+ *
+ * <p>Uploaders add their file to the manifest with conditional writes, seeding a missing manifest
+ * from a listing so files uploaded before it existed are not lost. Lookups read the manifest and
+ * only list the block when there is none. Results are cached: for {@code openBlockTtlMs} while the
+ * block was written to within {@code closedAfterMs}, for {@code closedBlockTtlMs} once it went
+ * quiet. Quiet listings are served without touching S3, so a late upload into a quiet block, e.g.
+ * after a restart, is seen by the uploader at once and by other nodes within {@code
+ * closedBlockTtlMs}.
+ */
+@Slf4j
 public class NodeIdSeparatedBinFilesPrefixRegistry implements BinFilesPrefixRegistry {
+  public static final String MANIFEST_SUFFIX = ".manifest.json";
+  public static final long DEFAULT_OPEN_BLOCK_TTL_MS = 30_000;
+  public static final long DEFAULT_CLOSED_BLOCK_TTL_MS = 24 * 3600_000L;
+  public static final long DEFAULT_CLOSED_AFTER_MS = 3600_000L;
+  public static final int DEFAULT_MAX_CACHED_BLOCKS = 10_000;
+  static final int MAX_MANIFEST_UPDATE_ATTEMPTS = 5;
+  private static final Gson GSON = new Gson();
+
   String whoAmI;
   S3Client s3Client;
+  private final long openBlockTtlMs;
+  private final long closedBlockTtlMs;
+  private final long closedAfterMs;
+  private final int maxCachedBlocks;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, CachedListing> listings =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  record CachedListing(List<String> keys, long expiresAtMs) {}
+
+  record StoredManifest(BinFileManifest manifest, String etag, Instant lastModified) {}
+
+  public NodeIdSeparatedBinFilesPrefixRegistry(String whoAmI, S3Client s3Client) {
+    this(
+        whoAmI,
+        s3Client,
+        DEFAULT_OPEN_BLOCK_TTL_MS,
+        DEFAULT_CLOSED_BLOCK_TTL_MS,
+        DEFAULT_CLOSED_AFTER_MS,
+        DEFAULT_MAX_CACHED_BLOCKS,
+        System::currentTimeMillis);
+  }
+
+  public NodeIdSeparatedBinFilesPrefixRegistry(
+      String whoAmI,
+      S3Client s3Client,
+      long openBlockTtlMs,
+      long closedBlockTtlMs,
+      long closedAfterMs,
+      int maxCachedBlocks,
+      LongSupplier clock) {
+    this.whoAmI = whoAmI;
+    this.s3Client = s3Client;
+    this.openBlockTtlMs = openBlockTtlMs;
+    this.closedBlockTtlMs = closedBlockTtlMs;
+    this.closedAfterMs = closedAfterMs;
+    this.maxCachedBlocks = maxCachedBlocks;
+    this.clock = clock;
+  }
 
   @Override
   public String getRootPrefixForLogBinFile(String base, String streamId, long hrBlock) {
@@ -35,12 +107,150 @@ public class NodeIdSeparatedBinFilesPrefixRegistry implements BinFilesPrefixRegi
   @Override
   public List<String> getAllPrefixesForLogBinFile(
       String bucket, String base, String streamId, String partName, long hrBlock) {
-    var prefixQuery = getRootPrefixForLogBinFile(base, streamId, hrBlock) + "/";
+    var root = getRootPrefixForLogBinFile(base, streamId, hrBlock);
+    var cacheKey = bucket + ":" + root;
+    var cached = getCached(cacheKey);
+    if (cached != null) return cached;
+
+    List<String> keys;
+    Instant lastModified;
+    var stored = readManifest(bucket, root);
+    if (stored.isPresent()) {
+      keys = stored.get().manifest().keys();
+      lastModified = stored.get().lastModified();
+    } else {
+      var listed = list(bucket, root);
+      keys = listed.stream().map(S3Object::key).toList();
+      lastModified =
+          listed.stream()
+              .map(S3Object::lastModified)
+              .filter(t -> t != null)
+              .max(Instant::compareTo)
+              .orElse(null);
+    }
+    var now = clock.getAsLong();
+    var quiet = lastModified != null && now - lastModified.toEpochMilli() >= closedAfterMs;
+    putCached(cacheKey, new CachedListing(keys, now + (quiet ? closedBlockTtlMs : openBlockTtlMs)));
+    return keys;
+  }
+
+  @Override
+  public void registerUpload(String bucket, String key, long bytes, int pages) {
+    var root = rootOf(key);
+    if (root == null) return;
+    try {
+      if (addToManifest(bucket, root, new BinFileManifest.Entry(key, bytes, pages))) return;
+      dropManifest(bucket, root, null);
+    } catch (RuntimeException e) {
+      dropManifest(bucket, root, e);
+    }
+  }
+
+  private boolean addToManifest(String bucket, String root, BinFileManifest.Entry entry) {
+    for (int attempt = 1; attempt <= MAX_MANIFEST_UPDATE_ATTEMPTS; attempt++) {
+      var stored = readManifest(bucket, root);
+      var request = PutObjectRequest.builder().bucket(bucket).key(manifestKey(root));
+      BinFileManifest manifest;
+      if (stored.isPresent()) {
+        manifest = stored.get().manifest().withFile(entry);
+        request.ifMatch(stored.get().etag());
+      } else {
+        manifest = seedManifest(bucket, root).withFile(entry);
+        request.ifNoneMatch("*");
+      }
+      try {
+        var json = GSON.toJson(manifest).getBytes(StandardCharsets.UTF_8);
+        s3Client.putObject(request.build(), RequestBody.fromBytes(json));
+        invalidateCached(bucket + ":" + root);
+        return true;
+      } catch (S3Exception e) {
+        // 412 and 409 mean another uploader changed the manifest first.
+        if (e.statusCode() != 412 && e.statusCode() != 409) throw e;
+        log.debug("Manifest of {} changed concurrently, attempt {}.", root, attempt);
+      }
+    }
+    return false;
+  }
+
+  /** {@code base/stream/block} of a key laid out as {@code base/stream/block/node/part.uuid}. */
+  static String rootOf(String key) {
+    var fileSep = key.lastIndexOf('/');
+    if (fileSep <= 0) return null;
+    var nodeSep = key.lastIndexOf('/', fileSep - 1);
+    return nodeSep <= 0 ? null : key.substring(0, nodeSep);
+  }
+
+  static String manifestKey(String root) {
+    return root + MANIFEST_SUFFIX;
+  }
+
+  private BinFileManifest seedManifest(String bucket, String root) {
+    var entries = new ArrayList<BinFileManifest.Entry>();
+    for (var object : list(bucket, root)) {
+      entries.add(new BinFileManifest.Entry(object.key(), object.size(), -1));
+    }
+    return new BinFileManifest(entries);
+  }
+
+  /**
+   * An incomplete manifest would hide files from queries, so one that could not be updated is
+   * removed and lookups fall back to listing until the next upload seeds it again.
+   */
+  private void dropManifest(String bucket, String root, Exception cause) {
+    log.warn("Could not update manifest of {}, removing it.", root, cause);
+    try {
+      s3Client.deleteObject(b -> b.bucket(bucket).key(manifestKey(root)));
+    } catch (RuntimeException e) {
+      log.error("Could not remove manifest of {}, lookups may miss files.", root, e);
+    }
+    invalidateCached(bucket + ":" + root);
+  }
+
+  private Optional<StoredManifest> readManifest(String bucket, String root) {
+    var request = GetObjectRequest.builder().bucket(bucket).key(manifestKey(root)).build();
+    try {
+      var response = s3Client.getObjectAsBytes(request);
+      var manifest = GSON.fromJson(response.asUtf8String(), BinFileManifest.class);
+      return Optional.of(
+          new StoredManifest(
+              manifest, response.response().eTag(), response.response().lastModified()));
+    } catch (NoSuchKeyException e) {
+      return Optional.empty();
+    }
+  }
+
+  private List<S3Object> list(String bucket, String root) {
+    var prefixQuery = root + "/";
     var prefixes = s3Client.listObjectsV2Paginator(b -> b.bucket(bucket).prefix(prefixQuery));
     return prefixes.stream()
         .flatMap(r -> r.contents().stream())
-        .map(S3Object::key)
-        .filter(key -> key.startsWith(prefixQuery))
+        .filter(object -> object.key().startsWith(prefixQuery))
         .toList();
   }
+
+  @Locked
+  private List<String> getCached(String cacheKey) {
+    var cached = listings.get(cacheKey);
+    if (cached == null) return null;
+    if (cached.expiresAtMs() <= clock.getAsLong()) {
+      listings.remove(cacheKey);
+      return null;
+    }
+    return cached.keys();
+  }
+
+  @Locked
+  private void putCached(String cacheKey, CachedListing listing) {
+    listings.put(cacheKey, listing);
+    var it = listings.entrySet().iterator();
+    while (listings.size() > maxCachedBlocks && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  @Locked
+  private void invalidateCached(String cacheKey) {
+    listings.remove(cacheKey);
+  }
 }
@@ -0,0 +1,11 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+/** A page body that may carry {@link TrigramPostings} for its documents. */
+public interface TrigramIndexed {
+  /** Postings by document position, null for bodies written without them. */
+  TrigramPostings getTrigramPostings();
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * For each body trigram of a sealed page, the positions of the documents containing it. Lets
+ * substring and regex filters narrow a page down to candidate documents before matching any.
+ *
+ * <p>Serialized as {@code count} followed by {@code (trigram, portable roaring bitmap)} pairs.
+ */
+public class TrigramPostings {
+  private final Map<Integer, RoaringBitmap> postings;
+
+  private TrigramPostings(Map<Integer, RoaringBitmap> postings) {
+    this.postings = postings;
+  }
+
+  public static TrigramPostings build(List<String> bodies) {
+    var postings = new HashMap<Integer, RoaringBitmap>();
+    var seen = new TrigramSet();
+    for (int doc = 0; doc < bodies.size(); doc++) {
+      var docId = doc;
+      // docs are visited in order, so this appends to the bitmap's last container.
+      TrigramUtil.forEachDistinctAsciiTrigram(
+          bodies.get(doc),
+          seen,
+          tri -> postings.computeIfAbsent(tri, k -> new RoaringBitmap()).add(docId));
+    }
+    for (var bitmap : postings.values()) {
+      bitmap.runOptimize();
+    }
+    return new TrigramPostings(postings);
+  }
+
+  /** Documents containing {@code trigram}, empty when none does. Callers must not modify it. */
+  public RoaringBitmap docsWith(int trigram) {
+    var docs = postings.get(trigram);
+    return docs == null ? new RoaringBitmap() : docs;
+  }
+
+  /** Documents containing every one of {@code trigrams}, null when there are none to check. */
+  public RoaringBitmap docsWithAll(List<Integer> trigrams) {
+    RoaringBitmap out = null;
+    for (var trigram : trigrams) {
+      var docs = docsWith(trigram);
+      out = out == null ? docs.clone() : RoaringBitmap.and(out, docs);
+      if (out.isEmpty()) break;
+    }
+    return out;
+  }
+
+  public int size() {
+    return postings.size();
+  }
+
+  public byte[] serialize() throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    var out = new DataOutputStream(bytes);
+    out.writeInt(postings.size());
+    for (var entry : postings.entrySet()) {
+      out.writeInt(entry.getKey());
+      entry.getValue().serialize(out);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public static TrigramPostings deserialize(byte[] bytes) throws IOException {
+    var in = new DataInputStream(new ByteArrayInputStream(bytes));
+    var count = in.readInt();
+    var postings = HashMap.<Integer, RoaringBitmap>newHashMap(count);
+    for (int i = 0; i < count; i++) {
+      var trigram = in.readInt();
+      var bitmap = new RoaringBitmap();
+      bitmap.deserialize(in);
+      postings.put(trigram, bitmap);
+    }
+    return new TrigramPostings(postings);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of trigram indices, used to drop repeated trigrams of one document before
+ * they reach a bloom filter or a posting list. Meant to be reused: {@link #clear()} is O(1), it
+ * bumps a generation instead of wiping the table, so a large document doesn't make every small
+ * one after it pay for the table it grew.
+ *
+ * <p>Not thread-safe.
+ */
+public final class TrigramSet {
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private int[] keys;
+  private int[] generations;
+  private int generation = 1;
+  private int size;
+
+  public TrigramSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TrigramSet(int expectedSize) {
+    var capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+    this.keys = new int[capacity];
+    this.generations = new int[capacity];
+  }
+
+  /** Adds {@code trigram}, returning false if it was already present. */
+  public boolean add(int trigram) {
+    var mask = keys.length - 1;
+    var slot = mix(trigram) & mask;
+    while (generations[slot] == generation) {
+      if (keys[slot] == trigram) return false;
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = trigram;
+    generations[slot] = generation;
+    if (++size * 2 > keys.length) grow();
+    return true;
+  }
+
+  public boolean contains(int trigram) {
+    var mask = keys.length - 1;
+    var slot = mix(trigram) & mask;
+    while (generations[slot] == generation) {
+      if (keys[slot] == trigram) return true;
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+    if (++generation == 0) {
+      // wrapped around, slots stamped with an old generation could look live again.
+      Arrays.fill(generations, 0);
+      generation = 1;
+    }
+  }
+
+  private void grow() {
+    var oldKeys = keys;
+    var oldGenerations = generations;
+    keys = new int[oldKeys.length * 2];
+    generations = new int[oldKeys.length * 2];
+    var mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldGenerations[i] != generation) continue;
+      var slot = mix(oldKeys[i]) & mask;
+      while (generations[slot] == generation) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      generations[slot] = generation;
+    }
+  }
+
+  // trigram indices pack three 7-bit chars, spread them so neighbouring ones don't cluster.
+  private static int mix(int trigram) {
+    var h = trigram * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -6,28 +6,55 @@ package org.okapi.abstractio;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 public final class TrigramUtil {
   private TrigramUtil() {}
 
+  /** Trigrams of {@code s} in order, repeats included. Allocates; ingestion uses the sinks. */
   public static List<Integer> extractAsciiTrigramIndices(String s) {
     List<Integer> out = new ArrayList<>();
-    if (s == null) return out;
-    int n = s.length();
-    char[] buf = s.toCharArray();
-    for (int i = 0; i + 2 < n; i++) {
-      char c0 = buf[i];
-      char c1 = buf[i + 1];
-      char c2 = buf[i + 2];
-      if (c0 < 128 && c1 < 128 && c2 < 128) {
-        var idx = getTrigramIndex(c0, c1, c2);
-        out.add(idx);
+    forEachAsciiTrigram(s, out::add);
+    return out;
+  }
+
+  /**
+   * Hands every trigram of {@code s} whose three chars are ASCII to {@code sink}, in order and
+   * with repeats. Reads {@code s} in place and keeps the window in a rolling int, so nothing is
+   * copied or boxed.
+   */
+  public static void forEachAsciiTrigram(CharSequence s, IntConsumer sink) {
+    scanAsciiTrigrams(s, null, sink);
+  }
+
+  /**
+   * Like {@link #forEachAsciiTrigram} but hands each trigram to {@code sink} once per call, using
+   * {@code seen} (cleared first) to drop repeats.
+   */
+  public static void forEachDistinctAsciiTrigram(
+      CharSequence s, TrigramSet seen, IntConsumer sink) {
+    seen.clear();
+    scanAsciiTrigrams(s, seen, sink);
+  }
+
+  private static void scanAsciiTrigrams(CharSequence s, TrigramSet seen, IntConsumer sink) {
+    if (s == null) return;
+    int window = 0;
+    int asciiRun = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 128) {
+        asciiRun = 0;
+        continue;
+      }
+      window = (window >>> 7) | (c << 14);
+      if (++asciiRun >= 3 && (seen == null || seen.add(window))) {
+        sink.accept(window);
       }
     }
-    return out;
   }
 
-  public static Integer getTrigramIndex(char c0, char c1, char c2) {
+  public static int getTrigramIndex(char c0, char c1, char c2) {
     return (c0 & 0x7F) | ((c1 & 0x7F) << 7) | ((c2 & 0x7F) << 14);
   }
 
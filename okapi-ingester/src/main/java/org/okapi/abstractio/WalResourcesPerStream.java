@@ -5,6 +5,8 @@
 package org.okapi.abstractio;
 
 import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -12,11 +14,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import lombok.Locked;
 import org.okapi.wal.LsnSupplier;
 import org.okapi.wal.factory.WalResourceBundle;
+import org.okapi.wal.io.GroupCommitWalWriter;
 import org.okapi.wal.io.WalReader;
 import org.okapi.wal.io.WalWriter;
 import org.okapi.wal.manager.WalManager;
 
-public class WalResourcesPerStream<Id> {
+public class WalResourcesPerStream<Id> implements Closeable {
 
   Map<Id, WalResourceBundle> resourceBundles;
   ReadWriteLock writeLock = new ReentrantReadWriteLock();
@@ -44,6 +47,10 @@ public class WalResourcesPerStream<Id> {
     return getResourceBundle(shard).getWriter();
   }
 
+  public GroupCommitWalWriter getGroupCommitWriter(Id shard) {
+    return getResourceBundle(shard).getGroupCommitWriter();
+  }
+
   public WalReader getWalReader(Id shard) {
     return getResourceBundle(shard).getReader();
   }
@@ -51,4 +58,13 @@ public class WalResourcesPerStream<Id> {
   public LsnSupplier getLsnSupplier(Id shard) {
     return getResourceBundle(shard).getLsnSupplier();
   }
+
+  @Locked.Write("writeLock")
+  @Override
+  public void close() throws IOException {
+    for (var bundle : resourceBundles.values()) {
+      bundle.close();
+    }
+    resourceBundles.clear();
+  }
 }
@@ -11,24 +11,38 @@ import org.okapi.io.StreamReadingException;
 import org.okapi.pages.PageAndMetadataIterator;
 import org.okapi.s3.ByteRangeSupplier;
 
+/**
+ * Walks the length-prefixed pages of a bin file. Given the file's {@link PageFooter}, metadata is
+ * served from the footer without touching the supplier and only page bodies are range-read.
+ */
 public class LengthPrefixPageAndMdIterator implements PageAndMetadataIterator {
 
   ByteRangeSupplier rangeSupplier;
+  PageFooter footer;
+  int pageIdx = 0;
   long offset = 0;
   int mdLen = 0;
   int docBlockLen = 0;
 
   public LengthPrefixPageAndMdIterator(ByteRangeSupplier rangeSupplier) {
+    this(rangeSupplier, null);
+  }
+
+  public LengthPrefixPageAndMdIterator(ByteRangeSupplier rangeSupplier, PageFooter footer) {
     this.rangeSupplier = rangeSupplier;
+    this.footer = footer;
+    if (footer != null) seekToFooterPage();
   }
 
   @Override
   public boolean hasNextPage() {
+    if (footer != null) return pageIdx < footer.getPages().size();
     return offset < rangeSupplier.getEnd();
   }
 
   @Override
   public byte[] readMetadata() throws RangeIterationException {
+    if (footer != null) return footer.getPages().get(pageIdx).metadata();
     // read 12 bytes from the supplier
     var lenBlock = rangeSupplier.getBytes(offset, 12);
     var bis = new ByteArrayInputStream(lenBlock);
@@ -42,6 +56,9 @@ public class LengthPrefixPageAndMdIterator implements PageAndMetadataIterator {
       }
       mdLen = OkapiIo.readInt(bis);
       docBlockLen = OkapiIo.readInt(bis);
+      // the next page's header is fetched while this page's body is read and decoded.
+      var nextOffset = offset + 12 + mdLen + docBlockLen;
+      if (nextOffset < rangeSupplier.getEnd()) rangeSupplier.prefetch(nextOffset, 12);
       return rangeSupplier.getBytes(offset, 12 + mdLen);
     } catch (IOException | StreamReadingException e) {
       throw new RangeIterationException(e);
@@ -56,6 +73,19 @@ public class LengthPrefixPageAndMdIterator implements PageAndMetadataIterator {
 
   @Override
   public void forward() {
+    if (footer != null) {
+      pageIdx++;
+      seekToFooterPage();
+      return;
+    }
     offset += (12 + mdLen + docBlockLen);
   }
+
+  private void seekToFooterPage() {
+    if (pageIdx >= footer.getPages().size()) return;
+    var page = footer.getPages().get(pageIdx);
+    offset = page.offset();
+    mdLen = page.mdLen();
+    docBlockLen = page.bodyLen();
+  }
 }
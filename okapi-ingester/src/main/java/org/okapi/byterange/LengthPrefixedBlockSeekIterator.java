@@ -24,7 +24,11 @@ public class LengthPrefixedBlockSeekIterator extends LengthPrefixPageAndMdIterat
   long blockStreamStart = -1;
 
   public LengthPrefixedBlockSeekIterator(ByteRangeSupplier rangeSupplier) {
-    super(rangeSupplier);
+    this(rangeSupplier, null);
+  }
+
+  public LengthPrefixedBlockSeekIterator(ByteRangeSupplier rangeSupplier, PageFooter footer) {
+    super(rangeSupplier, footer);
     offsetTable = new HashMap<>();
     this.rangeSupplier = rangeSupplier;
   }
@@ -0,0 +1,155 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.byterange;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.okapi.s3.ByteRangeSupplier;
+
+/**
+ * Index of every page in a sealed bin file, appended after the last page so a remote reader can
+ * fetch all page metadata in one request, prune pages locally and range-read only the bodies it
+ * needs.
+ *
+ * <p>Layout, big-endian like the page headers:
+ *
+ * <pre>
+ * pages...
+ * 'F','0','0','1' | pageCount int | per page: offset long, mdLen int, bodyLen int, header+md bytes
+ * footerLen int | 'O','K','F','T'
+ * </pre>
+ *
+ * The per-page metadata is stored exactly as {@link LengthPrefixPageAndMdIterator#readMetadata()}
+ * returns it (12 byte length header followed by the codec's metadata), so it carries each page's
+ * time range and bloom filters in whatever form the page codec serialized them.
+ */
+@Slf4j
+public class PageFooter {
+  public static final int TRAILER_LEN = 8;
+  public static final int DEFAULT_TAIL_READ_BYTES = 64 * 1024;
+  private static final byte[] HEADER_MAGIC = {'F', '0', '0', '1'};
+  private static final byte[] TRAILER_MAGIC = {'O', 'K', 'F', 'T'};
+
+  public record PageEntry(long offset, int mdLen, int bodyLen, byte[] metadata) {
+    public long bodyOffset() {
+      return offset + 12 + mdLen;
+    }
+  }
+
+  @Getter private final List<PageEntry> pages;
+
+  /** Where the pages end and the footer begins. */
+  @Getter private final long dataEnd;
+
+  public PageFooter(List<PageEntry> pages, long dataEnd) {
+    this.pages = Collections.unmodifiableList(pages);
+    this.dataEnd = dataEnd;
+  }
+
+  /**
+   * Walks the pages of an unsealed file. Empty if the file does not consist of well-formed pages
+   * all the way to its end, in which case it should be uploaded without a footer.
+   */
+  public static Optional<PageFooter> scan(ByteRangeSupplier supplier) {
+    var end = supplier.getEnd();
+    var iterator = new LengthPrefixPageAndMdIterator(supplier);
+    var pages = new ArrayList<PageEntry>();
+    try {
+      while (iterator.hasNextPage()) {
+        if (end - iterator.offset < 12) return Optional.empty();
+        var md = iterator.readMetadata();
+        if (iterator.offset + 12 + iterator.mdLen + iterator.docBlockLen > end) {
+          return Optional.empty();
+        }
+        pages.add(new PageEntry(iterator.offset, iterator.mdLen, iterator.docBlockLen, md));
+        iterator.forward();
+      }
+    } catch (RangeIterationException | RuntimeException e) {
+      log.debug("Not a paged bin file, skipping the footer.", e);
+      return Optional.empty();
+    }
+    return Optional.of(new PageFooter(pages, end));
+  }
+
+  /**
+   * Reads the footer of a sealed file with a single tail request of up to {@code tailReadBytes},
+   * plus one more only if the footer is larger than that. Empty if the file has no footer.
+   */
+  public static Optional<PageFooter> read(ByteRangeSupplier supplier, int tailReadBytes)
+      throws RangeIterationException {
+    var end = supplier.getEnd();
+    if (end < TRAILER_LEN + HEADER_MAGIC.length + 4) return Optional.empty();
+    var tailLen = (int) Math.min(end, Math.max(tailReadBytes, TRAILER_LEN));
+    var tail = supplier.getBytes(end - tailLen, tailLen);
+    var trailer = ByteBuffer.wrap(tail, tailLen - TRAILER_LEN, TRAILER_LEN);
+    var footerLen = trailer.getInt();
+    for (var b : TRAILER_MAGIC) {
+      if (trailer.get() != b) return Optional.empty();
+    }
+    if (footerLen < HEADER_MAGIC.length + 4 || footerLen > end - TRAILER_LEN) {
+      throw new RangeIterationException("Corrupt page footer of length " + footerLen);
+    }
+    var footerStart = end - TRAILER_LEN - footerLen;
+    ByteBuffer footer;
+    if (footerLen + TRAILER_LEN <= tailLen) {
+      footer = ByteBuffer.wrap(tail, tailLen - TRAILER_LEN - footerLen, footerLen);
+    } else {
+      footer = ByteBuffer.wrap(supplier.getBytes(footerStart, footerLen));
+    }
+    try {
+      return Optional.of(deserialize(footer, footerStart));
+    } catch (RuntimeException e) {
+      throw new RangeIterationException(e);
+    }
+  }
+
+  public static Optional<PageFooter> read(ByteRangeSupplier supplier)
+      throws RangeIterationException {
+    return read(supplier, DEFAULT_TAIL_READ_BYTES);
+  }
+
+  private static PageFooter deserialize(ByteBuffer footer, long dataEnd)
+      throws RangeIterationException {
+    for (var b : HEADER_MAGIC) {
+      if (footer.get() != b) throw new RangeIterationException("Bad page footer magic");
+    }
+    var count = footer.getInt();
+    var pages = new ArrayList<PageEntry>(count);
+    for (int i = 0; i < count; i++) {
+      var offset = footer.getLong();
+      var mdLen = footer.getInt();
+      var bodyLen = footer.getInt();
+      var md = new byte[12 + mdLen];
+      footer.get(md);
+      pages.add(new PageEntry(offset, mdLen, bodyLen, md));
+    }
+    return new PageFooter(pages, dataEnd);
+  }
+
+  /** The footer and trailer, to be appended right after the last page. */
+  public byte[] serialize() {
+    var footerLen = HEADER_MAGIC.length + 4;
+    for (var page : pages) {
+      footerLen += 16 + page.metadata().length;
+    }
+    var buffer = ByteBuffer.allocate(footerLen + TRAILER_LEN);
+    buffer.put(HEADER_MAGIC);
+    buffer.putInt(pages.size());
+    for (var page : pages) {
+      buffer.putLong(page.offset());
+      buffer.putInt(page.mdLen());
+      buffer.putInt(page.bodyLen());
+      buffer.put(page.metadata());
+    }
+    buffer.putInt(footerLen);
+    buffer.put(TRAILER_MAGIC);
+    return buffer.array();
+  }
+}
@@ -4,49 +4,120 @@
  */
 package org.okapi.byterange;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.okapi.s3.ByteRangeCache;
 import org.okapi.s3.ByteRangeSupplier;
-import org.okapi.s3.S3ByteRangeCache;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
+/**
+ * Reads an S3 object through a {@link ByteRangeCache}.
+ *
+ * <p>The HEAD request runs in the background from construction, so suppliers for many objects
+ * can be opened without waiting on each. Once reads turn sequential, the next aligned chunk of
+ * {@code readAheadBytes} is fetched ahead of time; since the cache shares in-flight block fetches,
+ * a read that lands on a prefetched chunk waits for that request instead of issuing its own.
+ */
+@Slf4j
 public class S3ByteRangeSupplier implements ByteRangeSupplier {
+  public static final int DEFAULT_READ_AHEAD_BYTES = 1024 * 1024;
+  private static final ExecutorService PREFETCH = Executors.newVirtualThreadPerTaskExecutor();
 
   String prefix;
   String bucket;
   S3Client s3Client;
-  S3ByteRangeCache byteRangeCache;
-  String etag;
-  long contentLength;
+  ByteRangeCache byteRangeCache;
+  CompletableFuture<HeadObjectResponse> head;
+  int readAheadBytes;
+  long lastReadEnd = -1;
+  long prefetchedUpTo = 0;
+
+  public S3ByteRangeSupplier(
+      String bucket, String prefix, S3Client s3Client, ByteRangeCache byteRangeCache) {
+    this(bucket, prefix, s3Client, byteRangeCache, DEFAULT_READ_AHEAD_BYTES);
+  }
 
   public S3ByteRangeSupplier(
-      String bucket, String prefix, S3Client s3Client, S3ByteRangeCache byteRangeCache) {
+      String bucket,
+      String prefix,
+      S3Client s3Client,
+      ByteRangeCache byteRangeCache,
+      int readAheadBytes) {
     this.prefix = prefix;
     this.bucket = bucket;
     this.s3Client = s3Client;
     this.byteRangeCache = byteRangeCache;
-    var head = HeadObjectRequest.builder().bucket(bucket).key(prefix).build();
-    var headResp = s3Client.headObject(head);
-    this.etag = headResp.eTag();
-    this.contentLength = headResp.contentLength();
+    this.readAheadBytes = readAheadBytes;
+    var headReq = HeadObjectRequest.builder().bucket(bucket).key(prefix).build();
+    this.head =
+        CompletableFuture.supplyAsync(
+            () -> {
+              var headResp = s3Client.headObject(headReq);
+              byteRangeCache.checkVersion(bucket, prefix, headResp.eTag());
+              return headResp;
+            },
+            PREFETCH);
   }
 
   @Override
   public byte[] getBytes(long start, int len) {
-    var cached = byteRangeCache.getCachedRange(bucket, prefix, start, start + len, etag);
-    if (cached.isPresent()) {
-      return cached.get();
+    // blocks of an older version must be dropped before anything is served from the cache.
+    awaitHead();
+    readAhead(start, len);
+    try {
+      return byteRangeCache.getRange(bucket, prefix, start, start + len);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    var rangeHeader = "bytes=" + start + "-" + (start + len - 1);
-    var getReq = GetObjectRequest.builder().bucket(bucket).key(prefix).range(rangeHeader).build();
-    var getResp = s3Client.getObjectAsBytes(getReq);
-    var bytes = getResp.asByteArray();
-    byteRangeCache.possiblyCache(bucket, prefix, start, start + len, bytes, etag);
-    return bytes;
+  }
+
+  @Override
+  public void prefetch(long start, int len) {
+    var end = Math.min(getEnd(), start + len);
+    if (end <= start) return;
+    PREFETCH.execute(
+        () -> {
+          try {
+            byteRangeCache.getRange(bucket, prefix, start, end);
+          } catch (IOException | RuntimeException e) {
+            log.debug("Prefetch of {}:{} [{}, {}) failed.", bucket, prefix, start, end, e);
+          }
+        });
   }
 
   @Override
   public long getEnd() {
-    return contentLength;
+    return awaitHead().contentLength();
+  }
+
+  public String getEtag() {
+    return awaitHead().eTag();
+  }
+
+  private void readAhead(long start, int len) {
+    var sequential = start == lastReadEnd || (start >= lastReadEnd && start < prefetchedUpTo);
+    lastReadEnd = start + len;
+    if (readAheadBytes <= 0 || !sequential) return;
+    var from = Math.max(lastReadEnd, prefetchedUpTo);
+    if (from - lastReadEnd >= readAheadBytes) return;
+    var to = (lastReadEnd / readAheadBytes + 2) * readAheadBytes;
+    prefetchedUpTo = to;
+    prefetch(from, (int) (to - from));
+  }
+
+  private HeadObjectResponse awaitHead() {
+    try {
+      return head.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) throw cause;
+      throw e;
+    }
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import com.google.common.base.Preconditions;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+
+/**
+ * Picks how many WAL entries a ClickHouse consumer reads per batch.
+ *
+ * <p>Batches grow by a quarter whenever a full batch inserts within {@code targetLatencyMs}, up to
+ * {@code maxEntries} and to as many entries as fit in {@code targetBytes} of encoded rows. An
+ * insert slower than the target halves the size, down to {@code minEntries}. Under low load
+ * {@link #shouldConsume(long)} lets entries accumulate until a full batch is waiting or {@code
+ * maxLingerMs} passed since the last read, so ClickHouse sees fewer, larger parts.
+ *
+ * <p>Updated from the consumer's tick, the getters may be read from any thread.
+ */
+public class ChBatchSizer implements ChInsertPipeline.InsertListener {
+  private final int minEntries;
+  private final int maxEntries;
+  private final long targetBytes;
+  private final long targetLatencyMs;
+  private final long maxLingerMs;
+  private final LongSupplier clock;
+
+  @Getter private volatile int batchEntries;
+  @Getter private volatile long lastBatchBytes;
+  @Getter private volatile long lastInsertLatencyMs;
+  @Getter private volatile double bytesPerEntry;
+  private long lastConsumeMs;
+
+  public ChBatchSizer(
+      int initialEntries,
+      int minEntries,
+      int maxEntries,
+      long targetBytes,
+      long targetLatencyMs,
+      long maxLingerMs) {
+    this(
+        initialEntries,
+        minEntries,
+        maxEntries,
+        targetBytes,
+        targetLatencyMs,
+        maxLingerMs,
+        System::currentTimeMillis);
+  }
+
+  public ChBatchSizer(
+      int initialEntries,
+      int minEntries,
+      int maxEntries,
+      long targetBytes,
+      long targetLatencyMs,
+      long maxLingerMs,
+      LongSupplier clock) {
+    Preconditions.checkArgument(minEntries >= 1, "minEntries must be >= 1");
+    Preconditions.checkArgument(maxEntries >= minEntries, "maxEntries must be >= minEntries");
+    this.minEntries = minEntries;
+    this.maxEntries = maxEntries;
+    this.targetBytes = targetBytes;
+    this.targetLatencyMs = targetLatencyMs;
+    this.maxLingerMs = maxLingerMs;
+    this.clock = clock;
+    this.batchEntries = clamp(initialEntries);
+    this.lastConsumeMs = clock.getAsLong();
+  }
+
+  /** Always reads {@code batchSize} entries, for callers that do not want adaptive sizing. */
+  public static ChBatchSizer fixed(int batchSize) {
+    return new ChBatchSizer(batchSize, batchSize, batchSize, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+  }
+
+  /** Whether a tick should read now, given how many entries are waiting in the WAL. */
+  public boolean shouldConsume(long pendingEntries) {
+    if (pendingEntries <= 0) return false;
+    var now = clock.getAsLong();
+    if (pendingEntries < batchEntries && now - lastConsumeMs < maxLingerMs) return false;
+    lastConsumeMs = now;
+    return true;
+  }
+
+  @Override
+  public void onInserted(int entries, long bytes, long latencyMs) {
+    if (entries <= 0) return;
+    lastBatchBytes = bytes;
+    lastInsertLatencyMs = latencyMs;
+    var perEntry = (double) bytes / entries;
+    bytesPerEntry = bytesPerEntry == 0 ? perEntry : 0.8 * bytesPerEntry + 0.2 * perEntry;
+
+    var next = batchEntries;
+    if (latencyMs > targetLatencyMs) {
+      next = next / 2;
+    } else if (entries >= batchEntries) {
+      next = next + Math.max(1, next / 4);
+    }
+    if (bytesPerEntry > 0 && targetBytes < Long.MAX_VALUE) {
+      next = (int) Math.min(next, targetBytes / bytesPerEntry);
+    }
+    batchEntries = clamp(next);
+  }
+
+  private int clamp(int entries) {
+    return Math.max(minEntries, Math.min(maxEntries, entries));
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rows headed for several tables, encoded as RowBinary when they are added so no row objects are
+ * retained. The per-table buffers survive {@link #reset()} so a consumer can reuse one batch for
+ * every poll.
+ */
+public class ChInsertBatch {
+  private final Map<String, ChRowBinaryWriter> tables = new LinkedHashMap<>();
+
+  public <T> void add(ChTableSchema<T> schema, T row) {
+    schema.encode(row, writerFor(schema));
+  }
+
+  public <T> void addAll(ChTableSchema<T> schema, Collection<? extends T> rows) {
+    if (rows.isEmpty()) return;
+    var writer = writerFor(schema);
+    for (var row : rows) {
+      schema.encode(row, writer);
+    }
+  }
+
+  /** Tables with at least one row, and their encoded rows. */
+  public Map<String, ChRowBinaryWriter> getTables() {
+    var nonEmpty = new LinkedHashMap<String, ChRowBinaryWriter>();
+    tables.forEach(
+        (table, writer) -> {
+          if (writer.rows() > 0) nonEmpty.put(table, writer);
+        });
+    return nonEmpty;
+  }
+
+  public int rows(String table) {
+    var writer = tables.get(table);
+    return writer == null ? 0 : writer.rows();
+  }
+
+  /** Encoded bytes across all tables. */
+  public long bytes() {
+    long bytes = 0;
+    for (var writer : tables.values()) {
+      bytes += writer.size();
+    }
+    return bytes;
+  }
+
+  public boolean isEmpty() {
+    return tables.values().stream().allMatch(w -> w.rows() == 0);
+  }
+
+  public void reset() {
+    tables.values().forEach(ChRowBinaryWriter::reset);
+  }
+
+  private ChRowBinaryWriter writerFor(ChTableSchema<?> schema) {
+    return tables.computeIfAbsent(schema.getTable(), t -> new ChRowBinaryWriter());
+  }
+}
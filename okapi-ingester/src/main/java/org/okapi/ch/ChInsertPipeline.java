@@ -0,0 +1,223 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import com.clickhouse.client.api.insert.InsertResponse;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.okapi.metrics.ch.ChWriter;
+import org.okapi.wal.io.WalBatch;
+import org.okapi.wal.lsn.Lsn;
+import org.okapi.wal.manager.WalManager;
+
+/**
+ * Keeps up to {@code maxInFlight} WAL batches inserting into ClickHouse while the consumer reads
+ * and converts the next one, and commits the WAL watermark strictly in batch order.
+ *
+ * <p>A batch only counts as done once every one of its tables was inserted. Failed table inserts
+ * are retried with exponential backoff, tables that already succeeded are not re-sent. A batch
+ * that still fails after {@code maxAttempts} is parked at the head of the queue: nothing after it
+ * is committed, {@link #acquire()} returns {@code null} so the consumer stops reading, and the
+ * next {@link #drain()} retries it. Data is never dropped; a restart replays from the last
+ * committed LSN, so inserts are at-least-once.
+ *
+ * <p>Not thread-safe, driven from the consumer's tick.
+ */
+@Slf4j
+public class ChInsertPipeline {
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+  public static final long DEFAULT_INITIAL_BACKOFF_MS = 100;
+  public static final long DEFAULT_MAX_BACKOFF_MS = 5_000;
+
+  private final ChWriter writer;
+  private final WalManager walManager;
+  private final int maxAttempts;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+
+  private final List<InsertListener> listeners = new ArrayList<>();
+  private final ArrayDeque<InFlight> inFlight = new ArrayDeque<>();
+  private final ArrayDeque<ChInsertBatch> free = new ArrayDeque<>();
+  private boolean parked;
+
+  public ChInsertPipeline(ChWriter writer, WalManager walManager) {
+    this(
+        writer,
+        walManager,
+        DEFAULT_MAX_IN_FLIGHT,
+        DEFAULT_MAX_ATTEMPTS,
+        DEFAULT_INITIAL_BACKOFF_MS,
+        DEFAULT_MAX_BACKOFF_MS);
+  }
+
+  public ChInsertPipeline(
+      ChWriter writer,
+      WalManager walManager,
+      int maxInFlight,
+      int maxAttempts,
+      long initialBackoffMs,
+      long maxBackoffMs) {
+    Preconditions.checkArgument(maxInFlight >= 1, "maxInFlight must be >= 1");
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be >= 1");
+    this.writer = writer;
+    this.walManager = walManager;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    for (int i = 0; i < maxInFlight; i++) {
+      free.add(new ChInsertBatch());
+    }
+  }
+
+  /** Told about every batch once all of its tables were inserted. */
+  public interface InsertListener {
+    /**
+     * @param entries WAL entries the batch was built from
+     * @param bytes encoded RowBinary bytes across all tables
+     * @param latencyMs from submit until the last table insert succeeded, retries included
+     */
+    void onInserted(int entries, long bytes, long latencyMs);
+  }
+
+  private static final class InFlight {
+    final ChInsertBatch batch;
+    final Lsn maxLsn;
+    final int entries;
+    final long submittedNanos = System.nanoTime();
+    final Map<String, Future<InsertResponse>> pending = new LinkedHashMap<>();
+    int attempts = 1;
+
+    InFlight(ChInsertBatch batch, Lsn maxLsn, int entries) {
+      this.batch = batch;
+      this.maxLsn = maxLsn;
+      this.entries = entries;
+    }
+  }
+
+  public void addListener(InsertListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * An empty batch to fill, waiting for the oldest in-flight batch when all {@code maxInFlight}
+   * buffers are busy. Returns {@code null} if that batch could not be inserted; the consumer should
+   * stop reading until a later {@link #drain()} succeeds.
+   */
+  public ChInsertBatch acquire() throws IOException, InterruptedException {
+    if (parked) return null;
+    if (free.isEmpty() && !completeOldest()) return null;
+    var batch = free.poll();
+    batch.reset();
+    return batch;
+  }
+
+  /** Starts inserting {@code batch}, converted from the WAL entries in {@code source}. */
+  public void submit(ChInsertBatch batch, WalBatch source) {
+    submit(batch, source.getMaxLsn(), source.size());
+  }
+
+  /** Starts inserting {@code batch}, covering {@code entries} WAL entries up to {@code maxLsn}. */
+  public void submit(ChInsertBatch batch, Lsn maxLsn, int entries) {
+    var work = new InFlight(batch, maxLsn, entries);
+    batch.getTables()
+        .forEach((table, rows) -> work.pending.put(table, writer.writeRowBinary(table, rows)));
+    inFlight.addLast(work);
+  }
+
+  /** Returns a batch from {@link #acquire()} that ended up not being submitted. */
+  public void release(ChInsertBatch batch) {
+    free.add(batch);
+  }
+
+  /**
+   * Waits for every in-flight batch, oldest first, committing the watermark as each one completes.
+   * Returns {@code false} if a batch is parked after exhausting its retries.
+   */
+  public boolean drain() throws IOException, InterruptedException {
+    parked = false;
+    while (!inFlight.isEmpty()) {
+      if (!completeOldest()) return false;
+    }
+    return true;
+  }
+
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  public boolean isParked() {
+    return parked;
+  }
+
+  private boolean completeOldest() throws IOException, InterruptedException {
+    var head = inFlight.peekFirst();
+    var backoffMs = initialBackoffMs;
+    while (true) {
+      if (head.pending.containsValue(null)) resubmit(head);
+      awaitAll(head);
+      if (head.pending.isEmpty()) break;
+      if (head.attempts >= maxAttempts) {
+        log.error(
+            "Insert of batch up to {} failed after {} attempts for {}, holding back the commit.",
+            head.maxLsn,
+            head.attempts,
+            head.pending.keySet());
+        parked = true;
+        // the next drain starts over with a fresh budget.
+        head.attempts = 1;
+        return false;
+      }
+      Thread.sleep(backoffMs);
+      backoffMs = Math.min(maxBackoffMs, 2 * backoffMs);
+      head.attempts++;
+    }
+    inFlight.pollFirst();
+    walManager.commitLsn(head.maxLsn);
+    var latencyMs = (System.nanoTime() - head.submittedNanos) / 1_000_000;
+    for (var listener : listeners) {
+      listener.onInserted(head.entries, head.batch.bytes(), latencyMs);
+    }
+    free.add(head.batch);
+    return true;
+  }
+
+  /** Drops the tables that were inserted, failed ones stay in {@code pending} without a future. */
+  private void awaitAll(InFlight work) throws InterruptedException {
+    var it = work.pending.entrySet().iterator();
+    while (it.hasNext()) {
+      var entry = it.next();
+      try {
+        entry.getValue().get();
+        it.remove();
+      } catch (ExecutionException e) {
+        log.warn(
+            "Insert into {} failed on attempt {} for batch up to {}.",
+            entry.getKey(),
+            work.attempts,
+            work.maxLsn,
+            e.getCause());
+        entry.setValue(null);
+      }
+    }
+  }
+
+  private void resubmit(InFlight work) {
+    var tables = work.batch.getTables();
+    for (var entry : work.pending.entrySet()) {
+      if (entry.getValue() == null) {
+        entry.setValue(writer.writeRowBinary(entry.getKey(), tables.get(entry.getKey())));
+      }
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes rows in ClickHouse's {@code RowBinaryWithDefaults} format into a growable buffer that is
+ * handed to the insert without copying.
+ *
+ * <p>Every column starts with a marker byte: {@link #useDefault()} lets the server compute the
+ * column's DEFAULT expression, the {@code write*} methods write the marker for a present value
+ * followed by the value. Numbers are little-endian, strings and collections are prefixed with
+ * their length as an unsigned LEB128 varint. LowCardinality columns are written as their inner
+ * type, Enum8 columns as the enum's Int8 value and DateTime64(3) columns as epoch millis.
+ */
+public class ChRowBinaryWriter {
+  private static final byte VALUE = 0;
+  private static final byte DEFAULT = 1;
+
+  private byte[] buf;
+  private int size;
+  private int rows;
+
+  public ChRowBinaryWriter() {
+    this(64 * 1024);
+  }
+
+  public ChRowBinaryWriter(int initialCapacity) {
+    this.buf = new byte[initialCapacity];
+  }
+
+  /** Marks the end of a row, used for bookkeeping only. */
+  public void endRow() {
+    rows++;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void reset() {
+    size = 0;
+    rows = 0;
+  }
+
+  /** View over the encoded rows, valid until the next write or {@link #reset()}. */
+  public InputStream toInputStream() {
+    return new ByteArrayInputStream(buf, 0, size);
+  }
+
+  public ChRowBinaryWriter useDefault() {
+    put(DEFAULT);
+    return this;
+  }
+
+  public ChRowBinaryWriter writeInt8(int v) {
+    put(VALUE);
+    put((byte) v);
+    return this;
+  }
+
+  public ChRowBinaryWriter writeInt32(int v) {
+    put(VALUE);
+    putInt(v);
+    return this;
+  }
+
+  public ChRowBinaryWriter writeInt64(long v) {
+    put(VALUE);
+    putLong(v);
+    return this;
+  }
+
+  /** UInt64 column, {@code v}'s bits taken as unsigned. */
+  public ChRowBinaryWriter writeUInt64(long v) {
+    return writeInt64(v);
+  }
+
+  public ChRowBinaryWriter writeFloat32(float v) {
+    put(VALUE);
+    putInt(Float.floatToIntBits(v));
+    return this;
+  }
+
+  public ChRowBinaryWriter writeFloat64(double v) {
+    put(VALUE);
+    putLong(Double.doubleToLongBits(v));
+    return this;
+  }
+
+  /** {@code null} is written as the empty string, the default of a non-nullable String. */
+  public ChRowBinaryWriter writeString(String v) {
+    put(VALUE);
+    putString(v);
+    return this;
+  }
+
+  public ChRowBinaryWriter writeNullableInt32(Integer v) {
+    put(VALUE);
+    if (v == null) {
+      put((byte) 1);
+    } else {
+      put((byte) 0);
+      putInt(v);
+    }
+    return this;
+  }
+
+  public ChRowBinaryWriter writeNullableString(String v) {
+    put(VALUE);
+    if (v == null) {
+      put((byte) 1);
+    } else {
+      put((byte) 0);
+      putString(v);
+    }
+    return this;
+  }
+
+  /** Enum8 column, {@code ordinal + 1} for enums declared as {@code 'A' = 1, 'B' = 2, ...}. */
+  public ChRowBinaryWriter writeEnum8(Enum<?> v) {
+    return writeInt8(v.ordinal() + 1);
+  }
+
+  public ChRowBinaryWriter writeStringMap(Map<String, String> map) {
+    put(VALUE);
+    if (map == null) {
+      putVarUInt(0);
+      return this;
+    }
+    putVarUInt(map.size());
+    for (var e : map.entrySet()) {
+      putString(e.getKey());
+      putString(e.getValue());
+    }
+    return this;
+  }
+
+  public ChRowBinaryWriter writeDoubleMap(Map<String, Double> map) {
+    put(VALUE);
+    if (map == null) {
+      putVarUInt(0);
+      return this;
+    }
+    putVarUInt(map.size());
+    for (var e : map.entrySet()) {
+      putString(e.getKey());
+      putLong(Double.doubleToLongBits(e.getValue() == null ? 0d : e.getValue()));
+    }
+    return this;
+  }
+
+  public ChRowBinaryWriter writeFloat32Array(float[] values) {
+    put(VALUE);
+    if (values == null) {
+      putVarUInt(0);
+      return this;
+    }
+    putVarUInt(values.length);
+    ensure(4 * values.length);
+    for (var v : values) {
+      putInt(Float.floatToIntBits(v));
+    }
+    return this;
+  }
+
+  public ChRowBinaryWriter writeInt32Array(int[] values) {
+    put(VALUE);
+    if (values == null) {
+      putVarUInt(0);
+      return this;
+    }
+    putVarUInt(values.length);
+    ensure(4 * values.length);
+    for (var v : values) {
+      putInt(v);
+    }
+    return this;
+  }
+
+  private void putString(String v) {
+    if (v == null || v.isEmpty()) {
+      putVarUInt(0);
+      return;
+    }
+    var bytes = v.getBytes(StandardCharsets.UTF_8);
+    putVarUInt(bytes.length);
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buf, size, bytes.length);
+    size += bytes.length;
+  }
+
+  private void putVarUInt(int v) {
+    ensure(5);
+    while ((v & ~0x7F) != 0) {
+      buf[size++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buf[size++] = (byte) v;
+  }
+
+  private void put(byte b) {
+    ensure(1);
+    buf[size++] = b;
+  }
+
+  private void putInt(int v) {
+    ensure(4);
+    buf[size++] = (byte) v;
+    buf[size++] = (byte) (v >>> 8);
+    buf[size++] = (byte) (v >>> 16);
+    buf[size++] = (byte) (v >>> 24);
+  }
+
+  private void putLong(long v) {
+    ensure(8);
+    for (int i = 0; i < 8; i++) {
+      buf[size++] = (byte) (v >>> (8 * i));
+    }
+  }
+
+  private void ensure(int bytes) {
+    if (size + bytes <= buf.length) return;
+    buf = Arrays.copyOf(buf, Math.max(size + bytes, 2 * buf.length));
+  }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import java.util.function.BiConsumer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Binds a row type to a ClickHouse table for RowBinary inserts. The encoder must write exactly one
+ * value or default marker per table column, in the table's declaration order; see {@link
+ * ChRowBinaryWriter}.
+ */
+@AllArgsConstructor
+@Getter
+public class ChTableSchema<T> {
+  private final String table;
+  private final BiConsumer<T, ChRowBinaryWriter> encoder;
+
+  public void encode(T row, ChRowBinaryWriter out) {
+    encoder.accept(row, out);
+    out.endRow();
+  }
+}
@@ -5,9 +5,13 @@
 package org.okapi.ch;
 
 public final class ChTemplateFiles {
-  public static final String GET_GAUGE_RAW_SAMPLES = "get_gauge_raw_samples.jte";
   public static final String GET_GAUGE_SAMPLES = "get_gauge_samples.jte";
+  public static final String GET_GAUGE_SAMPLES_BULK = "get_gauge_samples_bulk.jte";
+  public static final String GET_GAUGE_BUCKETS_BULK = "get_gauge_buckets_bulk.jte";
+  public static final String GET_GAUGE_ROLLUP_BUCKETS_BULK = "get_gauge_rollup_buckets_bulk.jte";
   public static final String GET_HISTO_SAMPLES = "get_histo_samples.jte";
+  public static final String GET_HISTO_ROLLUP_SAMPLES = "get_histo_rollup_samples.jte";
+  public static final String GET_HISTO_SAMPLES_BULK = "get_histo_samples_bulk.jte";
   public static final String GET_METRIC_EVENT_TYPE = "get_metric_event_type.jte";
   public static final String GET_METRIC_EVENTS_SERIES = "get_metric_events_series.jte";
   public static final String GET_METRIC_HINTS = "get_metric_hints.jte";
@@ -15,6 +19,8 @@ public final class ChTemplateFiles {
   public static final String GET_METRIC_EXEMPLARS = "get_exemplars.jte";
 
   public static final String GET_SUM_SAMPLES = "get_sum_samples.jte";
+  public static final String GET_SUM_SAMPLES_BULK = "get_sum_samples_bulk.jte";
+  public static final String GET_SUM_BUCKETS_BULK = "get_sum_buckets_bulk.jte";
   public static final String GET_TAG_HINTS = "get_tag_hints.jte";
   public static final String GET_TAG_VALUE_HINTS = "get_tag_value_hints.jte";
   public static final String GET_SPANS_V2 = "get_spans_v2.jte";
@@ -36,12 +42,10 @@ public final class ChTemplateFiles {
       "get_span_attribute_values_default_str.jte";
   public static final String GET_SPAN_ATTRIBUTE_VALUES_DEFAULT_NUM =
       "get_span_attribute_values_default_num.jte";
-  public static final String GET_SERVICE_RED_METRICS = "get_service_red_metrics.jte";
-  public static final String GET_SERVICE_RED_PEERS = "get_service_red_peers.jte";
+  public static final String GET_SERVICE_RED_GROUPED = "get_service_red_grouped.jte";
   public static final String GET_SERVICE_RED_SERVICES = "get_service_red_services.jte";
   public static final String GET_SERVICE_RED_OPS = "get_service_red_ops.jte";
   public static final String GET_SERVICE_RED_OPS_COUNT = "get_service_red_ops_count.jte";
-  public static final String GET_SERVICE_RED_OP_METRICS = "get_service_red_op_metrics.jte";
   public static final String GET_METRIC_PATHS_IN_RANGE = "get_metric_paths_in_range.jte";
   public static final String SEARCH_METRICS_TEMPLATES = "search_metrics_templates.jte";
 
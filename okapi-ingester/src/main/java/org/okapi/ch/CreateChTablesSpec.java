@@ -5,9 +5,20 @@
 package org.okapi.ch;
 
 import com.clickhouse.client.api.Client;
+import com.clickhouse.client.api.query.QuerySettings;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.okapi.resourcereader.ClasspathResourceReader;
 
 public class CreateChTablesSpec {
+  private static final List<String> SAMPLE_TABLES =
+      List.of(
+          "okapi_metrics.gauge_raw_samples",
+          "okapi_metrics.histo_raw_samples",
+          "okapi_metrics.sums_raw_samples");
+  static final String BACKFILL_METRIC_SERIES = "backfill_metric_series";
+
   public static String getCreateGaugeTableSpec() {
     var metricsPath = "ch/create_metrics_table.sql";
     return ClasspathResourceReader.readResource(metricsPath);
@@ -23,9 +34,72 @@ public class CreateChTablesSpec {
     return ClasspathResourceReader.readResource(metricsPath);
   }
 
-  public static String getCreateMetricEventsMetaTableSpec() {
-    var metricsPath = "ch/create_metric_events_stream_meta.sql";
-    return ClasspathResourceReader.readResource(metricsPath);
+  public static String getCreateMetricSeriesTableSpec() {
+    return ClasspathResourceReader.readResource("ch/create_metric_series_table.sql");
+  }
+
+  /** One row per one-off migration step that has run, see {@link #isApplied}. */
+  public static String getCreateSchemaMigrationsTableSpec() {
+    return ClasspathResourceReader.readResource("ch/create_schema_migrations_table.sql");
+  }
+
+  /**
+   * Copies the series of metric_events_stream_meta, the per-sample table metric_series replaced,
+   * so that series ingested before the upgrade stay discoverable. Their fingerprint is a ClickHouse
+   * hash rather than the one the ingester computes, which is fine since readers only list distinct
+   * series: one ingested again simply has a second row.
+   */
+  public static String getBackfillMetricSeriesSpec() {
+    return ClasspathResourceReader.readResource("ch/backfill_metric_series.sql");
+  }
+
+  /** Adds the series fingerprint to sample tables created before it existed. */
+  public static List<String> getAddSampleFingerprintSpecs() {
+    return SAMPLE_TABLES.stream()
+        .map(t -> "ALTER TABLE " + t + " ADD COLUMN IF NOT EXISTS fingerprint UInt64 DEFAULT 0")
+        .toList();
+  }
+
+  /**
+   * Per-minute and per-hour rollup tables of gauges and delta histograms, each followed by the
+   * materialized view that fills it from the sample table. A view only sees samples inserted after
+   * it was created, earlier ones are not backfilled.
+   */
+  public static List<String> getRollupSpecs() {
+    var specs = new ArrayList<String>();
+    for (var kind : List.of("gauge", "histo")) {
+      var prefix = "ch/create_" + kind + "_rollup_";
+      var tableSpec = ClasspathResourceReader.readResource(prefix + "table.sql");
+      var viewSpec = ClasspathResourceReader.readResource(prefix + "view.sql");
+      for (var resolution : List.of("1m", "1h")) {
+        var table = "okapi_metrics." + kind + "_rollup_" + resolution;
+        var bucketFn = resolution.equals("1m") ? "toStartOfMinute" : "toStartOfHour";
+        specs.add(tableSpec.replace("{table}", table));
+        specs.add(
+            viewSpec
+                .replace("{view}", table + "_mv")
+                .replace("{table}", table)
+                .replace("{bucket}", bucketFn));
+      }
+    }
+    return specs;
+  }
+
+  /** The materialized views of {@link #getRollupSpecs} and {@link #getServiceRedRollupSpecs}. */
+  public static List<String> getRollupViews() {
+    var views = new ArrayList<String>();
+    for (var kind : List.of("gauge", "histo")) {
+      for (var resolution : List.of("1m", "1h")) {
+        views.add("okapi_metrics." + kind + "_rollup_" + resolution + "_mv");
+      }
+    }
+    views.add("okapi_traces.service_red_1m_mv");
+    return views;
+  }
+
+  /** The step recorded by the first migration that finds {@code view} in place. */
+  public static String rollupViewStep(String view) {
+    return "create_view " + view;
   }
 
   public static String getTracesTableSpec() {
@@ -51,16 +125,79 @@ public class CreateChTablesSpec {
     return ClasspathResourceReader.readResource("ch/create_service_red_events_table.sql");
   }
 
+  /** Per-minute RED rollup of service_red_events and the materialized view that fills it. */
+  public static List<String> getServiceRedRollupSpecs() {
+    return List.of(
+        ClasspathResourceReader.readResource("ch/create_service_red_rollup_table.sql"),
+        ClasspathResourceReader.readResource("ch/create_service_red_rollup_view.sql"));
+  }
+
   public static void migrate(Client client) {
     client.queryAll("CREATE DATABASE IF NOT EXISTS okapi_metrics");
     client.queryAll(getCreateGaugeTableSpec());
     client.queryAll(getCreateHistoTableSpec());
     client.queryAll(getCreateSumTableSpec());
-    client.queryAll(getCreateMetricEventsMetaTableSpec());
+    getAddSampleFingerprintSpecs().forEach(client::queryAll);
+    client.queryAll(getCreateMetricSeriesTableSpec());
+    client.queryAll(getCreateSchemaMigrationsTableSpec());
+    backfillMetricSeries(client);
+    getRollupSpecs().forEach(client::queryAll);
     client.queryAll(getExemplarsTableSpec());
     client.queryAll("CREATE DATABASE IF NOT EXISTS okapi_traces");
     client.queryAll(getTracesTableSpec());
     client.queryAll(getSpansIngestedAttribsTableSpec());
     client.queryAll(getServiceRedEventsTableSpec());
+    getServiceRedRollupSpecs().forEach(client::queryAll);
+    recordRollupViews(client);
+  }
+
+  /**
+   * Runs the backfill once. If a run dies before it is recorded the next one repeats it, which only
+   * adds rows that merge into the same ones.
+   */
+  private static void backfillMetricSeries(Client client) {
+    if (isApplied(client, BACKFILL_METRIC_SERIES)) {
+      return;
+    }
+    var oldTable =
+        client.queryAll(
+            "SELECT 1 FROM system.tables WHERE database = {db:String} AND name = {name:String}",
+            Map.of("db", "okapi_metrics", "name", "metric_events_stream_meta"),
+            new QuerySettings());
+    if (!oldTable.isEmpty()) {
+      client.queryAll(getBackfillMetricSeriesSpec());
+    }
+    markApplied(client, BACKFILL_METRIC_SERIES);
+  }
+
+  /**
+   * Records when each rollup view was first found in place. Views aren't backfilled, so readers
+   * take this as the start of what a view has seen. A view created before this was recorded gets
+   * the time of the first migration that records it, which is later and so still safe.
+   */
+  private static void recordRollupViews(Client client) {
+    for (var view : getRollupViews()) {
+      var step = rollupViewStep(view);
+      if (!isApplied(client, step)) {
+        markApplied(client, step);
+      }
+    }
+  }
+
+  public static boolean isApplied(Client client, String step) {
+    var records =
+        client.queryAll(
+            "SELECT 1 FROM okapi_metrics.schema_migrations WHERE name = {name:String} LIMIT 1",
+            Map.of("name", step),
+            new QuerySettings());
+    return !records.isEmpty();
+  }
+
+  public static void markApplied(Client client, String step) {
+    client.queryAll(
+        "INSERT INTO okapi_metrics.schema_migrations (name, applied_at)"
+            + " SELECT {name:String}, now64(3)",
+        Map.of("name", step),
+        new QuerySettings());
   }
 }
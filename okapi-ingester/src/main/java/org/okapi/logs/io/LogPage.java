@@ -7,6 +7,7 @@ package org.okapi.logs.io;
 import com.google.common.base.Preconditions;
 import java.util.*;
 import lombok.*;
+import org.okapi.abstractio.TrigramSet;
 import org.okapi.abstractio.TrigramUtil;
 import org.okapi.pages.AbstractTimeBlockMetadata;
 import org.okapi.pages.AppendOnlyPage;
@@ -25,6 +26,11 @@ public class LogPage extends AbstractTimestampedPage
   // Approximate serialized size estimator (header + CRC to start)
   private int bodySize;
 
+  // dedups each body's trigrams before they are hashed into the page bloom.
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private final TrigramSet bodyTrigrams = new TrigramSet();
+
   @Builder
   public LogPage(Integer expectedInsertions, Long maxRangeMs, int maxSizeBytes) {
     // Ensure mutable collections
@@ -79,9 +85,8 @@ public class LogPage extends AbstractTimestampedPage
     }
     this.logPageMetadata.putLogLevel(level);
     // trigrams
-    for (int tri : TrigramUtil.extractAsciiTrigramIndices(body)) {
-      this.logPageMetadata.putLogBodyTrigram(tri);
-    }
+    TrigramUtil.forEachDistinctAsciiTrigram(
+        body, bodyTrigrams, this.logPageMetadata::putLogBodyTrigram);
 
     bodySize += payload.getSerializedSize();
   }
@@ -5,17 +5,29 @@
 package org.okapi.logs.io;
 
 import java.util.List;
+import lombok.Getter;
+import org.okapi.abstractio.TrigramIndexed;
+import org.okapi.abstractio.TrigramPostings;
 import org.okapi.pages.AbstractListBackedPageBody;
 import org.okapi.primitives.BinaryLogRecordV1;
 
-public class LogPageBody extends AbstractListBackedPageBody<BinaryLogRecordV1> {
+public class LogPageBody extends AbstractListBackedPageBody<BinaryLogRecordV1>
+    implements TrigramIndexed {
+  // only sealed pages read back from disk or S3 carry postings.
+  @Getter private final TrigramPostings trigramPostings;
 
   public LogPageBody() {
     super();
+    this.trigramPostings = null;
   }
 
   protected LogPageBody(List<BinaryLogRecordV1> logDocs) {
+    this(logDocs, null);
+  }
+
+  protected LogPageBody(List<BinaryLogRecordV1> logDocs, TrigramPostings trigramPostings) {
     super(logDocs);
+    this.trigramPostings = trigramPostings;
   }
 
   public LogBodySnapshot toSnapshot() {
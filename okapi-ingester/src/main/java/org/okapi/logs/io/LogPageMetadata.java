@@ -10,10 +10,11 @@ import java.nio.charset.StandardCharsets;
 import lombok.AccessLevel;
 import lombok.Getter;
 import org.okapi.pages.AbstractTimeBlockMetadata;
+import org.okapi.primitives.IntBloomFilter;
 
 public class LogPageMetadata extends AbstractTimeBlockMetadata {
   @Getter(AccessLevel.PACKAGE)
-  private final BloomFilter<Integer> logBodyTrigrams;
+  private final IntBloomFilter logBodyTrigrams;
 
   @Getter(AccessLevel.PACKAGE)
   private final BloomFilter<Integer> logLevels;
@@ -26,7 +27,7 @@ public class LogPageMetadata extends AbstractTimeBlockMetadata {
       long tsEnd,
       BloomFilter<Integer> logLevels,
       BloomFilter<CharSequence> traceIdSet,
-      BloomFilter<Integer> logBodyTrigrams) {
+      IntBloomFilter logBodyTrigrams) {
     setTsStart(tsStart);
     setTsEnd(tsEnd);
     this.logBodyTrigrams = logBodyTrigrams;
@@ -35,7 +36,7 @@ public class LogPageMetadata extends AbstractTimeBlockMetadata {
   }
 
   public static LogPageMetadata createEmptyMetadata(Integer expectedInsertions) {
-    var logBodyTrigrams = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions);
+    var logBodyTrigrams = IntBloomFilter.create(expectedInsertions);
     var traceIdSet =
         BloomFilter.create(Funnels.stringFunnel(StandardCharsets.US_ASCII), expectedInsertions);
     var logLevels = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions);
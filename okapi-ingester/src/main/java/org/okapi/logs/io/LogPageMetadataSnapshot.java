@@ -8,6 +8,7 @@ import com.google.common.hash.BloomFilter;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.okapi.primitives.IntBloomFilter;
 
 @AllArgsConstructor
 public class LogPageMetadataSnapshot {
@@ -15,7 +16,7 @@ public class LogPageMetadataSnapshot {
   @Getter private long tsEnd;
 
   @Getter(AccessLevel.PACKAGE)
-  private final BloomFilter<Integer> logBodyTrigrams;
+  private final IntBloomFilter logBodyTrigrams;
 
   @Getter(AccessLevel.PACKAGE)
   private final BloomFilter<Integer> logLevels;
@@ -12,6 +12,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Optional;
+import org.okapi.abstractio.TrigramPostings;
 import org.okapi.io.*;
 import org.okapi.pages.AbstractNonChecksummedCodec;
 import org.okapi.primitives.BinaryLogRecordV1;
@@ -55,6 +56,8 @@ public final class LogPageNonChecksummedCodec
       OkapiIo.writeBytes(compressedBuf, doc.toByteArray());
     }
     docsWriter.writeBytesWithLenPrefix(Zstd.compress(compressedBuf.toByteArray()));
+    var bodies = snap.getLogDocs().stream().map(BinaryLogRecordV1::getBody).toList();
+    docsWriter.writeBytesWithLenPrefix(TrigramPostings.build(bodies).serialize());
     docsWriter.writeChecksum();
     return docStream.toByteArray();
   }
@@ -82,7 +85,7 @@ public final class LogPageNonChecksummedCodec
     var tsEnd = mdDecoder.nextLong();
     var levelSet = deserializeIntBloom(mdDecoder.nextBytesLenPrefix());
     var traceSet = deserializeStringBloom(mdDecoder.nextBytesLenPrefix());
-    var trigramSet = deserializeIntBloom(mdDecoder.nextBytesLenPrefix());
+    var trigramSet = deserializePrimitiveIntBloom(mdDecoder.nextBytesLenPrefix());
     var metadata = new LogPageMetadata(tsStart, tsEnd, levelSet, traceSet, trigramSet);
     return Optional.of(new LenBlockAndMetadata<>(mdLen, docBlockLen, metadata));
   }
@@ -104,7 +107,11 @@ public final class LogPageNonChecksummedCodec
     for (int i = 0; i < nDocs; i++) {
       docs.add(BinaryLogRecordV1.fromByteArray(OkapiIo.readBytes(decompressed)));
     }
-
-    return Optional.of(new LogPageBody(docs));
+    // pages written before postings existed end right before the checksum.
+    TrigramPostings postings = null;
+    if (pageDecoder.getOffset() < offset + length - 4) {
+      postings = TrigramPostings.deserialize(pageDecoder.nextBytesLenPrefix());
+    }
+    return Optional.of(new LogPageBody(docs, postings));
   }
 }
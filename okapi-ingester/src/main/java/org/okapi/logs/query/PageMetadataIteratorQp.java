@@ -10,6 +10,7 @@ import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.abstractfilter.PageFilter;
+import org.okapi.abstractio.TrigramIndexed;
 import org.okapi.byterange.RangeIterationException;
 import org.okapi.io.NotEnoughBytesException;
 import org.okapi.io.StreamReadingException;
@@ -41,10 +42,28 @@ public class PageMetadataIteratorQp<
         var page = metadataIterator.readPageBody();
         var parsedBody = codec.deserializeBody(page, 0, page.length);
         parsedBody.ifPresent(
-            pageBody -> aggregated.addAll(filter.getMatchingRecords(pageBody.snapshot())));
+            pageBody -> aggregated.addAll(getMatchingRecords(pageBody)));
       }
       metadataIterator.forward();
     }
     return aggregated;
   }
+
+  /** Only checks the documents the body's trigram postings leave as candidates, if it has any. */
+  List<Record> getMatchingRecords(Body pageBody) {
+    var docs = pageBody.snapshot();
+    if (pageBody instanceof TrigramIndexed indexed && indexed.getTrigramPostings() != null) {
+      var candidates = filter.candidateDocs(indexed.getTrigramPostings());
+      if (candidates != null) {
+        var matching = new ArrayList<Record>(candidates.getCardinality());
+        for (int doc : candidates) {
+          if (doc < docs.size() && filter.matchesRecord(docs.get(doc))) {
+            matching.add(docs.get(doc));
+          }
+        }
+        return matching;
+      }
+    }
+    return filter.getMatchingRecords(docs);
+  }
 }
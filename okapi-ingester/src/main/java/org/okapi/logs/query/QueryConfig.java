@@ -8,16 +8,30 @@ import lombok.EqualsAndHashCode;
 
 @EqualsAndHashCode
 public class QueryConfig {
+  public static final int NO_LIMIT = Integer.MAX_VALUE;
+
   public final boolean s3;
   public final boolean bufferPool;
   public final boolean disk;
   public final boolean fanOut;
 
+  /** Most documents the joined result may hold, the merge stops once it has this many. */
+  @EqualsAndHashCode.Exclude public final int limit;
+
   public QueryConfig(boolean s3, boolean bufferPool, boolean disk, boolean fanOut) {
+    this(s3, bufferPool, disk, fanOut, NO_LIMIT);
+  }
+
+  public QueryConfig(boolean s3, boolean bufferPool, boolean disk, boolean fanOut, int limit) {
     this.s3 = s3;
     this.bufferPool = bufferPool;
     this.disk = disk;
     this.fanOut = fanOut;
+    this.limit = limit;
+  }
+
+  public QueryConfig withLimit(int limit) {
+    return new QueryConfig(s3, bufferPool, disk, fanOut, limit);
   }
 
   public static QueryConfig localSources() {
@@ -8,9 +8,11 @@ import com.google.re2j.Pattern;
 import java.util.List;
 import lombok.Value;
 import org.okapi.abstractfilter.PageFilter;
+import org.okapi.abstractio.TrigramPostings;
 import org.okapi.abstractio.TrigramUtil;
 import org.okapi.logs.io.LogPageMetadata;
 import org.okapi.primitives.BinaryLogRecordV1;
+import org.roaringbitmap.RoaringBitmap;
 
 @Value
 public class RegexPageFilter implements PageFilter<BinaryLogRecordV1, LogPageMetadata> {
@@ -50,6 +52,21 @@ public class RegexPageFilter implements PageFilter<BinaryLogRecordV1, LogPageMet
     return anyMatchFully;
   }
 
+  /** Union over the alternatives of the documents holding all of its literal trigrams. */
+  @Override
+  public RoaringBitmap candidateDocs(TrigramPostings postings) {
+    var out = new RoaringBitmap();
+    for (var trigramList : orTrigrams) {
+      var docs = postings.docsWithAll(trigramList);
+      if (docs == null) {
+        // an alternative without literals can match any document.
+        return null;
+      }
+      out.or(docs);
+    }
+    return out;
+  }
+
   @Override
   public List<BinaryLogRecordV1> getMatchingRecords(List<BinaryLogRecordV1> record) {
     return record.stream().filter(this::matchesRecord).toList();
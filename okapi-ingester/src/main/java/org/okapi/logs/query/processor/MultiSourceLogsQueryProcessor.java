@@ -68,8 +68,9 @@ public class MultiSourceLogsQueryProcessor implements LogsQueryProcessor {
                         ? memberSet.getLogs(logStream, start, end, filter, cfg)
                         : Collections.emptyList()),
             exec);
-    var out = joiner.getJoinedStream(Duration.of(10, ChronoUnit.SECONDS));
-    out.sort(Comparator.comparingLong(BinaryLogRecordV1::getTsMillis));
-    return out;
+    return joiner.getMergedStream(
+        Duration.of(10, ChronoUnit.SECONDS),
+        Comparator.comparingLong(BinaryLogRecordV1::getTsMillis),
+        cfg.limit);
   }
 }
@@ -13,6 +13,7 @@ import org.okapi.abstractfilter.PageFilter;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
 import org.okapi.byterange.LengthPrefixPageAndMdIterator;
+import org.okapi.byterange.PageFooter;
 import org.okapi.byterange.RangeIterationException;
 import org.okapi.byterange.S3ByteRangeSupplier;
 import org.okapi.io.NotEnoughBytesException;
@@ -23,7 +24,7 @@ import org.okapi.logs.query.PageMetadataIteratorQp;
 import org.okapi.logs.query.QueryConfig;
 import org.okapi.primitives.BinaryLogRecordV1;
 import org.okapi.queryproc.LogsQueryProcessor;
-import org.okapi.s3.S3ByteRangeCache;
+import org.okapi.s3.ByteRangeCache;
 import software.amazon.awssdk.services.s3.S3Client;
 
 @Slf4j
@@ -31,14 +32,14 @@ public class S3LogsQueryProcessor implements LogsQueryProcessor {
   // todo: return statistics on bytes scanned, total
   private final LogsCfg cfg;
   private final S3Client s3Client;
-  private final S3ByteRangeCache s3ByteRangeCache;
+  private final ByteRangeCache s3ByteRangeCache;
   private final BinFilesPrefixRegistry prefixRegistry;
   private final LogPageNonChecksummedCodec logPageCodec = new LogPageNonChecksummedCodec();
 
   public S3LogsQueryProcessor(
       LogsCfg cfg,
       S3Client s3Client,
-      S3ByteRangeCache s3ByteRangeCache,
+      ByteRangeCache s3ByteRangeCache,
       BinFilesPrefixRegistry prefixRegistry) {
     this.cfg = cfg;
     this.s3Client = s3Client;
@@ -74,7 +75,8 @@ public class S3LogsQueryProcessor implements LogsQueryProcessor {
   public List<BinaryLogRecordV1> getLogsFromPrefix(String bucket, String prefix, PageFilter filter)
       throws IOException, StreamReadingException, RangeIterationException, NotEnoughBytesException {
     var s3ByteRangeSupplier = new S3ByteRangeSupplier(bucket, prefix, s3Client, s3ByteRangeCache);
-    var iterator = new LengthPrefixPageAndMdIterator(s3ByteRangeSupplier);
+    var footer = PageFooter.read(s3ByteRangeSupplier).orElse(null);
+    var iterator = new LengthPrefixPageAndMdIterator(s3ByteRangeSupplier, footer);
     var qp = new PageMetadataIteratorQp<>(iterator, filter, logPageCodec);
     return new ArrayList<>(qp.getMatchingRecords());
   }
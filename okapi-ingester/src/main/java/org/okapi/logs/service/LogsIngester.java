@@ -20,7 +20,6 @@ import org.okapi.logs.io.LogIngestRecord;
 import org.okapi.logs.io.LogRecordTranslator;
 import org.okapi.otel.ResourceAttributesReader;
 import org.okapi.sharding.ShardAssigner;
-import org.okapi.wal.frame.WalEntry;
 import org.okapi.wal.io.IllegalWalEntryException;
 
 @Slf4j
@@ -58,28 +57,21 @@ public class LogsIngester {
       throws IllegalWalEntryException, IOException {
     for (var shard : groups.keySet()) {
       var batch = groups.get(shard);
-      var walEntries =
+      var payloads =
           batch.stream()
-              .map(
-                  record ->
-                      this.toWalEntry(shard, LogRecordTranslator.toLogIngestRecord(svc, record)))
+              .map(record -> toWalPayload(LogRecordTranslator.toLogIngestRecord(svc, record)))
               .toList();
-      var writer = walResourcesPerStream.getWalWriter(shard);
-      writer.appendBatch(walEntries);
+      walResourcesPerStream.getGroupCommitWriter(shard).appendAndWait(payloads);
     }
   }
 
-  public WalEntry toWalEntry(int shard, LogIngestRecord logRecord) {
-    var lsnSupplier = walResourcesPerStream.getLsnSupplier(shard);
-    var lsn = lsnSupplier.getLsn();
-    var bytes = gson.toJson(logRecord).getBytes();
-    return new WalEntry(lsn, bytes);
+  public byte[] toWalPayload(LogIngestRecord logRecord) {
+    return gson.toJson(logRecord).getBytes();
   }
 
   public void ingestForwarded(ForwardedLogIngestRecord records)
       throws IllegalWalEntryException, IOException {
-    var walBatch =
-        records.getRecords().stream().map(r -> toWalEntry(records.getShard(), r)).toList();
-    walResourcesPerStream.getWalWriter(records.getShard()).appendBatch(walBatch);
+    var payloads = records.getRecords().stream().map(this::toWalPayload).toList();
+    walResourcesPerStream.getGroupCommitWriter(records.getShard()).appendAndWait(payloads);
   }
 }
@@ -6,6 +6,7 @@ package org.okapi.logs.service;
 
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.util.ArrayList;
 import lombok.RequiredArgsConstructor;
 import org.okapi.CommonConfig;
 import org.okapi.abstractio.StreamIdFactory;
@@ -18,6 +19,8 @@ import org.okapi.logs.io.LogIngestRecord;
 import org.okapi.sharding.ShardRegistry;
 import org.okapi.sharding.ShardState;
 import org.okapi.wal.io.IllegalWalEntryException;
+import org.okapi.wal.io.WalBatch;
+import org.okapi.wal.lsn.Lsn;
 
 @RequiredArgsConstructor
 public class LogsShardWalConsumer {
@@ -31,6 +34,7 @@ public class LogsShardWalConsumer {
   private final ShardRegistry shardRegistry;
 
   private final Gson gson = new Gson();
+  private final WalBatch batch = new WalBatch();
 
   public void consumeRecords() throws IOException, IllegalWalEntryException {
     var myShards = shardRegistry.getAssigned();
@@ -42,17 +46,19 @@ public class LogsShardWalConsumer {
   }
 
   private void consume(int shard) throws IOException {
+    // entries stay in the WAL until the flushers catch up.
+    if (bufferPool.isBackpressured()) return;
     var reader = walResourcesPerStream.getWalReader(shard);
-    var entry = reader.readNext();
-    int consumed = 0;
     var streamId = streamIdFactory.withStreamAndShard(shard);
-    while (entry.isPresent() && consumed < batchSize) {
-      var unmarshalled = gson.fromJson(new String(entry.get().getPayload()), LogIngestRecord.class);
-      bufferPool.consume(entry.get().getLsn(), streamId, unmarshalled);
-      consumed++;
-      reader.advance();
-      entry = reader.readNext();
+    reader.readBatchInto(batch, batchSize);
+    if (batch.isEmpty()) return;
+    var lsns = new ArrayList<Lsn>(batch.size());
+    var records = new ArrayList<LogIngestRecord>(batch.size());
+    for (var entry : batch.getEntries()) {
+      lsns.add(entry.getLsn());
+      records.add(gson.fromJson(new String(entry.getPayload()), LogIngestRecord.class));
     }
+    bufferPool.appendAll(streamId, lsns, records);
   }
 
   private void forward(int shard) throws IOException {
@@ -61,9 +67,9 @@ public class LogsShardWalConsumer {
     var reader = walResourcesPerStream.getWalReader(shard);
     var owner = state.getOwner();
     var member = memberList.getMember(owner);
-    var batch = reader.readBatchAndAdvance(batchSize);
+    reader.readBatchInto(batch, batchSize);
     var reqs =
-        batch.stream()
+        batch.getEntries().stream()
             .map(
                 (walEntry) ->
                     gson.fromJson(new String(walEntry.getPayload()), LogIngestRecord.class))
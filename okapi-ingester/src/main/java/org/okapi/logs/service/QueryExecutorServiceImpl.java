@@ -27,17 +27,22 @@ public class QueryExecutorServiceImpl implements LogsQueryService {
   @Override
   public QueryResponse queryAllSources(String stream, QueryRequest request, int limit)
       throws Exception {
-    var queryCfg = new QueryConfig(true, true, true, true);
+    var queryCfg = new QueryConfig(true, true, true, true, effectiveLimit(request, limit));
     return queryProcessorWithConfig(stream, request, queryCfg);
   }
 
   @Override
   public QueryResponse queryDiskAndBufferPool(String stream, QueryRequest request, int limit)
       throws Exception {
-    var queryCfg = new QueryConfig(false, true, true, false);
+    var queryCfg = new QueryConfig(false, true, true, false, effectiveLimit(request, limit));
     return queryProcessorWithConfig(stream, request, queryCfg);
   }
 
+  /** The request's own limit when it asks for fewer than {@code maxLimit} records. */
+  static int effectiveLimit(QueryRequest request, int maxLimit) {
+    return request.getLimit() > 0 ? Math.min(request.getLimit(), maxLimit) : maxLimit;
+  }
+
   public QueryResponse queryProcessorWithConfig(
       String stream, QueryRequest request, QueryConfig queryCfg) throws Exception {
     var filter = buildLogFilter(request.getFilter());
@@ -8,9 +8,14 @@ public class ChConstants {
   public static final String TBL_GAUGES = "okapi_metrics.gauge_raw_samples";
   public static final String TBL_HISTOS = "okapi_metrics.histo_raw_samples";
   public static final String TBL_SUM = "okapi_metrics.sums_raw_samples";
+  public static final String TBL_GAUGES_1M = "okapi_metrics.gauge_rollup_1m";
+  public static final String TBL_GAUGES_1H = "okapi_metrics.gauge_rollup_1h";
+  public static final String TBL_HISTOS_1M = "okapi_metrics.histo_rollup_1m";
+  public static final String TBL_HISTOS_1H = "okapi_metrics.histo_rollup_1h";
   public static final String TBL_EXEMPLAR = "okapi_metrics.metric_exemplars";
-  public static final String TBL_METRIC_EVENTS_META = "okapi_metrics.metric_events_stream_meta";
+  public static final String TBL_METRIC_SERIES = "okapi_metrics.metric_series";
   public static final String TBL_SERVICE_RED_EVENTS = "okapi_traces.service_red_events";
+  public static final String TBL_SERVICE_RED_1M = "okapi_traces.service_red_1m";
   public static final String TBL_SPANS_V1 = "okapi_traces.spans_table_v1";
   public static final String TBL_SPANS_INGESTED_ATTRIBS = "okapi_traces.spans_ingested_attribs";
   public static final int METRIC_HINTS_LIMIT = 500;
@@ -18,4 +18,5 @@ public class ChGaugeSampleRow extends AbstractChRow {
   String metric;
   Map<String, String> tags;
   float value;
+  long fingerprint;
 }
@@ -40,4 +40,5 @@ public class ChHistoSample {
   float max;
   float[] buckets;
   int[] counts;
+  long fingerprint;
 }
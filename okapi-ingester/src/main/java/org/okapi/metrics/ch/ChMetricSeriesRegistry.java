@@ -0,0 +1,88 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+/**
+ * Remembers which series a consumer has recently written to {@link ChConstants#TBL_METRIC_SERIES}
+ * and the window that row covers, so that a series row is written when the series is new or its
+ * samples leave that window rather than once per sample.
+ *
+ * <p>Windows are widened to whole {@code granularity} buckets before being written: a series that
+ * keeps reporting gets a new row once per bucket, and discovery may list it for up to one bucket
+ * past its last sample. Rows of the same series, from this or other consumers, are combined by the
+ * table's min/max columns. Forgetting a series (it fell out of the {@code maxSeries} most recently
+ * seen, or the process restarted) only means its row is written again.
+ *
+ * <p>Not thread-safe, each WAL consumer owns one.
+ */
+public class ChMetricSeriesRegistry {
+  public static final Duration DEFAULT_GRANULARITY = Duration.ofMinutes(15);
+  public static final int DEFAULT_MAX_SERIES = 1_000_000;
+
+  private final long granularityMs;
+  private final Map<Long, long[]> windows;
+
+  public ChMetricSeriesRegistry() {
+    this(DEFAULT_GRANULARITY, DEFAULT_MAX_SERIES);
+  }
+
+  public ChMetricSeriesRegistry(Duration granularity, int maxSeries) {
+    this.granularityMs = granularity.toMillis();
+    this.windows =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > maxSeries;
+          }
+        };
+  }
+
+  /**
+   * The row to write for samples of a series spanning {@code [tsStart, tsEnd]}, or null when a row
+   * written earlier already covers them. {@code fingerprint} is the series' {@link
+   * ChSeriesFingerprint}.
+   */
+  public ChMetricSeriesRow observe(
+      long fingerprint,
+      METRIC_TYPE type,
+      String metric,
+      Map<String, String> tags,
+      String temporality,
+      long tsStart,
+      long tsEnd) {
+    var window = windows.get(fingerprint);
+    if (window != null && window[0] <= tsStart && tsEnd <= window[1]) {
+      return null;
+    }
+    var start = Math.floorDiv(tsStart, granularityMs) * granularityMs;
+    var end = (Math.floorDiv(tsEnd, granularityMs) + 1) * granularityMs - 1;
+    if (window == null) {
+      windows.put(fingerprint, new long[] {start, end});
+    } else {
+      window[0] = Math.min(window[0], start);
+      window[1] = Math.max(window[1], end);
+      start = window[0];
+      end = window[1];
+    }
+    return ChMetricSeriesRow.builder()
+        .fingerprint(fingerprint)
+        .eventType(type)
+        .metric(metric)
+        .tags(tags)
+        .temporality(temporality)
+        .tsStart(start)
+        .tsEnd(end)
+        .build();
+  }
+
+  public int size() {
+    return windows.size();
+  }
+}
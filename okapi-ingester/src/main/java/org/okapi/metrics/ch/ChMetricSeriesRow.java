@@ -0,0 +1,24 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class ChMetricSeriesRow {
+  long fingerprint;
+  METRIC_TYPE eventType;
+  String metric;
+  Map<String, String> tags;
+  String temporality;
+  long tsStart;
+  long tsEnd;
+}
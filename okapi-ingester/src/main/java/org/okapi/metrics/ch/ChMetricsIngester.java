@@ -6,7 +6,6 @@ package org.okapi.metrics.ch;
 
 import static org.okapi.metrics.service.MetricsValidator.validate;
 
-import com.google.gson.Gson;
 import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
 import java.io.IOException;
 import java.util.List;
@@ -20,7 +19,6 @@ import org.okapi.metrics.otel.MetricsPostProcessor;
 import org.okapi.metrics.otel.OtelConverter;
 import org.okapi.metrics.otel.RewritePostProcessor;
 import org.okapi.rest.metrics.ExportMetricsRequest;
-import org.okapi.wal.frame.WalEntry;
 import org.okapi.wal.io.IllegalWalEntryException;
 
 @Slf4j
@@ -28,12 +26,10 @@ import org.okapi.wal.io.IllegalWalEntryException;
 public class ChMetricsIngester {
   private final OtelConverter otelConverter;
   private final ChWalResources walResources;
-  private final Gson gson = new Gson();
+  private final ChMetricsWalCodec walCodec = new ChMetricsWalCodec();
 
-  protected WalEntry toWalEntry(ExportMetricsRequest request) throws IOException {
-    var lsnSupplier = this.walResources.getSupplier();
-    var payload = gson.toJson(request);
-    return new WalEntry(lsnSupplier.next(), payload.getBytes());
+  protected byte[] toWalPayload(ExportMetricsRequest request) {
+    return walCodec.encode(request);
   }
 
   public void ingestOtelProtobuf(ExportMetricsServiceRequest exportMetricsServiceRequest)
@@ -42,18 +38,8 @@ public class ChMetricsIngester {
         otelConverter.toOkapiRequests(exportMetricsServiceRequest);
     converted = buildPostProcessor(null).process(converted);
     validate(converted);
-    var walEntries =
-        converted.stream()
-            .map(
-                (r) -> {
-                  try {
-                    return toWalEntry(r);
-                  } catch (IOException e) {
-                    throw new RuntimeException(e);
-                  }
-                })
-            .toList();
-    walResources.getWriter().appendBatch(walEntries);
+    var payloads = converted.stream().map(this::toWalPayload).toList();
+    walResources.getGroupCommitWriter().appendAndWait(payloads);
   }
 
   public void ingestOtelProtobuf(
@@ -63,18 +49,8 @@ public class ChMetricsIngester {
         otelConverter.toOkapiRequests(exportMetricsServiceRequest);
     converted = buildPostProcessor(conversionConfig).process(converted);
     validate(converted);
-    var walEntries =
-        converted.stream()
-            .map(
-                (r) -> {
-                  try {
-                    return toWalEntry(r);
-                  } catch (IOException e) {
-                    throw new RuntimeException(e);
-                  }
-                })
-            .toList();
-    walResources.getWriter().appendBatch(walEntries);
+    var payloads = converted.stream().map(this::toWalPayload).toList();
+    walResources.getGroupCommitWriter().appendAndWait(payloads);
   }
 
   private MetricsPostProcessor buildPostProcessor(ConversionConfig conversionConfig) {
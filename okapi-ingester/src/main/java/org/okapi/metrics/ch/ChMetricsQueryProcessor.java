@@ -33,8 +33,9 @@ public class ChMetricsQueryProcessor {
   public ChMetricsQueryProcessor(Client client, ChMetricTemplateEngine templateEngine) {
     this.client = client;
     this.templateEngine = templateEngine;
-    this.gaugeQueryProcessor = new GaugeQueryProcessor(client, templateEngine);
-    this.histogramQueryProcessor = new HistogramQueryProcessor(client, templateEngine);
+    var rollups = new ChRollupCatalog(client);
+    this.gaugeQueryProcessor = new GaugeQueryProcessor(client, templateEngine, rollups);
+    this.histogramQueryProcessor = new HistogramQueryProcessor(client, templateEngine, rollups);
     this.sumQueryProcessor = new SumQueryProcessor(client, templateEngine);
     this.exemplarQueryProcessor = new ChExemplarQueryProcessor(client, templateEngine);
   }
@@ -61,7 +62,7 @@ public class ChMetricsQueryProcessor {
         renderQuery(
             ChTemplateFiles.GET_METRIC_HINTS,
             MetricHintsQueryTemplate.builder()
-                .table(ChConstants.TBL_METRIC_EVENTS_META)
+                .table(ChConstants.TBL_METRIC_SERIES)
                 .eventType(metricType == null ? null : metricType.name())
                 .metricPrefix(request.getMetricPrefix() == null ? "" : request.getMetricPrefix())
                 .startMs(interval.getStart())
@@ -87,7 +88,7 @@ public class ChMetricsQueryProcessor {
         renderQuery(
             ChTemplateFiles.GET_TAG_HINTS,
             MetricHintsQueryTemplate.builder()
-                .table(ChConstants.TBL_METRIC_EVENTS_META)
+                .table(ChConstants.TBL_METRIC_SERIES)
                 .eventType(metricType == null ? null : metricType.name())
                 .metric(request.getMetricName())
                 .tagPrefix(request.getTagPrefix() == null ? "" : request.getTagPrefix())
@@ -115,7 +116,7 @@ public class ChMetricsQueryProcessor {
         renderQuery(
             ChTemplateFiles.GET_TAG_VALUE_HINTS,
             MetricHintsQueryTemplate.builder()
-                .table(ChConstants.TBL_METRIC_EVENTS_META)
+                .table(ChConstants.TBL_METRIC_SERIES)
                 .eventType(metricType == null ? null : metricType.name())
                 .metric(request.getMetricName())
                 .tag(request.getTag())
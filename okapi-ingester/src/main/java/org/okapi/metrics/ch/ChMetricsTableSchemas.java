@@ -0,0 +1,88 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import org.okapi.ch.ChRowBinaryWriter;
+import org.okapi.ch.ChTableSchema;
+
+/** RowBinary encoders for the metrics tables, column order follows {@code resources/ch/*.sql}. */
+public final class ChMetricsTableSchemas {
+  private ChMetricsTableSchemas() {}
+
+  public static final ChTableSchema<ChGaugeSampleRow> GAUGES =
+      new ChTableSchema<>(
+          ChConstants.TBL_GAUGES,
+          (row, out) -> {
+            out.writeInt64(row.getTimestamp())
+                .writeString(row.getMetric())
+                .writeStringMap(row.getTags())
+                .writeFloat32(row.getValue());
+            timeBuckets(out);
+            out.writeUInt64(row.getFingerprint());
+          });
+
+  public static final ChTableSchema<ChHistoSample> HISTOS =
+      new ChTableSchema<>(
+          ChConstants.TBL_HISTOS,
+          (row, out) -> {
+            out.writeString(row.getMetric())
+                .writeStringMap(row.getTags())
+                .writeInt64(row.getTsStart())
+                .writeInt64(row.getTsEnd())
+                .writeFloat32Array(row.getBuckets())
+                .writeInt32Array(row.getCounts())
+                .writeEnum8(row.getHistoType());
+            timeBuckets(out);
+            out.writeUInt64(row.getFingerprint());
+          });
+
+  public static final ChTableSchema<ChSumSampleRow> SUMS =
+      new ChTableSchema<>(
+          ChConstants.TBL_SUM,
+          (row, out) -> {
+            out.writeString(row.getMetricName())
+                .writeStringMap(row.getTags())
+                .writeInt64(row.getTsStart())
+                .writeInt64(row.getTsEnd())
+                .writeInt64(row.getValue())
+                .writeEnum8(row.getSumType());
+            timeBuckets(out);
+            out.writeUInt64(row.getFingerprint());
+          });
+
+  public static final ChTableSchema<ChExemplarRow> EXEMPLARS =
+      new ChTableSchema<>(
+          ChConstants.TBL_EXEMPLAR,
+          (row, out) -> {
+            out.writeInt64(row.getTsNanos())
+                .writeString(row.getMetricName())
+                .writeStringMap(row.getTags())
+                .writeString(row.getSpanId())
+                .writeString(row.getTraceId())
+                .writeString(row.getKind());
+            if (row.getDoubleValue() == null) out.useDefault();
+            else out.writeFloat64(row.getDoubleValue());
+            if (row.getIntValue() == null) out.useDefault();
+            else out.writeInt64(row.getIntValue());
+            out.writeString(row.getAttributesKvListJson());
+          });
+
+  public static final ChTableSchema<ChMetricSeriesRow> METRIC_SERIES =
+      new ChTableSchema<>(
+          ChConstants.TBL_METRIC_SERIES,
+          (row, out) ->
+              out.writeUInt64(row.getFingerprint())
+                  .writeEnum8(row.getEventType())
+                  .writeString(row.getMetric())
+                  .writeStringMap(row.getTags())
+                  .writeNullableString(row.getTemporality())
+                  .writeInt64(row.getTsStart())
+                  .writeInt64(row.getTsEnd()));
+
+  /** minute, hour, day and month are computed by the table's DEFAULT expressions. */
+  private static void timeBuckets(ChRowBinaryWriter out) {
+    out.useDefault().useDefault().useDefault().useDefault();
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.okapi.io.StreamReadingException;
+import org.okapi.rest.common.AnyValueJson;
+import org.okapi.rest.common.KeyValueJson;
+import org.okapi.rest.common.NumberValue;
+import org.okapi.rest.metrics.Exemplar;
+import org.okapi.rest.metrics.ExportMetricsRequest;
+import org.okapi.rest.metrics.MetricType;
+import org.okapi.rest.metrics.payloads.Gauge;
+import org.okapi.rest.metrics.payloads.Histo;
+import org.okapi.rest.metrics.payloads.HistoPoint;
+import org.okapi.rest.metrics.payloads.SUM_TEMPORALITY;
+import org.okapi.rest.metrics.payloads.Sum;
+import org.okapi.rest.metrics.payloads.SumPoint;
+
+/**
+ * Binary WAL payload for an {@link ExportMetricsRequest} on the ClickHouse metrics path.
+ *
+ * <pre>
+ * MAGIC('O','M') | VERSION(1) | BODY
+ * </pre>
+ *
+ * Lengths and counts are unsigned varints, nullable values are encoded as {@code length + 1} (or a
+ * presence byte) with 0 standing for null. Numbers are big-endian. Payloads written before this
+ * codec are Gson JSON objects, they start with '{' and are still decoded through Gson so that old
+ * segments replay.
+ *
+ * <p>The WAL consumer reads payloads through {@link #decode(ByteBuffer, Visitor)}, which hands
+ * samples over as primitives so that no request and no boxed sample lists are built per entry.
+ */
+public class ChMetricsWalCodec {
+  static final byte MAGIC_0 = 'O';
+  static final byte MAGIC_1 = 'M';
+  static final byte VERSION_1 = 1;
+
+  private static final int HAS_GAUGE = 1;
+  private static final int HAS_HISTO = 1 << 1;
+  private static final int HAS_SUM = 1 << 2;
+
+  private final Gson gson = new Gson();
+
+  /** Receives the fields of one payload in order, {@link #metric} first. */
+  public interface Visitor {
+    void metric(String metricName, Map<String, String> tags);
+
+    void gaugeSample(long ts, float value);
+
+    void histoPoint(
+        long start, long end, HistoPoint.TEMPORALITY temporality, float[] buckets, int[] counts);
+
+    void sumPoint(SUM_TEMPORALITY temporality, Long start, Long end, int sum);
+
+    /** Gauge and histogram exemplars, they are rare enough to be handed over as objects. */
+    void exemplar(Exemplar exemplar);
+  }
+
+  public byte[] encode(ExportMetricsRequest request) {
+    var bos = new ByteArrayOutputStream(256);
+    var out = new DataOutputStream(bos);
+    try {
+      out.writeByte(MAGIC_0);
+      out.writeByte(MAGIC_1);
+      out.writeByte(VERSION_1);
+      writeString(out, request.getMetricName());
+      writeString(out, request.getUnit());
+      writeEnum(out, request.getType());
+      writeTags(out, request.getTags());
+      int flags = 0;
+      if (request.getGauge() != null) flags |= HAS_GAUGE;
+      if (request.getHisto() != null) flags |= HAS_HISTO;
+      if (request.getSum() != null) flags |= HAS_SUM;
+      out.writeByte(flags);
+      if (request.getGauge() != null) writeGauge(out, request.getGauge());
+      if (request.getHisto() != null) writeHisto(out, request.getHisto());
+      if (request.getSum() != null) writeSum(out, request.getSum());
+    } catch (IOException e) {
+      // ByteArrayOutputStream does not throw
+      throw new UncheckedIOException(e);
+    }
+    return bos.toByteArray();
+  }
+
+  /** Decodes a payload written by {@link #encode} or, for older segments, by Gson. */
+  public ExportMetricsRequest decode(ByteBuffer payload) throws StreamReadingException {
+    var in = payload.duplicate();
+    if (!isBinary(in)) {
+      return readJson(in);
+    }
+    try {
+      return readRequest(in);
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | IndexOutOfBoundsException
+        | NegativeArraySizeException e) {
+      throw new StreamReadingException("Truncated metrics WAL payload.", e);
+    }
+  }
+
+  /**
+   * Streams a payload into {@code visitor}. Legacy JSON payloads are parsed into a request first
+   * and then replayed. A truncated payload throws after some fields may have been visited.
+   */
+  public void decode(ByteBuffer payload, Visitor visitor) throws StreamReadingException {
+    var in = payload.duplicate();
+    if (!isBinary(in)) {
+      var request = readJson(in);
+      try {
+        visit(request, visitor);
+      } catch (IllegalArgumentException e) {
+        throw new StreamReadingException("Invalid legacy metrics WAL payload.", e);
+      }
+      return;
+    }
+    try {
+      readInto(in, visitor);
+    } catch (BufferUnderflowException
+        | IllegalArgumentException
+        | IndexOutOfBoundsException
+        | NegativeArraySizeException e) {
+      throw new StreamReadingException("Truncated metrics WAL payload.", e);
+    }
+  }
+
+  /** Checks the header and skips past it, false for legacy JSON payloads. */
+  private static boolean isBinary(ByteBuffer in) throws StreamReadingException {
+    if (in.remaining() < 3 || in.get(in.position()) != MAGIC_0) {
+      return false;
+    }
+    if (in.get(in.position() + 1) != MAGIC_1) {
+      throw new StreamReadingException("Invalid metrics WAL payload magic.");
+    }
+    var version = in.get(in.position() + 2);
+    if (version != VERSION_1) {
+      throw new StreamReadingException("Unsupported metrics WAL payload version: " + version);
+    }
+    in.position(in.position() + 3);
+    return true;
+  }
+
+  private ExportMetricsRequest readJson(ByteBuffer in) {
+    var json = new byte[in.remaining()];
+    in.get(json);
+    return gson.fromJson(new String(json, StandardCharsets.UTF_8), ExportMetricsRequest.class);
+  }
+
+  private void readInto(ByteBuffer in, Visitor visitor) {
+    var metricName = readString(in);
+    readString(in); // unit
+    in.get(); // type
+    visitor.metric(metricName, readTags(in));
+    int flags = in.get();
+    if ((flags & HAS_GAUGE) != 0) {
+      int n = readVarint(in);
+      for (int i = 0; i < n; i++) {
+        visitor.gaugeSample(in.getLong(), in.getFloat());
+      }
+      visitExemplars(readExemplars(in), visitor);
+    }
+    if ((flags & HAS_HISTO) != 0) {
+      // histogram points are arrays already, nothing is boxed on the way
+      visitHisto(readHisto(in), visitor);
+    }
+    if ((flags & HAS_SUM) != 0) {
+      var temporality = readEnum(in, SUM_TEMPORALITY.values());
+      int n = readVarint(in) - 1;
+      for (int i = 0; i < n; i++) {
+        visitor.sumPoint(temporality, readNullableLong(in), readNullableLong(in), in.getInt());
+      }
+    }
+  }
+
+  /** Replays a request the way {@link #decode(ByteBuffer, Visitor)} reads its binary encoding. */
+  static void visit(ExportMetricsRequest request, Visitor visitor) {
+    visitor.metric(request.getMetricName(), request.getTags());
+    var gauge = request.getGauge();
+    if (gauge != null) {
+      int n = gaugeSamples(gauge);
+      for (int i = 0; i < n; i++) {
+        visitor.gaugeSample(gauge.getTs().get(i), gauge.getValue().get(i));
+      }
+      visitExemplars(gauge.getExemplars(), visitor);
+    }
+    if (request.getHisto() != null) {
+      visitHisto(request.getHisto(), visitor);
+    }
+    var sum = request.getSum();
+    if (sum != null && sum.getSumPoints() != null) {
+      for (var pt : sum.getSumPoints()) {
+        visitor.sumPoint(sum.getTemporality(), pt.getStart(), pt.getEnd(), pt.getSum());
+      }
+    }
+  }
+
+  private static void visitHisto(Histo histo, Visitor visitor) {
+    if (histo.getHistoPoints() != null) {
+      for (var pt : histo.getHistoPoints()) {
+        visitor.histoPoint(
+            pt.getStart(),
+            pt.getEnd(),
+            pt.getTemporality(),
+            pt.getBuckets(),
+            pt.getBucketCounts());
+      }
+    }
+    visitExemplars(histo.getExemplars(), visitor);
+  }
+
+  private static void visitExemplars(List<Exemplar> exemplars, Visitor visitor) {
+    if (exemplars == null) return;
+    for (var exemplar : exemplars) {
+      visitor.exemplar(exemplar);
+    }
+  }
+
+  private ExportMetricsRequest readRequest(ByteBuffer in) {
+    var metricName = readString(in);
+    var unit = readString(in);
+    var type = readEnum(in, MetricType.values());
+    var tags = readTags(in);
+    int flags = in.get();
+    var gauge = (flags & HAS_GAUGE) != 0 ? readGauge(in) : null;
+    var histo = (flags & HAS_HISTO) != 0 ? readHisto(in) : null;
+    var sum = (flags & HAS_SUM) != 0 ? readSum(in) : null;
+    return new ExportMetricsRequest(metricName, tags, type, gauge, histo, sum, unit);
+  }
+
+  private void writeGauge(DataOutputStream out, Gauge gauge) throws IOException {
+    int n = gaugeSamples(gauge);
+    writeVarint(out, n);
+    for (int i = 0; i < n; i++) {
+      out.writeLong(gauge.getTs().get(i));
+      out.writeFloat(gauge.getValue().get(i));
+    }
+    writeExemplars(out, gauge.getExemplars());
+  }
+
+  /** Samples in {@code gauge}, null lists count as empty as they did in the JSON payload. */
+  private static int gaugeSamples(Gauge gauge) {
+    int nTs = gauge.getTs() == null ? 0 : gauge.getTs().size();
+    int nValues = gauge.getValue() == null ? 0 : gauge.getValue().size();
+    Preconditions.checkArgument(
+        nTs == nValues, "Gauge has %s timestamps but %s values.", nTs, nValues);
+    return nTs;
+  }
+
+  private Gauge readGauge(ByteBuffer in) {
+    int n = readVarint(in);
+    var ts = new ArrayList<Long>(Math.min(n, in.remaining()));
+    var values = new ArrayList<Float>(Math.min(n, in.remaining()));
+    for (int i = 0; i < n; i++) {
+      ts.add(in.getLong());
+      values.add(in.getFloat());
+    }
+    return new Gauge(ts, values, readExemplars(in));
+  }
+
+  private void writeHisto(DataOutputStream out, Histo histo) throws IOException {
+    var points = histo.getHistoPoints();
+    writeVarint(out, points == null ? 0 : points.size() + 1);
+    if (points != null) {
+      for (var pt : points) {
+        out.writeLong(pt.getStart());
+        out.writeLong(pt.getEnd());
+        writeEnum(out, pt.getTemporality());
+        var buckets = pt.getBuckets();
+        writeVarint(out, buckets == null ? 0 : buckets.length + 1);
+        if (buckets != null) {
+          for (var b : buckets) out.writeFloat(b);
+        }
+        var counts = pt.getBucketCounts();
+        writeVarint(out, counts == null ? 0 : counts.length + 1);
+        if (counts != null) {
+          for (var c : counts) out.writeInt(c);
+        }
+      }
+    }
+    writeExemplars(out, histo.getExemplars());
+  }
+
+  private Histo readHisto(ByteBuffer in) {
+    int n = readVarint(in) - 1;
+    List<HistoPoint> points = null;
+    if (n >= 0) {
+      points = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        var start = in.getLong();
+        var end = in.getLong();
+        var temporality = readEnum(in, HistoPoint.TEMPORALITY.values());
+        float[] buckets = null;
+        int nBuckets = readVarint(in) - 1;
+        if (nBuckets >= 0) {
+          buckets = new float[nBuckets];
+          for (int b = 0; b < nBuckets; b++) buckets[b] = in.getFloat();
+        }
+        int[] counts = null;
+        int nCounts = readVarint(in) - 1;
+        if (nCounts >= 0) {
+          counts = new int[nCounts];
+          for (int c = 0; c < nCounts; c++) counts[c] = in.getInt();
+        }
+        points.add(new HistoPoint(start, end, temporality, buckets, counts));
+      }
+    }
+    return new Histo(points, readExemplars(in));
+  }
+
+  private void writeSum(DataOutputStream out, Sum sum) throws IOException {
+    writeEnum(out, sum.getTemporality());
+    var points = sum.getSumPoints();
+    writeVarint(out, points == null ? 0 : points.size() + 1);
+    if (points == null) return;
+    for (var pt : points) {
+      writeNullableLong(out, pt.getStart());
+      writeNullableLong(out, pt.getEnd());
+      out.writeInt(pt.getSum());
+    }
+  }
+
+  private Sum readSum(ByteBuffer in) {
+    var temporality = readEnum(in, SUM_TEMPORALITY.values());
+    int n = readVarint(in) - 1;
+    List<SumPoint> points = null;
+    if (n >= 0) {
+      points = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        points.add(new SumPoint(readNullableLong(in), readNullableLong(in), in.getInt()));
+      }
+    }
+    return new Sum(temporality, points);
+  }
+
+  private void writeExemplars(DataOutputStream out, List<Exemplar> exemplars) throws IOException {
+    writeVarint(out, exemplars == null ? 0 : exemplars.size() + 1);
+    if (exemplars == null) return;
+    for (var exemplar : exemplars) {
+      writeString(out, exemplar.getMetric());
+      writeTags(out, exemplar.getTags());
+      out.writeLong(exemplar.getTsNanos());
+      var kvs = exemplar.getKv();
+      writeVarint(out, kvs == null ? 0 : kvs.size() + 1);
+      if (kvs != null) {
+        for (var kv : kvs) {
+          writeString(out, kv.getKey());
+          writeAnyValue(out, kv.getValue());
+        }
+      }
+      var measurement = exemplar.getMeasurement();
+      out.writeBoolean(measurement != null);
+      if (measurement != null) {
+        writeNullableLong(out, measurement.getAnInteger());
+        writeNullableDouble(out, measurement.getADouble());
+      }
+      writeString(out, exemplar.getSpanId());
+      writeString(out, exemplar.getTraceId());
+    }
+  }
+
+  private List<Exemplar> readExemplars(ByteBuffer in) {
+    int n = readVarint(in) - 1;
+    if (n < 0) return null;
+    var exemplars = new ArrayList<Exemplar>(n);
+    for (int i = 0; i < n; i++) {
+      var builder =
+          Exemplar.builder().metric(readString(in)).tags(readTags(in)).tsNanos(in.getLong());
+      int nKv = readVarint(in) - 1;
+      if (nKv >= 0) {
+        var kvs = new ArrayList<KeyValueJson>(nKv);
+        for (int k = 0; k < nKv; k++) {
+          kvs.add(new KeyValueJson(readString(in), readAnyValue(in)));
+        }
+        builder.kv(kvs);
+      }
+      if (in.get() != 0) {
+        builder.measurement(new NumberValue(readNullableLong(in), readNullableDouble(in)));
+      }
+      exemplars.add(builder.spanId(readString(in)).traceId(readString(in)).build());
+    }
+    return exemplars;
+  }
+
+  private void writeAnyValue(DataOutputStream out, AnyValueJson value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value == null) return;
+    writeString(out, value.getAString());
+    writeNullableLong(out, value.getAnInteger());
+    out.writeByte(value.getABoolean() == null ? 0 : value.getABoolean() ? 2 : 1);
+    writeNullableDouble(out, value.getADouble());
+    var bytes = value.getBytes();
+    writeVarint(out, bytes == null ? 0 : bytes.length + 1);
+    if (bytes != null) out.write(bytes);
+  }
+
+  private AnyValueJson readAnyValue(ByteBuffer in) {
+    if (in.get() == 0) return null;
+    var aString = readString(in);
+    var anInteger = readNullableLong(in);
+    var bool = in.get();
+    var aBoolean = bool == 0 ? null : bool == 2;
+    var aDouble = readNullableDouble(in);
+    byte[] bytes = null;
+    int nBytes = readVarint(in) - 1;
+    if (nBytes >= 0) {
+      bytes = new byte[nBytes];
+      in.get(bytes);
+    }
+    return new AnyValueJson(aString, anInteger, aBoolean, aDouble, bytes);
+  }
+
+  private void writeTags(DataOutputStream out, Map<String, String> tags) throws IOException {
+    writeVarint(out, tags == null ? 0 : tags.size() + 1);
+    if (tags == null) return;
+    for (var tag : tags.entrySet()) {
+      writeString(out, tag.getKey());
+      writeString(out, tag.getValue());
+    }
+  }
+
+  private Map<String, String> readTags(ByteBuffer in) {
+    int n = readVarint(in) - 1;
+    if (n < 0) return null;
+    var tags = new TreeMap<String, String>();
+    for (int i = 0; i < n; i++) {
+      tags.put(readString(in), readString(in));
+    }
+    return tags;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      writeVarint(out, 0);
+      return;
+    }
+    var bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length + 1);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int n = readVarint(in) - 1;
+    if (n < 0) return null;
+    // WAL payloads are read-only views into the segment mapping, they have no backing array.
+    var bytes = new byte[n];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+    out.writeByte(value == null ? -1 : value.ordinal());
+  }
+
+  private static <E extends Enum<E>> E readEnum(ByteBuffer in, E[] values) {
+    int ordinal = in.get();
+    return ordinal < 0 ? null : values[ordinal];
+  }
+
+  private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) out.writeLong(value);
+  }
+
+  private static Long readNullableLong(ByteBuffer in) {
+    return in.get() == 0 ? null : in.getLong();
+  }
+
+  private static void writeNullableDouble(DataOutputStream out, Double value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) out.writeDouble(value);
+  }
+
+  private static Double readNullableDouble(ByteBuffer in) {
+    return in.get() == 0 ? null : in.getDouble();
+  }
+
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(ByteBuffer in) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      var b = in.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+}
@@ -4,146 +4,205 @@
  */
 package org.okapi.metrics.ch;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import lombok.RequiredArgsConstructor;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.okapi.ch.ChBatchSizer;
+import org.okapi.ch.ChInsertBatch;
+import org.okapi.ch.ChInsertPipeline;
+import org.okapi.io.StreamReadingException;
 import org.okapi.rest.metrics.Exemplar;
-import org.okapi.rest.metrics.ExportMetricsRequest;
+import org.okapi.rest.metrics.payloads.HistoPoint;
+import org.okapi.rest.metrics.payloads.SUM_TEMPORALITY;
 import org.okapi.rest.metrics.query.METRIC_TYPE;
-import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.io.WalBatch;
 import org.okapi.wal.io.WalReader;
-import org.okapi.wal.manager.WalManager;
 
 @Slf4j
-@RequiredArgsConstructor
 public class ChMetricsWalConsumer {
+  public static final int DEFAULT_MAX_BATCHES_PER_TICK = 16;
+
   final WalReader walReader;
-  final int batchSize;
-  final ChWriter chWriter;
-  final WalManager walManager;
+  final ChBatchSizer batchSizer;
+  final int maxBatchesPerTick;
+  final ChInsertPipeline pipeline;
+  final WalBatch batch = new WalBatch();
+  final ChMetricsWalCodec walCodec = new ChMetricsWalCodec();
+  final ChMetricSeriesRegistry seriesRegistry = new ChMetricSeriesRegistry();
+  final EntryRows entryRows = new EntryRows();
   Gson gson = new Gson();
 
   public ChMetricsWalConsumer(int batchSize, ChWriter chWriter, ChWalResources resources) {
+    this(
+        ChBatchSizer.fixed(batchSize),
+        DEFAULT_MAX_BATCHES_PER_TICK,
+        new ChInsertPipeline(chWriter, resources.getManager()),
+        resources);
+  }
+
+  public ChMetricsWalConsumer(
+      ChBatchSizer batchSizer,
+      int maxBatchesPerTick,
+      ChInsertPipeline pipeline,
+      ChWalResources resources) {
     this.walReader = resources.getReader();
-    this.batchSize = batchSize;
-    this.chWriter = chWriter;
-    this.walManager = resources.getManager();
+    this.batchSizer = batchSizer;
+    this.maxBatchesPerTick = maxBatchesPerTick;
+    this.pipeline = pipeline;
+    pipeline.addListener(batchSizer);
   }
 
-  record ChWriteWork(String mainTable, List<String> rows, List<String> meta) {}
-
-  public ChWriteWork getGaugeSamples(ExportMetricsRequest req) {
-    List<String> gaugeSamples = new ArrayList<>();
-    List<String> metaRows = new ArrayList<>();
-    if (req.getGauge() != null) {
-      for (int i = 0; i < req.getGauge().getTs().size(); i++) {
-        var ts = req.getGauge().getTs().get(i);
-        var sample =
-            ChGaugeSampleRow.builder()
-                .metric(req.getMetricName())
-                .tags(req.getTags())
-                .timestamp(ts)
-                .value(req.getGauge().getValue().get(i))
-                .build();
-        gaugeSamples.add(gson.toJson(sample));
-        var map = new HashMap<String, Object>();
-        map.put("event_type", METRIC_TYPE.GAUGE.name());
-        map.put("metric", req.getMetricName());
-        map.put("tags", req.getTags());
-        map.put("ts_start", ts);
-        map.put("ts_end", ts);
-        metaRows.add(gson.toJson(map));
+  /**
+   * Builds the rows of one WAL entry as the codec visits it. Rows are only handed to the insert
+   * batch by {@link #flush} so that an entry which fails to decode halfway adds nothing.
+   */
+  final class EntryRows implements ChMetricsWalCodec.Visitor {
+    final List<ChGaugeSampleRow> gauges = new ArrayList<>();
+    final List<ChHistoSample> histos = new ArrayList<>();
+    final List<ChSumSampleRow> sums = new ArrayList<>();
+    final List<ChExemplarRow> exemplars = new ArrayList<>();
+    final SeriesRange gaugeRange = new SeriesRange(METRIC_TYPE.GAUGE);
+    final SeriesRange histoRange = new SeriesRange(METRIC_TYPE.HISTO);
+    final SeriesRange sumRange = new SeriesRange(METRIC_TYPE.SUM);
+    String metricName;
+    Map<String, String> tags;
+
+    @Override
+    public void metric(String metricName, Map<String, String> tags) {
+      this.metricName = metricName;
+      this.tags = tags;
+    }
+
+    @Override
+    public void gaugeSample(long ts, float value) {
+      gauges.add(
+          ChGaugeSampleRow.builder()
+              .metric(metricName)
+              .tags(tags)
+              .timestamp(ts)
+              .value(value)
+              .fingerprint(gaugeRange.observe(ts, ts, null))
+              .build());
+    }
+
+    @Override
+    public void histoPoint(
+        long start, long end, HistoPoint.TEMPORALITY temporality, float[] buckets, int[] counts) {
+      ChHistoSample.HISTO_TYPE histoType =
+          switch (temporality) {
+            case DELTA -> ChHistoSample.HISTO_TYPE.DELTA;
+            case CUMULATIVE -> ChHistoSample.HISTO_TYPE.CUMULATIVE;
+          };
+      // compute min/max from buckets when available
+      float min = 0f;
+      float max = 0f;
+      if (buckets != null && buckets.length > 0) {
+        min = buckets[0];
+        max = buckets[buckets.length - 1];
       }
+      histos.add(
+          ChHistoSample.builder()
+              .histoType(histoType)
+              .metric(metricName)
+              .tags(tags)
+              .tsStart(start)
+              .tsEnd(end)
+              .min(min)
+              .max(max)
+              .buckets(buckets)
+              .counts(counts)
+              .fingerprint(histoRange.observe(start, end, temporality.name()))
+              .build());
     }
-    return new ChWriteWork(ChConstants.TBL_GAUGES, gaugeSamples, metaRows);
-  }
 
-  public ChWriteWork getHistoSamples(ExportMetricsRequest req) {
-    List<String> histoSamples = new ArrayList<>();
-    List<String> metaRows = new ArrayList<>();
-    if (req.getHisto() != null) {
-      for (int i = 0; i < req.getHisto().getHistoPoints().size(); i++) {
-        var pt = req.getHisto().getHistoPoints().get(i);
-        var buckets = pt.getBuckets();
-        var counts = pt.getBucketCounts();
-        ChHistoSample.HISTO_TYPE histoType =
-            switch (pt.getTemporality()) {
-              case DELTA -> ChHistoSample.HISTO_TYPE.DELTA;
-              case CUMULATIVE -> ChHistoSample.HISTO_TYPE.CUMULATIVE;
-            };
-        // compute min/max from buckets when available
-        float min = 0f;
-        float max = 0f;
-        if (buckets != null && buckets.length > 0) {
-          min = buckets[0];
-          max = buckets[buckets.length - 1];
+    @Override
+    public void sumPoint(SUM_TEMPORALITY temporality, Long start, Long end, int sum) {
+      CH_SUM_TYPE sumType =
+          switch (temporality) {
+            case DELTA -> CH_SUM_TYPE.DELTA;
+            case CUMULATIVE -> CH_SUM_TYPE.CUMULATIVE;
+          };
+      sums.add(
+          ChSumSampleRow.builder()
+              .metricName(metricName)
+              .tags(tags)
+              .tsStart(start)
+              .tsEnd(end)
+              .value(sum)
+              .sumType(sumType)
+              .fingerprint(sumRange.observe(start, end, temporality.name()))
+              .build());
+    }
+
+    @Override
+    public void exemplar(Exemplar exemplar) {
+      exemplars.add(exemplarToChRow(exemplar));
+    }
+
+    void flush(ChInsertBatch insertBatch) {
+      insertBatch.addAll(ChMetricsTableSchemas.GAUGES, gauges);
+      insertBatch.addAll(ChMetricsTableSchemas.HISTOS, histos);
+      insertBatch.addAll(ChMetricsTableSchemas.SUMS, sums);
+      addSeries(insertBatch, gaugeRange.series());
+      addSeries(insertBatch, histoRange.series());
+      addSeries(insertBatch, sumRange.series());
+      insertBatch.addAll(ChMetricsTableSchemas.EXEMPLARS, exemplars);
+    }
+
+    void reset() {
+      gauges.clear();
+      histos.clear();
+      sums.clear();
+      exemplars.clear();
+      gaugeRange.reset();
+      histoRange.reset();
+      sumRange.reset();
+      metricName = null;
+      tags = null;
+    }
+
+    /** Time range of one metric type in the entry, the temporality is the first sample's. */
+    final class SeriesRange {
+      final METRIC_TYPE type;
+      long fingerprint;
+      String temporality;
+      long tsStart;
+      long tsEnd;
+      boolean seen;
+
+      SeriesRange(METRIC_TYPE type) {
+        this.type = type;
+      }
+
+      long observe(long start, long end, String temporality) {
+        if (!seen) {
+          seen = true;
+          fingerprint = ChSeriesFingerprint.of(type, metricName, tags);
+          this.temporality = temporality;
+          tsStart = start;
+          tsEnd = end;
+        } else {
+          tsStart = Math.min(tsStart, start);
+          tsEnd = Math.max(tsEnd, end);
         }
-        var sample =
-            ChHistoSample.builder()
-                .histoType(histoType)
-                .metric(req.getMetricName())
-                .tags(req.getTags())
-                .tsStart(pt.getStart())
-                .tsEnd(pt.getEnd())
-                .min(min)
-                .max(max)
-                .buckets(buckets)
-                .counts(counts)
-                .build();
-        histoSamples.add(gson.toJson(sample));
-        var map = new java.util.HashMap<String, Object>();
-        map.put("event_type", METRIC_TYPE.HISTO.name());
-        map.put("metric", req.getMetricName());
-        map.put("tags", req.getTags());
-        map.put("temporality", pt.getTemporality().name());
-        map.put("ts_start", pt.getStart());
-        map.put("ts_end", pt.getEnd());
-        metaRows.add(gson.toJson(map));
+        return fingerprint;
       }
-    }
-    return new ChWriteWork(ChConstants.TBL_HISTOS, histoSamples, metaRows);
-  }
 
-  public ChWriteWork getSumSamples(ExportMetricsRequest req) {
-    List<String> sumSamples = new ArrayList<>();
-    List<String> meta = new ArrayList<>();
-    if (req.getSum() != null) {
-      for (int i = 0; i < req.getSum().getSumPoints().size(); i++) {
-        var pt = req.getSum().getSumPoints().get(i);
-        CH_SUM_TYPE sumType =
-            switch (req.getSum().getTemporality()) {
-              case DELTA -> CH_SUM_TYPE.DELTA;
-              case CUMULATIVE -> CH_SUM_TYPE.CUMULATIVE;
-            };
-        var sample =
-            ChSumSampleRow.builder()
-                .metricName(req.getMetricName())
-                .tags(req.getTags())
-                .tsStart(pt.getStart())
-                .tsEnd(pt.getEnd())
-                .value(pt.getSum())
-                .sumType(sumType)
-                .build();
-        sumSamples.add(gson.toJson(sample));
-        var map = new java.util.HashMap<String, Object>();
-        map.put("event_type", METRIC_TYPE.SUM.name());
-        map.put("metric", req.getMetricName());
-        map.put("tags", req.getTags());
-        map.put("temporality", req.getSum().getTemporality().name());
-        map.put("ts_start", pt.getStart());
-        map.put("ts_end", pt.getEnd());
-        meta.add(gson.toJson(map));
+      /** The series row to write, null when nothing was seen or the series table is up to date. */
+      ChMetricSeriesRow series() {
+        if (!seen) return null;
+        return seriesRegistry.observe(
+            fingerprint, type, metricName, tags, temporality, tsStart, tsEnd);
+      }
+
+      void reset() {
+        seen = false;
+        temporality = null;
       }
     }
-    return new ChWriteWork(ChConstants.TBL_SUM, sumSamples, meta);
   }
 
   public ChExemplarRow exemplarToChRow(Exemplar exemplar) {
@@ -163,51 +222,44 @@ public class ChMetricsWalConsumer {
     return builder.build();
   }
 
-  public List<ChExemplarRow> reqToExemplars(List<Exemplar> rows) {
-    return rows.stream().map(this::exemplarToChRow).toList();
-  }
-
-  public List<ChExemplarRow> reqToExemplars(ExportMetricsRequest request) {
-    var rows = new ArrayList<ChExemplarRow>();
-    if (request.getGauge() != null && request.getGauge().getExemplars() != null) {
-      rows.addAll(reqToExemplars(request.getGauge().getExemplars()));
-    }
-    if (request.getHisto() != null && request.getHisto().getExemplars() != null) {
-      rows.addAll(reqToExemplars(request.getHisto().getExemplars()));
+  /**
+   * Reads and converts up to {@code maxBatchesPerTick} WAL batches, sized by {@code batchSizer},
+   * while earlier ones are still inserting, then waits for all of them. The commit only moves past
+   * batches whose inserts succeeded; a batch that keeps failing stops reading until it succeeds.
+   */
+  public void consumeRecords() throws IOException, InterruptedException {
+    if (!pipeline.drain()) return;
+    if (!batchSizer.shouldConsume(walReader.pendingEntries())) return;
+    for (int i = 0; i < maxBatchesPerTick; i++) {
+      var insertBatch = pipeline.acquire();
+      if (insertBatch == null) break;
+      walReader.readBatchInto(batch, batchSizer.getBatchEntries());
+      if (batch.isEmpty()) {
+        pipeline.release(insertBatch);
+        break;
+      }
+      convert(batch, insertBatch);
+      pipeline.submit(insertBatch, batch);
     }
-    return rows;
+    pipeline.drain();
   }
 
-  public ChWriteWork exemplarWriteWork(ExportMetricsRequest request) {
-    var exemplars = reqToExemplars(request).stream().map(gson::toJson).toList();
-    return new ChWriteWork(ChConstants.TBL_EXEMPLAR, exemplars, Collections.emptyList());
+  private void convert(WalBatch batch, ChInsertBatch insertBatch) {
+    for (var entry : batch.getEntries()) {
+      entryRows.reset();
+      try {
+        walCodec.decode(entry.getPayloadBuffer(), entryRows);
+      } catch (StreamReadingException e) {
+        log.error("Skipping undecodable metrics WAL entry at {}", entry.getLsn(), e);
+        continue;
+      }
+      entryRows.flush(insertBatch);
+    }
   }
 
-  public void consumeRecords() throws IOException, InterruptedException, ExecutionException {
-    var batch = walReader.readBatchAndAdvance(batchSize);
-
-    Multimap<String, String> writeLoad = ArrayListMultimap.create();
-
-    for (var entry : batch) {
-      var req = gson.fromJson(new String(entry.getPayload()), ExportMetricsRequest.class);
-      var gaugeWrites = getGaugeSamples(req);
-      writeLoad.putAll(gaugeWrites.mainTable(), gaugeWrites.rows());
-
-      var histoWrites = getHistoSamples(req);
-      writeLoad.putAll(histoWrites.mainTable(), histoWrites.rows());
-
-      var sumWrites = getSumSamples(req);
-      writeLoad.putAll(sumWrites.mainTable(), sumWrites.rows());
-
-      writeLoad.putAll(ChConstants.TBL_METRIC_EVENTS_META, gaugeWrites.meta());
-      writeLoad.putAll(ChConstants.TBL_METRIC_EVENTS_META, histoWrites.meta());
-      writeLoad.putAll(ChConstants.TBL_METRIC_EVENTS_META, sumWrites.meta());
-      var exemplarRows = exemplarWriteWork(req);
-      writeLoad.putAll(ChConstants.TBL_EXEMPLAR, exemplarRows.rows());
+  private static void addSeries(ChInsertBatch insertBatch, ChMetricSeriesRow series) {
+    if (series != null) {
+      insertBatch.add(ChMetricsTableSchemas.METRIC_SERIES, series);
     }
-
-    chWriter.writeSyncWithBestEffort(writeLoad);
-    var largestLsn = WalEntry.getMaxLsn(batch);
-    walManager.commitLsn(largestLsn);
   }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The rollup tables kept alongside the raw sample and event tables, each fed by its materialized
+ * view {@code <table>_mv} with one row per series (or RED group) and left-closed {@code widthMs}
+ * bucket. Gauge rollups hold the samples exactly on a bucket's start in a row of their own, so
+ * they can also be read as right-closed buckets the way PromQL windows are.
+ */
+@AllArgsConstructor
+@Getter
+public enum ChRollup {
+  GAUGES_1M(ChConstants.TBL_GAUGES_1M, 60_000L),
+  GAUGES_1H(ChConstants.TBL_GAUGES_1H, 3_600_000L),
+  HISTOS_1M(ChConstants.TBL_HISTOS_1M, 60_000L),
+  HISTOS_1H(ChConstants.TBL_HISTOS_1H, 3_600_000L),
+  SERVICE_RED_1M(ChConstants.TBL_SERVICE_RED_1M, 60_000L);
+
+  private final String table;
+  private final long widthMs;
+
+  public String getView() {
+    return table + "_mv";
+  }
+}
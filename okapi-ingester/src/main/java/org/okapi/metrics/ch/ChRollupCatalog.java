@@ -0,0 +1,114 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import com.clickhouse.client.api.Client;
+import com.clickhouse.client.api.query.QuerySettings;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import org.okapi.ch.CreateChTablesSpec;
+
+/**
+ * Knows from when on each {@link ChRollup} can answer for the raw table it rolls up, and splits a
+ * query range into the segments to read from each.
+ *
+ * <p>Rollup views aren't backfilled, they only see samples inserted after they were created. A
+ * rollup therefore covers buckets from the time the migration recorded for its view (see {@link
+ * CreateChTablesSpec#rollupViewStep}) plus {@link #INGEST_MARGIN}, which allows for samples that
+ * are inserted a little after their timestamp; everything before that is read from the raw table,
+ * so answers are the same whether or not a rollup is used.
+ */
+public class ChRollupCatalog {
+  public static final Duration INGEST_MARGIN = Duration.ofMinutes(10);
+
+  private final ToLongFunction<ChRollup> lookup;
+  private final Map<ChRollup, Long> coveredFrom = new ConcurrentHashMap<>();
+
+  public ChRollupCatalog(Client client) {
+    this(rollup -> viewCreatedMs(client, rollup));
+  }
+
+  /** {@code lookup} gives the first ms a rollup covers, {@code Long.MAX_VALUE} for none yet. */
+  public ChRollupCatalog(ToLongFunction<ChRollup> lookup) {
+    this.lookup = lookup;
+  }
+
+  private static long viewCreatedMs(Client client, ChRollup rollup) {
+    var records =
+        client.queryAll(
+            "SELECT toUnixTimestamp64Milli(applied_at) AS created_ms"
+                + " FROM okapi_metrics.schema_migrations WHERE name = {name:String}"
+                + " ORDER BY applied_at LIMIT 1",
+            Map.of("name", CreateChTablesSpec.rollupViewStep(rollup.getView())),
+            new QuerySettings());
+    if (records.isEmpty()) {
+      return Long.MAX_VALUE;
+    }
+    var coveredFrom = records.get(0).getLong("created_ms") + INGEST_MARGIN.toMillis();
+    return Math.ceilDiv(coveredFrom, rollup.getWidthMs()) * rollup.getWidthMs();
+  }
+
+  /** The first ms {@code rollup} has all samples for. Missing views are looked up again later. */
+  public long coveredFrom(ChRollup rollup) {
+    var cached = coveredFrom.get(rollup);
+    if (cached != null) {
+      return cached;
+    }
+    var from = lookup.applyAsLong(rollup);
+    if (from != Long.MAX_VALUE) {
+      coveredFrom.put(rollup, from);
+    }
+    return from;
+  }
+
+  /** A part of a query range, read from {@code rollup} or from the raw table when that's null. */
+  public record Segment(ChRollup rollup, long startMs, long endMs) {
+    public boolean isRaw() {
+      return rollup == null;
+    }
+  }
+
+  /**
+   * Splits {@code [startMs, endMs)} into ascending, adjoining segments. Each tier, coarsest first,
+   * takes the whole buckets it covers and leaves the edges to the finer tiers and finally to the
+   * raw table.
+   */
+  public List<Segment> plan(long startMs, long endMs, List<ChRollup> tiers) {
+    var segments = new ArrayList<Segment>();
+    plan(startMs, endMs, tiers, segments);
+    return segments;
+  }
+
+  private void plan(long startMs, long endMs, List<ChRollup> tiers, List<Segment> out) {
+    if (startMs >= endMs) {
+      return;
+    }
+    if (tiers.isEmpty()) {
+      out.add(new Segment(null, startMs, endMs));
+      return;
+    }
+    var tier = tiers.get(0);
+    var rest = tiers.subList(1, tiers.size());
+    var from = coveredFrom(tier);
+    var width = tier.getWidthMs();
+    if (from == Long.MAX_VALUE) {
+      plan(startMs, endMs, rest, out);
+      return;
+    }
+    var a = Math.ceilDiv(Math.max(startMs, from), width) * width;
+    var b = Math.floorDiv(endMs, width) * width;
+    if (a >= b) {
+      plan(startMs, endMs, rest, out);
+      return;
+    }
+    plan(startMs, a, rest, out);
+    out.add(new Segment(tier, a, b));
+    plan(b, endMs, rest, out);
+  }
+}
@@ -50,7 +50,7 @@ public class ChSearchMetricsProcessor {
   public Set<ChSearchMetricsRow> getMetricsInTimeWindow(long tsStartMillis, long tsEndMillis) {
     var template =
         ChSearchMetricsQueryTemplate.builder()
-            .table(ChConstants.TBL_METRIC_EVENTS_META)
+            .table(ChConstants.TBL_METRIC_SERIES)
             .startMs(tsStartMillis)
             .endMs(tsEndMillis)
             .build();
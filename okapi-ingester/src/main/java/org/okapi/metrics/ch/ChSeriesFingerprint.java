@@ -0,0 +1,54 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+/**
+ * Stable 64-bit id of a series, the (type, metric, tags) triple it is written under. Tags are
+ * hashed in key order so the id doesn't depend on the map they arrived in, and every string is
+ * length-prefixed so that e.g. {@code {a=bc}} and {@code {ab=c}} don't collide by construction.
+ */
+public final class ChSeriesFingerprint {
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private ChSeriesFingerprint() {}
+
+  public static long of(METRIC_TYPE type, String metric, Map<String, String> tags) {
+    var hasher = HASH.newHasher();
+    putString(hasher, type.name());
+    putString(hasher, metric);
+    if (tags != null) {
+      SortedMap<String, String> sorted =
+          tags instanceof SortedMap<String, String> s && s.comparator() == null
+              ? s
+              : new TreeMap<>(tags);
+      hasher.putInt(sorted.size());
+      for (var tag : sorted.entrySet()) {
+        putString(hasher, tag.getKey());
+        putString(hasher, tag.getValue());
+      }
+    } else {
+      hasher.putInt(0);
+    }
+    return hasher.hash().asLong();
+  }
+
+  private static void putString(Hasher hasher, String s) {
+    if (s == null) {
+      hasher.putInt(-1);
+      return;
+    }
+    hasher.putInt(s.length());
+    hasher.putString(s, StandardCharsets.UTF_8);
+  }
+}
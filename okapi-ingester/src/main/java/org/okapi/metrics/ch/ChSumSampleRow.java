@@ -31,4 +31,5 @@ public class ChSumSampleRow extends AbstractChRow {
 
   @SerializedName("sums_type")
   CH_SUM_TYPE sumType;
+  long fingerprint;
 }
@@ -4,16 +4,18 @@
  */
 package org.okapi.metrics.ch;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
 import org.okapi.wal.LsnSupplier;
 import org.okapi.wal.factory.WalResourceBundle;
 import org.okapi.wal.factory.WalResourcesFactory;
+import org.okapi.wal.io.GroupCommitWalWriter;
 import org.okapi.wal.io.WalReader;
 import org.okapi.wal.io.WalWriter;
 import org.okapi.wal.manager.WalManager;
 
-public class ChWalResources {
+public class ChWalResources implements Closeable {
   Path walDir;
   WalResourceBundle resourceBundle;
   LsnSupplier lsnSupplier;
@@ -29,6 +31,10 @@ public class ChWalResources {
     return this.resourceBundle.getWriter();
   }
 
+  public GroupCommitWalWriter getGroupCommitWriter() {
+    return this.resourceBundle.getGroupCommitWriter();
+  }
+
   public WalReader getReader() {
     return this.resourceBundle.getReader();
   }
@@ -40,4 +46,9 @@ public class ChWalResources {
   public LsnSupplier getSupplier() throws IOException {
     return this.resourceBundle.getLsnSupplier();
   }
+
+  @Override
+  public void close() throws IOException {
+    this.resourceBundle.close();
+  }
 }
@@ -8,24 +8,18 @@ import com.clickhouse.client.api.Client;
 import com.clickhouse.client.api.insert.InsertResponse;
 import com.clickhouse.data.ClickHouseFormat;
 import com.google.common.collect.Multimap;
-import com.google.gson.Gson;
-import org.okapi.futures.OkapiFutures;
-
 import java.io.ByteArrayInputStream;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Future;
+import org.okapi.ch.ChInsertBatch;
+import org.okapi.ch.ChRowBinaryWriter;
+import org.okapi.ch.ChTableSchema;
+import org.okapi.futures.OkapiFutures;
 
 public class ChWriter {
   private final Client client;
-  private final Gson gson = new Gson();
-  private static final DateTimeFormatter TS_FMT =
-      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
 
   public ChWriter(Client client) {
     this.client = client;
@@ -59,24 +53,35 @@ public class ChWriter {
     OkapiFutures.fireAndForgetWait(futures);
   }
 
+  /**
+   * Inserts rows already encoded as RowBinaryWithDefaults. The writer's buffer is streamed as is,
+   * so it must not be reset or written to until the returned future completes.
+   */
+  public Future<InsertResponse> writeRowBinary(String table, ChRowBinaryWriter rows) {
+    return client.insert(table, rows.toInputStream(), ClickHouseFormat.RowBinaryWithDefaults);
+  }
+
+  public <T> Future<InsertResponse> writeRowBinary(ChTableSchema<T> schema, Collection<T> rows) {
+    var writer = new ChRowBinaryWriter();
+    for (var row : rows) {
+      schema.encode(row, writer);
+    }
+    return writeRowBinary(schema.getTable(), writer);
+  }
+
+  public List<Future<InsertResponse>> writeAll(ChInsertBatch batch) {
+    var futures = new ArrayList<Future<InsertResponse>>();
+    batch.getTables().forEach((table, rows) -> futures.add(writeRowBinary(table, rows)));
+    return futures;
+  }
+
+  /** Waits for every table's insert, the batch can be reset once this returns. */
+  public void writeSyncWithBestEffort(ChInsertBatch batch) {
+    var futures = writeAll(batch);
+    OkapiFutures.fireAndForgetWait(futures);
+  }
+
   public Future<InsertResponse> writeHistoSamplesBinary(List<ChHistoSample> rows) {
-    var jsonRows =
-        rows.stream()
-            .map(
-                r -> {
-                  var map = new HashMap<String, Object>();
-                  map.put("metric_name", r.getMetric());
-                  map.put("tags", r.getTags());
-                  map.put("ts_start", TS_FMT.format(Instant.ofEpochMilli(r.getTsStart())));
-                  map.put("ts_end", TS_FMT.format(Instant.ofEpochMilli(r.getTsEnd())));
-                  map.put("buckets", r.getBuckets());
-                  map.put("counts", r.getCounts());
-                  map.put("histo_type", r.getHistoType());
-                  return gson.toJson(map);
-                })
-            .toList();
-    var data = toJsonEachRow(jsonRows).getBytes();
-    var bis = new ByteArrayInputStream(data);
-    return client.insert(ChConstants.TBL_HISTOS, bis, ClickHouseFormat.JSONEachRow);
+    return writeRowBinary(ChMetricsTableSchemas.HISTOS, rows);
   }
 }
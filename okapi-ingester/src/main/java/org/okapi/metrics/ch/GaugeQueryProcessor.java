@@ -29,10 +29,17 @@ import org.okapi.rest.metrics.query.GetMetricsResponse;
 public class GaugeQueryProcessor {
   private final Client client;
   private final ChMetricTemplateEngine templateEngine;
+  private final ChRollupCatalog rollups;
 
   public GaugeQueryProcessor(Client client, ChMetricTemplateEngine templateEngine) {
+    this(client, templateEngine, new ChRollupCatalog(client));
+  }
+
+  public GaugeQueryProcessor(
+      Client client, ChMetricTemplateEngine templateEngine, ChRollupCatalog rollups) {
     this.client = client;
     this.templateEngine = templateEngine;
+    this.rollups = rollups;
   }
 
   public GetMetricsResponse getGaugeRes(GetMetricsRequest getMetricsRequest) {
@@ -49,15 +56,25 @@ public class GaugeQueryProcessor {
         () -> new BadRequestException("A resolution is required for gauge queries."));
     var aggType = gaugeQueryConfig.getAggregation();
     var resType = gaugeQueryConfig.getResolution();
+    var segments =
+        rollups.plan(getMetricsRequest.getStart(), getMetricsRequest.getEnd(), tiers(resType));
+    if (segments.isEmpty()) {
+      segments =
+          List.of(
+              new ChRollupCatalog.Segment(
+                  null, getMetricsRequest.getStart(), getMetricsRequest.getEnd()));
+    }
     var templateModel =
         ChGetGaugeQueryTemplate.builder()
             .table(ChConstants.TBL_GAUGES)
-            .bucketExpr(bucketExpr(resType))
+            .rawBucketExpr(bucketExpr(resType, "timestamp"))
+            .rollupBucketExpr(bucketExpr(resType, "bucket"))
             .aggExpr(aggExpr(aggType))
             .metric(getMetricsRequest.getMetric())
             .startMs(getMetricsRequest.getStart())
             .endMs(getMetricsRequest.getEnd())
             .tags(getMetricsRequest.getTags())
+            .segments(segments)
             .build();
 
     var query = templateEngine.render(ChTemplateFiles.GET_GAUGE_SAMPLES, templateModel);
@@ -107,26 +124,40 @@ public class GaugeQueryProcessor {
         .build();
   }
 
-  private static String bucketExpr(RES_TYPE resType) {
+  /** Rollups whose buckets nest in a {@code resType} bucket, coarsest first. */
+  private static List<ChRollup> tiers(RES_TYPE resType) {
     return switch (resType) {
-      case SECONDLY -> "toUnixTimestamp64Milli(toStartOfSecond(timestamp))";
-      case MINUTELY -> "toUnixTimestamp(toStartOfMinute(timestamp)) * 1000";
-      case HOURLY -> "toUnixTimestamp(toStartOfHour(timestamp)) * 1000";
+      case SECONDLY -> List.of();
+      case MINUTELY -> List.of(ChRollup.GAUGES_1M);
+      case HOURLY -> List.of(ChRollup.GAUGES_1H, ChRollup.GAUGES_1M);
     };
   }
 
+  private static String bucketExpr(RES_TYPE resType, String column) {
+    return switch (resType) {
+      case SECONDLY -> "toUnixTimestamp64Milli(toStartOfSecond(" + column + "))";
+      case MINUTELY -> "toUnixTimestamp(toStartOfMinute(" + column + ")) * 1000";
+      case HOURLY -> "toUnixTimestamp(toStartOfHour(" + column + ")) * 1000";
+    };
+  }
+
+  /** Final aggregate over the partial columns of get_gauge_samples.jte's segments. */
   private static String aggExpr(AGG_TYPE aggType) {
     return switch (aggType) {
-      case AVG -> "avg(value)";
-      case SUM -> "sum(value)";
-      case MIN -> "min(value)";
-      case MAX -> "max(value)";
-      case COUNT -> "count()";
-      case P50 -> "quantile(0.5)(value)";
-      case P75 -> "quantile(0.75)(value)";
-      case P90 -> "quantile(0.9)(value)";
-      case P95 -> "quantile(0.95)(value)";
-      case P99 -> "quantile(0.99)(value)";
+      case AVG -> "sum(total) / sum(samples)";
+      case SUM -> "sum(total)";
+      case MIN -> "min(min_value)";
+      case MAX -> "max(max_value)";
+      case COUNT -> "sum(samples)";
+      case P50 -> quantile(1);
+      case P75 -> quantile(2);
+      case P90 -> quantile(3);
+      case P95 -> quantile(4);
+      case P99 -> quantile(5);
     };
   }
+
+  private static String quantile(int level) {
+    return "quantilesTDigestMerge(0.5, 0.75, 0.9, 0.95, 0.99)(quantiles)[" + level + "]";
+  }
 }
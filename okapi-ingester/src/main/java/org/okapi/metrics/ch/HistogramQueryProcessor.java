@@ -23,10 +23,17 @@ import java.util.*;
 public class HistogramQueryProcessor {
   private final Client client;
   private final ChMetricTemplateEngine templateEngine;
+  private final ChRollupCatalog rollups;
 
   public HistogramQueryProcessor(Client client, ChMetricTemplateEngine templateEngine) {
+    this(client, templateEngine, new ChRollupCatalog(client));
+  }
+
+  public HistogramQueryProcessor(
+      Client client, ChMetricTemplateEngine templateEngine, ChRollupCatalog rollups) {
     this.client = client;
     this.templateEngine = templateEngine;
+    this.rollups = rollups;
   }
 
   public GetMetricsResponse getHistoRes(GetMetricsRequest query) {
@@ -134,14 +141,25 @@ public class HistogramQueryProcessor {
         .build();
   }
 
+  /**
+   * Delta samples starting in whole rollup buckets inside {@code [ts, te)} are read pre-merged from
+   * the rollups; cumulative samples can't be summed and are always read raw.
+   */
   public List<ChHistoSample> scanSamples(
       long ts,
       long te,
       String metrics,
       Map<String, String> tags,
       ChHistoSample.HISTO_TYPE histoType) {
-    var query =
-        renderHistoQuery(
+    var rolledUp =
+        histoType == ChHistoSample.HISTO_TYPE.DELTA
+            ? rollups.plan(ts, te, List.of(ChRollup.HISTOS_1H, ChRollup.HISTOS_1M)).stream()
+                .filter(segment -> !segment.isRaw())
+                .toList()
+            : List.<ChRollupCatalog.Segment>of();
+    var samples =
+        readSamples(
+            ChTemplateFiles.GET_HISTO_SAMPLES,
             ChGetHistoQueryTemplate.builder()
                 .table(ChConstants.TBL_HISTOS)
                 .metric(metrics)
@@ -149,8 +167,29 @@ public class HistogramQueryProcessor {
                 .histoType(histoType.name())
                 .ts(ts)
                 .te(te)
-                .build());
+                .rolledUp(rolledUp)
+                .build(),
+            histoType);
+    for (var segment : rolledUp) {
+      samples.addAll(
+          readSamples(
+              ChTemplateFiles.GET_HISTO_ROLLUP_SAMPLES,
+              ChGetHistoQueryTemplate.builder()
+                  .table(segment.rollup().getTable())
+                  .metric(metrics)
+                  .tags(tags)
+                  .histoType(histoType.name())
+                  .ts(segment.startMs())
+                  .te(segment.endMs())
+                  .build(),
+              histoType));
+    }
+    return samples;
+  }
 
+  private List<ChHistoSample> readSamples(
+      String template, ChGetHistoQueryTemplate data, ChHistoSample.HISTO_TYPE histoType) {
+    var query = renderHistoQuery(template, data);
     List<GenericRecord> records = client.queryAll(query);
     var samples = new ArrayList<ChHistoSample>(records.size());
     for (var record : records) {
@@ -213,9 +252,9 @@ public class HistogramQueryProcessor {
     return samples;
   }
 
-  private String renderHistoQuery(ChGetHistoQueryTemplate data) {
+  private String renderHistoQuery(String template, ChGetHistoQueryTemplate data) {
     TemplateOutput output = new StringOutput();
-    templateEngine.render(ChTemplateFiles.GET_HISTO_SAMPLES, data, output);
+    templateEngine.render(template, data, output);
     return output.toString();
   }
 }
@@ -4,20 +4,25 @@
  */
 package org.okapi.metrics.ch.template;
 
+import java.util.List;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import org.okapi.metrics.ch.ChRollupCatalog;
 
 @AllArgsConstructor
 @Getter
 @Builder
 public class ChGetGaugeQueryTemplate {
   String table;
-  String bucketExpr;
+  // bucket of a raw sample's timestamp, and of a rollup row's bucket column.
+  String rawBucketExpr;
+  String rollupBucketExpr;
   String aggExpr;
   String metric;
   long startMs;
   long endMs;
   Map<String, String> tags;
+  List<ChRollupCatalog.Segment> segments;
 }
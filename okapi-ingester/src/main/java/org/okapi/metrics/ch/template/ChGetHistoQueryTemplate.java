@@ -4,10 +4,12 @@
  */
 package org.okapi.metrics.ch.template;
 
+import java.util.List;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import org.okapi.metrics.ch.ChRollupCatalog;
 
 @AllArgsConstructor
 @Getter
@@ -19,4 +21,6 @@ public class ChGetHistoQueryTemplate {
   String histoType;
   long ts;
   long te;
+  // rollup segments read separately, whose samples the raw query leaves out.
+  List<ChRollupCatalog.Segment> rolledUp;
 }
@@ -6,25 +6,26 @@ package org.okapi.metrics.io;
 
 import static org.okapi.serialization.BloomSerializer.*;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 import org.okapi.abstractio.TrigramUtil;
 import org.okapi.io.NotEnoughBytesException;
 import org.okapi.io.OkapiBufferDecoder;
 import org.okapi.io.OkapiCheckedCountingWriter;
 import org.okapi.pages.AbstractTimeBlockMetadata;
+import org.okapi.primitives.IntBloomFilter;
 
 public class MetricsPageMetadata extends AbstractTimeBlockMetadata {
-  BloomFilter<Integer> metricNameTrigrams;
-  BloomFilter<Integer> tagPatternTrigrams;
+  IntBloomFilter metricNameTrigrams;
+  IntBloomFilter tagPatternTrigrams;
 
   public MetricsPageMetadata(int expectedInsertions, double fpp) {
-    this.metricNameTrigrams = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions, fpp);
-    this.tagPatternTrigrams = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions, fpp);
+    this.metricNameTrigrams = IntBloomFilter.create(expectedInsertions, fpp);
+    this.tagPatternTrigrams = IntBloomFilter.create(expectedInsertions, fpp);
   }
 
   public List<Integer> getMetricNameTrigrams(String metricPath) {
@@ -56,35 +57,31 @@ public class MetricsPageMetadata extends AbstractTimeBlockMetadata {
   }
 
   public List<Integer> getTagPatternTrigrams(Map<String, String> tags) {
-    var trigrams = new java.util.ArrayList<Integer>();
-    if (tags == null) return trigrams;
+    var trigrams = new ArrayList<Integer>();
+    forEachTagPatternTrigram(tags, trigrams::add);
+    return trigrams;
+  }
+
+  /** The trigrams of every tag name and value, plus one joining each name to its value. */
+  static void forEachTagPatternTrigram(Map<String, String> tags, IntConsumer sink) {
+    if (tags == null) return;
     for (var tag : tags.entrySet()) {
       var tagName = tag.getKey();
       var tagValue = tag.getValue();
-      var tagTrigrams = TrigramUtil.extractAsciiTrigramIndices(tagName);
-      var valTrigrams = TrigramUtil.extractAsciiTrigramIndices(tagValue);
+      TrigramUtil.forEachAsciiTrigram(tagName, sink);
+      TrigramUtil.forEachAsciiTrigram(tagValue, sink);
       var lastCharTag = tagName.charAt(tagName.length() - 1);
       var lastCharValue = tagValue.charAt(tagValue.length() - 1);
-      var combinedTrigram = TrigramUtil.getTrigramIndex(lastCharTag, ' ', lastCharValue);
-      trigrams.addAll(tagTrigrams);
-      trigrams.addAll(valTrigrams);
-      trigrams.add(combinedTrigram);
+      sink.accept(TrigramUtil.getTrigramIndex(lastCharTag, ' ', lastCharValue));
     }
-    return trigrams;
   }
 
   public void addPathMetadata(String metricPath) {
-    var trigrams = TrigramUtil.extractAsciiTrigramIndices(metricPath);
-    for (var trigram : trigrams) {
-      metricNameTrigrams.put(trigram);
-    }
+    TrigramUtil.forEachAsciiTrigram(metricPath, metricNameTrigrams::put);
   }
 
   public void addTagPatternMetadata(Map<String, String> tags) {
-    var trigrams = getTagPatternTrigrams(tags);
-    for (var trigram : trigrams) {
-      tagPatternTrigrams.put(trigram);
-    }
+    forEachTagPatternTrigram(tags, tagPatternTrigrams::put);
   }
 
   public byte[] toByteArray() throws IOException {
@@ -106,8 +103,8 @@ public class MetricsPageMetadata extends AbstractTimeBlockMetadata {
     setMaxLsn(decoder.nextLong());
     setTsStart(decoder.nextLong());
     setTsEnd(decoder.nextLong());
-    this.metricNameTrigrams = deserializeIntBloom(decoder.nextBytesLenPrefix());
-    this.tagPatternTrigrams = deserializeIntBloom(decoder.nextBytesLenPrefix());
+    this.metricNameTrigrams = deserializePrimitiveIntBloom(decoder.nextBytesLenPrefix());
+    this.tagPatternTrigrams = deserializePrimitiveIntBloom(decoder.nextBytesLenPrefix());
   }
 
   public MetricsPageMetadataSnapshot toSnapshot() {
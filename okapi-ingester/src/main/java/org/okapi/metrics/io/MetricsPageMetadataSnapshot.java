@@ -4,11 +4,11 @@
  */
 package org.okapi.metrics.io;
 
-import com.google.common.hash.BloomFilter;
 import lombok.AllArgsConstructor;
+import org.okapi.primitives.IntBloomFilter;
 
 @AllArgsConstructor
 public class MetricsPageMetadataSnapshot {
-  BloomFilter<Integer> metricNameTrigrams;
-  BloomFilter<Integer> tagPatternTrigrams;
+  IntBloomFilter metricNameTrigrams;
+  IntBloomFilter tagPatternTrigrams;
 }
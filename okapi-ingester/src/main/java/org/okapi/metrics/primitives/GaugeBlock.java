@@ -6,9 +6,13 @@ package org.okapi.metrics.primitives;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import lombok.Locked;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.io.NotEnoughBytesException;
 import org.okapi.io.OkapiBufferDecoder;
@@ -19,22 +23,41 @@ import org.okapi.primitives.ChecksumedSerializable;
 import org.okapi.primitives.GaugeSketch;
 import org.okapi.primitives.ReadOnlySketch;
 
+/**
+ * Gauge sketches of one path at secondly, minutely and hourly resolution.
+ *
+ * <p>Samples only update the secondly sketch. Minutely and hourly sketches are merged from it when
+ * they are read or serialized, and only for the minutes and hours that saw samples since the last
+ * rollup. The byte size handed back to the page is a running estimate, so no sketch is serialized
+ * to size it.
+ */
 @Slf4j
 public class GaugeBlock implements ChecksumedSerializable {
+  // rough serialized size of a rolled up sketch, accounted once per minute and hour.
+  static final int ROLLUP_ESTIMATE_BYTES = 256;
+  // map key and length prefix per sketch.
+  static final int ENTRY_OVERHEAD_BYTES = 12;
 
   Map<Long, GaugeSketch> secondly = new ConcurrentHashMap<>();
   Map<Long, GaugeSketch> minutely = new ConcurrentHashMap<>();
   Map<Long, GaugeSketch> hourly = new ConcurrentHashMap<>();
 
+  private final Set<Long> staleMinutes = ConcurrentHashMap.newKeySet();
+  // samples mostly arrive in order, this saves a set insert for all but the first of a minute.
+  private volatile long lastStaleMinute = Long.MIN_VALUE;
+
   public ReadOnlySketch getSecondlyStat(Long secondlyBlock, double[] ranks) {
     var sketch = secondly.get(secondlyBlock);
     if (sketch == null) {
       return null;
     }
-    return sketch.getWithQuantiles();
+    synchronized (sketch) {
+      return sketch.getWithQuantiles();
+    }
   }
 
   public ReadOnlySketch getMinutelyStat(Long minutelyBlock, double[] ranks) {
+    rollup();
     var sketch = minutely.get(minutelyBlock);
     if (sketch == null) {
       return null;
@@ -43,6 +66,7 @@ public class GaugeBlock implements ChecksumedSerializable {
   }
 
   public ReadOnlySketch getHourlyStat(Long hourlyBlock, double[] ranks) {
+    rollup();
     var sketch = hourly.get(hourlyBlock);
     if (sketch == null) {
       return null;
@@ -62,31 +86,66 @@ public class GaugeBlock implements ChecksumedSerializable {
     };
   }
 
+  /** Adds a sample and returns by how many bytes the block's estimated size grew. */
   public int updateStats(Long ts, float sample) {
-    return updateSecondlyStats(ts, sample)
-        + updateMinutelyStats(ts, sample)
-        + updateHourlyStats(ts, sample);
-  }
-
-  int updateSecondlyStats(Long ts, float sample) {
     var secondlyBlock = ts / 1000;
-    var sketch = secondly.computeIfAbsent(secondlyBlock, k -> new GaugeSketch());
-    sketch.update(sample);
-    return sketch.byteSize();
+    var grown = 0;
+    var sketch = secondly.get(secondlyBlock);
+    if (sketch == null) {
+      sketch = new GaugeSketch();
+      var raced = secondly.putIfAbsent(secondlyBlock, sketch);
+      if (raced != null) sketch = raced;
+      else grown += ENTRY_OVERHEAD_BYTES + sketch.estimatedByteSize();
+    }
+    // queries on an active page roll the secondly sketches up while they are still written.
+    synchronized (sketch) {
+      var before = sketch.estimatedByteSize();
+      sketch.update(sample);
+      grown += sketch.estimatedByteSize() - before;
+    }
+    return grown + markStale(ts / 60_000);
   }
 
-  int updateMinutelyStats(Long ts, float sample) {
-    var minutelyBlock = ts / 60_000;
-    var sketch = minutely.computeIfAbsent(minutelyBlock, k -> new GaugeSketch());
-    sketch.update(sample);
-    return sketch.byteSize();
+  private int markStale(long minute) {
+    if (minute == lastStaleMinute) return 0;
+    lastStaleMinute = minute;
+    if (!staleMinutes.add(minute)) return 0;
+    var grown = 0;
+    if (!minutely.containsKey(minute)) grown += ROLLUP_ESTIMATE_BYTES;
+    if (!hourly.containsKey(minute / 60)) grown += ROLLUP_ESTIMATE_BYTES;
+    return grown;
   }
 
-  int updateHourlyStats(Long ts, float sample) {
-    var hourlyBlock = ts / 3600_000;
-    var sketch = hourly.computeIfAbsent(hourlyBlock, k -> new GaugeSketch());
-    sketch.update(sample);
-    return sketch.byteSize();
+  /** Re-merges the minutely and hourly sketches of every minute that saw samples since. */
+  @Locked
+  void rollup() {
+    if (staleMinutes.isEmpty()) return;
+    var minutes = new ArrayList<>(staleMinutes);
+    staleMinutes.removeAll(minutes);
+    // reset only after removing: a sample that still skips marking its minute is in the merge
+    // below, one that marks it from here on finds it missing from the set and adds it again.
+    lastStaleMinute = Long.MIN_VALUE;
+    var hours = new TreeSet<Long>();
+    for (var minute : minutes) {
+      var rolled = new GaugeSketch();
+      for (long second = minute * 60; second < (minute + 1) * 60; second++) {
+        var sketch = secondly.get(second);
+        if (sketch == null) continue;
+        synchronized (sketch) {
+          rolled.merge(sketch);
+        }
+      }
+      minutely.put(minute, rolled);
+      hours.add(minute / 60);
+    }
+    for (var hour : hours) {
+      var rolled = new GaugeSketch();
+      for (long minute = hour * 60; minute < (hour + 1) * 60; minute++) {
+        var sketch = minutely.get(minute);
+        if (sketch != null) rolled.merge(sketch);
+      }
+      hourly.put(hour, rolled);
+    }
   }
 
   @Override
@@ -131,13 +190,19 @@ public class GaugeBlock implements ChecksumedSerializable {
 
   @Override
   public byte[] toChecksummedByteArray() throws IOException {
+    rollup();
     var os = new ByteArrayOutputStream();
     var writer = new OkapiCheckedCountingWriter(os);
     writer.writeBytesWithoutLenPrefix(BlockFlags.GAUGE);
     writer.writeInt(secondly.size());
     for (var entry : secondly.entrySet()) {
+      var sketch = entry.getValue();
+      byte[] bytes;
+      synchronized (sketch) {
+        bytes = sketch.toByteArray();
+      }
       writer.writeLong(entry.getKey());
-      writer.writeBytesWithLenPrefix(entry.getValue().toByteArray());
+      writer.writeBytesWithLenPrefix(bytes);
     }
     writer.writeInt(minutely.size());
     for (var entry : minutely.entrySet()) {
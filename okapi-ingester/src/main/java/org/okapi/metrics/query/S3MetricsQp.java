@@ -12,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.okapi.CommonConfig;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
+import org.okapi.byterange.PageFooter;
 import org.okapi.byterange.S3ByteRangeSupplier;
 import org.okapi.metrics.config.MetricsCfg;
 import org.okapi.metrics.io.MetricsPageCodec;
@@ -19,7 +20,7 @@ import org.okapi.metrics.pojos.RES_TYPE;
 import org.okapi.metrics.service.*;
 import org.okapi.primitives.ReadonlyHistogram;
 import org.okapi.primitives.TimestampedReadonlySketch;
-import org.okapi.s3.S3ByteRangeCache;
+import org.okapi.s3.ByteRangeCache;
 import software.amazon.awssdk.services.s3.S3Client;
 
 @Slf4j
@@ -28,7 +29,7 @@ public class S3MetricsQp implements MetricsQueryProcessor {
   MetricsCfg cfg;
   BinFilesPrefixRegistry prefixRegistry;
   S3Client s3Client;
-  S3ByteRangeCache s3ByteRangeCache;
+  ByteRangeCache s3ByteRangeCache;
   MetricsByteRangeQp metricsByteRangeQp;
 
   public S3MetricsQp(
@@ -36,7 +37,7 @@ public class S3MetricsQp implements MetricsQueryProcessor {
       MetricsCfg cfg,
       BinFilesPrefixRegistry prefixRegistry,
       S3Client s3Client,
-      S3ByteRangeCache s3ByteRangeCache) {
+      ByteRangeCache s3ByteRangeCache) {
     this.metricsByteRangeQp = new MetricsByteRangeQp(metricsPageCodec);
     this.cfg = cfg;
     this.prefixRegistry = prefixRegistry;
@@ -74,9 +75,10 @@ public class S3MetricsQp implements MetricsQueryProcessor {
               var s3ByteRangeSupplier =
                   new S3ByteRangeSupplier(cfg.getS3Bucket(), prefix, s3Client, s3ByteRangeCache);
               try {
+                var footer = PageFooter.read(s3ByteRangeSupplier).orElse(null);
                 gauges.add(
                     metricsByteRangeQp.getGauges(
-                        name, tags, resType, startTime, endTime, s3ByteRangeSupplier));
+                        name, tags, resType, startTime, endTime, s3ByteRangeSupplier, footer));
               } catch (Exception e) {
                 throw new RuntimeException(e);
               }
@@ -100,9 +102,10 @@ public class S3MetricsQp implements MetricsQueryProcessor {
               var s3ByteRangeSupplier =
                   new S3ByteRangeSupplier(cfg.getS3Bucket(), prefix, s3Client, s3ByteRangeCache);
               try {
+                var footer = PageFooter.read(s3ByteRangeSupplier).orElse(null);
                 histos.add(
                     metricsByteRangeQp.getHistograms(
-                        name, tags, startTime, endTime, s3ByteRangeSupplier));
+                        name, tags, startTime, endTime, s3ByteRangeSupplier, footer));
               } catch (Exception e) {
                 throw new RuntimeException(e);
               }
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import org.okapi.byterange.LengthPrefixedBlockSeekIterator;
+import org.okapi.byterange.PageFooter;
 import org.okapi.metrics.io.MetricsPageCodec;
 import org.okapi.metrics.pojos.RES_TYPE;
 import org.okapi.metrics.query.SeekIteratorQueryProcessor;
@@ -28,7 +29,20 @@ public class MetricsByteRangeQp {
       long end,
       ByteRangeSupplier byteRangeSupplier)
       throws Exception {
-    var blockSeekIterator = new LengthPrefixedBlockSeekIterator(byteRangeSupplier);
+    return getGauges(name, tags, resType, start, end, byteRangeSupplier, null);
+  }
+
+  /** Same as above, pruning pages by the metadata in {@code footer} when it is not null. */
+  public List<TimestampedReadonlySketch> getGauges(
+      String name,
+      Map<String, String> tags,
+      RES_TYPE resType,
+      long start,
+      long end,
+      ByteRangeSupplier byteRangeSupplier,
+      PageFooter footer)
+      throws Exception {
+    var blockSeekIterator = new LengthPrefixedBlockSeekIterator(byteRangeSupplier, footer);
     var qp = new SeekIteratorQueryProcessor(blockSeekIterator, metricsPageCodec);
     return qp.getGaugeSketches(name, tags, resType, start, end);
   }
@@ -40,7 +54,18 @@ public class MetricsByteRangeQp {
       long end,
       ByteRangeSupplier byteRangeSupplier)
       throws Exception {
-    var blockSeekIterator = new LengthPrefixedBlockSeekIterator(byteRangeSupplier);
+    return getHistograms(name, tags, start, end, byteRangeSupplier, null);
+  }
+
+  public List<ReadonlyHistogram> getHistograms(
+      String name,
+      Map<String, String> tags,
+      long start,
+      long end,
+      ByteRangeSupplier byteRangeSupplier,
+      PageFooter footer)
+      throws Exception {
+    var blockSeekIterator = new LengthPrefixedBlockSeekIterator(byteRangeSupplier, footer);
     var qp = new SeekIteratorQueryProcessor(blockSeekIterator, metricsPageCodec);
     return qp.getHistograms(name, tags, start, end);
   }
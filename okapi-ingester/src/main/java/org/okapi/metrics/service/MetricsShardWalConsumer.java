@@ -6,6 +6,7 @@ package org.okapi.metrics.service;
 
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.util.ArrayList;
 import lombok.RequiredArgsConstructor;
 import org.okapi.CommonConfig;
 import org.okapi.abstractio.WalResourcesPerStream;
@@ -16,6 +17,8 @@ import org.okapi.rest.metrics.ForwardedMetricsRequest;
 import org.okapi.sharding.ShardRegistry;
 import org.okapi.sharding.ShardState;
 import org.okapi.wal.io.IllegalWalEntryException;
+import org.okapi.wal.io.WalBatch;
+import org.okapi.wal.lsn.Lsn;
 
 @RequiredArgsConstructor
 public class MetricsShardWalConsumer {
@@ -28,6 +31,7 @@ public class MetricsShardWalConsumer {
   private final ShardRegistry shardRegistry;
 
   private final Gson gson = new Gson();
+  private final WalBatch batch = new WalBatch();
 
   public void consumeRecords() throws IOException, IllegalWalEntryException {
     var myShards = shardRegistry.getAssigned();
@@ -39,18 +43,19 @@ public class MetricsShardWalConsumer {
   }
 
   private void consume(int shard) throws IOException {
+    // entries stay in the WAL until the flushers catch up.
+    if (bufferPool.isBackpressured()) return;
     var reader = walResourcesPerStream.getWalReader(shard);
-    var entry = reader.readNext();
-    int consumed = 0;
     var streamId = metricsStreamIdFactory.ofShard(shard);
-    while (entry.isPresent() && consumed < batchSize) {
-      var unmarshalled =
-          gson.fromJson(new String(entry.get().getPayload()), ExportMetricsRequest.class);
-      bufferPool.consume(entry.get().getLsn(), streamId, unmarshalled);
-      consumed++;
-      reader.advance();
-      entry = reader.readNext();
+    reader.readBatchInto(batch, batchSize);
+    if (batch.isEmpty()) return;
+    var lsns = new ArrayList<Lsn>(batch.size());
+    var records = new ArrayList<ExportMetricsRequest>(batch.size());
+    for (var entry : batch.getEntries()) {
+      lsns.add(entry.getLsn());
+      records.add(gson.fromJson(new String(entry.getPayload()), ExportMetricsRequest.class));
     }
+    bufferPool.appendAll(streamId, lsns, records);
   }
 
   private void forward(int shard) throws IOException {
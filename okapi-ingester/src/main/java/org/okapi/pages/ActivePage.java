@@ -4,6 +4,8 @@
  */
 package org.okapi.pages;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import lombok.Getter;
@@ -37,6 +39,25 @@ public final class ActivePage<P extends AppendOnlyPage<I, S, M, B>, I, S, M, B,
     return Optional.empty();
   }
 
+  /**
+   * Appends {@code records[i]} at {@code lsns[i]} under a single lock acquisition, rotating as
+   * often as the page fills up. Returns the sealed pages in order, usually none.
+   */
+  @Locked.Write
+  public List<P> appendAll(List<Lsn> lsns, List<I> records) {
+    List<P> sealed = List.of();
+    for (int i = 0; i < records.size(); i++) {
+      page.append(records.get(i));
+      page.updateLsn(lsns.get(i));
+      if (page.isFull()) {
+        if (sealed.isEmpty()) sealed = new ArrayList<>(1);
+        sealed.add(page);
+        page = pageFactory.apply(streamIdentifier);
+      }
+    }
+    return sealed;
+  }
+
   /** Snapshot current active page (treat as read-only). */
   @Locked.Read
   public S snapshot() {
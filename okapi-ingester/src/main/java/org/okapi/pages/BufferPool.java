@@ -4,76 +4,143 @@
  */
 package org.okapi.pages;
 
-import java.util.ArrayDeque;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.retries.RetryingCallables;
 import org.okapi.streams.StreamIdentifier;
 import org.okapi.wal.lsn.Lsn;
 
-/** Generic buffer pool managing active and sealed pages, flushing, and TTL/cap eviction. */
+/**
+ * Generic buffer pool managing active and sealed pages, flushing, and TTL/cap eviction.
+ *
+ * <p>Sealed pages are flushed by {@code flushWorkers} threads, each draining its own bounded
+ * queue. A stream always maps to the same worker, so its pages are persisted in seal order while
+ * different streams flush in parallel. Once any one queue fills up {@link #isBackpressured()} tells
+ * ingest to hold off, since a single hot stream only ever fills its own queue, and sealing blocks
+ * until that worker catches up.
+ */
 @Slf4j
 public final class BufferPool<P extends AppendOnlyPage<I, S, M, B>, I, S, M, B, Id>
     implements AutoCloseable {
-  public static final long FLUSHER_MILLIS = 100L;
+  public static final long FLUSHER_POLL_MILLIS = 100L;
   public static final long SEALED_REAPER_MILLIS = 1000L; // 1 second
+  public static final int DEFAULT_FLUSH_WORKERS =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+  public static final int DEFAULT_FLUSH_QUEUE_CAPACITY = 64; // per worker
   private final Function<StreamIdentifier<Id>, P> pageFactory;
+  private final PageFlusher<P, Id> flusher;
   private final int sealedCap;
   private final long sealedTtlMs;
   private final Map<Id, ActivePage<P, I, S, M, B, Id>> pages = new ConcurrentHashMap<>();
   private final Map<Id, Deque<SealedEntry<P>>> sealedPages = new ConcurrentHashMap<>();
-  private final BlockingQueue<PendingFlush<P, Id>> flushQueue = new LinkedBlockingQueue<>();
-  private final ScheduledExecutorService executor;
+  private final List<BlockingQueue<PendingFlush<P, Id>>> flushQueues;
+  // sealed but not yet flushed, including pages a worker is flushing right now.
+  private final AtomicInteger pendingFlushes = new AtomicInteger();
+  // the same, per flush queue.
+  private final AtomicInteger[] pendingPerQueue;
+  private final int backpressureThreshold;
+  private final ScheduledExecutorService reaper;
+  private final ExecutorService flushers;
+  private volatile boolean closed;
 
   public BufferPool(
       Function<StreamIdentifier<Id>, P> pageFactory,
       PageFlusher<P, Id> flusher,
       int sealedCap,
       long sealedTtlMs) {
+    this(
+        pageFactory,
+        flusher,
+        sealedCap,
+        sealedTtlMs,
+        DEFAULT_FLUSH_WORKERS,
+        DEFAULT_FLUSH_QUEUE_CAPACITY);
+  }
+
+  public BufferPool(
+      Function<StreamIdentifier<Id>, P> pageFactory,
+      PageFlusher<P, Id> flusher,
+      int sealedCap,
+      long sealedTtlMs,
+      int flushWorkers,
+      int flushQueueCapacity) {
+    Preconditions.checkArgument(flushWorkers >= 1, "flushWorkers must be >= 1");
+    Preconditions.checkArgument(flushQueueCapacity >= 1, "flushQueueCapacity must be >= 1");
     this.pageFactory = pageFactory;
+    this.flusher = flusher;
     this.sealedCap = sealedCap;
     this.sealedTtlMs = sealedTtlMs;
-    this.executor = Executors.newScheduledThreadPool(2);
-    executor.scheduleWithFixedDelay(
-        () -> {
-          var batch = new ArrayList<PendingFlush<P, Id>>();
-          flushQueue.drainTo(batch);
-          for (var pf : batch) {
-            try {
-              flusher.flush(pf.getStreamIdentifier(), pf.getPage());
-              markSealedPersisted(pf.getStreamIdentifier(), pf.getPage());
-            } catch (Exception e) {
-              log.error("Could not flush page stream {}", pf.getStreamIdentifier(), e);
-            }
-          }
-        },
-        0,
-        FLUSHER_MILLIS,
-        TimeUnit.MILLISECONDS);
-
-    executor.scheduleWithFixedDelay(
+    this.flushQueues = new ArrayList<>(flushWorkers);
+    this.pendingPerQueue = new AtomicInteger[flushWorkers];
+    for (int i = 0; i < flushWorkers; i++) {
+      flushQueues.add(new ArrayBlockingQueue<>(flushQueueCapacity));
+      pendingPerQueue[i] = new AtomicInteger();
+    }
+    this.backpressureThreshold = Math.max(1, flushQueueCapacity * 3 / 4);
+    this.flushers = Executors.newFixedThreadPool(flushWorkers);
+    for (int i = 0; i < flushWorkers; i++) {
+      var shard = i;
+      flushers.submit(() -> runFlusher(shard));
+    }
+    this.reaper = Executors.newSingleThreadScheduledExecutor();
+    reaper.scheduleWithFixedDelay(
         this::evictExpiredAndCap, 0, SEALED_REAPER_MILLIS, TimeUnit.MILLISECONDS);
   }
 
+  /** Flushers finish whatever is queued before they exit. */
   @Override
   public void close() throws Exception {
-    this.executor.close();
+    this.closed = true;
+    this.flushers.close();
+    this.reaper.close();
   }
 
   public void append(Lsn lsn, StreamIdentifier<Id> streamIdentifier, I record) {
-    var ap =
-        pages.computeIfAbsent(
-            streamIdentifier.getStreamId(), k -> new ActivePage<>(streamIdentifier, pageFactory));
-    Optional<P> sealed = ap.append(lsn, record);
+    Optional<P> sealed = activePage(streamIdentifier).append(lsn, record);
     sealed.ifPresent(p -> sealPage(streamIdentifier, p));
   }
 
+  /** Appends records that all belong to the WAL entry at {@code lsn}, taking the page lock once. */
+  public void appendAll(Lsn lsn, StreamIdentifier<Id> streamIdentifier, List<I> records) {
+    appendAll(streamIdentifier, Collections.nCopies(records.size(), lsn), records);
+  }
+
+  /** Appends {@code records[i]} at {@code lsns[i]}, taking the page lock once. */
+  public void appendAll(StreamIdentifier<Id> streamIdentifier, List<Lsn> lsns, List<I> records) {
+    Preconditions.checkArgument(lsns.size() == records.size(), "one lsn per record");
+    if (records.isEmpty()) return;
+    var sealed = activePage(streamIdentifier).appendAll(lsns, records);
+    for (var p : sealed) {
+      sealPage(streamIdentifier, p);
+    }
+  }
+
+  /**
+   * Whether sealed pages are piling up faster than they are flushed, i.e. some worker has three
+   * quarters of its queue capacity pending. Ingest should stop pulling new records (they stay in
+   * the WAL) until this clears.
+   */
+  public boolean isBackpressured() {
+    for (var pending : pendingPerQueue) {
+      if (pending.get() >= backpressureThreshold) return true;
+    }
+    return false;
+  }
+
+  public int getPendingFlushes() {
+    return pendingFlushes.get();
+  }
+
   public S snapshotActive(StreamIdentifier<Id> streamIdentifier) {
     var ap = pages.get(streamIdentifier.getStreamId());
     return ap == null ? null : ap.snapshot();
@@ -109,20 +176,56 @@ public final class BufferPool<P extends AppendOnlyPage<I, S, M, B>, I, S, M, B,
         });
   }
 
+  /** Waits until every sealed page was flushed, not just dequeued. */
   public void awaitFlushQueueEmpty(long timeoutMillis) {
     int nAttempts = (int) (timeoutMillis / 50);
-    RetryingCallables.retry(flushQueue::isEmpty, nAttempts, 50L);
+    RetryingCallables.retry(() -> pendingFlushes.get() == 0, nAttempts, 50L);
   }
 
   void sealPage(StreamIdentifier<Id> identifier, P page) {
     if (page.isEmpty()) return;
     addSealed(identifier, page);
-    flushQueue.offer(new PendingFlush<>(identifier, page));
+    pendingFlushes.incrementAndGet();
+    var shard = Math.floorMod(identifier.getStreamId().hashCode(), flushQueues.size());
+    pendingPerQueue[shard].incrementAndGet();
+    // the page already left its active page, giving up on an interrupt would never flush it.
+    Uninterruptibles.putUninterruptibly(
+        flushQueues.get(shard), new PendingFlush<>(identifier, page));
+  }
+
+  private ActivePage<P, I, S, M, B, Id> activePage(StreamIdentifier<Id> streamIdentifier) {
+    var ap = pages.get(streamIdentifier.getStreamId());
+    if (ap != null) return ap;
+    return pages.computeIfAbsent(
+        streamIdentifier.getStreamId(), k -> new ActivePage<>(streamIdentifier, pageFactory));
+  }
+
+  private void runFlusher(int shard) {
+    var queue = flushQueues.get(shard);
+    while (!closed || !queue.isEmpty()) {
+      PendingFlush<P, Id> pf;
+      try {
+        pf = queue.poll(FLUSHER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (pf == null) continue;
+      try {
+        flusher.flush(pf.getStreamIdentifier(), pf.getPage());
+        markSealedPersisted(pf.getStreamIdentifier(), pf.getPage());
+      } catch (Exception e) {
+        log.error("Could not flush page stream {}", pf.getStreamIdentifier(), e);
+      } finally {
+        pendingPerQueue[shard].decrementAndGet();
+        pendingFlushes.decrementAndGet();
+      }
+    }
   }
 
   private void addSealed(StreamIdentifier<Id> identifier, P page) {
     Deque<SealedEntry<P>> dq =
-        sealedPages.computeIfAbsent(identifier.getStreamId(), kk -> new ArrayDeque<>());
+        sealedPages.computeIfAbsent(identifier.getStreamId(), kk -> new ConcurrentLinkedDeque<>());
     dq.addLast(new SealedEntry<>(page));
   }
 
@@ -13,6 +13,8 @@ import org.okapi.io.StreamReadingException;
 import org.okapi.metrics.stats.KllStatSupplier;
 
 public class GaugeSketch implements RawSerializable {
+  // preamble, levels and min / max of a serialized kll sketch, on top of 4 bytes per item.
+  private static final int KLL_OVERHEAD_BYTES = 28;
   private float mean;
   private float count;
   private float sumOfDeviationsSquared;
@@ -60,6 +62,13 @@ public class GaugeSketch implements RawSerializable {
         + floatsQuantiles.getSerializedSizeBytes(); // floatsQuantiles bytes
   }
 
+  /**
+   * {@link #byteSize()} without serializing the sketch's layout, cheap enough to call per sample.
+   */
+  public int estimatedByteSize() {
+    return 16 + KLL_OVERHEAD_BYTES + 4 * floatsQuantiles.getNumRetained();
+  }
+
   @Override
   public byte[] toByteArray() throws IOException {
     var os = new java.io.ByteArrayOutputStream();
@@ -86,4 +95,20 @@ public class GaugeSketch implements RawSerializable {
         sumOfDeviationsSquared
             + ((value - oldMean) * (value - mean) - sumOfDeviationsSquared) / count;
   }
+
+  /** Folds {@code other} into this sketch, as if its samples had been passed to update. */
+  public void merge(GaugeSketch other) {
+    if (other.count == 0) return;
+    floatsQuantiles.merge(other.floatsQuantiles);
+    var total = count + other.count;
+    var delta = other.mean - mean;
+    // pairwise combination of the two (population) variances, see Chan et al.
+    sumOfDeviationsSquared =
+        (count * sumOfDeviationsSquared
+                + other.count * other.sumOfDeviationsSquared
+                + delta * delta * count * other.count / total)
+            / total;
+    mean = mean + delta * other.count / total;
+    count = total;
+  }
 }
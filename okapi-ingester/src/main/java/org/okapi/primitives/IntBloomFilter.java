@@ -0,0 +1,146 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.primitives;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over primitive ints, so that putting a trigram neither boxes it nor allocates a
+ * hasher.
+ *
+ * <p>Hashing, bit layout and serialized form are those of Guava's {@code BloomFilter} with {@code
+ * Funnels.integerFunnel()} (murmur3_128 of the little-endian int, {@code MURMUR128_MITZ_64}), so
+ * pages written with either one can be read with the other. Like Guava's, the bit array can be
+ * read while it is being written to.
+ */
+public final class IntBloomFilter {
+  public static final double DEFAULT_FPP = 0.03;
+  private static final byte MURMUR128_MITZ_64 = 1;
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private final AtomicLongArray bits;
+  private final long bitSize;
+  private final int numHashFunctions;
+
+  private IntBloomFilter(AtomicLongArray bits, int numHashFunctions) {
+    this.bits = bits;
+    this.bitSize = (long) bits.length() * Long.SIZE;
+    this.numHashFunctions = numHashFunctions;
+  }
+
+  public static IntBloomFilter create(long expectedInsertions) {
+    return create(expectedInsertions, DEFAULT_FPP);
+  }
+
+  public static IntBloomFilter create(long expectedInsertions, double fpp) {
+    if (expectedInsertions < 0) {
+      throw new IllegalArgumentException("Expected insertions must be >= 0: " + expectedInsertions);
+    }
+    if (!(fpp > 0.0 && fpp < 1.0)) {
+      throw new IllegalArgumentException("False positive probability must be in (0, 1): " + fpp);
+    }
+    var n = Math.max(1, expectedInsertions);
+    var numBits = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    var numHashFunctions = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    var words = Math.toIntExact((numBits + Long.SIZE - 1) / Long.SIZE);
+    return new IntBloomFilter(new AtomicLongArray(words), numHashFunctions);
+  }
+
+  public void put(int value) {
+    var h1 = premix(value);
+    var finalH2 = fmix64(h1 + Integer.BYTES);
+    var hash1 = fmix64(h1) + finalH2;
+    var hash2 = finalH2 + hash1;
+    var combined = hash1;
+    for (int i = 0; i < numHashFunctions; i++) {
+      set((combined & Long.MAX_VALUE) % bitSize);
+      combined += hash2;
+    }
+  }
+
+  public boolean mightContain(int value) {
+    var h1 = premix(value);
+    var finalH2 = fmix64(h1 + Integer.BYTES);
+    var hash1 = fmix64(h1) + finalH2;
+    var hash2 = finalH2 + hash1;
+    var combined = hash1;
+    for (int i = 0; i < numHashFunctions; i++) {
+      if (!get((combined & Long.MAX_VALUE) % bitSize)) return false;
+      combined += hash2;
+    }
+    return true;
+  }
+
+  private void set(long bitIndex) {
+    var word = (int) (bitIndex >>> 6);
+    var mask = 1L << bitIndex;
+    long old;
+    do {
+      old = bits.get(word);
+      if ((old & mask) != 0) return;
+    } while (!bits.compareAndSet(word, old, old | mask));
+  }
+
+  private boolean get(long bitIndex) {
+    return (bits.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) != 0;
+  }
+
+  // murmur3_128 (seed 0) of the 4 little-endian bytes of value: shorter than a block, so the
+  // value only goes through the tail mix. Returns h1 just before finalization; h2 at that point
+  // is always h1 + 4.
+  private static long premix(int value) {
+    var k1 = value & 0xFFFFFFFFL;
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    return (k1 ^ Integer.BYTES) + Integer.BYTES;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  public byte[] toByteArray() throws IOException {
+    var bytes = new ByteArrayOutputStream(6 + bits.length() * Long.BYTES);
+    var out = new DataOutputStream(bytes);
+    out.writeByte(MURMUR128_MITZ_64);
+    out.writeByte(numHashFunctions);
+    out.writeInt(bits.length());
+    for (int i = 0; i < bits.length(); i++) {
+      out.writeLong(bits.get(i));
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public static IntBloomFilter fromByteArray(byte[] bytes) throws IOException {
+    var in = new DataInputStream(new ByteArrayInputStream(bytes));
+    var strategy = in.readByte();
+    if (strategy != MURMUR128_MITZ_64) {
+      throw new IOException("Unsupported bloom filter hashing strategy: " + strategy);
+    }
+    var numHashFunctions = Byte.toUnsignedInt(in.readByte());
+    var words = in.readInt();
+    if (words <= 0) {
+      throw new IOException("Bloom filter has no bits: " + words);
+    }
+    var bits = new AtomicLongArray(words);
+    for (int i = 0; i < words; i++) {
+      bits.set(i, in.readLong());
+    }
+    return new IntBloomFilter(bits, numHashFunctions);
+  }
+}
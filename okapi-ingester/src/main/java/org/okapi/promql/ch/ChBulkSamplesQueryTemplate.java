@@ -0,0 +1,31 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.promql.ch;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.Value;
+import org.okapi.metrics.ch.ChRollupCatalog;
+
+@Value
+@Builder
+public class ChBulkSamplesQueryTemplate {
+  String table;
+  String metric;
+  long startMs;
+  long endMs;
+  Collection<Long> fingerprints;
+  // width of the buckets ending at startMs + k * bucketMs, for the *_buckets_bulk templates.
+  long bucketMs;
+  // ranges read from rollups: the raw buckets template leaves them out, the rollup one reads them.
+  List<ChRollupCatalog.Segment> rolledUp;
+
+  /** The fingerprints as a comma separated list of UInt64 literals. */
+  public String getFingerprintsLiteral() {
+    return fingerprints.stream().map(Long::toUnsignedString).collect(Collectors.joining(","));
+  }
+}
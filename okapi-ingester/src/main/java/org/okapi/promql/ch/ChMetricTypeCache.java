@@ -0,0 +1,49 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.promql.ch;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+/**
+ * Metric name to the type it is ingested as, shared by the PromQL clients of one process so that a
+ * query resolves each metric's type at most once per {@code ttl}. Metrics that couldn't be
+ * resolved are not remembered, they may just not have been ingested yet.
+ */
+public class ChMetricTypeCache {
+  public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+  private record Entry(METRIC_TYPE type, long expiresAtMs) {}
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final long ttlMs;
+  private final LongSupplier clock;
+
+  public ChMetricTypeCache() {
+    this(DEFAULT_TTL, System::currentTimeMillis);
+  }
+
+  public ChMetricTypeCache(Duration ttl, LongSupplier clock) {
+    this.ttlMs = ttl.toMillis();
+    this.clock = clock;
+  }
+
+  /** The cached type of {@code metric}, otherwise {@code resolver}'s answer, which may be null. */
+  public METRIC_TYPE get(String metric, Supplier<METRIC_TYPE> resolver) {
+    var now = clock.getAsLong();
+    var entry = entries.get(metric);
+    if (entry != null && entry.expiresAtMs() > now) {
+      return entry.type();
+    }
+    var type = resolver.get();
+    if (type != null) {
+      entries.put(metric, new Entry(type, now + ttlMs));
+    }
+    return type;
+  }
+}
@@ -6,122 +6,404 @@ package org.okapi.promql.ch;
 
 import com.clickhouse.client.api.Client;
 import com.clickhouse.client.api.query.GenericRecord;
+import com.google.common.collect.Iterables;
 import gg.jte.TemplateOutput;
 import gg.jte.output.StringOutput;
 import java.util.*;
+import java.util.stream.Stream;
 import org.okapi.ch.ChTemplateFiles;
 import org.okapi.metrics.ch.ChConstants;
-import org.okapi.metrics.ch.template.ChGetHistoQueryTemplate;
-import org.okapi.metrics.ch.template.ChGetSumQueryTemplate;
+import org.okapi.metrics.ch.ChRollup;
+import org.okapi.metrics.ch.ChRollupCatalog;
+import org.okapi.metrics.ch.ChSeriesFingerprint;
 import org.okapi.metrics.ch.template.ChMetricTemplateEngine;
 import org.okapi.metrics.pojos.results.GaugeScan;
 import org.okapi.metrics.pojos.results.Scan;
 import org.okapi.metrics.pojos.results.SumScan;
+import org.okapi.promql.eval.GaugeBucketScan;
 import org.okapi.promql.eval.HistogramSeries;
+import org.okapi.promql.eval.VectorData;
 import org.okapi.promql.eval.ts.RESOLUTION;
 import org.okapi.promql.eval.ts.TsClient;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
 
+/**
+ * Reads PromQL series from the ClickHouse sample tables. {@link #getAll} fetches all series of a
+ * selector with one query per metric name (per chunk of {@link #MAX_FINGERPRINTS_PER_QUERY}
+ * series), picking rows by series fingerprint, and resolves each metric's type once through a
+ * {@link ChMetricTypeCache}. Rows written before samples carried a fingerprint have fingerprint 0;
+ * theirs is computed from their tags.
+ *
+ * <p>{@link #getAllBucketed} aggregates gauges and sums per step bucket in ClickHouse, so a query
+ * ships one row per series and bucket instead of every sample. Histograms are always read raw, so
+ * are sums of a series that has rows both with and without a fingerprint in the range. Gauge
+ * buckets that are whole multiples of a rollup's width, on a grid aligned to it, are read from the
+ * {@link ChRollup} tables where those cover the range. Those keep samples that fall exactly on a
+ * rollup boundary apart, so they are read into the bucket they end, like raw ones.
+ */
 public class ChPromQlTsClient implements TsClient {
+  public static final int MAX_FINGERPRINTS_PER_QUERY = 5_000;
+
   private final Client client;
   private final ChMetricTemplateEngine templateEngine;
+  private final ChMetricTypeCache typeCache;
+  private final ChRollupCatalog rollups;
 
   public ChPromQlTsClient(Client client, ChMetricTemplateEngine templateEngine) {
+    this(client, templateEngine, new ChMetricTypeCache(), new ChRollupCatalog(client));
+  }
+
+  public ChPromQlTsClient(
+      Client client,
+      ChMetricTemplateEngine templateEngine,
+      ChMetricTypeCache typeCache,
+      ChRollupCatalog rollups) {
     this.client = client;
     this.templateEngine = templateEngine;
+    this.typeCache = typeCache;
+    this.rollups = rollups;
   }
 
   @Override
   public Scan get(String name, Map<String, String> tags, RESOLUTION res, long startMs, long endMs) {
-    Map<String, String> tagCopy = tags == null ? new LinkedHashMap<>() : new LinkedHashMap<>(tags);
-    // todo: cache this information, type information does not change that often.
-    MetricEventType type = resolveMetricType(name, tagCopy, startMs, endMs);
+    var tagCopy = tags == null ? Map.<String, String>of() : tags;
+    var id = new VectorData.SeriesId(name, new VectorData.Labels(tagCopy));
+    return getAll(List.of(id), res, startMs, endMs).getFirst();
+  }
 
-    return switch (type) {
-      case HISTO -> getHistogramSeries(name, tagCopy, startMs, endMs);
-      case SUM -> getSumSeries(name, tagCopy, startMs, endMs);
-      case GAUGE -> getGaugeSeries(name, tagCopy, startMs, endMs);
-    };
+  @Override
+  public List<Scan> getAll(
+      List<VectorData.SeriesId> series, RESOLUTION res, long startMs, long endMs) {
+    return fetch(series, startMs, endMs, 0L);
+  }
+
+  @Override
+  public List<Scan> getAllBucketed(
+      List<VectorData.SeriesId> series, RESOLUTION res, long startMs, long endMs, long bucketMs) {
+    return fetch(series, startMs, endMs, bucketMs);
+  }
+
+  /** Raw samples when {@code bucketMs} is 0, otherwise per-bucket aggregates of them. */
+  private List<Scan> fetch(
+      List<VectorData.SeriesId> series, long startMs, long endMs, long bucketMs) {
+    var byMetric = new LinkedHashMap<String, List<Integer>>();
+    for (int i = 0; i < series.size(); i++) {
+      byMetric.computeIfAbsent(series.get(i).metric(), k -> new ArrayList<>()).add(i);
+    }
+    var scans = new Scan[series.size()];
+    for (var entry : byMetric.entrySet()) {
+      var metric = entry.getKey();
+      var type = typeCache.get(metric, () -> resolveMetricType(metric, startMs, endMs));
+      var metricType = type == null ? METRIC_TYPE.GAUGE : type;
+      // fingerprint -> positions in series, a selector may list the same series twice.
+      var positions = new LinkedHashMap<Long, List<Integer>>();
+      for (var i : entry.getValue()) {
+        var tags = series.get(i).labels().tags();
+        var fingerprint = ChSeriesFingerprint.of(metricType, metric, tags);
+        positions.computeIfAbsent(fingerprint, k -> new ArrayList<>()).add(i);
+      }
+      for (var chunk : Iterables.partition(positions.keySet(), MAX_FINGERPRINTS_PER_QUERY)) {
+        var chunkScans =
+            switch (metricType) {
+              case HISTO -> getHistogramSeries(metric, chunk, startMs, endMs);
+              case SUM ->
+                  bucketMs > 0
+                      ? getSumBuckets(metric, chunk, startMs, endMs, bucketMs)
+                      : getSumSeries(metric, chunk, startMs, endMs);
+              case GAUGE ->
+                  bucketMs > 0
+                      ? getGaugeBuckets(metric, chunk, startMs, endMs, bucketMs)
+                      : getGaugeSeries(metric, chunk, startMs, endMs);
+            };
+        for (var fingerprint : chunk) {
+          for (var i : positions.get(fingerprint)) {
+            scans[i] = chunkScans.get(fingerprint);
+          }
+        }
+      }
+    }
+    return Arrays.asList(scans);
   }
 
-  private MetricEventType resolveMetricType(
-      String metric, Map<String, String> tags, long startMs, long endMs) {
+  private METRIC_TYPE resolveMetricType(String metric, long startMs, long endMs) {
     TemplateOutput output = new StringOutput();
     templateEngine.render(
         ChTemplateFiles.GET_METRIC_EVENT_TYPE,
         ChMetricEventTypeQueryTemplate.builder()
-            .table(ChConstants.TBL_METRIC_EVENTS_META)
+            .table(ChConstants.TBL_METRIC_SERIES)
             .metric(metric)
             .startMs(startMs)
             .endMs(endMs)
-            .tags(tags)
+            .tags(Map.of())
             .build(),
         output);
     var query = output.toString();
     List<GenericRecord> records = client.queryAll(query);
     if (records.isEmpty()) {
-      return MetricEventType.GAUGE;
+      return null;
     }
-    String eventType = records.getFirst().getString("event_type");
-    return MetricEventType.valueOf(eventType);
+    return METRIC_TYPE.valueOf(records.getFirst().getString("event_type"));
   }
 
-  private GaugeScan getGaugeSeries(
-      String metric, Map<String, String> tags, long startMs, long endMs) {
+  private List<GenericRecord> queryBulk(
+      String templateName,
+      String table,
+      String metric,
+      List<Long> fingerprints,
+      long startMs,
+      long endMs) {
+    return queryBulk(templateName, table, metric, fingerprints, startMs, endMs, 0L);
+  }
+
+  private List<GenericRecord> queryBulk(
+      String templateName,
+      String table,
+      String metric,
+      List<Long> fingerprints,
+      long startMs,
+      long endMs,
+      long bucketMs) {
+    return queryBulk(templateName, table, metric, fingerprints, startMs, endMs, bucketMs, null);
+  }
+
+  private List<GenericRecord> queryBulk(
+      String templateName,
+      String table,
+      String metric,
+      List<Long> fingerprints,
+      long startMs,
+      long endMs,
+      long bucketMs,
+      List<ChRollupCatalog.Segment> rolledUp) {
     TemplateOutput output = new StringOutput();
     templateEngine.render(
-        ChTemplateFiles.GET_GAUGE_RAW_SAMPLES,
-        ChGetGaugeRawQueryTemplate.builder()
-            .table(ChConstants.TBL_GAUGES)
+        templateName,
+        ChBulkSamplesQueryTemplate.builder()
+            .table(table)
             .metric(metric)
             .startMs(startMs)
             .endMs(endMs)
-            .tags(tags)
+            .fingerprints(fingerprints)
+            .bucketMs(bucketMs)
+            .rolledUp(rolledUp)
             .build(),
         output);
-    var query = output.toString();
-    List<GenericRecord> records = client.queryAll(query);
-    var times = new ArrayList<Long>(records.size());
-    var values = new ArrayList<Float>(records.size());
+    return client.queryAll(output.toString());
+  }
+
+  /** The row's series fingerprint, computed from its tags for rows written without one. */
+  private static long fingerprintOf(GenericRecord record, METRIC_TYPE type, String metric) {
+    var fingerprint = record.getBigInteger("fingerprint").longValue();
+    if (fingerprint != 0) return fingerprint;
+    @SuppressWarnings("unchecked")
+    var tags = (Map<String, String>) record.getObject("tags");
+    return ChSeriesFingerprint.of(type, metric, tags);
+  }
+
+  private Map<Long, Scan> getGaugeSeries(
+      String metric, List<Long> fingerprints, long startMs, long endMs) {
+    var records =
+        queryBulk(
+            ChTemplateFiles.GET_GAUGE_SAMPLES_BULK,
+            ChConstants.TBL_GAUGES,
+            metric,
+            fingerprints,
+            startMs,
+            endMs);
+    var times = new HashMap<Long, List<Long>>();
+    var values = new HashMap<Long, List<Float>>();
+    for (var fingerprint : fingerprints) {
+      times.put(fingerprint, new ArrayList<>());
+      values.put(fingerprint, new ArrayList<>());
+    }
     for (var record : records) {
-      times.add(record.getLong("ts_ms"));
-      values.add((float) record.getDouble("value"));
+      var fingerprint = fingerprintOf(record, METRIC_TYPE.GAUGE, metric);
+      var seriesTimes = times.get(fingerprint);
+      // legacy rows of series that weren't asked for.
+      if (seriesTimes == null) continue;
+      seriesTimes.add(record.getLong("ts_ms"));
+      values.get(fingerprint).add((float) record.getDouble("value"));
+    }
+    var scans = HashMap.<Long, Scan>newHashMap(fingerprints.size());
+    for (var fingerprint : fingerprints) {
+      scans.put(
+          fingerprint,
+          GaugeScan.builder()
+              .universalPath(metric)
+              .timestamps(times.get(fingerprint))
+              .values(values.get(fingerprint))
+              .build());
     }
-    return GaugeScan.builder().universalPath(metric).timestamps(times).values(values).build();
+    return scans;
   }
 
-  private Scan getSumSeries(String metric, Map<String, String> tags, long startMs, long endMs) {
-    var delta = scanSumSamples(metric, tags, startMs, endMs, "DELTA");
-    if (!delta.isEmpty()) {
-      return toSumScan(metric, delta, false);
+  /**
+   * The rollup buckets that nest in buckets ending on the grid, as segments {@code (startMs,
+   * endMs]}: rollup buckets, like step buckets, hold the samples after their start up to their end.
+   */
+  private List<ChRollupCatalog.Segment> gaugeRollups(long startMs, long endMs, long bucketMs) {
+    var tiers =
+        Stream.of(ChRollup.GAUGES_1H, ChRollup.GAUGES_1M)
+            .filter(r -> bucketMs % r.getWidthMs() == 0 && startMs % r.getWidthMs() == 0)
+            .toList();
+    return rollups.plan(startMs, endMs, tiers).stream()
+        .filter(segment -> !segment.isRaw())
+        .toList();
+  }
+
+  private Map<Long, Scan> getGaugeBuckets(
+      String metric, List<Long> fingerprints, long startMs, long endMs, long bucketMs) {
+    var rolledUp = gaugeRollups(startMs, endMs, bucketMs);
+    var records =
+        new ArrayList<>(
+            queryBulk(
+                ChTemplateFiles.GET_GAUGE_BUCKETS_BULK,
+                ChConstants.TBL_GAUGES,
+                metric,
+                fingerprints,
+                startMs,
+                endMs,
+                bucketMs,
+                rolledUp));
+    if (!rolledUp.isEmpty()) {
+      records.addAll(
+          queryBulk(
+              ChTemplateFiles.GET_GAUGE_ROLLUP_BUCKETS_BULK,
+              ChConstants.TBL_GAUGES,
+              metric,
+              fingerprints,
+              startMs,
+              endMs,
+              bucketMs,
+              rolledUp));
+    }
+    // bucket end -> bucket. A series' legacy rows can come back split across several groups.
+    var buckets = new HashMap<Long, TreeMap<Long, GaugeBucketScan.Bucket>>();
+    for (var fingerprint : fingerprints) {
+      buckets.put(fingerprint, new TreeMap<>());
+    }
+    for (var record : records) {
+      var seriesBuckets = buckets.get(fingerprintOf(record, METRIC_TYPE.GAUGE, metric));
+      if (seriesBuckets == null) continue;
+      var bucket =
+          new GaugeBucketScan.Bucket(
+              record.getLong("bucket_end_ms"),
+              record.getLong("samples"),
+              record.getDouble("total"),
+              (float) record.getDouble("min_value"),
+              (float) record.getDouble("max_value"),
+              record.getLong("first_ts_ms"),
+              (float) record.getDouble("first_value"),
+              record.getLong("last_ts_ms"),
+              (float) record.getDouble("last_value"));
+      seriesBuckets.merge(bucket.endMs(), bucket, GaugeBucketScan.Bucket::merge);
+    }
+    var scans = HashMap.<Long, Scan>newHashMap(fingerprints.size());
+    for (var fingerprint : fingerprints) {
+      var seriesBuckets = new ArrayList<>(buckets.get(fingerprint).values());
+      scans.put(fingerprint, new GaugeBucketScan(metric, bucketMs, seriesBuckets));
     }
-    var cumulative = scanSumSamples(metric, tags, startMs, endMs, "CUMULATIVE");
-    return toSumScan(metric, cumulative, true);
+    return scans;
   }
 
-  private List<SumPoint> scanSumSamples(
-      String metric, Map<String, String> tags, long startMs, long endMs, String type) {
-    TemplateOutput output = new StringOutput();
-    templateEngine.render(
-        ChTemplateFiles.GET_SUM_SAMPLES,
-        ChGetSumQueryTemplate.builder()
-            .table(ChConstants.TBL_SUM)
-            .metric(metric)
-            .tags(tags)
-            .sumsType(type)
-            .ts(startMs)
-            .te(endMs)
-            .build(),
-        output);
-    var query = output.toString();
-    List<GenericRecord> records = client.queryAll(query);
-    var points = new ArrayList<SumPoint>(records.size());
+  private Map<Long, Scan> getSumSeries(
+      String metric, List<Long> fingerprints, long startMs, long endMs) {
+    var records =
+        queryBulk(
+            ChTemplateFiles.GET_SUM_SAMPLES_BULK,
+            ChConstants.TBL_SUM,
+            metric,
+            fingerprints,
+            startMs,
+            endMs);
+    var deltas = new HashMap<Long, List<SumPoint>>();
+    var cumulatives = new HashMap<Long, List<SumPoint>>();
+    for (var fingerprint : fingerprints) {
+      deltas.put(fingerprint, new ArrayList<>());
+      cumulatives.put(fingerprint, new ArrayList<>());
+    }
     for (var record : records) {
+      var fingerprint = fingerprintOf(record, METRIC_TYPE.SUM, metric);
+      var points =
+          "DELTA".equals(record.getString("sums_type"))
+              ? deltas.get(fingerprint)
+              : cumulatives.get(fingerprint);
+      if (points == null) continue;
       points.add(
           new SumPoint(
               record.getLong("ts_start_ms"), record.getLong("ts_end_ms"), record.getLong("value")));
     }
-    points.sort(Comparator.comparingLong(SumPoint::endMs));
-    return points;
+    var scans = HashMap.<Long, Scan>newHashMap(fingerprints.size());
+    for (var fingerprint : fingerprints) {
+      // delta points win over cumulative ones, as when each temporality was queried in turn.
+      var delta = deltas.get(fingerprint);
+      var cumulative = delta.isEmpty();
+      var points = cumulative ? cumulatives.get(fingerprint) : delta;
+      points.sort(Comparator.comparingLong(SumPoint::endMs));
+      scans.put(fingerprint, toSumScan(metric, points, cumulative));
+    }
+    return scans;
+  }
+
+  private Map<Long, Scan> getSumBuckets(
+      String metric, List<Long> fingerprints, long startMs, long endMs, long bucketMs) {
+    var records =
+        queryBulk(
+            ChTemplateFiles.GET_SUM_BUCKETS_BULK,
+            ChConstants.TBL_SUM,
+            metric,
+            fingerprints,
+            startMs,
+            endMs,
+            bucketMs);
+    // bucket end -> increase over the bucket, cumulative values are already differenced.
+    var deltas = new HashMap<Long, TreeMap<Long, Long>>();
+    var cumulatives = new HashMap<Long, TreeMap<Long, Long>>();
+    for (var fingerprint : fingerprints) {
+      deltas.put(fingerprint, new TreeMap<>());
+      cumulatives.put(fingerprint, new TreeMap<>());
+    }
+    var withLegacyRows = new HashSet<Long>();
+    var withFingerprintedRows = new HashSet<Long>();
+    for (var record : records) {
+      var fingerprint = fingerprintOf(record, METRIC_TYPE.SUM, metric);
+      var increases =
+          "DELTA".equals(record.getString("sums_type"))
+              ? deltas.get(fingerprint)
+              : cumulatives.get(fingerprint);
+      if (increases == null) continue;
+      increases.merge(record.getLong("bucket_end_ms"), record.getLong("value"), Long::sum);
+      var legacy = record.getBigInteger("fingerprint").signum() == 0;
+      (legacy ? withLegacyRows : withFingerprintedRows).add(fingerprint);
+    }
+    // A series with rows from before and after samples carried a fingerprint is differenced in two
+    // partitions, so its first fingerprinted row would count the whole counter. It is read raw,
+    // which merges its rows first.
+    withLegacyRows.retainAll(withFingerprintedRows);
+    var scans = HashMap.<Long, Scan>newHashMap(fingerprints.size());
+    if (!withLegacyRows.isEmpty()) {
+      scans.putAll(getSumSeries(metric, List.copyOf(withLegacyRows), startMs, endMs));
+    }
+    for (var fingerprint : fingerprints) {
+      if (scans.containsKey(fingerprint)) continue;
+      var delta = deltas.get(fingerprint);
+      var increases = delta.isEmpty() ? cumulatives.get(fingerprint) : delta;
+      var ts = new ArrayList<Long>(increases.size());
+      var counts = new ArrayList<Integer>(increases.size());
+      for (var e : increases.entrySet()) {
+        ts.add(e.getKey());
+        counts.add(clampToInt(e.getValue()));
+      }
+      scans.put(
+          fingerprint,
+          SumScan.builder()
+              .universalPath(metric)
+              .ts(ts)
+              .counts(counts)
+              .windowSize(bucketMs)
+              .build());
+    }
+    return scans;
   }
 
   private SumScan toSumScan(String metric, List<SumPoint> points, boolean cumulative) {
@@ -142,45 +424,48 @@ public class ChPromQlTsClient implements TsClient {
     return SumScan.builder().universalPath(metric).ts(ts).counts(counts).windowSize(0).build();
   }
 
-  private Scan getHistogramSeries(
-      String metric, Map<String, String> tags, long startMs, long endMs) {
-    var delta = scanHistoSamples(metric, tags, startMs, endMs, "DELTA");
-    if (!delta.isEmpty()) {
-      return new HistogramSeries(metric, delta);
+  private Map<Long, Scan> getHistogramSeries(
+      String metric, List<Long> fingerprints, long startMs, long endMs) {
+    var records =
+        queryBulk(
+            ChTemplateFiles.GET_HISTO_SAMPLES_BULK,
+            ChConstants.TBL_HISTOS,
+            metric,
+            fingerprints,
+            startMs,
+            endMs);
+    var deltas = new HashMap<Long, List<HistogramSeries.HistogramPoint>>();
+    var cumulatives = new HashMap<Long, List<HistogramSeries.HistogramPoint>>();
+    for (var fingerprint : fingerprints) {
+      deltas.put(fingerprint, new ArrayList<>());
+      cumulatives.put(fingerprint, new ArrayList<>());
     }
-    var cumulative = scanHistoSamples(metric, tags, startMs, endMs, "CUMULATIVE");
-    if (cumulative.isEmpty()) {
-      return new HistogramSeries(metric, List.of());
-    }
-    return new HistogramSeries(metric, toDeltaHistos(cumulative));
-  }
-
-  private List<HistogramSeries.HistogramPoint> scanHistoSamples(
-      String metric, Map<String, String> tags, long startMs, long endMs, String type) {
-    TemplateOutput output = new StringOutput();
-    templateEngine.render(
-        ChTemplateFiles.GET_HISTO_SAMPLES,
-        ChGetHistoQueryTemplate.builder()
-            .table(ChConstants.TBL_HISTOS)
-            .metric(metric)
-            .tags(tags)
-            .histoType(type)
-            .ts(startMs)
-            .te(endMs)
-            .build(),
-        output);
-    var query = output.toString();
-    List<GenericRecord> records = client.queryAll(query);
-    var points = new ArrayList<HistogramSeries.HistogramPoint>(records.size());
     for (var record : records) {
+      var fingerprint = fingerprintOf(record, METRIC_TYPE.HISTO, metric);
+      var points =
+          "DELTA".equals(record.getString("histo_type"))
+              ? deltas.get(fingerprint)
+              : cumulatives.get(fingerprint);
+      if (points == null) continue;
       float[] buckets = readFloatArray(record, "buckets");
       int[] counts = readIntArray(record, "counts");
       points.add(
           new HistogramSeries.HistogramPoint(
               record.getLong("ts_start_ms"), record.getLong("ts_end_ms"), buckets, counts));
     }
-    points.sort(Comparator.comparingLong(HistogramSeries.HistogramPoint::endMs));
-    return points;
+    var scans = HashMap.<Long, Scan>newHashMap(fingerprints.size());
+    for (var fingerprint : fingerprints) {
+      var delta = deltas.get(fingerprint);
+      if (!delta.isEmpty()) {
+        delta.sort(Comparator.comparingLong(HistogramSeries.HistogramPoint::endMs));
+        scans.put(fingerprint, new HistogramSeries(metric, delta));
+        continue;
+      }
+      var cumulative = cumulatives.get(fingerprint);
+      cumulative.sort(Comparator.comparingLong(HistogramSeries.HistogramPoint::endMs));
+      scans.put(fingerprint, new HistogramSeries(metric, toDeltaHistos(cumulative)));
+    }
+    return scans;
   }
 
   private List<HistogramSeries.HistogramPoint> toDeltaHistos(
@@ -248,11 +533,5 @@ public class ChPromQlTsClient implements TsClient {
     return (int) value;
   }
 
-  private enum MetricEventType {
-    GAUGE,
-    HISTO,
-    SUM
-  }
-
   private record SumPoint(long startMs, long endMs, long value) {}
 }
@@ -6,6 +6,7 @@ package org.okapi.promql.ch;
 
 import com.clickhouse.client.api.Client;
 import java.util.Optional;
+import org.okapi.metrics.ch.ChRollupCatalog;
 import org.okapi.metrics.ch.template.ChMetricTemplateEngine;
 import org.okapi.promql.eval.ts.TsClient;
 import org.okapi.promql.runtime.TsClientFactory;
@@ -13,14 +14,17 @@ import org.okapi.promql.runtime.TsClientFactory;
 public class ChPromQlTsClientFactory implements TsClientFactory {
   private final Client client;
   private final ChMetricTemplateEngine templateEngine;
+  private final ChMetricTypeCache typeCache = new ChMetricTypeCache();
+  private final ChRollupCatalog rollups;
 
   public ChPromQlTsClientFactory(Client client, ChMetricTemplateEngine templateEngine) {
     this.client = client;
     this.templateEngine = templateEngine;
+    this.rollups = new ChRollupCatalog(client);
   }
 
   @Override
   public Optional<TsClient> getClient(String tenantId) {
-    return Optional.of(new ChPromQlTsClient(client, templateEngine));
+    return Optional.of(new ChPromQlTsClient(client, templateEngine, typeCache, rollups));
   }
 }
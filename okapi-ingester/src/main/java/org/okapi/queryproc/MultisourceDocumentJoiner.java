@@ -6,13 +6,23 @@ package org.okapi.queryproc;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Queries every source in parallel and joins their documents, keeping the first copy of each doc
+ * id. A source that has not answered once the timeout ran out is left out, so callers get partial
+ * results rather than none. A source that fails fails the whole query.
+ */
 @Slf4j
 @AllArgsConstructor
 public class MultisourceDocumentJoiner<T extends IdentifiableDocument> {
@@ -20,9 +30,55 @@ public class MultisourceDocumentJoiner<T extends IdentifiableDocument> {
   List<DocumentListSupplier<T>> suppliers;
   ExecutorService executorService;
 
+  /** Documents of all sources in source order. */
   public List<T> getJoinedStream(Duration perQueryTimeout) {
+    var results = fetchAll(perQueryTimeout);
+    var total = results.stream().mapToInt(List::size).sum();
+    var seen = HashSet.<String>newHashSet(total);
+    var allResults = new ArrayList<T>(total);
+    for (var result : results) {
+      for (var doc : result) {
+        if (seen.add(doc.getDocId())) {
+          allResults.add(doc);
+        }
+      }
+    }
+    return allResults;
+  }
+
+  /**
+   * The first {@code limit} documents across all sources in {@code order}. Each source's list is
+   * sorted unless it already is, then the lists are merged through a heap so that only {@code
+   * limit} documents are ever deduplicated and copied.
+   */
+  public List<T> getMergedStream(Duration perQueryTimeout, Comparator<T> order, int limit) {
+    var results = fetchAll(perQueryTimeout);
+    var heads = new PriorityQueue<Cursor<T>>(Math.max(1, results.size()), Cursor.by(order));
+    var total = 0;
+    for (var result : results) {
+      if (result.isEmpty()) continue;
+      var sorted = isSorted(result, order) ? result : sortedCopy(result, order);
+      heads.add(new Cursor<>(sorted));
+      total += sorted.size();
+    }
+    var expected = Math.min(limit, total);
+    var seen = HashSet.<String>newHashSet(expected);
+    var merged = new ArrayList<T>(expected);
+    while (merged.size() < limit && !heads.isEmpty()) {
+      var head = heads.poll();
+      var doc = head.current();
+      if (seen.add(doc.getDocId())) {
+        merged.add(doc);
+      }
+      if (head.advance()) {
+        heads.add(head);
+      }
+    }
+    return merged;
+  }
+
+  private List<List<T>> fetchAll(Duration timeout) {
     var futures = new ArrayList<CompletableFuture<List<T>>>();
-    var seen = new ArrayList<String>();
     for (var supplier : suppliers) {
       futures.add(
           CompletableFuture.supplyAsync(
@@ -35,16 +91,54 @@ public class MultisourceDocumentJoiner<T extends IdentifiableDocument> {
               },
               executorService));
     }
-    var allResults = new ArrayList<T>();
-    for (var future : futures) {
-      List<T> results = future.orTimeout(perQueryTimeout.toMillis(), TimeUnit.MILLISECONDS).join();
-      for (var doc : results) {
-        if (!seen.contains(doc.getDocId())) {
-          seen.add(doc.getDocId());
-          allResults.add(doc);
-        }
+    // one deadline for all sources, a slow source doesn't extend the wait for the next one.
+    var deadline = System.nanoTime() + timeout.toNanos();
+    var results = new ArrayList<List<T>>(futures.size());
+    for (int i = 0; i < futures.size(); i++) {
+      var remaining = Math.max(0, deadline - System.nanoTime());
+      var future = futures.get(i);
+      try {
+        results.add(future.orTimeout(remaining, TimeUnit.NANOSECONDS).join());
+      } catch (CompletionException e) {
+        if (!(e.getCause() instanceof TimeoutException)) throw e;
+        log.warn("Source {} did not answer within {}, returning partial results.", i, timeout);
+        future.cancel(true);
       }
     }
-    return allResults;
+    return results;
+  }
+
+  private static <T> boolean isSorted(List<T> docs, Comparator<T> order) {
+    for (int i = 1; i < docs.size(); i++) {
+      if (order.compare(docs.get(i - 1), docs.get(i)) > 0) return false;
+    }
+    return true;
+  }
+
+  private static <T> List<T> sortedCopy(List<T> docs, Comparator<T> order) {
+    var copy = new ArrayList<>(docs);
+    copy.sort(order);
+    return copy;
+  }
+
+  private static final class Cursor<T> {
+    private final List<T> docs;
+    private int idx;
+
+    Cursor(List<T> docs) {
+      this.docs = docs;
+    }
+
+    static <T> Comparator<Cursor<T>> by(Comparator<T> order) {
+      return (a, b) -> order.compare(a.current(), b.current());
+    }
+
+    T current() {
+      return docs.get(idx);
+    }
+
+    boolean advance() {
+      return ++idx < docs.size();
+    }
   }
 }
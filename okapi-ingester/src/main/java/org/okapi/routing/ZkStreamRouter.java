@@ -4,11 +4,13 @@
  */
 package org.okapi.routing;
 
+import lombok.AllArgsConstructor;
 import org.okapi.sharding.ShardAssigner;
 import org.okapi.sharding.ShardState;
 import org.okapi.streams.StreamIdentifier;
 import org.okapi.zk.NamespacedZkClient;
 
+@AllArgsConstructor
 public class ZkStreamRouter implements StreamRouter<String> {
   NamespacedZkClient namespacedZkClient;
   ShardAssigner<String> shardAssigner;
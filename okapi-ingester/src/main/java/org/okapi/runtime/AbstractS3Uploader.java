@@ -4,6 +4,7 @@
  */
 package org.okapi.runtime;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
@@ -25,6 +26,28 @@ public class AbstractS3Uploader<Id> extends GenericS3Uploader<Id> {
         bucket, basePrefix, expiryDurationMs, s3Client, binPaths, binFilesPrefixRegistry, partName);
   }
 
+  public AbstractS3Uploader(
+      String bucket,
+      String basePrefix,
+      long expiryDurationMs,
+      S3Client s3Client,
+      DiskLogBinPaths<Id> binPaths,
+      BinFilesPrefixRegistry binFilesPrefixRegistry,
+      String partName,
+      S3UploadOptions options,
+      MeterRegistry meterRegistry) {
+    super(
+        bucket,
+        basePrefix,
+        expiryDurationMs,
+        s3Client,
+        binPaths,
+        binFilesPrefixRegistry,
+        partName,
+        options,
+        meterRegistry);
+  }
+
   public void uploadBlockNoThrow() {
     try {
       uploadBlock();
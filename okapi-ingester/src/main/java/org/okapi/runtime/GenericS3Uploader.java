@@ -4,17 +4,59 @@
  */
 package org.okapi.runtime;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.DiskLogBinPaths;
+import org.okapi.byterange.DiskByteRangeSupplier;
+import org.okapi.byterange.PageFooter;
 import org.okapi.checksums.ChecksumUtils;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
+/**
+ * Uploads bin files of expired blocks to S3.
+ *
+ * <p>Up to {@code fileConcurrency} files are uploaded at once and files above the multipart
+ * threshold are sent as parts in parallel. A paged file is read once: the copy that gets its footer
+ * appended also computes the checksum for the acknowledgement. Acknowledgements record the size and
+ * modification time they were taken at, so files that were already uploaded are skipped without
+ * hashing them again.
+ *
+ * <p>Publishes {@code okapi.s3.upload.*} meters tagged with the part name (logs, metrics, spans).
+ */
 @Slf4j
 public class GenericS3Uploader<Id> {
   public final String partName;
@@ -24,6 +66,16 @@ public class GenericS3Uploader<Id> {
   private final S3Client s3Client;
   private final DiskLogBinPaths<Id> binPaths;
   private final BinFilesPrefixRegistry binFilesPrefixRegistry;
+  private final S3UploadOptions options;
+  private final ExecutorService fileUploaders;
+  private final ExecutorService partUploaders;
+
+  private final Counter uploadedFiles;
+  private final Counter uploadedBytes;
+  private final Counter failedFiles;
+  private final Timer uploadLatency;
+  private final AtomicInteger pendingFiles = new AtomicInteger();
+  private final AtomicLong lastUploadLagMs = new AtomicLong();
 
   public GenericS3Uploader(
       String bucket,
@@ -33,6 +85,28 @@ public class GenericS3Uploader<Id> {
       DiskLogBinPaths<Id> binPaths,
       BinFilesPrefixRegistry binFilesPrefixRegistry,
       String partName) {
+    this(
+        bucket,
+        basePrefix,
+        expiryDurationMs,
+        s3Client,
+        binPaths,
+        binFilesPrefixRegistry,
+        partName,
+        S3UploadOptions.defaults(),
+        new SimpleMeterRegistry());
+  }
+
+  public GenericS3Uploader(
+      String bucket,
+      String basePrefix,
+      long expiryDurationMs,
+      S3Client s3Client,
+      DiskLogBinPaths<Id> binPaths,
+      BinFilesPrefixRegistry binFilesPrefixRegistry,
+      String partName,
+      S3UploadOptions options,
+      MeterRegistry meterRegistry) {
     this.expiryDurationMs = expiryDurationMs;
     this.s3Client = s3Client;
     this.binPaths = binPaths;
@@ -40,34 +114,60 @@ public class GenericS3Uploader<Id> {
     this.s3Bucket = bucket;
     this.basePrefix = basePrefix;
     this.partName = partName;
+    this.options = options;
+    this.fileUploaders =
+        Executors.newFixedThreadPool(
+            options.fileConcurrency(),
+            Thread.ofPlatform().daemon().name(partName + "-s3-upload-", 0).factory());
+    this.partUploaders =
+        Executors.newFixedThreadPool(
+            options.partConcurrency(),
+            Thread.ofPlatform().daemon().name(partName + "-s3-part-", 0).factory());
+    this.uploadedFiles = meterRegistry.counter("okapi.s3.upload.files", "part", partName);
+    this.uploadedBytes = meterRegistry.counter("okapi.s3.upload.bytes", "part", partName);
+    this.failedFiles = meterRegistry.counter("okapi.s3.upload.failed_files", "part", partName);
+    this.uploadLatency = meterRegistry.timer("okapi.s3.upload.latency", "part", partName);
+    Gauge.builder("okapi.s3.upload.pending_files", pendingFiles, AtomicInteger::get)
+        .tag("part", partName)
+        .register(meterRegistry);
+    // how long after its block expired the last file made it to S3.
+    Gauge.builder("okapi.s3.upload.lag_ms", lastUploadLagMs, AtomicLong::get)
+        .tag("part", partName)
+        .register(meterRegistry);
   }
 
   public void uploadBlock() throws IOException {
-    var blocks = binPaths.listAllPaths();
-    for (var blk : blocks) {
-      var currentTimeBlock = System.currentTimeMillis() / expiryDurationMs;
-      var isExpired = currentTimeBlock > blk.blk();
-      if (isExpired) {
-        uploadFile(blk);
-      }
-    }
+    var currentTimeBlock = System.currentTimeMillis() / expiryDurationMs;
+    uploadFilesMatchingCondition(blk -> currentTimeBlock > blk.blk());
   }
 
   public void uploadAll() throws IOException {
-    var blocks = binPaths.listAllPaths();
-    for (var blk : blocks) {
-      uploadFile(blk);
-    }
+    uploadFilesMatchingCondition(blk -> true);
   }
 
   public void uploadFilesMatchingCondition(
       Function<DiskLogBinPaths.TimestampedBinFile, Boolean> predicate) throws IOException {
     var allFiles = binPaths.listAllPaths();
+    var uploads = new ArrayList<Future<Void>>();
     for (var file : allFiles) {
       if (predicate.apply(file)) {
-        uploadFile(file);
+        pendingFiles.incrementAndGet();
+        uploads.add(fileUploaders.submit(() -> uploadAndCount(file)));
       }
     }
+    awaitAll(uploads);
+  }
+
+  private Void uploadAndCount(DiskLogBinPaths.TimestampedBinFile file) throws IOException {
+    try {
+      uploadFile(file);
+      return null;
+    } catch (IOException | RuntimeException e) {
+      failedFiles.increment();
+      throw e;
+    } finally {
+      pendingFiles.decrementAndGet();
+    }
   }
 
   public void uploadFile(DiskLogBinPaths.TimestampedBinFile binFileInfo) throws IOException {
@@ -82,14 +182,183 @@ public class GenericS3Uploader<Id> {
     if (isAlreadyUploaded(path)) {
       return;
     }
-    s3Client.putObject(PutObjectRequest.builder().bucket(s3Bucket).key(prefix).build(), path);
-    writeAcknowledgement(path);
+    var startNanos = System.nanoTime();
+    var sizeAtStart = Files.size(path);
+    var modifiedAtStart = Files.getLastModifiedTime(path).toMillis();
+    var sealed = sealWithFooter(path);
+    try {
+      var uploaded = sealed.map(SealedBinFile::path).orElse(path);
+      var uploadedSize = Files.size(uploaded);
+      putFile(prefix, uploaded, uploadedSize);
+      var pages = sealed.map(SealedBinFile::pages).orElse(-1);
+      binFilesPrefixRegistry.registerUpload(s3Bucket, prefix, uploadedSize, pages);
+      uploadedFiles.increment();
+      uploadedBytes.increment(uploadedSize);
+    } finally {
+      if (sealed.isPresent()) Files.deleteIfExists(sealed.get().path());
+    }
+    uploadLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    lastUploadLagMs.set(Math.max(0, System.currentTimeMillis() - (blk + 1) * expiryDurationMs));
+    if (sealed.isPresent() && sealed.get().sourceBytes() == sizeAtStart) {
+      writeAcknowledgement(path, sealed.get().checksum(), sizeAtStart, modifiedAtStart);
+    } else {
+      writeAcknowledgement(path);
+    }
+  }
+
+  /**
+   * @param sourceBytes how much of the source file the copy holds
+   * @param checksum of those bytes, as {@link ChecksumUtils#getChecksum} computes it
+   */
+  public record SealedBinFile(Path path, int pages, long sourceBytes, String checksum) {}
+
+  /**
+   * Copies a paged bin file next to itself with a {@link PageFooter} appended, so S3 readers can
+   * prune pages from a single tail read. The local file stays untouched since it may still be
+   * appended to or read by on-disk queries. Empty for files that are not made of pages.
+   */
+  public Optional<SealedBinFile> sealWithFooter(Path path) throws IOException {
+    Optional<PageFooter> footer;
+    try (var supplier = new DiskByteRangeSupplier(path)) {
+      footer = PageFooter.scan(supplier);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    if (footer.isEmpty() || footer.get().getPages().isEmpty()) return Optional.empty();
+    var sealed = Path.of(path.toAbsolutePath() + ".sealed");
+    var hasher = Hashing.murmur3_128().newHasher();
+    try (var out =
+        Files.newOutputStream(
+            sealed, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      // only the scanned pages, in case a writer appended since.
+      try (var in = Files.newInputStream(path)) {
+        copyPrefix(in, out, hasher, footer.get().getDataEnd());
+      }
+      out.write(footer.get().serialize());
+    }
+    return Optional.of(
+        new SealedBinFile(
+            sealed,
+            footer.get().getPages().size(),
+            footer.get().getDataEnd(),
+            hasher.hash().toString()));
+  }
+
+  private static void copyPrefix(InputStream in, OutputStream out, Hasher hasher, long len)
+      throws IOException {
+    var buffer = new byte[64 * 1024];
+    var remaining = len;
+    while (remaining > 0) {
+      var read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read < 0) throw new IOException("File shrank while sealing");
+      out.write(buffer, 0, read);
+      hasher.putBytes(buffer, 0, read);
+      remaining -= read;
+    }
+  }
+
+  private void putFile(String key, Path file, long size) throws IOException {
+    if (size <= options.multipartThresholdBytes()) {
+      s3Client.putObject(PutObjectRequest.builder().bucket(s3Bucket).key(key).build(), file);
+      return;
+    }
+    putMultipart(key, file, size);
+  }
+
+  /** Sends {@code file} in parts of {@code partSizeBytes}, {@code partConcurrency} at a time. */
+  private void putMultipart(String key, Path file, long size) throws IOException {
+    var uploadId =
+        s3Client
+            .createMultipartUpload(
+                CreateMultipartUploadRequest.builder().bucket(s3Bucket).key(key).build())
+            .uploadId();
+    var partSize = options.partSizeBytes();
+    var partCount = (int) ((size + partSize - 1) / partSize);
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var parts = new ArrayList<Future<CompletedPart>>(partCount);
+      for (int i = 0; i < partCount; i++) {
+        var partNumber = i + 1;
+        var offset = i * partSize;
+        var len = (int) Math.min(partSize, size - offset);
+        parts.add(
+            partUploaders.submit(
+                () -> uploadPart(key, uploadId, partNumber, channel, offset, len)));
+      }
+      var completed = awaitAll(parts);
+      s3Client.completeMultipartUpload(
+          CompleteMultipartUploadRequest.builder()
+              .bucket(s3Bucket)
+              .key(key)
+              .uploadId(uploadId)
+              .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+              .build());
+    } catch (IOException | RuntimeException e) {
+      s3Client.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder()
+              .bucket(s3Bucket)
+              .key(key)
+              .uploadId(uploadId)
+              .build());
+      throw e;
+    }
+  }
+
+  private CompletedPart uploadPart(
+      String key, String uploadId, int partNumber, FileChannel channel, long offset, int len)
+      throws IOException {
+    var buffer = ByteBuffer.allocate(len);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("File shrank while uploading part " + partNumber);
+      }
+    }
+    var request =
+        UploadPartRequest.builder()
+            .bucket(s3Bucket)
+            .key(key)
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .contentLength((long) len)
+            .build();
+    var response = s3Client.uploadPart(request, RequestBody.fromBytes(buffer.array()));
+    return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+  }
+
+  /** Waits for every task, then rethrows the first failure. */
+  private static <T> List<T> awaitAll(List<Future<T>> futures) throws IOException {
+    var results = new ArrayList<T>(futures.size());
+    Throwable failure = null;
+    for (var future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        if (failure == null) failure = e.getCause();
+        else failure.addSuppressed(e.getCause());
+      }
+    }
+    if (failure instanceof IOException io) throw io;
+    if (failure instanceof RuntimeException re) throw re;
+    if (failure != null) throw new IOException(failure);
+    return results;
   }
 
   public void writeAcknowledgement(Path path) throws IOException {
-    var ackPath = getAckPath(path);
-    var checkSum = ChecksumUtils.getChecksum(path);
-    Files.writeString(ackPath, checkSum);
+    writeAcknowledgement(
+        path,
+        ChecksumUtils.getChecksum(path),
+        Files.size(path),
+        Files.getLastModifiedTime(path).toMillis());
+  }
+
+  /** Records that {@code path} was uploaded while it had this checksum, size and mtime. */
+  public void writeAcknowledgement(Path path, String checksum, long size, long modifiedMillis)
+      throws IOException {
+    Files.writeString(getAckPath(path), checksum + " " + size + " " + modifiedMillis);
   }
 
   public Path getAckPath(Path path) {
@@ -98,10 +367,15 @@ public class GenericS3Uploader<Id> {
   }
 
   public boolean isAlreadyUploaded(Path path) throws IOException {
-    var checkSum = ChecksumUtils.getChecksum(path);
     var ackPath = getAckPath(path);
     if (!Files.exists(ackPath)) return false;
-    var checkSumOnFile = Files.readString(ackPath);
-    return checkSum.equals(checkSumOnFile);
+    var ack = Files.readString(ackPath).trim().split(" ");
+    if (ack.length == 3
+        && Long.parseLong(ack[1]) == Files.size(path)
+        && Long.parseLong(ack[2]) == Files.getLastModifiedTime(path).toMillis()) {
+      return true;
+    }
+    // size or mtime moved, or an ack written before they were recorded.
+    return ack[0].equals(ChecksumUtils.getChecksum(path));
   }
 }
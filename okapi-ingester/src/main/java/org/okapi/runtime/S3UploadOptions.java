@@ -0,0 +1,33 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.runtime;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How {@link GenericS3Uploader} spreads its work.
+ *
+ * @param fileConcurrency bin files uploaded at the same time
+ * @param partConcurrency parts of one multipart upload sent at the same time
+ * @param multipartThresholdBytes files larger than this are uploaded in parts
+ * @param partSizeBytes size of each part but the last, S3 requires at least 5 MiB
+ */
+public record S3UploadOptions(
+    int fileConcurrency, int partConcurrency, long multipartThresholdBytes, long partSizeBytes) {
+  public static final long MIN_PART_SIZE_BYTES = 5L * 1024 * 1024;
+
+  public S3UploadOptions {
+    Preconditions.checkArgument(fileConcurrency >= 1, "fileConcurrency must be >= 1");
+    Preconditions.checkArgument(partConcurrency >= 1, "partConcurrency must be >= 1");
+    Preconditions.checkArgument(
+        partSizeBytes >= MIN_PART_SIZE_BYTES, "partSizeBytes must be at least 5 MiB");
+    Preconditions.checkArgument(
+        multipartThresholdBytes >= partSizeBytes, "multipartThresholdBytes must be >= partSize");
+  }
+
+  public static S3UploadOptions defaults() {
+    return new S3UploadOptions(4, 4, 64L * 1024 * 1024, 16L * 1024 * 1024);
+  }
+}
@@ -4,11 +4,13 @@
  */
 package org.okapi.runtime.logs;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
 import org.okapi.logs.config.LogsCfg;
 import org.okapi.logs.paths.LogsDiskPaths;
 import org.okapi.runtime.AbstractS3Uploader;
+import org.okapi.spring.configs.properties.S3UploadCfg;
 import software.amazon.awssdk.services.s3.S3Client;
 
 public class LogsFilesS3Uploader extends AbstractS3Uploader<String> {
@@ -16,7 +18,9 @@ public class LogsFilesS3Uploader extends AbstractS3Uploader<String> {
       LogsCfg logsCfg,
       S3Client s3Client,
       LogsDiskPaths logsDiskPaths,
-      BinFilesPrefixRegistry binFilesPrefixRegistry) {
+      BinFilesPrefixRegistry binFilesPrefixRegistry,
+      S3UploadCfg s3UploadCfg,
+      MeterRegistry meterRegistry) {
     super(
         logsCfg.getS3Bucket(),
         logsCfg.getS3BasePrefix(),
@@ -24,6 +28,8 @@ public class LogsFilesS3Uploader extends AbstractS3Uploader<String> {
         s3Client,
         logsDiskPaths,
         binFilesPrefixRegistry,
-        PartNames.LOG_FILE_PART);
+        PartNames.LOG_FILE_PART,
+        s3UploadCfg.toUploadOptions(),
+        meterRegistry);
   }
 }
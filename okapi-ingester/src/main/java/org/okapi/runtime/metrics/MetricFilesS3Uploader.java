@@ -4,12 +4,14 @@
  */
 package org.okapi.runtime.metrics;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
 import org.okapi.metrics.config.MetricsCfg;
 import org.okapi.metrics.paths.MetricsDiskPaths;
 import org.okapi.runtime.AbstractS3Uploader;
 import org.okapi.spring.configs.Profiles;
+import org.okapi.spring.configs.properties.S3UploadCfg;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
@@ -23,7 +25,9 @@ public class MetricFilesS3Uploader extends AbstractS3Uploader<String> {
       MetricsCfg metricsCfg,
       @Autowired S3Client s3Client,
       MetricsDiskPaths metricsDiskPaths,
-      @Autowired BinFilesPrefixRegistry binFilesPrefixRegistry) {
+      @Autowired BinFilesPrefixRegistry binFilesPrefixRegistry,
+      S3UploadCfg s3UploadCfg,
+      MeterRegistry meterRegistry) {
     super(
         metricsCfg.getS3Bucket(),
         metricsCfg.getS3BasePrefix(),
@@ -31,6 +35,8 @@ public class MetricFilesS3Uploader extends AbstractS3Uploader<String> {
         s3Client,
         metricsDiskPaths,
         binFilesPrefixRegistry,
-        PartNames.METRICS_FILE_PART);
+        PartNames.METRICS_FILE_PART,
+        s3UploadCfg.toUploadOptions(),
+        meterRegistry);
   }
 }
@@ -4,10 +4,12 @@
  */
 package org.okapi.runtime.spans;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
 import org.okapi.runtime.AbstractS3Uploader;
+import org.okapi.spring.configs.properties.S3UploadCfg;
 import org.okapi.traces.config.TracesCfg;
 import org.okapi.traces.paths.TracesDiskPaths;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +22,9 @@ public class TraceFilesS3Uploader extends AbstractS3Uploader<String> {
       TracesCfg tracesCfg,
       @Autowired S3Client s3Client,
       TracesDiskPaths traceBinPaths,
-      @Autowired BinFilesPrefixRegistry binFilesPrefixRegistry) {
+      @Autowired BinFilesPrefixRegistry binFilesPrefixRegistry,
+      S3UploadCfg s3UploadCfg,
+      MeterRegistry meterRegistry) {
     super(
         tracesCfg.getS3Bucket(),
         tracesCfg.getS3BasePrefix(),
@@ -28,6 +32,8 @@ public class TraceFilesS3Uploader extends AbstractS3Uploader<String> {
         s3Client,
         traceBinPaths,
         binFilesPrefixRegistry,
-        PartNames.SPAN_FILE_PART);
+        PartNames.SPAN_FILE_PART,
+        s3UploadCfg.toUploadOptions(),
+        meterRegistry);
   }
 }
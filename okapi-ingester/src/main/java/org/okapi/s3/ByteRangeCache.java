@@ -27,6 +27,9 @@ public interface ByteRangeCache extends AutoCloseable, Closeable {
         });
   }
 
+  /** Called with the object's current etag before reading it, to drop ranges of older versions. */
+  default void checkVersion(String bucket, String key, String etag) {}
+
   void invalidate(String bucket, String key);
 
   void invalidateAll();
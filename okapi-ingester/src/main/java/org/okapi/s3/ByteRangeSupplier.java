@@ -8,5 +8,8 @@ public interface ByteRangeSupplier {
 
   byte[] getBytes(long start, int len);
 
+  /** Hint that {@code [start, start + len)} will be read soon; suppliers may fetch it early. */
+  default void prefetch(long start, int len) {}
+
   long getEnd();
 }
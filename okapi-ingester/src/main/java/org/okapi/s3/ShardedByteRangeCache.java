@@ -0,0 +1,517 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.s3;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import lombok.Getter;
+import lombok.Locked;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+/**
+ * Caches S3 objects in fixed, aligned blocks so overlapping and neighbouring ranges share entries.
+ *
+ * <p>Blocks live off-heap, spread over {@code shards} independently locked segments. Each segment
+ * is a segmented LRU: new blocks enter a probation region and move to a protected region, capped at
+ * 80% of the segment, on their second hit, so a one-off scan cannot flush blocks that dashboards
+ * keep reading. Blocks evicted from memory spill to {@code spillDir} when one is configured and are
+ * promoted back on their next hit.
+ *
+ * <p>Concurrent misses on the same block share one request, and adjacent missing blocks of a read
+ * are fetched with a single ranged GET.
+ */
+@Slf4j
+public class ShardedByteRangeCache implements ByteRangeCache {
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  public static final int DEFAULT_SHARDS = 16;
+
+  /** Longest a reader waits on a block another reader is fetching. */
+  static final long AWAIT_TIMEOUT_MS = 60_000;
+
+  private final S3Client s3Client;
+  @Getter private final int blockSize;
+  private final Segment[] shards;
+  private final SpillTier spill;
+  private final Map<BlockKey, CompletableFuture<ByteBuffer>> inFlight = new ConcurrentHashMap<>();
+  private final Map<ObjectId, String> versions = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder bytesFromCache = new LongAdder();
+  private final LongAdder bytesFetched = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder inflightCoalesced = new LongAdder();
+
+  public ShardedByteRangeCache(S3Client s3Client, long maxMemoryBytes) {
+    this(s3Client, maxMemoryBytes, DEFAULT_BLOCK_SIZE, DEFAULT_SHARDS, null, 0);
+  }
+
+  /**
+   * @param spillDir directory for blocks evicted from memory, {@code null} to disable the disk tier
+   * @param maxSpillBytes bytes the disk tier may hold before dropping its least recent blocks
+   */
+  public ShardedByteRangeCache(
+      S3Client s3Client,
+      long maxMemoryBytes,
+      int blockSize,
+      int shards,
+      Path spillDir,
+      long maxSpillBytes) {
+    Preconditions.checkArgument(blockSize > 0, "blockSize must be > 0");
+    Preconditions.checkArgument(shards > 0, "shards must be > 0");
+    this.s3Client = s3Client;
+    this.blockSize = blockSize;
+    this.shards = new Segment[shards];
+    for (int i = 0; i < shards; i++) {
+      this.shards[i] = new Segment(maxMemoryBytes / shards);
+    }
+    this.spill = spillDir == null ? null : new SpillTier(spillDir, maxSpillBytes);
+  }
+
+  record ObjectId(String bucket, String key) {}
+
+  record BlockKey(String bucket, String key, long block) {
+    boolean isOf(String bucket, String key) {
+      return this.bucket.equals(bucket) && this.key.equals(key);
+    }
+  }
+
+  /**
+   * Drops the blocks of {@code key} when its etag differs from the one seen last, so a re-uploaded
+   * object is not served from stale blocks.
+   */
+  @Override
+  public void checkVersion(String bucket, String key, String etag) {
+    if (etag == null) return;
+    var previous = versions.put(new ObjectId(bucket, key), etag);
+    if (previous != null && !previous.equals(etag)) {
+      invalidate(bucket, key);
+    }
+  }
+
+  @Override
+  public byte[] getRange(String bucket, String key, long startInclusive, long endExclusive)
+      throws IOException {
+    Preconditions.checkArgument(endExclusive >= startInclusive, "End must not be before start");
+    if (endExclusive == startInclusive) return new byte[0];
+    var firstBlock = startInclusive / blockSize;
+    var lastBlock = (endExclusive - 1) / blockSize;
+    var blocks = new ByteBuffer[(int) (lastBlock - firstBlock + 1)];
+    var claimed = new LinkedHashMap<Long, CompletableFuture<ByteBuffer>>();
+    var waiting = new LinkedHashMap<Long, CompletableFuture<ByteBuffer>>();
+    try {
+      for (var block = firstBlock; block <= lastBlock; block++) {
+        var blockKey = new BlockKey(bucket, key, block);
+        var cached = lookup(blockKey);
+        if (cached != null) {
+          hits.increment();
+          blocks[(int) (block - firstBlock)] = cached;
+          continue;
+        }
+        misses.increment();
+        var mine = new CompletableFuture<ByteBuffer>();
+        var existing = inFlight.putIfAbsent(blockKey, mine);
+        if (existing == null) {
+          claimed.put(block, mine);
+        } else {
+          inflightCoalesced.increment();
+          waiting.put(block, existing);
+        }
+      }
+      fetchClaimed(bucket, key, claimed);
+    } finally {
+      // a failed lookup or run leaves later claims unfetched, readers waiting on them must not hang
+      abandon(bucket, key, claimed);
+    }
+    claimed.putAll(waiting);
+    for (var entry : claimed.entrySet()) {
+      blocks[(int) (entry.getKey() - firstBlock)] = await(entry.getValue());
+    }
+
+    var out = new byte[(int) (endExclusive - startInclusive)];
+    for (int i = 0; i < blocks.length; i++) {
+      var block = firstBlock + i;
+      var blockStart = block * blockSize;
+      var from = Math.max(startInclusive, blockStart);
+      var to = Math.min(endExclusive, blockStart + blocks[i].capacity());
+      if (to < Math.min(endExclusive, blockStart + blockSize)) {
+        throw new IOException(
+            "Range " + startInclusive + "-" + endExclusive + " is past the end of " + key);
+      }
+      var len = (int) (to - from);
+      blocks[i].get((int) (from - blockStart), out, (int) (from - startInclusive), len);
+      if (!claimed.containsKey(block) || waiting.containsKey(block)) bytesFromCache.add(len);
+    }
+    return out;
+  }
+
+  @Override
+  public void invalidate(String bucket, String key) {
+    Predicate<BlockKey> matches = k -> k.isOf(bucket, key);
+    for (var shard : shards) {
+      shard.removeIf(matches);
+    }
+    if (spill != null) spill.removeIf(matches);
+  }
+
+  @Override
+  public void invalidateAll() {
+    for (var shard : shards) {
+      shard.clear();
+    }
+    if (spill != null) spill.clear();
+    versions.clear();
+  }
+
+  @Override
+  public CacheStats getCacheStats() {
+    return new CacheStats(
+        hits.sum(),
+        misses.sum(),
+        bytesFromCache.sum(),
+        bytesFetched.sum(),
+        evictions.sum(),
+        inflightCoalesced.sum());
+  }
+
+  public long getMemoryBytes() {
+    var bytes = 0L;
+    for (var shard : shards) {
+      bytes += shard.bytes();
+    }
+    return bytes;
+  }
+
+  public long getSpillBytes() {
+    return spill == null ? 0 : spill.bytes();
+  }
+
+  @Override
+  public void close() {
+    invalidateAll();
+  }
+
+  private Segment shardFor(BlockKey key) {
+    return shards[Math.floorMod(key.hashCode(), shards.length)];
+  }
+
+  private ByteBuffer lookup(BlockKey key) throws IOException {
+    var cached = shardFor(key).get(key);
+    if (cached != null || spill == null) return cached;
+    var spilled = spill.read(key);
+    if (spilled == null) return null;
+    var buffer = offHeap(spilled, 0, spilled.length);
+    store(key, buffer);
+    return buffer;
+  }
+
+  private void store(BlockKey key, ByteBuffer buffer) throws IOException {
+    var evicted = shardFor(key).put(key, buffer);
+    evictions.add(evicted.size());
+    if (spill == null) return;
+    for (var entry : evicted) {
+      spill.write(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /** Fetches each run of adjacent claimed blocks with one request and completes their futures. */
+  private void fetchClaimed(
+      String bucket, String key, Map<Long, CompletableFuture<ByteBuffer>> claimed)
+      throws IOException {
+    var run = new ArrayList<Long>();
+    for (var block : claimed.keySet()) {
+      if (!run.isEmpty() && block != run.get(run.size() - 1) + 1) {
+        fetchRun(bucket, key, run, claimed);
+        run.clear();
+      }
+      run.add(block);
+    }
+    if (!run.isEmpty()) fetchRun(bucket, key, run, claimed);
+  }
+
+  private void fetchRun(
+      String bucket,
+      String key,
+      List<Long> run,
+      Map<Long, CompletableFuture<ByteBuffer>> claimed)
+      throws IOException {
+    var first = run.get(0);
+    var last = run.get(run.size() - 1);
+    try {
+      var range = "bytes=" + first * blockSize + "-" + ((last + 1) * blockSize - 1);
+      var request = GetObjectRequest.builder().bucket(bucket).key(key).range(range).build();
+      var bytes = s3Client.getObjectAsBytes(request).asByteArray();
+      bytesFetched.add(bytes.length);
+      for (var block : run) {
+        var offset = (int) ((block - first) * blockSize);
+        var len = Math.max(0, Math.min(blockSize, bytes.length - offset));
+        var buffer = offHeap(bytes, offset, len);
+        var blockKey = new BlockKey(bucket, key, block);
+        store(blockKey, buffer);
+        inFlight.remove(blockKey, claimed.get(block));
+        claimed.get(block).complete(buffer);
+      }
+    } catch (RuntimeException | IOException e) {
+      for (var block : run) {
+        var future = claimed.get(block);
+        if (future.isDone()) continue;
+        inFlight.remove(new BlockKey(bucket, key, block), future);
+        future.completeExceptionally(e);
+      }
+      throw e instanceof IOException io ? io : new IOException(e);
+    }
+  }
+
+  /** Fails and releases every claim that was not completed, so the next read fetches again. */
+  private void abandon(
+      String bucket, String key, Map<Long, CompletableFuture<ByteBuffer>> claimed) {
+    for (var entry : claimed.entrySet()) {
+      var future = entry.getValue();
+      if (future.isDone()) continue;
+      inFlight.remove(new BlockKey(bucket, key, entry.getKey()), future);
+      future.completeExceptionally(
+          new IOException("Fetch of block " + entry.getKey() + " of " + key + " was abandoned"));
+    }
+  }
+
+  private static ByteBuffer await(CompletableFuture<ByteBuffer> future) throws IOException {
+    try {
+      return future.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new IOException("Timed out waiting for a block fetched by another reader", e);
+    }
+  }
+
+  private static ByteBuffer offHeap(byte[] bytes, int offset, int len) {
+    var buffer = ByteBuffer.allocateDirect(len);
+    buffer.put(0, bytes, offset, len);
+    return buffer;
+  }
+
+  /** One shard of the memory tier, a size-bounded segmented LRU. */
+  static final class Segment {
+    private final long capacity;
+    private final long protectedCapacity;
+    private final LinkedHashMap<BlockKey, ByteBuffer> probation =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<BlockKey, ByteBuffer> protectedRegion =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+
+    Segment(long capacity) {
+      this.capacity = capacity;
+      this.protectedCapacity = capacity * 4 / 5;
+    }
+
+    @Locked
+    ByteBuffer get(BlockKey key) {
+      var buffer = protectedRegion.get(key);
+      if (buffer != null) return buffer;
+      buffer = probation.remove(key);
+      if (buffer == null) return null;
+      probationBytes -= buffer.capacity();
+      protectedRegion.put(key, buffer);
+      protectedBytes += buffer.capacity();
+      while (protectedBytes > protectedCapacity) {
+        var demoted = pollEldest(protectedRegion);
+        protectedBytes -= demoted.getValue().capacity();
+        probation.put(demoted.getKey(), demoted.getValue());
+        probationBytes += demoted.getValue().capacity();
+      }
+      return buffer;
+    }
+
+    /** Adds {@code buffer} to probation and returns what had to make room for it. */
+    @Locked
+    List<Map.Entry<BlockKey, ByteBuffer>> put(BlockKey key, ByteBuffer buffer) {
+      if (probation.containsKey(key) || protectedRegion.containsKey(key)) return List.of();
+      if (buffer.capacity() > capacity) return List.of(Map.entry(key, buffer));
+      probation.put(key, buffer);
+      probationBytes += buffer.capacity();
+      var evicted = new ArrayList<Map.Entry<BlockKey, ByteBuffer>>();
+      while (probationBytes + protectedBytes > capacity) {
+        if (!probation.isEmpty()) {
+          var eldest = pollEldest(probation);
+          probationBytes -= eldest.getValue().capacity();
+          evicted.add(eldest);
+        } else {
+          var eldest = pollEldest(protectedRegion);
+          protectedBytes -= eldest.getValue().capacity();
+          evicted.add(eldest);
+        }
+      }
+      return evicted;
+    }
+
+    @Locked
+    void removeIf(Predicate<BlockKey> predicate) {
+      probationBytes -= removeIf(probation, predicate);
+      protectedBytes -= removeIf(protectedRegion, predicate);
+    }
+
+    @Locked
+    void clear() {
+      probation.clear();
+      protectedRegion.clear();
+      probationBytes = 0;
+      protectedBytes = 0;
+    }
+
+    @Locked
+    long bytes() {
+      return probationBytes + protectedBytes;
+    }
+
+    private static long removeIf(Map<BlockKey, ByteBuffer> region, Predicate<BlockKey> predicate) {
+      var removed = 0L;
+      var it = region.entrySet().iterator();
+      while (it.hasNext()) {
+        var entry = it.next();
+        if (predicate.test(entry.getKey())) {
+          removed += entry.getValue().capacity();
+          it.remove();
+        }
+      }
+      return removed;
+    }
+
+    private static Map.Entry<BlockKey, ByteBuffer> pollEldest(Map<BlockKey, ByteBuffer> region) {
+      var it = region.entrySet().iterator();
+      var eldest = it.next();
+      it.remove();
+      return Map.entry(eldest.getKey(), eldest.getValue());
+    }
+  }
+
+  /** Blocks evicted from memory, one file each, dropped least recently used first. */
+  static final class SpillTier {
+    private final Path dir;
+    private final long capacity;
+    private final AtomicLong fileIds = new AtomicLong();
+    private final LinkedHashMap<BlockKey, SpillFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    record SpillFile(Path path, int size) {}
+
+    SpillTier(Path dir, long capacity) {
+      this.dir = dir;
+      this.capacity = capacity;
+    }
+
+    void write(BlockKey key, ByteBuffer buffer) throws IOException {
+      var size = buffer.capacity();
+      if (size > capacity) return;
+      var contents = new byte[size];
+      buffer.get(0, contents);
+      Files.createDirectories(dir);
+      var path = dir.resolve("block-" + fileIds.incrementAndGet() + ".bin");
+      Files.write(path, contents);
+      for (var dropped : register(key, new SpillFile(path, size))) {
+        Files.deleteIfExists(dropped.path());
+      }
+    }
+
+    /** The block's contents, or {@code null} if it was never spilled or has been dropped. */
+    byte[] read(BlockKey key) throws IOException {
+      var file = take(key);
+      if (file == null) return null;
+      try {
+        var contents = Files.readAllBytes(file.path());
+        Files.deleteIfExists(file.path());
+        return contents;
+      } catch (NoSuchFileException e) {
+        return null;
+      }
+    }
+
+    void removeIf(Predicate<BlockKey> predicate) {
+      deleteAll(detach(predicate));
+    }
+
+    void clear() {
+      deleteAll(detach(k -> true));
+    }
+
+    @Locked
+    long bytes() {
+      return bytes;
+    }
+
+    @Locked
+    private List<SpillFile> register(BlockKey key, SpillFile file) {
+      var dropped = new ArrayList<SpillFile>();
+      var previous = files.put(key, file);
+      if (previous != null) {
+        bytes -= previous.size();
+        dropped.add(previous);
+      }
+      bytes += file.size();
+      var it = files.entrySet().iterator();
+      while (bytes > capacity && it.hasNext()) {
+        var eldest = it.next().getValue();
+        it.remove();
+        bytes -= eldest.size();
+        dropped.add(eldest);
+      }
+      return dropped;
+    }
+
+    @Locked
+    private SpillFile take(BlockKey key) {
+      var file = files.remove(key);
+      if (file != null) bytes -= file.size();
+      return file;
+    }
+
+    @Locked
+    private List<SpillFile> detach(Predicate<BlockKey> predicate) {
+      var detached = new ArrayList<SpillFile>();
+      var it = files.entrySet().iterator();
+      while (it.hasNext()) {
+        var entry = it.next();
+        if (predicate.test(entry.getKey())) {
+          detached.add(entry.getValue());
+          bytes -= entry.getValue().size();
+          it.remove();
+        }
+      }
+      return detached;
+    }
+
+    private static void deleteAll(List<SpillFile> spillFiles) {
+      for (var file : spillFiles) {
+        try {
+          Files.deleteIfExists(file.path());
+        } catch (IOException e) {
+          log.warn("Could not delete spilled block {}", file.path(), e);
+        }
+      }
+    }
+  }
+}
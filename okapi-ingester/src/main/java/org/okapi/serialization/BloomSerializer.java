@@ -10,6 +10,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import org.okapi.primitives.IntBloomFilter;
 
 public class BloomSerializer {
   public static byte[] serializeBloom(BloomFilter<?> filter) throws IOException {
@@ -18,6 +19,15 @@ public class BloomSerializer {
     return boas.toByteArray();
   }
 
+  public static byte[] serializeBloom(IntBloomFilter filter) throws IOException {
+    return filter.toByteArray();
+  }
+
+  /** Reads a {@code BloomFilter<Integer>} written by either Guava or {@link IntBloomFilter}. */
+  public static IntBloomFilter deserializePrimitiveIntBloom(byte[] sec) throws IOException {
+    return IntBloomFilter.fromByteArray(sec);
+  }
+
   public static BloomFilter<Integer> deserializeIntBloom(byte[] sec) throws IOException {
     return BloomFilter.readFrom(new ByteArrayInputStream(sec), Funnels.integerFunnel());
   }
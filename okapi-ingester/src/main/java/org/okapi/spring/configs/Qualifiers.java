@@ -31,6 +31,11 @@ public class Qualifiers {
   public static final String TRACES_NS_ZK_CLIENT = "tracesNsZkClient";
   public static final String LOGS_NS_ZK_CLIENT = "logsNsZkClient";
 
+  // watch-backed shard state caches
+  public static final String METRICS_SHARD_STATE_CACHE = "metricsShardStateCache";
+  public static final String TRACES_SHARD_STATE_CACHE = "tracesShardStateCache";
+  public static final String LOGS_SHARD_STATE_CACHE = "logsShardStateCache";
+
   // various shard update listeners
   public static final String METRICS_SHARD_UPDATE_LISTENER = "metricsShardUpdateListener";
   public static final String TRACES_SHARD_UPDATE_LISTENER = "tracesShardUpdateListener";
@@ -4,10 +4,12 @@
  */
 package org.okapi.spring.configs;
 
+import java.nio.file.Path;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.NodeIdSeparatedBinFilesPrefixRegistry;
 import org.okapi.nodes.NodeIdSupplier;
-import org.okapi.s3.S3ByteRangeCache;
+import org.okapi.s3.ByteRangeCache;
+import org.okapi.s3.ShardedByteRangeCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -19,10 +21,21 @@ import software.amazon.awssdk.services.s3.S3Client;
 @Configuration
 public class S3Configuration {
 
-  @Bean
-  public S3ByteRangeCache s3ByteRangeCache(
-      @Value("${okapi.logs.s3.cache.max-size-bytes:104857600}") long maxSizeBytes) {
-    return new S3ByteRangeCache(maxSizeBytes);
+  @Bean(destroyMethod = "close")
+  public ByteRangeCache s3ByteRangeCache(
+      @Autowired S3Client s3Client,
+      @Value("${okapi.logs.s3.cache.max-size-bytes:104857600}") long maxSizeBytes,
+      @Value("${okapi.logs.s3.cache.block-size-bytes:1048576}") int blockSizeBytes,
+      @Value("${okapi.logs.s3.cache.shards:16}") int shards,
+      @Value("${okapi.logs.s3.cache.spill-dir:}") String spillDir,
+      @Value("${okapi.logs.s3.cache.spill-max-size-bytes:1073741824}") long spillMaxSizeBytes) {
+    return new ShardedByteRangeCache(
+        s3Client,
+        maxSizeBytes,
+        blockSizeBytes,
+        shards,
+        spillDir.isEmpty() ? null : Path.of(spillDir),
+        spillMaxSizeBytes);
   }
 
   @Bean
@@ -10,6 +10,8 @@ import jakarta.validation.constraints.NotNull;
 import java.nio.file.Path;
 import lombok.*;
 import org.okapi.spring.configs.ConfigSections;
+import org.okapi.wal.frame.WalCompression;
+import org.okapi.wal.io.FsyncPolicy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
@@ -55,5 +57,15 @@ public class ChConfig {
   @Data
   public static class WalConfig {
     long segmentSize = 1024 * 1024;
+    // when appended frames are forced to disk, see FsyncPolicy.
+    FsyncPolicy.MODE fsyncMode = FsyncPolicy.MODE.INTERVAL;
+    long fsyncIntervalMs = 20;
+    long fsyncBytes = 4 * 1024 * 1024;
+    // threads validating sealed segments when the WAL is opened.
+    int recoveryParallelism = Runtime.getRuntime().availableProcessors();
+    // zstd-compress appended batches, optionally with a dictionary trained on this stream.
+    boolean compress = false;
+    int compressionLevel = WalCompression.DEFAULT_LEVEL;
+    Path compressionDictionary;
   }
 }
@@ -6,14 +6,20 @@ package org.okapi.spring.configs.ch;
 
 import com.clickhouse.client.api.Client;
 import com.clickhouse.client.api.enums.Protocol;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.okapi.metrics.ch.ChWalResources;
 import org.okapi.spring.configs.Qualifiers;
+import org.okapi.wal.frame.WalCompression;
+import org.okapi.wal.io.FsyncPolicy;
+import org.okapi.wal.manager.RecoveryStats;
 import org.okapi.wal.manager.WalManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.nio.file.Files;
 
 @Configuration
 public class ChResources {
@@ -27,24 +33,67 @@ public class ChResources {
         .build();
   }
 
-  @Bean(name = Qualifiers.METRICS_CH_WAL_RESOURCES)
-  public ChWalResources metricsChWalResources(@Autowired ChConfig chConfig) throws IOException {
-    return new ChWalResources(
-        chConfig.getChMetricsWal(),
-        new WalManager.WalConfig(chConfig.getChMetricsWalCfg().getSegmentSize()));
+  @Bean(name = Qualifiers.METRICS_CH_WAL_RESOURCES, destroyMethod = "close")
+  public ChWalResources metricsChWalResources(
+      @Autowired ChConfig chConfig, @Autowired MeterRegistry meterRegistry) throws IOException {
+    var resources =
+        new ChWalResources(chConfig.getChMetricsWal(), toWalConfig(chConfig.getChMetricsWalCfg()));
+    registerRecoveryGauges(meterRegistry, "metrics", resources);
+    return resources;
   }
 
-  @Bean(name = Qualifiers.LOGS_CH_WAL_RESOURCES)
-  public ChWalResources logsChWalResources(@Autowired ChConfig chConfig) throws IOException {
-    return new ChWalResources(
-        chConfig.getChLogsWal(),
-        new WalManager.WalConfig(chConfig.getChLogsCfg().getSegmentSize()));
+  @Bean(name = Qualifiers.LOGS_CH_WAL_RESOURCES, destroyMethod = "close")
+  public ChWalResources logsChWalResources(
+      @Autowired ChConfig chConfig, @Autowired MeterRegistry meterRegistry) throws IOException {
+    var resources =
+        new ChWalResources(chConfig.getChLogsWal(), toWalConfig(chConfig.getChLogsCfg()));
+    registerRecoveryGauges(meterRegistry, "logs", resources);
+    return resources;
   }
 
-  @Bean(name = Qualifiers.TRACES_CH_WAL_RESOURCES)
-  public ChWalResources tracesChWalResources(@Autowired ChConfig chConfig) throws IOException {
-    return new ChWalResources(
-        chConfig.getChTracesWal(),
-        new WalManager.WalConfig(chConfig.getChTracesWalCfg().getSegmentSize()));
+  @Bean(name = Qualifiers.TRACES_CH_WAL_RESOURCES, destroyMethod = "close")
+  public ChWalResources tracesChWalResources(
+      @Autowired ChConfig chConfig, @Autowired MeterRegistry meterRegistry) throws IOException {
+    var resources =
+        new ChWalResources(chConfig.getChTracesWal(), toWalConfig(chConfig.getChTracesWalCfg()));
+    registerRecoveryGauges(meterRegistry, "traces", resources);
+    return resources;
+  }
+
+  private static WalManager.WalConfig toWalConfig(ChConfig.WalConfig cfg) throws IOException {
+    var fsyncPolicy =
+        FsyncPolicy.of(cfg.getFsyncMode(), cfg.getFsyncIntervalMs(), cfg.getFsyncBytes());
+    return new WalManager.WalConfig(
+        cfg.getSegmentSize(), fsyncPolicy, cfg.getRecoveryParallelism(), toCompression(cfg));
+  }
+
+  private static WalCompression toCompression(ChConfig.WalConfig cfg) throws IOException {
+    if (!cfg.isCompress()) return WalCompression.none();
+    if (cfg.getCompressionDictionary() == null) {
+      return WalCompression.zstd(cfg.getCompressionLevel());
+    }
+    var dictionary = Files.readAllBytes(cfg.getCompressionDictionary());
+    return WalCompression.zstd(cfg.getCompressionLevel(), dictionary);
+  }
+
+  private static void registerRecoveryGauges(
+      MeterRegistry meterRegistry, String wal, ChWalResources resources) {
+    var stats = resources.getManager().getRecoveryStats();
+    Gauge.builder("okapi.wal.recovery.duration_ms", stats, RecoveryStats::getDurationMs)
+        .tag("wal", wal)
+        .register(meterRegistry);
+    Gauge.builder(
+            "okapi.wal.recovery.segments_validated", stats, RecoveryStats::getSegmentsValidated)
+        .tag("wal", wal)
+        .register(meterRegistry);
+    Gauge.builder("okapi.wal.recovery.corrupt_segments", stats, RecoveryStats::getCorruptSegments)
+        .tag("wal", wal)
+        .register(meterRegistry);
+    Gauge.builder("okapi.wal.recovery.bytes_scanned", stats, RecoveryStats::getBytesScanned)
+        .tag("wal", wal)
+        .register(meterRegistry);
+    Gauge.builder("okapi.wal.recovery.truncated_bytes", stats, RecoveryStats::getTruncatedBytes)
+        .tag("wal", wal)
+        .register(meterRegistry);
   }
 }
@@ -4,7 +4,11 @@
  */
 package org.okapi.spring.configs.ch;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
+import org.okapi.ch.ChBatchSizer;
+import org.okapi.ch.ChInsertPipeline;
 import org.okapi.metrics.ch.ChMetricsQueryProcessor;
 import org.okapi.metrics.ch.ChMetricsWalConsumer;
 import org.okapi.metrics.ch.ChMetricsWalConsumerDriver;
@@ -32,8 +36,13 @@ public class ChWalConsumersConfig {
   public ChMetricsWalConsumer chMetricsWalConsumer(
       @Autowired @Qualifier(Qualifiers.METRICS_CH_WAL_RESOURCES) ChWalResources walResources,
       @Autowired ChWriter writer,
-      @Autowired ChWalConsumerCfg walCfg) {
-    return new ChMetricsWalConsumer(walCfg.getBatchSize(), writer, walResources);
+      @Autowired ChWalConsumerCfg walCfg,
+      @Autowired MeterRegistry meterRegistry) {
+    return new ChMetricsWalConsumer(
+        toBatchSizer(walCfg, meterRegistry, "metrics"),
+        walCfg.getMaxBatchesPerTick(),
+        toInsertPipeline(writer, walResources, walCfg),
+        walResources);
   }
 
   @Bean
@@ -61,11 +70,13 @@ public class ChWalConsumersConfig {
       @Autowired ChWalConsumerCfg walCfg,
       @Autowired OtelTracesToChRowsConverter converter,
       @Autowired TraceFilterStrategy traceFilterStrategy,
-      @Autowired SpanFilterStrategy spanFilterStrategy) {
+      @Autowired SpanFilterStrategy spanFilterStrategy,
+      @Autowired MeterRegistry meterRegistry) {
     return new ChTracesWalConsumer(
         walResources,
-        walCfg.getBatchSize(),
-        writer,
+        toBatchSizer(walCfg, meterRegistry, "traces"),
+        walCfg.getMaxBatchesPerTick(),
+        toInsertPipeline(writer, walResources, walCfg),
         converter,
         traceFilterStrategy,
         spanFilterStrategy);
@@ -83,4 +94,43 @@ public class ChWalConsumersConfig {
       @Autowired ChMetricTemplateEngine templateEngine) {
     return new ChMetricsQueryProcessor(client, templateEngine);
   }
+
+  private static ChInsertPipeline toInsertPipeline(
+      ChWriter writer, ChWalResources walResources, ChWalConsumerCfg walCfg) {
+    return new ChInsertPipeline(
+        writer,
+        walResources.getManager(),
+        walCfg.getMaxInFlightBatches(),
+        walCfg.getInsertMaxAttempts(),
+        walCfg.getInsertRetryBackoffMs(),
+        walCfg.getInsertRetryMaxBackoffMs());
+  }
+
+  private static ChBatchSizer toBatchSizer(
+      ChWalConsumerCfg walCfg, MeterRegistry meterRegistry, String consumer) {
+    var sizer =
+        walCfg.isAdaptiveBatchSize()
+            ? new ChBatchSizer(
+                walCfg.getBatchSize(),
+                walCfg.getMinBatchSize(),
+                walCfg.getMaxBatchSize(),
+                walCfg.getTargetBatchBytes(),
+                walCfg.getTargetInsertLatencyMs(),
+                walCfg.getMaxLingerMs())
+            : ChBatchSizer.fixed(walCfg.getBatchSize());
+    Gauge.builder("okapi.ch.consumer.batch_entries", sizer, ChBatchSizer::getBatchEntries)
+        .tag("consumer", consumer)
+        .register(meterRegistry);
+    Gauge.builder("okapi.ch.consumer.batch_bytes", sizer, ChBatchSizer::getLastBatchBytes)
+        .tag("consumer", consumer)
+        .register(meterRegistry);
+    Gauge.builder(
+            "okapi.ch.consumer.insert_latency_ms", sizer, ChBatchSizer::getLastInsertLatencyMs)
+        .tag("consumer", consumer)
+        .register(meterRegistry);
+    Gauge.builder("okapi.ch.consumer.bytes_per_entry", sizer, ChBatchSizer::getBytesPerEntry)
+        .tag("consumer", consumer)
+        .register(meterRegistry);
+    return sizer;
+  }
 }
@@ -20,6 +20,39 @@ public class ChWalConsumerCfg {
   @Min(value = 1, message = "consumeIntervalMs must be >= 1")
   long consumeIntervalMs = 200;
 
+  // starting batch size, and the fixed size when adaptiveBatchSize is off.
   @Min(value = 1, message = "batchSize must be >= 1")
   int batchSize = 1024;
+
+  boolean adaptiveBatchSize = true;
+
+  @Min(value = 1, message = "minBatchSize must be >= 1")
+  int minBatchSize = 64;
+
+  @Min(value = 1, message = "maxBatchSize must be >= 1")
+  int maxBatchSize = 16_384;
+
+  @Min(value = 1, message = "targetBatchBytes must be >= 1")
+  long targetBatchBytes = 16L * 1024 * 1024;
+
+  @Min(value = 1, message = "targetInsertLatencyMs must be >= 1")
+  long targetInsertLatencyMs = 2_000;
+
+  @Min(value = 0, message = "maxLingerMs must be >= 0")
+  long maxLingerMs = 1_000;
+
+  @Min(value = 1, message = "maxBatchesPerTick must be >= 1")
+  int maxBatchesPerTick = 16;
+
+  @Min(value = 1, message = "maxInFlightBatches must be >= 1")
+  int maxInFlightBatches = 4;
+
+  @Min(value = 1, message = "insertMaxAttempts must be >= 1")
+  int insertMaxAttempts = 5;
+
+  @Min(value = 0, message = "insertRetryBackoffMs must be >= 0")
+  long insertRetryBackoffMs = 100;
+
+  @Min(value = 0, message = "insertRetryMaxBackoffMs must be >= 0")
+  long insertRetryMaxBackoffMs = 5_000;
 }
@@ -8,6 +8,7 @@ import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.okapi.runtime.S3UploadOptions;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -19,4 +20,21 @@ import org.springframework.stereotype.Component;
 public class S3UploadCfg {
   @Min(value = 100, message = "uploadDelayMs must be ≥ 100ms")
   long uploadDelayMs;
+
+  @Min(value = 1, message = "fileConcurrency must be ≥ 1")
+  int fileConcurrency = 4;
+
+  @Min(value = 1, message = "partConcurrency must be ≥ 1")
+  int partConcurrency = 4;
+
+  @Min(value = 5 * 1024 * 1024, message = "multipartThresholdBytes must be ≥ 5MiB")
+  long multipartThresholdBytes = 64L * 1024 * 1024;
+
+  @Min(value = 5 * 1024 * 1024, message = "partSizeBytes must be ≥ 5MiB")
+  long partSizeBytes = 16L * 1024 * 1024;
+
+  public S3UploadOptions toUploadOptions() {
+    return new S3UploadOptions(
+        fileConcurrency, partConcurrency, multipartThresholdBytes, partSizeBytes);
+  }
 }
@@ -4,6 +4,7 @@
  */
 package org.okapi.spring.configs.sharding.metrics;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.curator.framework.CuratorFramework;
 import org.okapi.identity.WhoAmI;
 import org.okapi.sharding.ShardMoveOrchestrator;
@@ -16,6 +17,7 @@ import org.okapi.spring.configs.properties.ShardMoveCfg;
 import org.okapi.wal.consumer.WalConsumerControllers;
 import org.okapi.zk.NamespacedZkClient;
 import org.okapi.zk.NamespacedZkClientImpl;
+import org.okapi.zk.ShardStateCache;
 import org.okapi.zk.ZkClient;
 import org.okapi.zk.ZkPaths;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,10 +41,30 @@ public class MetricsShardingConfig {
         new ShardMoveOrchestrator.ShardMoveConfig(moveCfg.getWalAckDurMillis()));
   }
 
+  @Bean(name = Qualifiers.METRICS_SHARD_STATE_CACHE, destroyMethod = "close")
+  public ShardStateCache metricsShardStateCache(
+      @Autowired CuratorFramework curatorFramework,
+      @Autowired ZkPaths zkPaths,
+      @Autowired MeterRegistry meterRegistry)
+      throws InterruptedException {
+    var cache =
+        new ShardStateCache(
+            curatorFramework,
+            zkPaths.getShardsPath(ZkPaths.APP.METRICS),
+            ZkPaths.APP.METRICS.name(),
+            meterRegistry);
+    cache.start();
+    return cache;
+  }
+
   @Bean(name = Qualifiers.METRICS_NS_ZK_CLIENT)
   public NamespacedZkClient metricsNsZkClient(
-      @Autowired WhoAmI whoAmI, @Autowired ZkPaths zkPaths, @Autowired ZkClient zkClient) {
-    return new NamespacedZkClientImpl(zkPaths, zkClient, whoAmI.getNodeId(), ZkPaths.APP.METRICS);
+      @Autowired WhoAmI whoAmI,
+      @Autowired ZkPaths zkPaths,
+      @Autowired ZkClient zkClient,
+      @Autowired @Qualifier(Qualifiers.METRICS_SHARD_STATE_CACHE) ShardStateCache shardStateCache) {
+    return new NamespacedZkClientImpl(
+        zkPaths, zkClient, whoAmI.getNodeId(), ZkPaths.APP.METRICS, shardStateCache);
   }
 
   @Bean(name = Qualifiers.METRICS_SHARD_UPDATE_LISTENER)
@@ -42,22 +42,22 @@ public class SpanQueryService {
       throw new BadRequestException("Filter kind must be specified");
     }
     var filter = createFilter(request.getFilter());
-    var queryConfig = new QueryConfig(true, true, true, true);
+    var queryConfig = new QueryConfig(true, true, true, true, limit);
     var results =
         traceQueryProcessor.getTraces(
             app, request.getStart(), request.getEnd(), filter, queryConfig);
-    var dtos = results.stream().limit(limit).map(BinarySpanRecordV2::toSpanDto).toList();
+    var dtos = results.stream().map(BinarySpanRecordV2::toSpanDto).toList();
     return new SpanQueryResponse(dtos);
   }
 
   public SpanQueryResponse queryDiskAndBufferPool(String app, SpanQueryRequest request, int limit)
       throws Exception {
-    var queryConfig = new QueryConfig(false, true, true, false);
+    var queryConfig = new QueryConfig(false, true, true, false, limit);
     var filter = createFilter(request.getFilter());
     var results =
         traceQueryProcessor.getTraces(
             app, request.getStart(), request.getEnd(), filter, queryConfig);
-    var dtos = results.stream().limit(limit).map(BinarySpanRecordV2::toSpanDto).toList();
+    var dtos = results.stream().map(BinarySpanRecordV2::toSpanDto).toList();
     return new SpanQueryResponse(dtos);
   }
 }
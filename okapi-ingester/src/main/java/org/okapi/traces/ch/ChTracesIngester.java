@@ -9,7 +9,6 @@ import java.io.IOException;
 import java.util.List;
 import org.okapi.exceptions.BadRequestException;
 import org.okapi.metrics.ch.ChWalResources;
-import org.okapi.wal.frame.WalEntry;
 import org.okapi.wal.io.IllegalWalEntryException;
 
 public class ChTracesIngester {
@@ -22,11 +21,6 @@ public class ChTracesIngester {
   public void ingest(ExportTraceServiceRequest request)
       throws BadRequestException, IllegalWalEntryException, IOException {
     ChTracesValidator.validate(request);
-    walResources.getWriter().appendBatch(List.of(toWalEntry(request)));
-  }
-
-  private WalEntry toWalEntry(ExportTraceServiceRequest request) throws IOException {
-    var lsnSupplier = this.walResources.getSupplier();
-    return new WalEntry(lsnSupplier.next(), request.toByteArray());
+    walResources.getGroupCommitWriter().appendAndWait(List.of(request.toByteArray()));
   }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.traces.ch;
+
+import org.okapi.ch.ChTableSchema;
+import org.okapi.metrics.ch.ChConstants;
+
+/** RowBinary encoders for the traces tables, column order follows {@code resources/ch/*.sql}. */
+public final class ChTracesTableSchemas {
+  private ChTracesTableSchemas() {}
+
+  public static final ChTableSchema<ChSpansTableRow> SPANS_V1 =
+      new ChTableSchema<>(
+          ChConstants.TBL_SPANS_V1,
+          (row, out) ->
+              out.writeInt64(row.getTs_start_ns())
+                  .writeInt64(row.getTs_end_ns())
+                  .writeString(row.getSpan_id())
+                  .writeEnum8(row.getSpan_status() == null ? SpanStatus.UNK : row.getSpan_status())
+                  .writeString(row.getParent_span_id())
+                  .writeString(row.getTrace_id())
+                  .writeString(row.getKind())
+                  .writeString(row.getKind_string())
+                  .writeString(row.getService_name())
+                  .writeString(row.getService_peer_name())
+                  .writeString(row.getHttp_method())
+                  .writeNullableInt32(row.getHttp_status_code())
+                  .writeNullableInt32(row.getHttp_request_size())
+                  .writeNullableInt32(row.getHttp_response_size())
+                  .writeString(row.getHttp_origin())
+                  .writeString(row.getHttp_host())
+                  .writeString(
+                      row.getServer_address() == null ? null : row.getServer_address().toString())
+                  .writeNullableInt32(row.getServer_port())
+                  .writeString(row.getClient_address())
+                  .writeNullableInt32(row.getClient_port())
+                  .writeString(row.getSource_address())
+                  .writeNullableInt32(row.getSource_port())
+                  .writeString(row.getNetwork_protocol_type())
+                  .writeString(row.getNetwork_protocol_version())
+                  .writeString(row.getDb_system_name())
+                  .writeString(row.getDb_collection_name())
+                  .writeString(row.getDb_namespace())
+                  .writeString(row.getDb_operation_name())
+                  .writeInt32(orZero(row.getDb_response_status_code()))
+                  .writeString(row.getDb_query_text())
+                  .writeString(row.getDb_query_summary())
+                  .writeString(row.getDb_stored_procedure_name())
+                  .writeInt32(orZero(row.getDb_response_returned_rows()))
+                  .writeString(row.getRpc_method())
+                  .writeString(row.getRpc_method_original())
+                  .writeInt32(orZero(row.getRpc_response_status_code()))
+                  .writeStringMap(row.getAttribs_str_0())
+                  .writeStringMap(row.getAttribs_str_1())
+                  .writeStringMap(row.getAttribs_str_2())
+                  .writeStringMap(row.getAttribs_str_3())
+                  .writeStringMap(row.getAttribs_str_4())
+                  .writeStringMap(row.getAttribs_str_5())
+                  .writeStringMap(row.getAttribs_str_6())
+                  .writeStringMap(row.getAttribs_str_7())
+                  .writeStringMap(row.getAttribs_str_8())
+                  .writeStringMap(row.getAttribs_str_9())
+                  .writeDoubleMap(row.getAttribs_number_0())
+                  .writeDoubleMap(row.getAttribs_number_1())
+                  .writeDoubleMap(row.getAttribs_number_2())
+                  .writeDoubleMap(row.getAttribs_number_3())
+                  .writeDoubleMap(row.getAttribs_number_4())
+                  .writeDoubleMap(row.getAttribs_number_5())
+                  .writeDoubleMap(row.getAttribs_number_6())
+                  .writeDoubleMap(row.getAttribs_number_7())
+                  .writeDoubleMap(row.getAttribs_number_8())
+                  .writeDoubleMap(row.getAttribs_number_9()));
+
+  public static final ChTableSchema<ChSpansIngestedAttribsRow> SPANS_INGESTED_ATTRIBS =
+      new ChTableSchema<>(
+          ChConstants.TBL_SPANS_INGESTED_ATTRIBS,
+          (row, out) ->
+              out.writeInt64(row.getTs_start_ns())
+                  .writeInt64(row.getTs_end_ns())
+                  .writeString(row.getAttribute_name())
+                  .writeInt8(attributeType(row.getAttribute_type())));
+
+  public static final ChTableSchema<ChServiceRedEvents> SERVICE_RED_EVENTS =
+      new ChTableSchema<>(
+          ChConstants.TBL_SERVICE_RED_EVENTS,
+          (row, out) ->
+              out.writeInt64(row.getTsStartNanos())
+                  .writeInt64(row.getTsEndNanos())
+                  .writeString(row.getServiceName())
+                  .writeString(row.getSpanName())
+                  .writeString(row.getPeerServiceName())
+                  .writeEnum8(row.getSpanKind() == null ? SpanKind.UNK : row.getSpanKind())
+                  .writeEnum8(row.getSpanStatus() == null ? SpanStatus.UNK : row.getSpanStatus()));
+
+  private static int orZero(Integer v) {
+    return v == null ? 0 : v;
+  }
+
+  private static int attributeType(String type) {
+    return switch (type) {
+      case ChAttributeTypes.CH_STRING -> 1;
+      case ChAttributeTypes.CH_NUMERIC -> 2;
+      default -> throw new IllegalArgumentException("Unknown attribute type: " + type);
+    };
+  }
+}
@@ -5,9 +5,6 @@
 package org.okapi.traces.ch;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import com.google.gson.Gson;
 import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
 import io.opentelemetry.proto.trace.v1.ResourceSpans;
 import io.opentelemetry.proto.trace.v1.ScopeSpans;
@@ -15,25 +12,25 @@ import io.opentelemetry.proto.trace.v1.Span;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import lombok.RequiredArgsConstructor;
-import org.okapi.metrics.ch.ChConstants;
+import org.okapi.ch.ChBatchSizer;
+import org.okapi.ch.ChInsertBatch;
+import org.okapi.ch.ChInsertPipeline;
 import org.okapi.metrics.ch.ChWalResources;
 import org.okapi.metrics.ch.ChWriter;
-import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.io.WalBatch;
 import org.okapi.wal.io.WalReader;
-import org.okapi.wal.manager.WalManager;
 
-@RequiredArgsConstructor
 public class ChTracesWalConsumer {
+  public static final int DEFAULT_MAX_BATCHES_PER_TICK = 16;
+
   private final WalReader walReader;
-  private final WalManager walManager;
-  private final int batchSize;
-  private final ChWriter chWriter;
+  private final ChBatchSizer batchSizer;
+  private final int maxBatchesPerTick;
+  private final ChInsertPipeline pipeline;
   private final OtelTracesToChRowsConverter converter;
-  private final Gson gson = new Gson();
   private final TraceFilterStrategy traceFilterStrategy;
   private final SpanFilterStrategy spanFilterStrategy;
+  private final WalBatch batch = new WalBatch();
 
   public ChTracesWalConsumer(
       ChWalResources walResources,
@@ -42,23 +39,59 @@ public class ChTracesWalConsumer {
       OtelTracesToChRowsConverter converter,
       TraceFilterStrategy traceFilterStrategy,
       SpanFilterStrategy spanFilterStrategy) {
+    this(
+        walResources,
+        ChBatchSizer.fixed(batchSize),
+        DEFAULT_MAX_BATCHES_PER_TICK,
+        new ChInsertPipeline(chWriter, walResources.getManager()),
+        converter,
+        traceFilterStrategy,
+        spanFilterStrategy);
+  }
+
+  public ChTracesWalConsumer(
+      ChWalResources walResources,
+      ChBatchSizer batchSizer,
+      int maxBatchesPerTick,
+      ChInsertPipeline pipeline,
+      OtelTracesToChRowsConverter converter,
+      TraceFilterStrategy traceFilterStrategy,
+      SpanFilterStrategy spanFilterStrategy) {
     this.walReader = walResources.getReader();
-    this.walManager = walResources.getManager();
-    this.batchSize = batchSize;
-    this.chWriter = chWriter;
+    this.batchSizer = batchSizer;
+    this.maxBatchesPerTick = maxBatchesPerTick;
+    this.pipeline = pipeline;
+    pipeline.addListener(batchSizer);
     this.converter = converter;
     this.traceFilterStrategy = Preconditions.checkNotNull(traceFilterStrategy);
     this.spanFilterStrategy = Preconditions.checkNotNull(spanFilterStrategy);
   }
 
-  public void consumeRecords() throws IOException, InterruptedException, ExecutionException {
-    var batch = walReader.readBatchAndAdvance(batchSize);
+  /** Same pipelining and commit rules as {@code ChMetricsWalConsumer#consumeRecords}. */
+  public void consumeRecords() throws IOException, InterruptedException {
+    if (!pipeline.drain()) return;
+    if (!batchSizer.shouldConsume(walReader.pendingEntries())) return;
+    for (int i = 0; i < maxBatchesPerTick; i++) {
+      var insertBatch = pipeline.acquire();
+      if (insertBatch == null) break;
+      walReader.readBatchInto(batch, batchSizer.getBatchEntries());
+      if (batch.isEmpty()) {
+        pipeline.release(insertBatch);
+        break;
+      }
+      convert(batch, insertBatch);
+      pipeline.submit(insertBatch, batch);
+    }
+    pipeline.drain();
+  }
+
+  private void convert(WalBatch batch, ChInsertBatch insertBatch) throws IOException {
     List<ChSpansTableRow> rows = new ArrayList<>();
     List<ChSpansIngestedAttribsRow> attribRows = new ArrayList<>();
     List<ChServiceRedEvents> redEvents = new ArrayList<>();
 
-    for (var entry : batch) {
-      var req = ExportTraceServiceRequest.parseFrom(entry.getPayload());
+    for (var entry : batch.getEntries()) {
+      var req = ExportTraceServiceRequest.parseFrom(entry.getPayloadBuffer());
       if (!traceFilterStrategy.shouldPrune(req)) {
         var pruned = pruneSpans(req);
         if (hasSpans(pruned)) {
@@ -69,16 +102,9 @@ public class ChTracesWalConsumer {
       redEvents.addAll(converter.deriveRedEvents(req));
     }
 
-    Multimap<String, String> writeLoad = ArrayListMultimap.create();
-    writeLoad.putAll(ChConstants.TBL_SPANS_V1, rows.stream().map(gson::toJson).toList());
-    writeLoad.putAll(
-        ChConstants.TBL_SPANS_INGESTED_ATTRIBS, attribRows.stream().map(gson::toJson).toList());
-    writeLoad.putAll(
-        ChConstants.TBL_SERVICE_RED_EVENTS, redEvents.stream().map(gson::toJson).toList());
-    chWriter.writeSyncWithBestEffort(writeLoad);
-
-    var maxLsn = WalEntry.getMaxLsn(batch);
-    walManager.commitLsn(maxLsn);
+    insertBatch.addAll(ChTracesTableSchemas.SPANS_V1, rows);
+    insertBatch.addAll(ChTracesTableSchemas.SPANS_INGESTED_ATTRIBS, attribRows);
+    insertBatch.addAll(ChTracesTableSchemas.SERVICE_RED_EVENTS, redEvents);
   }
 
   protected ExportTraceServiceRequest pruneSpans(ExportTraceServiceRequest request) {
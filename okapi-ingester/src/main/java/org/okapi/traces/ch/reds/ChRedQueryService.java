@@ -1,27 +1,27 @@
 package org.okapi.traces.ch.reds;
 
 import com.clickhouse.client.api.Client;
-import jakarta.annotation.PreDestroy;
+import com.clickhouse.client.api.query.GenericRecord;
 import org.okapi.ch.ChTemplateFiles;
 import org.okapi.metrics.ch.ChConstants;
+import org.okapi.metrics.ch.ChRollup;
+import org.okapi.metrics.ch.ChRollupCatalog;
 import org.okapi.metrics.pojos.RES_TYPE;
-import org.okapi.parallel.ParallelExecutor;
 import org.okapi.rest.traces.red.*;
 import org.okapi.traces.ch.template.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.Map;
 
 @Service
 public class ChRedQueryService {
   private static final String DURATION_MS_EXPR = "(ts_end_nanos - ts_start_nanos) / 1000000.0";
   private static final int TOTAL_OPS_SUMMARY_LIMIT = 20;
-  private static final int PARALLEL_THROTTLE_LIMIT = 8;
-  private static final int PARALLEL_POOL_SIZE = 8;
-  private static final Duration PARALLEL_WAIT_TIME = Duration.ofSeconds(10);
+  private static final long NANOS_PER_MILLI = 1_000_000L;
   private static final RedMetrics EMPTY =
       RedMetrics.builder()
           .ts(List.of())
@@ -35,13 +35,17 @@ public class ChRedQueryService {
 
   private final Client client;
   private final ChTraceTemplateEngine engine;
-  private final ParallelExecutor parallelExecutor;
+  private final ChRollupCatalog rollups;
 
+  @Autowired
   public ChRedQueryService(Client client, ChTraceTemplateEngine engine) {
+    this(client, engine, new ChRollupCatalog(client));
+  }
+
+  public ChRedQueryService(Client client, ChTraceTemplateEngine engine, ChRollupCatalog rollups) {
     this.client = client;
     this.engine = engine;
-    this.parallelExecutor =
-        new ParallelExecutor(PARALLEL_THROTTLE_LIMIT, PARALLEL_POOL_SIZE, PARALLEL_WAIT_TIME);
+    this.rollups = rollups;
   }
 
   public ServiceRedResponse queryRed(ServiceRedRequest request) {
@@ -58,66 +62,18 @@ public class ChRedQueryService {
         .build();
   }
 
+  /** RED series of the service's detected ops, all read in one query grouped by op. */
   protected List<ServiceOpRed> queryOpsReds(ServiceRedRequest request) {
     var detected = getDetectedOps(request);
     if (detected.isEmpty()) {
       return List.of();
     }
-    var suppliers = new ArrayList<Supplier<ServiceOpRed>>(detected.size());
+    var byOp = queryGroupedRed(request, "span_name", detected);
+    var reds = new ArrayList<ServiceOpRed>(detected.size());
     for (var op : detected) {
-      suppliers.add(() -> queryOpReds(request, op));
+      reds.add(ServiceOpRed.builder().op(op).redMetrics(byOp.getOrDefault(op, EMPTY)).build());
     }
-    return parallelExecutor.submit(suppliers);
-  }
-
-  protected ServiceOpRed queryOpReds(ServiceRedRequest request, String op) {
-    if (request == null || request.getService() == null || request.getService().isEmpty()) {
-      return ServiceOpRed.builder().op(op).redMetrics(EMPTY).build();
-    }
-    if (op == null || op.isEmpty()) {
-      return ServiceOpRed.builder().op(op).redMetrics(EMPTY).build();
-    }
-    var template =
-        ChServiceRedOpMetricsTemplate.builder()
-            .table(ChConstants.TBL_SERVICE_RED_EVENTS)
-            .serviceName(request.getService())
-            .spanName(op)
-            .bucketStartExpr(buildBucketStartExpr(request.getResType()))
-            .durationExpr(DURATION_MS_EXPR)
-            .timestampFilter(request.getTimestampFilter())
-            .build();
-    var query = engine.render(ChTemplateFiles.GET_SERVICE_RED_OP_METRICS, template);
-    var records = client.queryAll(query);
-    if (records.isEmpty()) {
-      return ServiceOpRed.builder().op(op).redMetrics(EMPTY).build();
-    }
-    var ts = new ArrayList<Long>(records.size());
-    var counts = new ArrayList<Long>(records.size());
-    var errors = new ArrayList<Long>(records.size());
-    var p50 = new ArrayList<Double>(records.size());
-    var p75 = new ArrayList<Double>(records.size());
-    var p90 = new ArrayList<Double>(records.size());
-    var p99 = new ArrayList<Double>(records.size());
-    for (var record : records) {
-      ts.add(record.getLong("bucket_start_ms"));
-      counts.add(record.getLong("total_count"));
-      errors.add(record.getLong("error_count"));
-      p50.add(record.getDouble("duration_p50"));
-      p75.add(record.getDouble("duration_p75"));
-      p90.add(record.getDouble("duration_p90"));
-      p99.add(record.getDouble("duration_p99"));
-    }
-    var red =
-        RedMetrics.builder()
-            .ts(ts)
-            .counts(counts)
-            .errors(errors)
-            .durationsP50(p50)
-            .durationsP75(p75)
-            .durationsP90(p90)
-            .durationsP99(p99)
-            .build();
-    return ServiceOpRed.builder().op(op).redMetrics(red).build();
+    return reds;
   }
 
   protected List<String> getDetectedOps(ServiceRedRequest request) {
@@ -183,62 +139,84 @@ public class ChRedQueryService {
   }
 
   protected RedMetrics getServiceLevelRed(ServiceRedRequest request) {
-    return queryRedMetrics(request, null);
+    return queryGroupedRed(request, null, null).getOrDefault(null, EMPTY);
   }
 
-  protected List<String> getPeers(ServiceRedRequest request) {
-    if (request == null || request.getService() == null || request.getService().isEmpty()) {
+  /** RED series of the service's calls to each peer, read in one query grouped by peer. */
+  protected List<ServiceEdgeRed> getServiceEdgeRed(ServiceRedRequest req) {
+    if (req == null || req.getService() == null || req.getService().isEmpty()) {
       return List.of();
     }
+    var byPeer = queryGroupedRed(req, "peer_service_name", null);
+    var reds = new ArrayList<ServiceEdgeRed>(byPeer.size());
+    for (var entry : byPeer.entrySet()) {
+      reds.add(
+          ServiceEdgeRed.builder()
+              .peerService(entry.getKey())
+              .redMetrics(entry.getValue())
+              .build());
+    }
+    return reds;
+  }
+
+  /**
+   * RED series per value of {@code groupColumn}, in value order, or a single one under the null key
+   * when it is null. Whole minutes the RED rollup covers are read from it rather than from the
+   * events table, for spans that end before the window's last minute. Whether those that end in it
+   * are inside the window is only known from the events table, which reads them instead.
+   */
+  private Map<String, RedMetrics> queryGroupedRed(
+      ServiceRedRequest request, String groupColumn, List<String> groupValues) {
     var template =
-        ChServiceRedPeersTemplate.builder()
+        ChServiceRedGroupedTemplate.builder()
             .table(ChConstants.TBL_SERVICE_RED_EVENTS)
             .serviceName(request.getService())
+            .groupColumn(groupColumn)
+            .groupValues(groupValues)
+            .rawBucketExpr(buildBucketStartExpr(request.getResType()))
+            .rollupBucketExpr(buildRollupBucketStartExpr(request.getResType()))
+            .durationExpr(DURATION_MS_EXPR)
             .timestampFilter(request.getTimestampFilter())
+            .rolledUp(rolledUp(request))
+            .rolledUpEndMs(rolledUpEndMs(request))
             .build();
-    var query = engine.render(ChTemplateFiles.GET_SERVICE_RED_PEERS, template);
+    var query = engine.render(ChTemplateFiles.GET_SERVICE_RED_GROUPED, template);
     var records = client.queryAll(query);
-    var peers = new ArrayList<String>(records.size());
+    var byGroup = new LinkedHashMap<String, List<GenericRecord>>();
     for (var record : records) {
-      var peer = record.getString("peer_service_name");
-      if (peer != null && !peer.isEmpty()) {
-        peers.add(peer);
-      }
+      var key = groupColumn == null ? null : record.getString("group_key");
+      byGroup.computeIfAbsent(key, k -> new ArrayList<>()).add(record);
     }
-    return peers;
+    var reds = LinkedHashMap.<String, RedMetrics>newLinkedHashMap(byGroup.size());
+    for (var entry : byGroup.entrySet()) {
+      reds.put(entry.getKey(), toRedMetrics(entry.getValue()));
+    }
+    return reds;
   }
 
-  protected List<ServiceEdgeRed> getServiceEdgeRed(ServiceRedRequest req) {
-    var peers = getPeers(req);
-    if (peers.isEmpty()) {
+  private List<ChRollupCatalog.Segment> rolledUp(ServiceRedRequest request) {
+    var filter = request.getTimestampFilter();
+    if (filter == null || buildRollupBucketStartExpr(request.getResType()) == null) {
       return List.of();
     }
-    var suppliers = new ArrayList<Supplier<ServiceEdgeRed>>(peers.size());
-    for (var peer : peers) {
-      suppliers.add(
-          () -> {
-            var redMetrics = queryRedMetrics(req, peer);
-            return ServiceEdgeRed.builder().peerService(peer).redMetrics(redMetrics).build();
-          });
-    }
-    return parallelExecutor.submit(suppliers);
+    var startMs = Math.ceilDiv(filter.getTsStartNanos(), NANOS_PER_MILLI);
+    var endMs = Math.floorDiv(filter.getTsEndNanos(), NANOS_PER_MILLI);
+    return rollups.plan(startMs, endMs, List.of(ChRollup.SERVICE_RED_1M)).stream()
+        .filter(segment -> !segment.isRaw())
+        .toList();
   }
 
-  private RedMetrics queryRedMetrics(ServiceRedRequest request, String peerService) {
-    var template =
-        ChServiceRedMetricsTemplate.builder()
-            .table(ChConstants.TBL_SERVICE_RED_EVENTS)
-            .serviceName(request.getService())
-            .peerServiceName(peerService)
-            .bucketStartExpr(buildBucketStartExpr(request.getResType()))
-            .durationExpr(DURATION_MS_EXPR)
-            .timestampFilter(request.getTimestampFilter())
-            .build();
-    var query = engine.render(ChTemplateFiles.GET_SERVICE_RED_METRICS, template);
-    var records = client.queryAll(query);
-    if (records.isEmpty()) {
-      return EMPTY;
+  /** Start of the window's last minute, rollup rows of spans ending from then on aren't read. */
+  private static long rolledUpEndMs(ServiceRedRequest request) {
+    var filter = request.getTimestampFilter();
+    if (filter == null) {
+      return 0L;
     }
+    var widthMs = ChRollup.SERVICE_RED_1M.getWidthMs();
+    return Math.floorDiv(filter.getTsEndNanos(), widthMs * NANOS_PER_MILLI) * widthMs;
+  }
+
+  private static RedMetrics toRedMetrics(List<GenericRecord> records) {
     var ts = new ArrayList<Long>(records.size());
     var counts = new ArrayList<Long>(records.size());
     var errors = new ArrayList<Long>(records.size());
@@ -277,12 +255,13 @@ public class ChRedQueryService {
     };
   }
 
-  @PreDestroy
-  public void shutdown() {
-    try {
-      parallelExecutor.close();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+  /** Same buckets over the RED rollup's minutes, null when they are finer than a minute. */
+  private static String buildRollupBucketStartExpr(RES_TYPE resType) {
+    var effective = resType == null ? RES_TYPE.SECONDLY : resType;
+    return switch (effective) {
+      case SECONDLY -> null;
+      case MINUTELY -> "toUnixTimestamp(bucket) * 1000";
+      case HOURLY -> "toUnixTimestamp(toStartOfHour(toDateTime(toUnixTimestamp(bucket)))) * 1000";
+    };
   }
 }
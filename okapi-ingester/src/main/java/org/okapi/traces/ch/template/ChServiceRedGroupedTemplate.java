@@ -0,0 +1,30 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.traces.ch.template;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+import org.okapi.metrics.ch.ChRollupCatalog;
+import org.okapi.rest.traces.TimestampFilter;
+
+@Value
+@Builder
+public class ChServiceRedGroupedTemplate {
+  String table;
+  String serviceName;
+  // span_name or peer_service_name to get one series per value, null for a single series.
+  String groupColumn;
+  // when set, only these values of groupColumn.
+  List<String> groupValues;
+  String rawBucketExpr;
+  String rollupBucketExpr;
+  String durationExpr;
+  TimestampFilter timestampFilter;
+  // ranges of span starts read from the RED rollup instead of the events table.
+  List<ChRollupCatalog.Segment> rolledUp;
+  // of those, only spans ending before this minute are; the events table checks the later ones.
+  long rolledUpEndMs;
+}
@@ -66,8 +66,9 @@ public class MultiSourceTraceQueryProcessor implements TraceQueryProcessor {
                         ? memberSet.getTraces(app, start, end, filter, cfg)
                         : Collections.emptyList()),
             executorService);
-    var out = joiner.getJoinedStream(Duration.of(10, ChronoUnit.SECONDS));
-    out.sort(Comparator.comparingLong(r -> r.getSpan().getStartTimeUnixNano()));
-    return out;
+    return joiner.getMergedStream(
+        Duration.of(10, ChronoUnit.SECONDS),
+        Comparator.comparingLong(r -> r.getSpan().getStartTimeUnixNano()),
+        cfg.limit);
   }
 }
@@ -13,6 +13,7 @@ import org.okapi.abstractfilter.PageFilter;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.PartNames;
 import org.okapi.byterange.LengthPrefixPageAndMdIterator;
+import org.okapi.byterange.PageFooter;
 import org.okapi.byterange.RangeIterationException;
 import org.okapi.byterange.S3ByteRangeSupplier;
 import org.okapi.io.NotEnoughBytesException;
@@ -21,7 +22,7 @@ import org.okapi.logs.query.PageMetadataIteratorQp;
 import org.okapi.logs.query.QueryConfig;
 import org.okapi.primitives.BinarySpanRecordV2;
 import org.okapi.queryproc.TraceQueryProcessor;
-import org.okapi.s3.S3ByteRangeCache;
+import org.okapi.s3.ByteRangeCache;
 import org.okapi.traces.config.TracesCfg;
 import org.okapi.traces.io.SpanPageCodec;
 import org.okapi.traces.io.SpanPageMetadata;
@@ -32,14 +33,14 @@ public class S3TraceQueryProcessor implements TraceQueryProcessor {
 
   private final TracesCfg cfg;
   private final S3Client s3Client;
-  private final S3ByteRangeCache s3ByteRangeCache;
+  private final ByteRangeCache s3ByteRangeCache;
   private final BinFilesPrefixRegistry prefixRegistry;
   private final SpanPageCodec spanPageCodec = new SpanPageCodec();
 
   public S3TraceQueryProcessor(
       TracesCfg cfg,
       S3Client s3Client,
-      S3ByteRangeCache s3ByteRangeCache,
+      ByteRangeCache s3ByteRangeCache,
       BinFilesPrefixRegistry prefixRegistry) {
     this.cfg = cfg;
     this.s3Client = s3Client;
@@ -80,7 +81,8 @@ public class S3TraceQueryProcessor implements TraceQueryProcessor {
       String bucket, String prefix, PageFilter<BinarySpanRecordV2, SpanPageMetadata> filter)
       throws IOException, StreamReadingException, RangeIterationException, NotEnoughBytesException {
     var s3ByteRangeSupplier = new S3ByteRangeSupplier(bucket, prefix, s3Client, s3ByteRangeCache);
-    var iterator = new LengthPrefixPageAndMdIterator(s3ByteRangeSupplier);
+    var footer = PageFooter.read(s3ByteRangeSupplier).orElse(null);
+    var iterator = new LengthPrefixPageAndMdIterator(s3ByteRangeSupplier, footer);
     var qp = new PageMetadataIteratorQp<>(iterator, filter, spanPageCodec);
     return new ArrayList<>(qp.getMatchingRecords());
   }
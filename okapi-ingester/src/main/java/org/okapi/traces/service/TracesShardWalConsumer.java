@@ -6,6 +6,7 @@ package org.okapi.traces.service;
 
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.util.ArrayList;
 import lombok.RequiredArgsConstructor;
 import org.okapi.CommonConfig;
 import org.okapi.abstractio.StreamIdFactory;
@@ -18,6 +19,8 @@ import org.okapi.traces.TracesBufferPool;
 import org.okapi.traces.io.ForwardedSpanRecord;
 import org.okapi.traces.io.SpanIngestionRecord;
 import org.okapi.wal.io.IllegalWalEntryException;
+import org.okapi.wal.io.WalBatch;
+import org.okapi.wal.lsn.Lsn;
 
 @RequiredArgsConstructor
 public class TracesShardWalConsumer {
@@ -30,6 +33,7 @@ public class TracesShardWalConsumer {
   private final ShardRegistry shardRegistry;
 
   private final Gson gson = new Gson();
+  private final WalBatch batch = new WalBatch();
 
   public void consumeRecords()
       throws IOException, IllegalWalEntryException, StreamReadingException {
@@ -42,17 +46,19 @@ public class TracesShardWalConsumer {
   }
 
   private void consume(int shard) throws IOException, StreamReadingException {
+    // entries stay in the WAL until the flushers catch up.
+    if (bufferPool.isBackpressured()) return;
     var reader = walResourcesPerStream.getWalReader(shard);
-    var entry = reader.readNext();
-    int consumed = 0;
     var streamId = streamIdFactory.withStreamAndShard(shard);
-    while (entry.isPresent() && consumed < batchSize) {
-      var unmarshalled = SpanIngestionRecord.fromByteArray(entry.get().getPayload());
-      bufferPool.consume(entry.get().getLsn(), streamId, unmarshalled);
-      consumed++;
-      reader.advance();
-      entry = reader.readNext();
+    reader.readBatchInto(batch, batchSize);
+    if (batch.isEmpty()) return;
+    var lsns = new ArrayList<Lsn>(batch.size());
+    var records = new ArrayList<SpanIngestionRecord>(batch.size());
+    for (var entry : batch.getEntries()) {
+      lsns.add(entry.getLsn());
+      records.add(SpanIngestionRecord.fromByteArray(entry.getPayload()));
     }
+    bufferPool.appendAll(streamId, lsns, records);
   }
 
   private void forward(int shard) throws IOException {
@@ -20,13 +20,24 @@ public class NamespacedZkClientImpl implements NamespacedZkClient {
   private final Gson gson;
   private final String nodeId; // this process's logical node id
   private final ZkPaths.APP app;
+  private final ShardStateCache shardStateCache; // null to always read ZooKeeper
 
   public NamespacedZkClientImpl(ZkPaths zkPaths, ZkClient client, String nodeId, ZkPaths.APP app) {
+    this(zkPaths, client, nodeId, app, null);
+  }
+
+  public NamespacedZkClientImpl(
+      ZkPaths zkPaths,
+      ZkClient client,
+      String nodeId,
+      ZkPaths.APP app,
+      ShardStateCache shardStateCache) {
     this.zkPaths = zkPaths;
     this.client = client;
     this.gson = new Gson();
     this.nodeId = nodeId;
     this.app = app;
+    this.shardStateCache = shardStateCache;
   }
 
   /** Return all shard ids whose ShardMetadata.owner == this.nodeId. */
@@ -76,8 +87,16 @@ public class NamespacedZkClientImpl implements NamespacedZkClient {
     return result;
   }
 
+  /**
+   * Served from the {@link ShardStateCache} when there is one, shards it has not seen yet are read
+   * from ZooKeeper.
+   */
   @Override
   public ShardMetadata getShardState(int shardId) {
+    if (shardStateCache != null) {
+      var cached = shardStateCache.get(shardId);
+      if (cached != null) return cached;
+    }
     String path = zkPaths.getShardPath(app, shardId);
     try {
       byte[] data = client.readNode(path);
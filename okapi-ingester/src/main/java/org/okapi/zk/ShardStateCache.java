@@ -0,0 +1,194 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.zk;
+
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.Locked;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.curator.framework.state.ConnectionState;
+import org.okapi.exceptions.ExceptionUtils;
+import org.okapi.sharding.ShardMetadata;
+
+/**
+ * Keeps every shard znode under {@code shardRoot} in memory, refreshed by a {@link CuratorCache}
+ * watch, so routing and WAL consumers don't read and parse a znode on every call.
+ *
+ * <p>Readers get immutable {@link Snapshot}s whose version goes up with every change. While the
+ * ZooKeeper connection is suspended or lost the last snapshot keeps being served and {@code
+ * okapi.zk.shard_cache.stale_ms} reports for how long.
+ */
+@Slf4j
+public class ShardStateCache implements Closeable {
+  public static final Duration DEFAULT_INIT_TIMEOUT = Duration.ofSeconds(30);
+  private static final Gson GSON = new Gson();
+
+  public record Snapshot(long version, Map<Integer, ShardMetadata> shards) {
+    public ShardMetadata get(int shardId) {
+      return shards.get(shardId);
+    }
+  }
+
+  private final CuratorFramework curatorFramework;
+  private final String shardRoot;
+  private final LongSupplier clock;
+  private final CountDownLatch initialized = new CountDownLatch(1);
+  private final AtomicLong lastUpdateMs = new AtomicLong();
+  private final AtomicLong disconnectedSinceMs = new AtomicLong();
+  private final Counter updates;
+  private final Counter misses;
+  private volatile Snapshot snapshot = new Snapshot(0, Map.of());
+  private CuratorCache curatorCache;
+
+  public ShardStateCache(
+      CuratorFramework curatorFramework,
+      String shardRoot,
+      String app,
+      MeterRegistry meterRegistry) {
+    this(curatorFramework, shardRoot, app, meterRegistry, System::currentTimeMillis);
+  }
+
+  public ShardStateCache(
+      CuratorFramework curatorFramework,
+      String shardRoot,
+      String app,
+      MeterRegistry meterRegistry,
+      LongSupplier clock) {
+    this.curatorFramework = curatorFramework;
+    this.shardRoot = shardRoot;
+    this.clock = clock;
+    this.updates = meterRegistry.counter("okapi.zk.shard_cache.updates", "app", app);
+    this.misses = meterRegistry.counter("okapi.zk.shard_cache.misses", "app", app);
+    Gauge.builder("okapi.zk.shard_cache.version", this, c -> c.snapshot().version())
+        .tag("app", app)
+        .register(meterRegistry);
+    Gauge.builder("okapi.zk.shard_cache.stale_ms", this, ShardStateCache::getStaleMs)
+        .tag("app", app)
+        .register(meterRegistry);
+    Gauge.builder(
+            "okapi.zk.shard_cache.last_update_age_ms", this, ShardStateCache::getLastUpdateAgeMs)
+        .tag("app", app)
+        .register(meterRegistry);
+  }
+
+  /** Starts watching and waits up to {@code timeout} for the initial load. */
+  public void start(Duration timeout) throws InterruptedException {
+    curatorFramework.getConnectionStateListenable().addListener(this::onConnectionStateChanged);
+    curatorCache = CuratorCache.build(curatorFramework, shardRoot);
+    curatorCache
+        .listenable()
+        .addListener(
+            CuratorCacheListener.builder()
+                .forCreates(this::put)
+                .forChanges((oldNode, node) -> put(node))
+                .forDeletes(this::remove)
+                .forInitialized(initialized::countDown)
+                .build());
+    curatorCache.start();
+    if (!initialized.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+      log.warn("Shard cache for {} not loaded after {}, reading ZooKeeper.", shardRoot, timeout);
+    }
+  }
+
+  public void start() throws InterruptedException {
+    start(DEFAULT_INIT_TIMEOUT);
+  }
+
+  public boolean isInitialized() {
+    return initialized.getCount() == 0;
+  }
+
+  public Snapshot snapshot() {
+    return snapshot;
+  }
+
+  /** The cached state of {@code shardId}, or null until the cache has loaded it. */
+  public ShardMetadata get(int shardId) {
+    var md = isInitialized() ? snapshot.get(shardId) : null;
+    if (md == null) misses.increment();
+    return md;
+  }
+
+  public long getStaleMs() {
+    var since = disconnectedSinceMs.get();
+    return since == 0 ? 0 : clock.getAsLong() - since;
+  }
+
+  public long getLastUpdateAgeMs() {
+    var last = lastUpdateMs.get();
+    return last == 0 ? 0 : clock.getAsLong() - last;
+  }
+
+  void onConnectionStateChanged(CuratorFramework client, ConnectionState state) {
+    switch (state) {
+      case SUSPENDED, LOST -> disconnectedSinceMs.compareAndSet(0, clock.getAsLong());
+      case CONNECTED, RECONNECTED -> disconnectedSinceMs.set(0);
+      default -> {}
+    }
+  }
+
+  void put(ChildData node) {
+    var shardId = shardIdOf(node.getPath());
+    if (shardId == null || node.getData() == null || node.getData().length == 0) return;
+    try {
+      var md =
+          GSON.fromJson(new String(node.getData(), StandardCharsets.UTF_8), ShardMetadata.class);
+      publish(shardId, md);
+    } catch (RuntimeException e) {
+      log.error(
+          "Skipping unreadable shard znode {}: {}",
+          node.getPath(),
+          ExceptionUtils.debugFriendlyMsg(e));
+    }
+  }
+
+  void remove(ChildData node) {
+    var shardId = shardIdOf(node.getPath());
+    if (shardId != null) publish(shardId, null);
+  }
+
+  @Locked
+  private void publish(int shardId, ShardMetadata md) {
+    var shards = new HashMap<>(snapshot.shards());
+    if (md == null) shards.remove(shardId);
+    else shards.put(shardId, md);
+    snapshot = new Snapshot(snapshot.version() + 1, Map.copyOf(shards));
+    lastUpdateMs.set(clock.getAsLong());
+    updates.increment();
+  }
+
+  /** Id of a direct child {@code shardRoot/<id>}, null for the root and anything else. */
+  Integer shardIdOf(String path) {
+    if (!path.startsWith(shardRoot + "/")) return null;
+    var child = path.substring(shardRoot.length() + 1);
+    try {
+      return Integer.parseInt(child);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (curatorCache != null) {
+      curatorCache.close();
+    }
+  }
+}
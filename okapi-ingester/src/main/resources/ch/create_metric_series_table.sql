@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS okapi_metrics.metric_series (
+    fingerprint UInt64,
+    event_type Enum('GAUGE' = 1, 'HISTO' = 2, 'SUM' = 3),
+    metric LowCardinality(String),
+    tags Map(String, String),
+    temporality Nullable(String),
+    ts_start SimpleAggregateFunction(min, DateTime64(3, 'UTC')),
+    ts_end SimpleAggregateFunction(max, DateTime64(3, 'UTC'))
+)
+ENGINE = AggregatingMergeTree
+ORDER BY (metric, fingerprint);
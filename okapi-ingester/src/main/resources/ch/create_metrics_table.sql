@@ -6,7 +6,8 @@ CREATE TABLE IF NOT EXISTS okapi_metrics.gauge_raw_samples (
     minute UInt8 DEFAULT toStartOfMinute(timestamp),
     hour UInt8 DEFAULT toStartOfHour(timestamp),
     day UInt8 DEFAULT toStartOfDay(timestamp),
-    month UInt8 DEFAULT toStartOfMonth(timestamp)
+    month UInt8 DEFAULT toStartOfMonth(timestamp),
+    fingerprint UInt64 DEFAULT 0
 )
 ENGINE = MergeTree
 PARTITION BY toYYYYMM(timestamp)
@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS okapi_traces.service_red_1m (
+    bucket DateTime('UTC'),
+    end_bucket DateTime('UTC'),
+    service_name LowCardinality(String),
+    span_name LowCardinality(String),
+    peer_service_name LowCardinality(String),
+    span_kind Enum('CLIENT' = 1, 'SERVER' = 2, 'PRODUCER' = 3, 'CONSUMER' = 4, 'UNK' = 5, 'INTERNAL' = 6),
+    total_count SimpleAggregateFunction(sum, UInt64),
+    error_count SimpleAggregateFunction(sum, UInt64),
+    durations AggregateFunction(quantilesTDigestIf(0.5, 0.75, 0.9, 0.99), Float64, UInt8)
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMMDD(bucket)
+ORDER BY (service_name, bucket, span_name, peer_service_name, span_kind, end_bucket);
@@ -0,0 +1,12 @@
+CREATE MATERIALIZED VIEW IF NOT EXISTS okapi_traces.service_red_1m_mv
+TO okapi_traces.service_red_1m AS
+SELECT toStartOfMinute(toDateTime(intDiv(ts_start_nanos, 1000000000), 'UTC')) AS bucket,
+    toStartOfMinute(toDateTime(intDiv(ts_end_nanos, 1000000000), 'UTC')) AS end_bucket,
+    service_name, span_name, peer_service_name, span_kind,
+    count() AS total_count,
+    countIf(span_status = 'ERROR') AS error_count,
+    quantilesTDigestIfState(0.5, 0.75, 0.9, 0.99)(
+        (ts_end_nanos - ts_start_nanos) / 1000000.0,
+        span_status = 'OK' AND ts_end_nanos > ts_start_nanos) AS durations
+FROM okapi_traces.service_red_events
+GROUP BY bucket, end_bucket, service_name, span_name, peer_service_name, span_kind;
@@ -8,7 +8,8 @@ CREATE TABLE IF NOT EXISTS okapi_metrics.sums_raw_samples (
     minute UInt8 DEFAULT toStartOfMinute(ts_start),
     hour UInt8 DEFAULT toStartOfHour(ts_start),
     day UInt8 DEFAULT toStartOfDay(ts_start),
-    month UInt8 DEFAULT toStartOfMonth(ts_start)
+    month UInt8 DEFAULT toStartOfMonth(ts_start),
+    fingerprint UInt64 DEFAULT 0
 )
 ENGINE = MergeTree
 PARTITION BY toYYYYMM(ts_start)
@@ -0,0 +1,147 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+public class NodeIdSeparatedBinFilesPrefixRegistryTests {
+  static final String BUCKET = "bkt";
+  static final String ROOT = "logs/s1/10";
+  static final long HOUR = 3600_000L;
+
+  S3Client s3Client;
+  AtomicLong now;
+  NodeIdSeparatedBinFilesPrefixRegistry registry;
+
+  @BeforeEach
+  void setup() {
+    s3Client = mock(S3Client.class);
+    now = new AtomicLong(100 * HOUR);
+    registry =
+        new NodeIdSeparatedBinFilesPrefixRegistry(
+            "node-1", s3Client, 30_000, 24 * HOUR, HOUR, 100, now::get);
+  }
+
+  void storeManifest(String etag, Instant lastModified, String... keys) {
+    var entries =
+        List.of(keys).stream().map(k -> new BinFileManifest.Entry(k, 10, 1)).toList();
+    var json = "{\"files\":" + entriesJson(entries) + "}";
+    var response = GetObjectResponse.builder().eTag(etag).lastModified(lastModified).build();
+    doReturn(ResponseBytes.fromByteArray(response, json.getBytes(StandardCharsets.UTF_8)))
+        .when(s3Client)
+        .getObjectAsBytes(any(GetObjectRequest.class));
+  }
+
+  static String entriesJson(List<BinFileManifest.Entry> entries) {
+    return entries.stream()
+        .map(e -> "{\"key\":\"" + e.key() + "\",\"bytes\":" + e.bytes() + ",\"pages\":1}")
+        .toList()
+        .toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  void verifyNeverListed() {
+    verify(s3Client, never()).listObjectsV2Paginator(any(Consumer.class));
+    verify(s3Client, never()).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+  }
+
+  @Test
+  void testRootOf() {
+    assertEquals(ROOT, NodeIdSeparatedBinFilesPrefixRegistry.rootOf(ROOT + "/node-1/logfile.x"));
+    assertNull(NodeIdSeparatedBinFilesPrefixRegistry.rootOf("logfile.x"));
+    assertNull(NodeIdSeparatedBinFilesPrefixRegistry.rootOf("node/logfile.x"));
+  }
+
+  @Test
+  void testClosedBlockIsServedFromCache() {
+    storeManifest("e1", Instant.ofEpochMilli(now.get() - 2 * HOUR), ROOT + "/n/a", ROOT + "/n/b");
+    var first = registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    now.addAndGet(HOUR);
+    var second = registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    assertEquals(List.of(ROOT + "/n/a", ROOT + "/n/b"), first);
+    assertEquals(first, second);
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+    verifyNeverListed();
+  }
+
+  @Test
+  void testClosedBlockSeesLateUploadOfAnotherNodeAfterClosedTtl() {
+    var quietSince = Instant.ofEpochMilli(now.get() - 2 * HOUR);
+    storeManifest("e1", quietSince, ROOT + "/n/a");
+    registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+
+    storeManifest("e2", Instant.ofEpochMilli(now.get()), ROOT + "/n/a", ROOT + "/m/b");
+    now.addAndGet(HOUR);
+    var keys = registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    assertEquals(List.of(ROOT + "/n/a"), keys);
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+
+    now.addAndGet(24 * HOUR);
+    keys = registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    assertEquals(List.of(ROOT + "/n/a", ROOT + "/m/b"), keys);
+    verify(s3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+    verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+    verifyNeverListed();
+  }
+
+  @Test
+  void testOpenBlockIsReadAgainAfterTtl() {
+    storeManifest("e1", Instant.ofEpochMilli(now.get()), ROOT + "/n/a");
+    registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    now.addAndGet(10_000);
+    registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    now.addAndGet(30_000);
+    registry.getAllPrefixesForLogBinFile(BUCKET, "logs", "s1", "logfile", 10);
+    verify(s3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+  }
+
+  @Test
+  void testRegisterUploadAppendsToManifest() {
+    storeManifest("e1", Instant.ofEpochMilli(now.get()), ROOT + "/n/a");
+    registry.registerUpload(BUCKET, ROOT + "/node-1/logfile.b", 42, 3);
+
+    var request = ArgumentCaptor.forClass(PutObjectRequest.class);
+    var body = ArgumentCaptor.forClass(RequestBody.class);
+    verify(s3Client).putObject(request.capture(), body.capture());
+    var manifestKey = ROOT + NodeIdSeparatedBinFilesPrefixRegistry.MANIFEST_SUFFIX;
+    assertEquals(manifestKey, request.getValue().key());
+    assertEquals("e1", request.getValue().ifMatch());
+    var json = readBody(body.getValue());
+    assertTrue(json.contains(ROOT + "/n/a"));
+    assertTrue(json.contains("\"key\":\"" + ROOT + "/node-1/logfile.b\",\"bytes\":42,\"pages\":3"));
+    verifyNeverListed();
+  }
+
+  static String readBody(RequestBody body) {
+    try (var in = body.contentStreamProvider().newStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.abstractio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TrigramUtilTests {
+
+  static List<Integer> collect(String s) {
+    var out = new ArrayList<Integer>();
+    TrigramUtil.forEachAsciiTrigram(s, out::add);
+    return out;
+  }
+
+  @Test
+  void testEmitsEveryWindowInOrder() {
+    assertEquals(
+        List.of(
+            TrigramUtil.getTrigramIndex('a', 'b', 'c'),
+            TrigramUtil.getTrigramIndex('b', 'c', 'd'),
+            TrigramUtil.getTrigramIndex('c', 'd', 'a'),
+            TrigramUtil.getTrigramIndex('d', 'a', 'b'),
+            TrigramUtil.getTrigramIndex('a', 'b', 'c')),
+        collect("abcdabc"));
+    assertEquals(List.of(), collect("ab"));
+    assertEquals(List.of(), collect(null));
+  }
+
+  @Test
+  void testSkipsWindowsWithNonAsciiChars() {
+    assertEquals(
+        List.of(
+            TrigramUtil.getTrigramIndex('a', 'b', 'c'),
+            TrigramUtil.getTrigramIndex('d', 'e', 'f')),
+        collect("abc\u00e9def"));
+  }
+
+  @Test
+  void testDistinctDropsRepeatsPerCall() {
+    var seen = new TrigramSet();
+    var out = new ArrayList<Integer>();
+    TrigramUtil.forEachDistinctAsciiTrigram("abcabcabc", seen, out::add);
+    assertEquals(3, out.size());
+    // the set is cleared between documents.
+    TrigramUtil.forEachDistinctAsciiTrigram("abc", seen, out::add);
+    assertEquals(4, out.size());
+  }
+
+  @Test
+  void testSetGrowsAndClears() {
+    var set = new TrigramSet(4);
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue(set.add(i * 31));
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertFalse(set.add(i * 31));
+      assertTrue(set.contains(i * 31));
+    }
+    assertEquals(10_000, set.size());
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(31));
+    assertTrue(set.add(31));
+  }
+}
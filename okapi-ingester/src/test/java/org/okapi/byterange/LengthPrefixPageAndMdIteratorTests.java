@@ -5,9 +5,12 @@
 package org.okapi.byterange;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.okapi.ds.ArraySlices;
 import org.okapi.io.OkapiIo;
@@ -75,4 +78,24 @@ public class LengthPrefixPageAndMdIteratorTests {
     var pageFromIter2 = iterator.readPageBody();
     assertArrayEquals(page2, pageFromIter2);
   }
+
+  @Test
+  void testPrefetchesNextHeader() throws IOException, RangeIterationException {
+    var block1 = getDataBlock(new byte[] {0x0, 0x1}, new byte[] {0x2, 0x3, 0x4});
+    var block2 = getDataBlock(new byte[] {0x5, 0x6}, new byte[] {0x7, 0x8, 0x9});
+    var prefetched = new ArrayList<Long>();
+    var supplier =
+        new ByteArrayByteRangeSupplier(ArraySlices.concat(block1, block2)) {
+          @Override
+          public void prefetch(long start, int len) {
+            prefetched.add(start);
+          }
+        };
+    var iterator = new LengthPrefixPageAndMdIterator(supplier);
+    iterator.readMetadata();
+    assertEquals(List.of((long) block1.length), prefetched);
+    iterator.forward();
+    iterator.readMetadata();
+    assertEquals(1, prefetched.size());
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.byterange;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.okapi.byterange.LengthPrefixPageAndMdIteratorTests.getDataBlock;
+import static org.okapi.byterange.LengthPrefixPageAndMdIteratorTests.getLenPrefixMd;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.okapi.ds.ArraySlices;
+import org.okapi.s3.ByteArrayByteRangeSupplier;
+import org.okapi.s3.ByteRangeSupplier;
+
+public class PageFooterTests {
+
+  static byte[] twoPages() throws IOException {
+    return ArraySlices.concat(
+        getDataBlock(new byte[] {0x0, 0x1}, new byte[] {0x2, 0x3, 0x4}),
+        getDataBlock(new byte[] {0x5}, new byte[] {0x6, 0x7}));
+  }
+
+  static byte[] sealed(byte[] pages) {
+    var footer = PageFooter.scan(new ByteArrayByteRangeSupplier(pages)).orElseThrow();
+    return ArraySlices.concat(pages, footer.serialize());
+  }
+
+  static class CountingSupplier extends ByteArrayByteRangeSupplier {
+    final AtomicInteger requests = new AtomicInteger();
+
+    CountingSupplier(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public byte[] getBytes(long start, int len) {
+      requests.incrementAndGet();
+      return super.getBytes(start, len);
+    }
+  }
+
+  @Test
+  void testScanIndexesEveryPage() throws IOException {
+    var footer = PageFooter.scan(new ByteArrayByteRangeSupplier(twoPages())).orElseThrow();
+    var pages = footer.getPages();
+    assertEquals(2, pages.size());
+    assertEquals(0, pages.get(0).offset());
+    assertEquals(17, pages.get(1).offset());
+    assertEquals(1, pages.get(1).mdLen());
+    assertEquals(2, pages.get(1).bodyLen());
+    assertArrayEquals(getLenPrefixMd(new byte[] {0x5}, 2), pages.get(1).metadata());
+  }
+
+  @Test
+  void testScanRejectsNonPagedFiles() {
+    assertTrue(PageFooter.scan(new ByteArrayByteRangeSupplier("BIN A".getBytes())).isEmpty());
+    var garbage = new byte[32];
+    assertTrue(PageFooter.scan(new ByteArrayByteRangeSupplier(garbage)).isEmpty());
+  }
+
+  @Test
+  void testReadsFooterInOneRequest() throws IOException, RangeIterationException {
+    var supplier = new CountingSupplier(sealed(twoPages()));
+    var footer = PageFooter.read(supplier).orElseThrow();
+    assertEquals(1, supplier.requests.get());
+    assertEquals(2, footer.getPages().size());
+    assertEquals(twoPages().length, footer.getDataEnd());
+  }
+
+  @Test
+  void testReadsLargeFooterWithSecondRequest() throws IOException, RangeIterationException {
+    var supplier = new CountingSupplier(sealed(twoPages()));
+    var footer = PageFooter.read(supplier, 8).orElseThrow();
+    assertEquals(2, supplier.requests.get());
+    assertEquals(2, footer.getPages().size());
+  }
+
+  @Test
+  void testNoFooter() throws IOException, RangeIterationException {
+    ByteRangeSupplier supplier = new ByteArrayByteRangeSupplier(twoPages());
+    assertTrue(PageFooter.read(supplier).isEmpty());
+  }
+
+  @Test
+  void testIteratorOnlyReadsBodies() throws IOException, RangeIterationException {
+    var supplier = new CountingSupplier(sealed(twoPages()));
+    var footer = PageFooter.read(supplier).orElseThrow();
+    supplier.requests.set(0);
+
+    var iterator = new LengthPrefixPageAndMdIterator(supplier, footer);
+    assertTrue(iterator.hasNextPage());
+    assertArrayEquals(getLenPrefixMd(new byte[] {0x0, 0x1}, 3), iterator.readMetadata());
+    iterator.forward();
+    assertArrayEquals(getLenPrefixMd(new byte[] {0x5}, 2), iterator.readMetadata());
+    assertArrayEquals(new byte[] {0x6, 0x7}, iterator.readPageBody());
+    iterator.forward();
+    assertFalse(iterator.hasNextPage());
+    assertEquals(1, supplier.requests.get());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class ChBatchSizerTests {
+  AtomicLong now = new AtomicLong(1_000);
+
+  ChBatchSizer sizer(long targetBytes) {
+    return new ChBatchSizer(100, 10, 1_000, targetBytes, 500, 200, now::get);
+  }
+
+  @Test
+  void growsWhileFullBatchesInsertQuickly() {
+    var sizer = sizer(Long.MAX_VALUE);
+    sizer.onInserted(100, 10_000, 50);
+    assertEquals(125, sizer.getBatchEntries());
+    for (int i = 0; i < 50; i++) {
+      sizer.onInserted(sizer.getBatchEntries(), 10_000, 50);
+    }
+    assertEquals(1_000, sizer.getBatchEntries());
+  }
+
+  @Test
+  void keepsSizeForPartialBatches() {
+    var sizer = sizer(Long.MAX_VALUE);
+    sizer.onInserted(40, 4_000, 50);
+    assertEquals(100, sizer.getBatchEntries());
+  }
+
+  @Test
+  void shrinksOnSlowInserts() {
+    var sizer = sizer(Long.MAX_VALUE);
+    sizer.onInserted(100, 10_000, 2_000);
+    assertEquals(50, sizer.getBatchEntries());
+    for (int i = 0; i < 10; i++) {
+      sizer.onInserted(sizer.getBatchEntries(), 10_000, 2_000);
+    }
+    assertEquals(10, sizer.getBatchEntries());
+  }
+
+  @Test
+  void capsAtByteCeiling() {
+    var sizer = sizer(20_000);
+    // 1000 bytes per entry, so at most 20 entries fit.
+    sizer.onInserted(100, 100_000, 50);
+    assertEquals(20, sizer.getBatchEntries());
+  }
+
+  @Test
+  void lingersUntilBatchIsFullOrTimeout() {
+    var sizer = sizer(Long.MAX_VALUE);
+    assertFalse(sizer.shouldConsume(0));
+    assertFalse(sizer.shouldConsume(5));
+    assertTrue(sizer.shouldConsume(100));
+    assertFalse(sizer.shouldConsume(5));
+    now.addAndGet(200);
+    assertTrue(sizer.shouldConsume(5));
+  }
+
+  @Test
+  void fixedNeverLingersOrResizes() {
+    var sizer = ChBatchSizer.fixed(64);
+    assertTrue(sizer.shouldConsume(1));
+    sizer.onInserted(64, 1_000, 100_000);
+    assertEquals(64, sizer.getBatchEntries());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.clickhouse.client.api.insert.InsertResponse;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.okapi.metrics.ch.ChWriter;
+import org.okapi.wal.lsn.Lsn;
+import org.okapi.wal.manager.WalManager;
+
+public class ChInsertPipelineTests {
+  static final ChTableSchema<Long> TABLE_A =
+      new ChTableSchema<>("a", (v, out) -> out.writeInt64(v));
+  static final ChTableSchema<Long> TABLE_B =
+      new ChTableSchema<>("b", (v, out) -> out.writeInt64(v));
+
+  ChWriter writer;
+  WalManager walManager;
+
+  @BeforeEach
+  void setup() {
+    writer = mock(ChWriter.class);
+    walManager = mock(WalManager.class);
+  }
+
+  @Test
+  void commitsEachBatchInOrder() throws IOException, InterruptedException {
+    when(writer.writeRowBinary(any(String.class), any(ChRowBinaryWriter.class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(InsertResponse.class)));
+    var pipeline = new ChInsertPipeline(writer, walManager, 2, 3, 1, 1);
+
+    for (long i = 1; i <= 3; i++) {
+      var batch = pipeline.acquire();
+      batch.add(TABLE_A, i);
+      pipeline.submit(batch, Lsn.fromNumber(i), 1);
+    }
+    assertTrue(pipeline.drain());
+
+    var order = inOrder(walManager);
+    order.verify(walManager).commitLsn(Lsn.fromNumber(1));
+    order.verify(walManager).commitLsn(Lsn.fromNumber(2));
+    order.verify(walManager).commitLsn(Lsn.fromNumber(3));
+    assertEquals(0, pipeline.inFlight());
+  }
+
+  @Test
+  void retriesOnlyFailedTables() throws IOException, InterruptedException {
+    when(writer.writeRowBinary(eq("a"), any(ChRowBinaryWriter.class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(InsertResponse.class)));
+    when(writer.writeRowBinary(eq("b"), any(ChRowBinaryWriter.class)))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("boom")))
+        .thenReturn(CompletableFuture.completedFuture(mock(InsertResponse.class)));
+    var pipeline = new ChInsertPipeline(writer, walManager, 1, 3, 1, 1);
+
+    var batch = pipeline.acquire();
+    batch.add(TABLE_A, 1L);
+    batch.add(TABLE_B, 2L);
+    pipeline.submit(batch, Lsn.fromNumber(7), 1);
+    assertTrue(pipeline.drain());
+
+    verify(writer, times(1)).writeRowBinary(eq("a"), any(ChRowBinaryWriter.class));
+    verify(writer, times(2)).writeRowBinary(eq("b"), any(ChRowBinaryWriter.class));
+    verify(walManager).commitLsn(Lsn.fromNumber(7));
+  }
+
+  @Test
+  void holdsBackCommitUntilFailedBatchSucceeds() throws IOException, InterruptedException {
+    when(writer.writeRowBinary(any(String.class), any(ChRowBinaryWriter.class)))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("down")))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("down")))
+        .thenReturn(CompletableFuture.completedFuture(mock(InsertResponse.class)));
+    var pipeline = new ChInsertPipeline(writer, walManager, 1, 2, 1, 1);
+
+    var batch = pipeline.acquire();
+    batch.add(TABLE_A, 1L);
+    pipeline.submit(batch, Lsn.fromNumber(1), 1);
+
+    assertFalse(pipeline.drain());
+    assertTrue(pipeline.isParked());
+    assertNull(pipeline.acquire());
+    verify(walManager, never()).commitLsn(any());
+
+    assertTrue(pipeline.drain());
+    verify(walManager).commitLsn(Lsn.fromNumber(1));
+    assertNotNull(pipeline.acquire());
+  }
+}
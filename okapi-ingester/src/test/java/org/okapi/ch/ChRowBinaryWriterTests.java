@@ -0,0 +1,84 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.okapi.metrics.ch.CH_SUM_TYPE;
+import org.okapi.metrics.ch.ChMetricsTableSchemas;
+import org.okapi.metrics.ch.ChSumSampleRow;
+
+public class ChRowBinaryWriterTests {
+
+  @Test
+  void encodesScalarsLittleEndianWithValueMarkers() throws IOException {
+    var out = new ChRowBinaryWriter(4);
+    out.writeInt32(0x01020304).writeInt64(1L).writeString("ab").useDefault();
+
+    var bytes = out.toInputStream().readAllBytes();
+    assertArrayEquals(
+        new byte[] {
+          0, 4, 3, 2, 1, // Int32
+          0, 1, 0, 0, 0, 0, 0, 0, 0, // Int64
+          0, 2, 'a', 'b', // String
+          1 // default
+        },
+        bytes);
+  }
+
+  @Test
+  void encodesNullablesAndMaps() throws IOException {
+    var out = new ChRowBinaryWriter();
+    var tags = new TreeMap<String, String>();
+    tags.put("k", "v");
+    out.writeNullableInt32(null).writeNullableInt32(7).writeStringMap(tags).writeStringMap(null);
+
+    var bytes = out.toInputStream().readAllBytes();
+    assertArrayEquals(
+        new byte[] {0, 1, 0, 0, 7, 0, 0, 0, 0, 1, 1, 'k', 1, 'v', 0, 0}, bytes);
+  }
+
+  @Test
+  void encodesLongStringLengthsAsVarints() throws IOException {
+    var out = new ChRowBinaryWriter(1);
+    out.writeString("x".repeat(300));
+
+    var bytes = out.toInputStream().readAllBytes();
+    assertEquals(1 + 2 + 300, bytes.length);
+    assertEquals((byte) 0xAC, bytes[1]);
+    assertEquals((byte) 0x02, bytes[2]);
+  }
+
+  @Test
+  void sumRowUsesDefaultsForTimeBuckets() throws IOException {
+    var batch = new ChInsertBatch();
+    var row =
+        ChSumSampleRow.builder()
+            .metricName("m")
+            .tags(new TreeMap<>())
+            .tsStart(1)
+            .tsEnd(2)
+            .value(3)
+            .sumType(CH_SUM_TYPE.CUMULATIVE)
+            .build();
+    batch.add(ChMetricsTableSchemas.SUMS, row);
+
+    var rows = batch.getTables().get(ChMetricsTableSchemas.SUMS.getTable());
+    var bytes = rows.toInputStream().readAllBytes();
+    // metric_name, tags, ts_start, ts_end, value, sums_type, then 4 defaulted columns
+    assertEquals(3 + 2 + 9 + 9 + 9 + 2 + 4, bytes.length);
+    assertEquals(2, bytes[bytes.length - 5]);
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(1, bytes[bytes.length - i]);
+    }
+
+    batch.reset();
+    assertTrue(batch.isEmpty());
+    assertTrue(batch.getTables().isEmpty());
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.ch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.clickhouse.client.api.Client;
+import com.google.inject.Guice;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.okapi.metrics.ch.ChConstants;
+import org.okapi.metrics.ch.ChRollup;
+import org.okapi.metrics.ch.ChRollupCatalog;
+import org.okapi.testmodules.guice.TestChMetricsModule;
+
+public class CreateChTablesSpecTests {
+  static final String OLD_META_TABLE = "okapi_metrics.metric_events_stream_meta";
+
+  @TempDir Path tempDir;
+
+  private Client client;
+
+  @BeforeEach
+  void setup() {
+    var injector = Guice.createInjector(new TestChMetricsModule(tempDir.resolve("wal"), 16));
+    client = injector.getInstance(Client.class);
+    CreateChTablesSpec.migrate(client);
+    client.queryAll("DROP TABLE IF EXISTS " + OLD_META_TABLE);
+    client.queryAll(
+        "CREATE TABLE "
+            + OLD_META_TABLE
+            + " (event_type Enum('GAUGE' = 1, 'HISTO' = 2, 'SUM' = 3),"
+            + " metric LowCardinality(String), tags Map(String, String),"
+            + " temporality Nullable(String),"
+            + " ts_start DateTime64(3, 'UTC'), ts_end DateTime64(3, 'UTC'))"
+            + " ENGINE = MergeTree ORDER BY (metric, event_type, toUnixTimestamp(ts_start))");
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
+    client.queryAll(
+        "ALTER TABLE okapi_metrics.schema_migrations DELETE WHERE name = '"
+            + CreateChTablesSpec.BACKFILL_METRIC_SERIES
+            + "' SETTINGS mutations_sync = 1");
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.queryAll("DROP TABLE IF EXISTS " + OLD_META_TABLE);
+  }
+
+  @Test
+  void migrateBackfillsSeriesOfTheOldMetaTableOnce() {
+    client.queryAll(
+        "INSERT INTO "
+            + OLD_META_TABLE
+            + " VALUES"
+            + " ('GAUGE', 'cpu', {'host': 'a'}, NULL, fromUnixTimestamp64Milli(1000, 'UTC'),"
+            + " fromUnixTimestamp64Milli(1000, 'UTC')),"
+            + " ('GAUGE', 'cpu', {'host': 'a'}, NULL, fromUnixTimestamp64Milli(5000, 'UTC'),"
+            + " fromUnixTimestamp64Milli(5000, 'UTC')),"
+            + " ('SUM', 'req', {'host': 'b'}, 'DELTA', fromUnixTimestamp64Milli(2000, 'UTC'),"
+            + " fromUnixTimestamp64Milli(3000, 'UTC'))");
+
+    CreateChTablesSpec.migrate(client);
+    CreateChTablesSpec.migrate(client);
+
+    assertTrue(CreateChTablesSpec.isApplied(client, CreateChTablesSpec.BACKFILL_METRIC_SERIES));
+    var records =
+        client.queryAll(
+            "SELECT metric, tags, event_type, count() AS n,"
+                + " toUnixTimestamp64Milli(min(ts_start)) AS start_ms,"
+                + " toUnixTimestamp64Milli(max(ts_end)) AS end_ms"
+                + " FROM "
+                + ChConstants.TBL_METRIC_SERIES
+                + " GROUP BY metric, tags, event_type");
+    var windows = new HashMap<String, String>();
+    for (var record : records) {
+      assertEquals(1, record.getLong("n"));
+      windows.put(
+          record.getString("metric") + record.getObject("tags") + record.getString("event_type"),
+          record.getLong("start_ms") + "-" + record.getLong("end_ms"));
+    }
+    assertEquals(Map.of("cpu{host=a}GAUGE", "1000-5000", "req{host=b}SUM", "2000-3000"), windows);
+  }
+
+  @Test
+  void rollupCoverageDoesNotMoveOnLaterMigrations() {
+    var before = new ChRollupCatalog(client).coveredFrom(ChRollup.GAUGES_1M);
+    assertTrue(before < Long.MAX_VALUE);
+    CreateChTablesSpec.migrate(client);
+    assertEquals(before, new ChRollupCatalog(client).coveredFrom(ChRollup.GAUGES_1M));
+  }
+}
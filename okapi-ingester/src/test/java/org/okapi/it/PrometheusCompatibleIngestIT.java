@@ -89,7 +89,7 @@ public class PrometheusCompatibleIngestIT {
     chClient.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES);
     chClient.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_HISTOS);
     chClient.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_SUM);
-    chClient.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_EVENTS_META);
+    chClient.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
   }
 
   @Test
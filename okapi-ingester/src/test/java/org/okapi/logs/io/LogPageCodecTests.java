@@ -8,11 +8,15 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.okapi.abstractio.TrigramUtil;
 import org.okapi.io.NotEnoughBytesException;
 import org.okapi.io.StreamReadingException;
+import org.okapi.logs.query.RegexPageFilter;
+import org.roaringbitmap.RoaringBitmap;
 
 @Slf4j
 public class LogPageCodecTests {
@@ -91,4 +95,30 @@ public class LogPageCodecTests {
     var deserialized = maybeDeserialized.get();
     assertEquals(2, deserialized.getNDocs());
   }
+
+  @Test
+  void testSealedPageCarriesTrigramPostings()
+      throws IOException, StreamReadingException, NotEnoughBytesException {
+    var logPage =
+        LogPage.builder().expectedInsertions(100).maxSizeBytes(1000).maxRangeMs(2000L).build();
+    var now = Instant.now().toEpochMilli();
+    logPage.append(new LogIngestRecord(now, "trace-a", 10, "request served"));
+    logPage.append(new LogIngestRecord(now, "trace-b", 40, "disk error on sda"));
+    logPage.append(new LogIngestRecord(now, "trace-c", 30, "slow disk warning"));
+
+    var codec = new LogPageNonChecksummedCodec();
+    var deserialized = codec.deserialize(codec.serialize(logPage)).orElseThrow();
+    var postings = deserialized.getPageBody().getTrigramPostings();
+    assertNotNull(postings);
+    assertEquals(List.of(1), toList(postings.docsWith(TrigramUtil.getTrigramIndex('e', 'r', 'r'))));
+    assertEquals(List.of(1, 2), toList(new RegexPageFilter("disk").candidateDocs(postings)));
+    assertEquals(List.of(1, 2), toList(new RegexPageFilter("error|warn").candidateDocs(postings)));
+    assertNull(new RegexPageFilter("e.*r|served").candidateDocs(postings));
+  }
+
+  static List<Integer> toList(RoaringBitmap bitmap) {
+    var out = new ArrayList<Integer>();
+    bitmap.forEach((int doc) -> out.add(doc));
+    return out;
+  }
 }
@@ -4,8 +4,11 @@
  */
 package org.okapi.logs.runtime;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -19,9 +22,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.okapi.abstractio.BinFilesPrefixRegistry;
 import org.okapi.abstractio.DiskLogBinPaths;
 import org.okapi.runtime.GenericS3Uploader;
+import org.okapi.runtime.S3UploadOptions;
 import org.okapi.spring.configs.properties.LogsCfgImpl;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 @ExtendWith(MockitoExtension.class)
 class GenericS3UploaderTest {
@@ -125,4 +135,54 @@ class GenericS3UploaderTest {
     svc.writeAcknowledgement(pathA);
     Assertions.assertTrue(svc.isAlreadyUploaded(pathA));
   }
+
+  @Test
+  void testLargeFilesAreUploadedInParts() throws IOException {
+    var partSize = (int) S3UploadOptions.MIN_PART_SIZE_BYTES;
+    Files.write(pathA, new byte[2 * partSize + 10]);
+    var registry = new SimpleMeterRegistry();
+    var multipart =
+        new GenericS3Uploader(
+            cfg.getS3Bucket(),
+            cfg.getS3BasePrefix(),
+            cfg.getIdxExpiryDuration(),
+            s3Client,
+            binPaths,
+            prefixRegistry,
+            "logfile.bin",
+            new S3UploadOptions(2, 2, partSize, partSize),
+            registry);
+    when(binPaths.listAllPaths())
+        .thenReturn(
+            java.util.List.of(
+                new DiskLogBinPaths.TimestampedBinFile(
+                    "tA", "sA", pathA, expiredHour, expiredHour * cfg.getIdxExpiryDuration())));
+    when(prefixRegistry.getRootPrefixForLogBinFileForMe(
+            cfg.getS3BasePrefix(), "tA", "sA", "logfile.bin", expiredHour))
+        .thenReturn("logs/tA/sA/node-1/" + expiredHour + "/logfile.bin");
+    when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            inv -> {
+              UploadPartRequest request = inv.getArgument(0);
+              return UploadPartResponse.builder().eTag("e" + request.partNumber()).build();
+            });
+
+    multipart.uploadBlock();
+
+    verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    verify(s3Client)
+        .completeMultipartUpload(
+            argThat(
+                (CompleteMultipartUploadRequest request) ->
+                    request.uploadId().equals("u1")
+                        && request.multipartUpload().parts().size() == 3
+                        && request.multipartUpload().parts().get(2).eTag().equals("e3")));
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(Path.class));
+    Assertions.assertTrue(multipart.isAlreadyUploaded(pathA));
+    Assertions.assertEquals(
+        Files.size(pathA),
+        registry.get("okapi.s3.upload.bytes").tag("part", "logfile.bin").counter().count());
+  }
 }
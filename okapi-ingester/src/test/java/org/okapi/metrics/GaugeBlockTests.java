@@ -5,8 +5,10 @@
 package org.okapi.metrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.okapi.fixtures.GaugeGenerator;
@@ -177,4 +179,66 @@ public class GaugeBlockTests {
       }
     }
   }
+
+  @Test
+  void testGaugeBlock_rollupFollowsLateSamples() {
+    var block = new GaugeBlock();
+    block.updateStats(60_000L, 0.01f);
+    assertEquals(1.0f, block.getHourlyStat(0L, new double[] {0.0}).getCount());
+    block.updateStats(61_000L, 0.03f);
+    block.updateStats(3_000L, 0.05f);
+
+    var minutely = block.getMinutelyStat(1L, new double[] {0.0});
+    assertEquals(2.0f, minutely.getCount());
+    assertEquals(0.02f, minutely.getMean(), 0.0001f);
+    var hourly = block.getHourlyStat(0L, new double[] {0.0});
+    assertEquals(3.0f, hourly.getCount());
+    assertEquals(0.03f, hourly.getMean(), 0.0001f);
+    assertEquals(0.01f, hourly.getQuantile(0.0));
+  }
+
+  @Test
+  void testGaugeBlock_rollupWhileIngesting() throws Exception {
+    var block = new GaugeBlock();
+    var minutes = 5;
+    var perSecond = 20;
+    var done = new AtomicBoolean();
+    var reader =
+        new Thread(
+            () -> {
+              while (!done.get()) {
+                for (long minute = 0; minute < minutes; minute++) {
+                  block.getMinutelyStat(minute, new double[] {0.0});
+                }
+                block.getHourlyStat(0L, new double[] {0.0});
+              }
+            });
+    reader.start();
+    try {
+      for (long second = 0; second < minutes * 60; second++) {
+        for (int i = 0; i < perSecond; i++) {
+          block.updateStats(second * 1000 + i, 1.0f);
+        }
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+
+    for (long minute = 0; minute < minutes; minute++) {
+      var minutely = block.getMinutelyStat(minute, new double[] {0.0});
+      assertEquals(60.0f * perSecond, minutely.getCount(), "minute " + minute);
+    }
+    var hourly = block.getHourlyStat(0L, new double[] {0.0});
+    assertEquals(minutes * 60.0f * perSecond, hourly.getCount());
+  }
+
+  @Test
+  void testGaugeBlock_sizeEstimateGrowsWithSamples() {
+    var block = new GaugeBlock();
+    var first = block.updateStats(1000L, 0.01f);
+    var second = block.updateStats(1000L, 0.02f);
+    assertTrue(first > second);
+    assertEquals(4, second);
+  }
 }
@@ -10,12 +10,14 @@ import com.clickhouse.client.api.Client;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.okapi.ch.CreateChTablesSpec;
+import org.okapi.metrics.ch.template.ChMetricTemplateEngine;
 import org.okapi.metrics.pojos.AGG_TYPE;
 import org.okapi.metrics.pojos.RES_TYPE;
 import org.okapi.rest.metrics.query.GaugeQueryConfig;
@@ -225,7 +227,75 @@ public class ChGaugeTests {
     assertEquals(7.0f, resp.getSeries().get(0).getValues().getFirst());
   }
 
+  @Test
+  void rollupsAnswerLikeRawSamples() throws Exception {
+    var ingester = injector.getInstance(ChMetricsIngester.class);
+    var driver = injector.getInstance(ChMetricsWalConsumerDriver.class);
+    var templateEngine = injector.getInstance(ChMetricTemplateEngine.class);
+    var raw =
+        new GaugeQueryProcessor(client, templateEngine, new ChRollupCatalog(r -> Long.MAX_VALUE));
+    var rolledUp = new GaugeQueryProcessor(client, templateEngine, new ChRollupCatalog(r -> 0L));
+
+    var times = new ArrayList<Long>();
+    var values = new ArrayList<Double>();
+    for (long ts = 0; ts < 3 * 3_600_000L; ts += 17_000L) {
+      times.add(ts);
+      values.add((double) (ts / 17_000L % 11));
+    }
+    ingester.ingestOtelProtobuf(
+        otelFactory.buildGaugeRequest("svc-7", "metric_rolled_up", times, values));
+    driver.onTick();
+
+    for (var resType : List.of(RES_TYPE.MINUTELY, RES_TYPE.HOURLY)) {
+      for (var aggType :
+          List.of(AGG_TYPE.AVG, AGG_TYPE.SUM, AGG_TYPE.MIN, AGG_TYPE.MAX, AGG_TYPE.COUNT)) {
+        var req =
+            GetMetricsRequest.builder()
+                .metric("metric_rolled_up")
+                .tags(Map.of("env", "dev", "test-session", testSession))
+                .start(5_000)
+                .end(2 * 3_600_000L + 7 * 60_000L + 3_000L)
+                .metricType(METRIC_TYPE.GAUGE)
+                .gaugeQueryConfig(new GaugeQueryConfig(resType, aggType))
+                .build();
+        var expected = raw.getGaugeRes(req).getGaugeResponse().getSeries().get(0);
+        var actual = rolledUp.getGaugeRes(req).getGaugeResponse().getSeries().get(0);
+        assertEquals(expected.getTimes(), actual.getTimes(), resType + " " + aggType);
+        for (int i = 0; i < expected.getValues().size(); i++) {
+          assertEquals(
+              expected.getValues().get(i),
+              actual.getValues().get(i),
+              1e-3f,
+              resType + " " + aggType);
+        }
+      }
+    }
+  }
+
+  @Test
+  void rollupsKeepSeriesWithoutFingerprintApart() {
+    client.queryAll(
+        "INSERT INTO okapi_metrics.gauge_raw_samples (timestamp, metric, tags, value) VALUES"
+            + " (toDateTime64(1.5, 3, 'UTC'), 'metric_legacy', map('host', 'a'), 1),"
+            + " (toDateTime64(2.5, 3, 'UTC'), 'metric_legacy', map('host', 'b'), 2),"
+            + " (toDateTime64(3.5, 3, 'UTC'), 'metric_legacy', map('host', 'b'), 4)");
+    var records =
+        client.queryAll(
+            "SELECT tags['host'] AS host, sum(samples) AS samples, sum(total) AS total FROM "
+                + ChConstants.TBL_GAUGES_1M
+                + " WHERE metric = 'metric_legacy' AND fingerprint = 0"
+                + " GROUP BY host ORDER BY host");
+    assertEquals(2, records.size());
+    assertEquals("a", records.get(0).getString("host"));
+    assertEquals(1L, records.get(0).getLong("samples"));
+    assertEquals("b", records.get(1).getString("host"));
+    assertEquals(2L, records.get(1).getLong("samples"));
+    assertEquals(6.0, records.get(1).getDouble("total"), 1e-9);
+  }
+
   private void truncateGaugeTable() {
     client.queryAll("TRUNCATE TABLE IF EXISTS okapi_metrics.gauge_raw_samples");
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES_1M);
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES_1H);
   }
 }
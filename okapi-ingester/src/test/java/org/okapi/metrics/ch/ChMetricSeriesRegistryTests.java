@@ -0,0 +1,74 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+public class ChMetricSeriesRegistryTests {
+  static final long MINUTE = 60_000L;
+  static final Map<String, String> TAGS = Map.of("env", "dev", "host", "a");
+
+  ChMetricSeriesRow observe(ChMetricSeriesRegistry registry, long tsStart, long tsEnd) {
+    var fingerprint = ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", TAGS);
+    return registry.observe(fingerprint, METRIC_TYPE.GAUGE, "cpu", TAGS, null, tsStart, tsEnd);
+  }
+
+  @Test
+  void testEmitsOncePerBucket() {
+    var registry = new ChMetricSeriesRegistry(Duration.ofMinutes(15), 100);
+    var first = observe(registry, 16 * MINUTE, 16 * MINUTE);
+    assertNotNull(first);
+    assertEquals(15 * MINUTE, first.getTsStart());
+    assertEquals(30 * MINUTE - 1, first.getTsEnd());
+
+    for (long ts = 17 * MINUTE; ts < 30 * MINUTE; ts += MINUTE) {
+      assertNull(observe(registry, ts, ts));
+    }
+
+    var extended = observe(registry, 31 * MINUTE, 31 * MINUTE);
+    assertNotNull(extended);
+    assertEquals(15 * MINUTE, extended.getTsStart());
+    assertEquals(45 * MINUTE - 1, extended.getTsEnd());
+
+    var late = observe(registry, 2 * MINUTE, 2 * MINUTE);
+    assertNotNull(late);
+    assertEquals(0, late.getTsStart());
+    assertEquals(45 * MINUTE - 1, late.getTsEnd());
+  }
+
+  @Test
+  void testForgetsLeastRecentlySeenSeries() {
+    var registry = new ChMetricSeriesRegistry(Duration.ofMinutes(15), 1);
+    assertNotNull(observe(registry, MINUTE, MINUTE));
+    var other = ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "mem", TAGS);
+    assertNotNull(registry.observe(other, METRIC_TYPE.GAUGE, "mem", TAGS, null, MINUTE, MINUTE));
+    assertEquals(1, registry.size());
+    assertNotNull(observe(registry, MINUTE, MINUTE));
+  }
+
+  @Test
+  void testFingerprintIgnoresTagOrderButNotType() {
+    var ordered = new LinkedHashMap<String, String>();
+    ordered.put("b", "2");
+    ordered.put("a", "1");
+    var sorted = new TreeMap<>(ordered);
+    assertEquals(
+        ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", ordered),
+        ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", sorted));
+    assertNotEquals(
+        ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", sorted),
+        ChSeriesFingerprint.of(METRIC_TYPE.SUM, "cpu", sorted));
+    assertNotEquals(
+        ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", Map.of("a", "bc")),
+        ChSeriesFingerprint.of(METRIC_TYPE.GAUGE, "cpu", Map.of("ab", "c")));
+  }
+}
@@ -54,7 +54,7 @@ public class ChMetricsHintsTests {
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES);
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_HISTOS);
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_SUM);
-    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_EVENTS_META);
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
   }
 
   @Test
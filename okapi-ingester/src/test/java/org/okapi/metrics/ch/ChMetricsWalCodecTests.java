@@ -0,0 +1,231 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.okapi.io.StreamReadingException;
+import org.okapi.rest.common.AnyValueJson;
+import org.okapi.rest.common.KeyValueJson;
+import org.okapi.rest.common.NumberValue;
+import org.okapi.rest.metrics.Exemplar;
+import org.okapi.rest.metrics.ExportMetricsRequest;
+import org.okapi.rest.metrics.MetricType;
+import org.okapi.rest.metrics.payloads.Gauge;
+import org.okapi.rest.metrics.payloads.Histo;
+import org.okapi.rest.metrics.payloads.HistoPoint;
+import org.okapi.rest.metrics.payloads.SUM_TEMPORALITY;
+import org.okapi.rest.metrics.payloads.Sum;
+import org.okapi.rest.metrics.payloads.SumPoint;
+
+public class ChMetricsWalCodecTests {
+  ChMetricsWalCodec codec = new ChMetricsWalCodec();
+  Gson gson = new Gson();
+
+  @Test
+  void roundTripsGaugeWithExemplars() throws StreamReadingException {
+    var exemplar =
+        Exemplar.builder()
+            .metric("cpu_usage")
+            .tags(Map.of("host", "a"))
+            .tsNanos(1_000_000L)
+            .kv(
+                List.of(
+                    new KeyValueJson("k", AnyValueJson.builder().aString("v").build()),
+                    new KeyValueJson("n", AnyValueJson.builder().anInteger(3L).build())))
+            .measurement(NumberValue.builder().aDouble(0.5).build())
+            .spanId("span")
+            .traceId("trace")
+            .build();
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("cpu_usage")
+            .tags(Map.of("host", "a", "dc", "eu"))
+            .type(MetricType.GAUGE)
+            .unit("percent")
+            .gauge(new Gauge(List.of(1000L, 2000L), List.of(0.1f, 0.2f), List.of(exemplar)))
+            .build();
+
+    assertRoundTrip(request);
+  }
+
+  @Test
+  void roundTripsHistoAndSum() throws StreamReadingException {
+    var histo =
+        ExportMetricsRequest.builder()
+            .metricName("latency")
+            .tags(Map.of("svc", "api"))
+            .type(MetricType.HISTO)
+            .histo(
+                new Histo(
+                    List.of(
+                        new HistoPoint(
+                            1000L,
+                            2000L,
+                            HistoPoint.TEMPORALITY.DELTA,
+                            new float[] {1f, 5f},
+                            new int[] {3, 4, 1}))))
+            .build();
+    var sum =
+        ExportMetricsRequest.builder()
+            .metricName("requests")
+            .tags(Map.of())
+            .type(MetricType.COUNTER)
+            .sum(
+                new Sum(
+                    SUM_TEMPORALITY.CUMULATIVE,
+                    List.of(new SumPoint(1000L, 2000L, 7), new SumPoint(null, 3000L, 9))))
+            .build();
+
+    assertRoundTrip(histo);
+    assertRoundTrip(sum);
+  }
+
+  @Test
+  void decodesLegacyJsonPayloads() throws StreamReadingException {
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("cpu_usage")
+            .tags(Map.of("host", "a"))
+            .type(MetricType.GAUGE)
+            .gauge(new Gauge(List.of(1000L), List.of(0.1f)))
+            .build();
+    var legacy = gson.toJson(request).getBytes();
+
+    var decoded = codec.decode(ByteBuffer.wrap(legacy).asReadOnlyBuffer());
+    assertEquals(gson.toJson(request), gson.toJson(decoded));
+  }
+
+  @Test
+  void visitsBinaryAndLegacyPayloadsAlike() throws StreamReadingException {
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("latency")
+            .tags(Map.of("svc", "api"))
+            .type(MetricType.HISTO)
+            .gauge(
+                new Gauge(
+                    List.of(1000L, 2000L),
+                    List.of(0.1f, 0.2f),
+                    List.of(Exemplar.builder().metric("latency").tsNanos(5L).build())))
+            .histo(
+                new Histo(
+                    List.of(
+                        new HistoPoint(
+                            1000L,
+                            2000L,
+                            HistoPoint.TEMPORALITY.CUMULATIVE,
+                            new float[] {1f},
+                            new int[] {2, 3}))))
+            .sum(new Sum(SUM_TEMPORALITY.DELTA, List.of(new SumPoint(1000L, 2000L, 7))))
+            .build();
+    var expected = new RecordingVisitor();
+    ChMetricsWalCodec.visit(request, expected);
+
+    var binary = new RecordingVisitor();
+    codec.decode(ByteBuffer.wrap(codec.encode(request)).asReadOnlyBuffer(), binary);
+    var legacy = new RecordingVisitor();
+    codec.decode(ByteBuffer.wrap(gson.toJson(request).getBytes()).asReadOnlyBuffer(), legacy);
+
+    assertEquals(6, expected.events.size());
+    assertEquals(expected.events, binary.events);
+    assertEquals(expected.events, legacy.events);
+  }
+
+  @Test
+  void encodesGaugeWithoutSamplesAsEmpty() throws StreamReadingException {
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("cpu_usage")
+            .tags(Map.of("host", "a"))
+            .type(MetricType.GAUGE)
+            .gauge(new Gauge(null, null))
+            .build();
+
+    var decoded = codec.decode(ByteBuffer.wrap(codec.encode(request)));
+    assertEquals(List.of(), decoded.getGauge().getTs());
+    assertEquals(List.of(), decoded.getGauge().getValue());
+  }
+
+  @Test
+  void rejectsGaugeWithMismatchedSamples() {
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("cpu_usage")
+            .tags(Map.of("host", "a"))
+            .type(MetricType.GAUGE)
+            .gauge(new Gauge(List.of(1000L, 2000L), List.of(0.1f)))
+            .build();
+
+    var e = assertThrows(IllegalArgumentException.class, () -> codec.encode(request));
+    assertEquals("Gauge has 2 timestamps but 1 values.", e.getMessage());
+    var legacy = ByteBuffer.wrap(gson.toJson(request).getBytes());
+    assertThrows(
+        StreamReadingException.class, () -> codec.decode(legacy, new RecordingVisitor()));
+  }
+
+  @Test
+  void rejectsTruncatedPayloads() {
+    var request =
+        ExportMetricsRequest.builder()
+            .metricName("cpu_usage")
+            .tags(Map.of("host", "a"))
+            .type(MetricType.GAUGE)
+            .gauge(new Gauge(List.of(1000L), List.of(0.1f)))
+            .build();
+    var encoded = codec.encode(request);
+    var truncated = ByteBuffer.wrap(encoded, 0, encoded.length - 3);
+    assertThrows(StreamReadingException.class, () -> codec.decode(truncated));
+  }
+
+  private void assertRoundTrip(ExportMetricsRequest request) throws StreamReadingException {
+    var encoded = codec.encode(request);
+    // WAL payloads are read-only direct views into the segment mapping.
+    var payload = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip().asReadOnlyBuffer();
+    var decoded = codec.decode(payload);
+    assertEquals(gson.toJson(request), gson.toJson(decoded));
+    assertTrue(encoded.length < gson.toJson(request).getBytes().length);
+  }
+
+  static class RecordingVisitor implements ChMetricsWalCodec.Visitor {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void metric(String metricName, Map<String, String> tags) {
+      events.add("metric " + metricName + " " + tags);
+    }
+
+    @Override
+    public void gaugeSample(long ts, float value) {
+      events.add("gauge " + ts + " " + value);
+    }
+
+    @Override
+    public void histoPoint(
+        long start, long end, HistoPoint.TEMPORALITY temporality, float[] buckets, int[] counts) {
+      events.add(
+          "histo %d %d %s %s %s"
+              .formatted(
+                  start, end, temporality, Arrays.toString(buckets), Arrays.toString(counts)));
+    }
+
+    @Override
+    public void sumPoint(SUM_TEMPORALITY temporality, Long start, Long end, int sum) {
+      events.add("sum " + temporality + " " + start + " " + end + " " + sum);
+    }
+
+    @Override
+    public void exemplar(Exemplar exemplar) {
+      events.add("exemplar " + exemplar.getMetric() + " " + exemplar.getTsNanos());
+    }
+  }
+}
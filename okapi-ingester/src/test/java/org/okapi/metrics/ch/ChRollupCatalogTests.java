@@ -0,0 +1,69 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.metrics.ch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.okapi.ch.CreateChTablesSpec;
+import org.okapi.metrics.ch.ChRollupCatalog.Segment;
+
+public class ChRollupCatalogTests {
+  static final long MIN = 60_000L;
+  static final long HOUR = 60 * MIN;
+  static final List<ChRollup> TIERS = List.of(ChRollup.GAUGES_1H, ChRollup.GAUGES_1M);
+
+  @Test
+  void coarsestTierTakesTheMiddle() {
+    var catalog = new ChRollupCatalog(rollup -> 0L);
+    var start = 10 * HOUR - 90 * MIN - 5_000L;
+    var end = 13 * HOUR + 2 * MIN + 7_000L;
+    assertEquals(
+        List.of(
+            new Segment(null, start, 8 * HOUR + 30 * MIN),
+            new Segment(ChRollup.GAUGES_1M, 8 * HOUR + 30 * MIN, 9 * HOUR),
+            new Segment(ChRollup.GAUGES_1H, 9 * HOUR, 13 * HOUR),
+            new Segment(ChRollup.GAUGES_1M, 13 * HOUR, 13 * HOUR + 2 * MIN),
+            new Segment(null, 13 * HOUR + 2 * MIN, end)),
+        catalog.plan(start, end, TIERS));
+  }
+
+  @Test
+  void uncoveredRangesAreReadRaw() {
+    var catalog =
+        new ChRollupCatalog(
+            rollup -> rollup == ChRollup.GAUGES_1H ? Long.MAX_VALUE : 2 * HOUR + 30 * MIN);
+    assertEquals(
+        List.of(
+            new Segment(null, HOUR, 2 * HOUR + 30 * MIN),
+            new Segment(ChRollup.GAUGES_1M, 2 * HOUR + 30 * MIN, 5 * HOUR)),
+        catalog.plan(HOUR, 5 * HOUR, TIERS));
+    assertEquals(
+        List.of(new Segment(null, HOUR, HOUR + 30_000L)),
+        catalog.plan(HOUR, HOUR + 30_000L, TIERS));
+    assertEquals(List.of(), catalog.plan(HOUR, HOUR, TIERS));
+  }
+
+  @Test
+  void onlyFoundViewsAreCached() {
+    var lookups = new AtomicInteger();
+    var catalog =
+        new ChRollupCatalog(rollup -> lookups.incrementAndGet() == 1 ? Long.MAX_VALUE : 0L);
+    assertEquals(Long.MAX_VALUE, catalog.coveredFrom(ChRollup.GAUGES_1M));
+    assertEquals(0L, catalog.coveredFrom(ChRollup.GAUGES_1M));
+    assertEquals(0L, catalog.coveredFrom(ChRollup.GAUGES_1M));
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  void migrationRecordsEveryRollupView() {
+    for (var rollup : ChRollup.values()) {
+      assertTrue(CreateChTablesSpec.getRollupViews().contains(rollup.getView()), rollup.name());
+    }
+  }
+}
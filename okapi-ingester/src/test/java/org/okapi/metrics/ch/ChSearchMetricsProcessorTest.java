@@ -67,7 +67,7 @@ public class ChSearchMetricsProcessorTest {
     searchProcessor = injector.getInstance(ChSearchMetricsProcessor.class);
 
     CreateChTablesSpec.migrate(client);
-    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_EVENTS_META);
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
 
     ingester = injector.getInstance(ChMetricsIngester.class);
     driver = injector.getInstance(ChMetricsWalConsumerDriver.class);
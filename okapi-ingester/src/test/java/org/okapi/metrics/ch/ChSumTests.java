@@ -15,6 +15,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.okapi.ch.CreateChTablesSpec;
 import org.okapi.chtest.ChTestOnlyUtils;
+import org.okapi.metrics.ch.template.ChMetricTemplateEngine;
+import org.okapi.metrics.pojos.results.SumScan;
+import org.okapi.promql.ch.ChMetricTypeCache;
+import org.okapi.promql.ch.ChPromQlTsClient;
+import org.okapi.promql.eval.VectorData;
+import org.okapi.promql.eval.ts.RESOLUTION;
 import org.okapi.rest.metrics.query.GetMetricsRequest;
 import org.okapi.rest.metrics.query.GetSumsQueryConfig;
 import org.okapi.rest.metrics.query.METRIC_TYPE;
@@ -40,7 +46,7 @@ public class ChSumTests {
     client = injector.getInstance(Client.class);
     CreateChTablesSpec.migrate(client);
     ChTestOnlyUtils.truncateTable(client, ChConstants.TBL_SUM);
-    ChTestOnlyUtils.truncateTable(client, ChConstants.TBL_METRIC_EVENTS_META);
+    ChTestOnlyUtils.truncateTable(client, ChConstants.TBL_METRIC_SERIES);
   }
 
   @Test
@@ -157,6 +163,53 @@ public class ChSumTests {
     assertNull(deltaResp.getSumsResponse());
   }
 
+  @Test
+  void bucketedSumsMatchRawAcrossLegacyAndFingerprintedRows() {
+    var metric = "metric_sum_mixed";
+    var tags = Map.of("host", "a");
+    var fingerprint = ChSeriesFingerprint.of(METRIC_TYPE.SUM, metric, tags);
+    client.queryAll(
+        "INSERT INTO "
+            + ChConstants.TBL_SUM
+            + " (metric_name, tags, ts_start, ts_end, value, sums_type) VALUES"
+            + " ('metric_sum_mixed', map('host', 'a'), toDateTime64(0, 3, 'UTC'),"
+            + " toDateTime64(10, 3, 'UTC'), 100, 'CUMULATIVE'),"
+            + " ('metric_sum_mixed', map('host', 'a'), toDateTime64(0, 3, 'UTC'),"
+            + " toDateTime64(20, 3, 'UTC'), 110, 'CUMULATIVE')");
+    client.queryAll(
+        "INSERT INTO "
+            + ChConstants.TBL_SUM
+            + " (metric_name, tags, ts_start, ts_end, value, sums_type, fingerprint) VALUES"
+            + " ('metric_sum_mixed', map('host', 'a'), toDateTime64(0, 3, 'UTC'),"
+            + " toDateTime64(30, 3, 'UTC'), 120, 'CUMULATIVE', "
+            + Long.toUnsignedString(fingerprint)
+            + "), ('metric_sum_mixed', map('host', 'a'), toDateTime64(0, 3, 'UTC'),"
+            + " toDateTime64(40, 3, 'UTC'), 130, 'CUMULATIVE', "
+            + Long.toUnsignedString(fingerprint)
+            + ")");
+    client.queryAll(
+        "INSERT INTO "
+            + ChConstants.TBL_METRIC_SERIES
+            + " (fingerprint, event_type, metric, tags, temporality, ts_start, ts_end) VALUES ("
+            + Long.toUnsignedString(fingerprint)
+            + ", 'SUM', 'metric_sum_mixed', map('host', 'a'), 'CUMULATIVE',"
+            + " toDateTime64(0, 3, 'UTC'), toDateTime64(40, 3, 'UTC'))");
+
+    var tsClient =
+        new ChPromQlTsClient(
+            client,
+            injector.getInstance(ChMetricTemplateEngine.class),
+            new ChMetricTypeCache(),
+            new ChRollupCatalog(rollup -> Long.MAX_VALUE));
+    var ids = List.of(new VectorData.SeriesId(metric, new VectorData.Labels(tags)));
+    var raw = (SumScan) tsClient.getAll(ids, RESOLUTION.SECONDLY, 0, 40_000).getFirst();
+    var bucketed =
+        (SumScan) tsClient.getAllBucketed(ids, RESOLUTION.SECONDLY, 0, 40_000, 10_000).getFirst();
+    assertEquals(List.of(100, 10, 10, 10), raw.getCounts());
+    assertEquals(raw.getTs(), bucketed.getTs());
+    assertEquals(raw.getCounts(), bucketed.getCounts());
+  }
+
   private ExportMetricsServiceRequest buildSumRequest(
       String resourceName,
       String metricName,
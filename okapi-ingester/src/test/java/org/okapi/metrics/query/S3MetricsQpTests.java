@@ -21,7 +21,8 @@ import org.okapi.metrics.pojos.AGG_TYPE;
 import org.okapi.metrics.pojos.RES_TYPE;
 import org.okapi.metrics.service.GaugeAggregator;
 import org.okapi.rest.metrics.query.GetGaugeResponse;
-import org.okapi.s3.S3ByteRangeCache;
+import org.okapi.s3.ByteRangeCache;
+import org.okapi.s3.ShardedByteRangeCache;
 import org.okapi.testutils.OkapiTestUtils;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -46,8 +47,8 @@ public class S3MetricsQpTests {
         PutObjectRequest.builder().bucket(bucket).key(key).build(), RequestBody.fromBytes(data));
   }
 
-  private static S3ByteRangeCache s3ByteRangeCache() {
-    return new S3ByteRangeCache(1024L);
+  private static ByteRangeCache s3ByteRangeCache(S3Client s3Client) {
+    return new ShardedByteRangeCache(s3Client, 1024L * 1024);
   }
 
   private static GetGaugeResponse gaugeResponse(
@@ -75,7 +76,7 @@ public class S3MetricsQpTests {
         .thenReturn(keys);
 
     var s3Client = OkapiTestUtils.getLocalstackS3Client();
-    var cache = s3ByteRangeCache();
+    var cache = s3ByteRangeCache(s3Client);
     return new S3MetricsQp(new MetricsPageCodec(), cfg, registry, s3Client, cache);
   }
 
@@ -9,6 +9,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.okapi.abstractio.LogStreamIdentifier;
@@ -110,4 +114,103 @@ public class BufferPoolTests {
             });
     bp.close();
   }
+
+  @Test
+  void testAppendAllRotatesEveryFullPage() throws Exception {
+    var pageFlusher = new MockPageFlusher();
+    var pageFactory = new MockPageFactory(1000, 100);
+    var bp = new BufferPool<>(pageFactory, pageFlusher, 10, 100);
+    var sid = new LogStreamIdentifier("stream1");
+    var records =
+        List.of(
+            MockPageInput.builder().tsMillis(1000).content("log1").size(200).build(),
+            MockPageInput.builder().tsMillis(1001).content("log2").size(200).build(),
+            MockPageInput.builder().tsMillis(1002).content("log3").size(10).build());
+    bp.appendAll(
+        sid, List.of(Lsn.fromNumber(1), Lsn.fromNumber(2), Lsn.fromNumber(3)), records);
+
+    assertEquals(2, bp.snapshotSealed(sid, 0, Long.MAX_VALUE).size());
+    // one page per seal plus the active one.
+    assertEquals(3, pageFactory.getApplyCallStack().size());
+    assertEquals(1, bp.snapshotActive(sid).inputs.size());
+    bp.awaitFlushQueueEmpty(1000);
+    bp.close();
+  }
+
+  @Test
+  void testBackpressureWhileFlushersLag() throws Exception {
+    var release = new CountDownLatch(1);
+    PageFlusher<MockAppendPage, String> slowFlusher = (id, page) -> release.await();
+    var bp = new BufferPool<>(new MockPageFactory(1000, 100), slowFlusher, 10, 100, 1, 4);
+    var sid = new LogStreamIdentifier("stream1");
+    var records =
+        List.of(
+            MockPageInput.builder().tsMillis(1000).content("log1").size(200).build(),
+            MockPageInput.builder().tsMillis(1001).content("log2").size(200).build(),
+            MockPageInput.builder().tsMillis(1002).content("log3").size(200).build());
+    bp.appendAll(mockLsn, sid, records);
+    Assertions.assertTrue(bp.isBackpressured());
+
+    release.countDown();
+    await().atMost(Duration.ofSeconds(1)).until(() -> bp.getPendingFlushes() == 0);
+    Assertions.assertFalse(bp.isBackpressured());
+    bp.close();
+  }
+
+  @Test
+  void testHotStreamBackpressuresBeforeOtherQueuesFill() throws Exception {
+    var release = new CountDownLatch(1);
+    PageFlusher<MockAppendPage, String> slowFlusher = (id, page) -> release.await();
+    var bp = new BufferPool<>(new MockPageFactory(1000, 100), slowFlusher, 10, 100, 4, 4);
+    var sid = new LogStreamIdentifier("stream1");
+    var records =
+        List.of(
+            MockPageInput.builder().tsMillis(1000).content("log1").size(200).build(),
+            MockPageInput.builder().tsMillis(1001).content("log2").size(200).build(),
+            MockPageInput.builder().tsMillis(1002).content("log3").size(200).build());
+    bp.appendAll(mockLsn, sid, records);
+    // 3 of 16 slots are taken overall, but all of them in the queue of stream1.
+    Assertions.assertTrue(bp.isBackpressured());
+
+    release.countDown();
+    await().atMost(Duration.ofSeconds(1)).until(() -> bp.getPendingFlushes() == 0);
+    Assertions.assertFalse(bp.isBackpressured());
+    bp.close();
+  }
+
+  @Test
+  void testInterruptedSealStillQueuesPage() throws Exception {
+    var release = new CountDownLatch(1);
+    var flushed = new AtomicInteger();
+    PageFlusher<MockAppendPage, String> slowFlusher =
+        (id, page) -> {
+          release.await();
+          flushed.incrementAndGet();
+        };
+    var bp = new BufferPool<>(new MockPageFactory(1000, 100), slowFlusher, 10, 100, 1, 1);
+    var sid = new LogStreamIdentifier("stream1");
+    var records =
+        List.of(
+            MockPageInput.builder().tsMillis(1000).content("log1").size(200).build(),
+            MockPageInput.builder().tsMillis(1001).content("log2").size(200).build(),
+            MockPageInput.builder().tsMillis(1002).content("log3").size(200).build());
+    var stillInterrupted = new AtomicBoolean();
+    var sealer =
+        new Thread(
+            () -> {
+              bp.appendAll(mockLsn, sid, records);
+              stillInterrupted.set(Thread.currentThread().isInterrupted());
+            });
+    sealer.start();
+    // the worker holds the first page and the queue the second, the third one has to wait.
+    await().atMost(Duration.ofSeconds(1)).until(() -> sealer.getState() == Thread.State.WAITING);
+    sealer.interrupt();
+
+    release.countDown();
+    sealer.join(1000);
+    Assertions.assertFalse(sealer.isAlive());
+    Assertions.assertTrue(stillInterrupted.get());
+    await().atMost(Duration.ofSeconds(1)).until(() -> flushed.get() == 3);
+    bp.close();
+  }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class IntBloomFilterTests {
+
+  @Test
+  void testSerializesLikeGuava() throws IOException {
+    var guava = BloomFilter.create(Funnels.integerFunnel(), 1000, 0.01);
+    var primitive = IntBloomFilter.create(1000, 0.01);
+    var random = new Random(7);
+    for (int i = 0; i < 800; i++) {
+      var value = random.nextInt();
+      guava.put(value);
+      primitive.put(value);
+    }
+    var guavaBytes = new ByteArrayOutputStream();
+    guava.writeTo(guavaBytes);
+    assertArrayEquals(guavaBytes.toByteArray(), primitive.toByteArray());
+  }
+
+  @Test
+  void testReadsGuavaFilters() throws IOException {
+    var guava = BloomFilter.create(Funnels.integerFunnel(), 1000);
+    for (int i = 0; i < 500; i++) {
+      guava.put(i * 7);
+    }
+    var bytes = new ByteArrayOutputStream();
+    guava.writeTo(bytes);
+    var primitive = IntBloomFilter.fromByteArray(bytes.toByteArray());
+    for (int i = 0; i < 500; i++) {
+      assertTrue(primitive.mightContain(i * 7));
+    }
+    var roundTrip =
+        BloomFilter.readFrom(
+            new ByteArrayInputStream(primitive.toByteArray()), Funnels.integerFunnel());
+    assertEquals(guava, roundTrip);
+  }
+
+  @Test
+  void testNoFalseNegatives() {
+    var filter = IntBloomFilter.create(10_000);
+    for (int i = 0; i < 10_000; i++) {
+      filter.put(i);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+  }
+}
@@ -51,7 +51,7 @@ public class PromQlGaugeAndRangeTests {
     client = injector.getInstance(Client.class);
     CreateChTablesSpec.migrate(client);
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES);
-    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_EVENTS_META);
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
   }
 
   @Test
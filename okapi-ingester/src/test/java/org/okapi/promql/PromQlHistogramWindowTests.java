@@ -57,7 +57,7 @@ public class PromQlHistogramWindowTests {
     CreateChTablesSpec.migrate(client);
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_HISTOS);
     client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_GAUGES);
-    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_EVENTS_META);
+    client.queryAll("TRUNCATE TABLE IF EXISTS " + ChConstants.TBL_METRIC_SERIES);
   }
 
   @Test
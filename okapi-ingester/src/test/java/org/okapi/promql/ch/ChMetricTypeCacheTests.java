@@ -0,0 +1,50 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.promql.ch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.okapi.rest.metrics.query.METRIC_TYPE;
+
+public class ChMetricTypeCacheTests {
+
+  @Test
+  void resolvesOncePerTtl() {
+    var now = new AtomicLong(1_000L);
+    var cache = new ChMetricTypeCache(Duration.ofSeconds(10), now::get);
+    var calls = new AtomicInteger();
+
+    assertEquals(METRIC_TYPE.SUM, cache.get("requests", () -> resolve(calls, METRIC_TYPE.SUM)));
+    now.addAndGet(9_000L);
+    assertEquals(METRIC_TYPE.SUM, cache.get("requests", () -> resolve(calls, METRIC_TYPE.HISTO)));
+    assertEquals(1, calls.get());
+
+    now.addAndGet(1_000L);
+    assertEquals(
+        METRIC_TYPE.HISTO, cache.get("requests", () -> resolve(calls, METRIC_TYPE.HISTO)));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void unresolvedMetricsAreNotCached() {
+    var cache = new ChMetricTypeCache(Duration.ofSeconds(10), () -> 1_000L);
+    var calls = new AtomicInteger();
+
+    assertNull(cache.get("not_yet_ingested", () -> resolve(calls, null)));
+    assertEquals(
+        METRIC_TYPE.GAUGE, cache.get("not_yet_ingested", () -> resolve(calls, METRIC_TYPE.GAUGE)));
+    assertEquals(2, calls.get());
+  }
+
+  private static METRIC_TYPE resolve(AtomicInteger calls, METRIC_TYPE type) {
+    calls.incrementAndGet();
+    return type;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.queryproc;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MultisourceDocumentJoinerTests {
+
+  record Doc(String id, long ts) implements IdentifiableDocument {
+    @Override
+    public String getDocId() {
+      return id;
+    }
+  }
+
+  static final Comparator<Doc> BY_TS = Comparator.comparingLong(Doc::ts);
+
+  static MultisourceDocumentJoiner<Doc> joiner(List<DocumentListSupplier<Doc>> suppliers) {
+    return new MultisourceDocumentJoiner<>(suppliers, Executors.newFixedThreadPool(4));
+  }
+
+  @Test
+  void testMergesInOrderAndDeduplicates() {
+    var joiner =
+        joiner(
+            List.of(
+                () -> List.of(new Doc("a", 1), new Doc("c", 5)),
+                () -> List.of(new Doc("d", 7), new Doc("b", 3), new Doc("a", 1)),
+                List::of));
+    var merged = joiner.getMergedStream(Duration.ofSeconds(1), BY_TS, Integer.MAX_VALUE);
+    Assertions.assertEquals(
+        List.of("a", "b", "c", "d"), merged.stream().map(Doc::getDocId).toList());
+  }
+
+  @Test
+  void testStopsAtLimit() {
+    var joiner =
+        joiner(
+            List.of(
+                () -> List.of(new Doc("a", 1), new Doc("c", 5)),
+                () -> List.of(new Doc("b", 3), new Doc("d", 7))));
+    var merged = joiner.getMergedStream(Duration.ofSeconds(1), BY_TS, 3);
+    Assertions.assertEquals(List.of("a", "b", "c"), merged.stream().map(Doc::getDocId).toList());
+  }
+
+  @Test
+  void testSlowSourceYieldsPartialResults() {
+    var never = new CountDownLatch(1);
+    var joiner =
+        joiner(
+            List.of(
+                () -> List.of(new Doc("a", 1)),
+                () -> {
+                  never.await();
+                  return List.of(new Doc("b", 2));
+                }));
+    var merged = joiner.getMergedStream(Duration.ofMillis(200), BY_TS, Integer.MAX_VALUE);
+    Assertions.assertEquals(List.of("a"), merged.stream().map(Doc::getDocId).toList());
+  }
+
+  @Test
+  void testFailingSourceFailsTheQuery() {
+    var joiner =
+        joiner(
+            List.of(
+                () -> List.of(new Doc("a", 1)),
+                () -> {
+                  throw new IllegalStateException("boom");
+                }));
+    Assertions.assertThrows(
+        CompletionException.class,
+        () -> joiner.getMergedStream(Duration.ofSeconds(1), BY_TS, Integer.MAX_VALUE));
+  }
+}
@@ -7,6 +7,7 @@ package org.okapi.s3;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.okapi.byterange.S3ByteRangeSupplier;
@@ -37,7 +38,10 @@ public class S3ByteRangeSupplierTest {
 
     var s3ByteRangeSupplier =
         new S3ByteRangeSupplier(
-            bucket, "object-key", localStackClient, new S3ByteRangeCache(1024L * 1024));
+            bucket,
+            "object-key",
+            localStackClient,
+            new ShardedByteRangeCache(localStackClient, 1024L * 1024));
 
     var range = s3ByteRangeSupplier.getBytes(7, 20);
     var rangeStr = new String(range);
@@ -47,35 +51,56 @@ public class S3ByteRangeSupplierTest {
   }
 
   @Test
-  void testByteRangeSupplierCachesIfPossible() {
+  void testByteRangeSupplierCachesIfPossible() throws IOException {
     var localStackClient = OkapiTestUtils.getLocalstackS3Client();
     var contents = "Hello, this is a test object for S3ByteRangeSupplier.";
     localStackClient.putObject(
         PutObjectRequest.builder().bucket(bucket).key("object-key").build(),
         RequestBody.fromBytes(contents.getBytes()));
-    var cache = mock(S3ByteRangeCache.class);
+    var cache = new ShardedByteRangeCache(localStackClient, 1024L * 1024);
     var s3ByteRangeSupplier =
         new S3ByteRangeSupplier(bucket, "object-key", localStackClient, cache);
     var range1 = s3ByteRangeSupplier.getBytes(0, 10);
-    verify(cache, times(1))
-        .getCachedRange(eq(bucket), eq("object-key"), eq(0L), eq(10L), anyString());
-    verify(cache, times(1))
-        .possiblyCache(eq(bucket), eq("object-key"), eq(0L), eq(10L), any(), anyString());
+    var range2 = s3ByteRangeSupplier.getBytes(5, 10);
+    assertEquals("Hello, thi", new String(range1));
+    assertEquals(", this is ", new String(range2));
+    assertEquals(1, cache.getCacheStats().getMisses());
+    assertEquals(1, cache.getCacheStats().getHits());
   }
 
   @Test
-  void testByteRangeReturnsCachedContentWhenAvailable() {
+  void testByteRangeReturnsCachedContentWhenAvailable() throws IOException {
     var s3Client = mock(S3Client.class);
-    var cache = mock(S3ByteRangeCache.class);
+    var cache = mock(ByteRangeCache.class);
     var mockHead = mock(HeadObjectResponse.class, RETURNS_DEEP_STUBS);
     when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(mockHead);
     when(mockHead.eTag()).thenReturn("mock-etag");
     when(mockHead.contentLength()).thenReturn(100L);
-    when(cache.getCachedRange(eq(bucket), eq("object-key-2"), eq(0L), eq(10L), anyString()))
-        .thenReturn(java.util.Optional.of("cached-data".getBytes()));
+    when(cache.getRange(eq(bucket), eq("object-key-2"), eq(0L), eq(10L)))
+        .thenReturn("cached-data".getBytes());
     var s3ByteRangeSupplier = new S3ByteRangeSupplier(bucket, "object-key-2", s3Client, cache);
     var fetched = s3ByteRangeSupplier.getBytes(0, 10);
     var fetchedStr = new String(fetched);
     assertEquals("cached-data", fetchedStr);
+    verify(cache).checkVersion(bucket, "object-key-2", "mock-etag");
+  }
+
+  @Test
+  void testSequentialReadsPrefetchTheNextChunk() throws IOException {
+    var s3Client = mock(S3Client.class);
+    var cache = mock(ByteRangeCache.class);
+    var mockHead = mock(HeadObjectResponse.class, RETURNS_DEEP_STUBS);
+    when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(mockHead);
+    when(mockHead.eTag()).thenReturn("mock-etag");
+    when(mockHead.contentLength()).thenReturn(1000L);
+    when(cache.getRange(eq(bucket), eq("object-key-3"), anyLong(), anyLong()))
+        .thenAnswer(inv -> new byte[(int) (inv.<Long>getArgument(3) - inv.<Long>getArgument(2))]);
+    var supplier = new S3ByteRangeSupplier(bucket, "object-key-3", s3Client, cache, 100);
+
+    supplier.getBytes(0, 10);
+    verify(cache, after(100).times(1))
+        .getRange(eq(bucket), eq("object-key-3"), anyLong(), anyLong());
+    supplier.getBytes(10, 10);
+    verify(cache, timeout(1000)).getRange(bucket, "object-key-3", 20L, 200L);
   }
 }
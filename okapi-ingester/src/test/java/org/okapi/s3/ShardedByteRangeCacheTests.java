@@ -0,0 +1,169 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.s3;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class ShardedByteRangeCacheTests {
+  static final String BUCKET = "bucket";
+  static final int BLOCK = 16;
+
+  @TempDir Path spillDir;
+  S3Client s3Client;
+  byte[] object;
+
+  @BeforeEach
+  void setup() {
+    object = new byte[100];
+    for (int i = 0; i < object.length; i++) {
+      object[i] = (byte) i;
+    }
+    s3Client = mock(S3Client.class);
+    when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+        .thenAnswer(inv -> serve(inv.getArgument(0)));
+  }
+
+  ResponseBytes<GetObjectResponse> serve(GetObjectRequest request) {
+    var bounds = request.range().substring("bytes=".length()).split("-");
+    var from = Integer.parseInt(bounds[0]);
+    var to = Math.min(object.length - 1, Integer.parseInt(bounds[1]));
+    var slice = Arrays.copyOfRange(object, from, to + 1);
+    return ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), slice);
+  }
+
+  ShardedByteRangeCache cache(long memoryBytes, Path spill) {
+    return new ShardedByteRangeCache(s3Client, memoryBytes, BLOCK, 1, spill, 1024);
+  }
+
+  @Test
+  void testOverlappingRangesHit() throws IOException {
+    var cache = cache(1024, null);
+    assertArrayEquals(Arrays.copyOfRange(object, 3, 40), cache.getRange(BUCKET, "a", 3, 40));
+    assertArrayEquals(Arrays.copyOfRange(object, 20, 30), cache.getRange(BUCKET, "a", 20, 30));
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+    var stats = cache.getCacheStats();
+    assertEquals(3, stats.getMisses());
+    assertEquals(1, stats.getHits());
+    assertEquals(48, stats.getBytesFetched());
+    assertEquals(10, stats.getBytesFromCache());
+  }
+
+  @Test
+  void testLastBlockIsShort() throws IOException {
+    var cache = cache(1024, null);
+    assertArrayEquals(Arrays.copyOfRange(object, 90, 100), cache.getRange(BUCKET, "a", 90, 100));
+    assertThrows(IOException.class, () -> cache.getRange(BUCKET, "a", 95, 105));
+  }
+
+  @Test
+  void testScanDoesNotEvictProtectedBlocks() throws IOException {
+    var cache = cache(3 * BLOCK, null);
+    cache.getRange(BUCKET, "a", 0, 1);
+    cache.getRange(BUCKET, "a", 0, 1);
+    for (int blk = 1; blk < 6; blk++) {
+      cache.getRange(BUCKET, "a", blk * BLOCK, blk * BLOCK + 1);
+    }
+    clearInvocations(s3Client);
+    cache.getRange(BUCKET, "a", 0, 1);
+    verify(s3Client, never()).getObjectAsBytes(any(GetObjectRequest.class));
+    assertTrue(cache.getCacheStats().getEvictions() > 0);
+    assertTrue(cache.getMemoryBytes() <= 3 * BLOCK);
+  }
+
+  @Test
+  void testEvictedBlocksSpillToDisk() throws IOException {
+    var cache = cache(BLOCK, spillDir);
+    cache.getRange(BUCKET, "a", 0, 1);
+    cache.getRange(BUCKET, "a", BLOCK, BLOCK + 1);
+    assertEquals(BLOCK, cache.getSpillBytes());
+    clearInvocations(s3Client);
+    assertArrayEquals(new byte[] {0, 1, 2}, cache.getRange(BUCKET, "a", 0, 3));
+    verify(s3Client, never()).getObjectAsBytes(any(GetObjectRequest.class));
+  }
+
+  @Test
+  void testInvalidateAndVersionChange() throws IOException {
+    var cache = cache(1024, spillDir);
+    cache.checkVersion(BUCKET, "a", "v1");
+    cache.getRange(BUCKET, "a", 0, 10);
+    cache.checkVersion(BUCKET, "a", "v1");
+    cache.getRange(BUCKET, "a", 0, 10);
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+
+    cache.checkVersion(BUCKET, "a", "v2");
+    cache.getRange(BUCKET, "a", 0, 10);
+    verify(s3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+    assertEquals(BLOCK, cache.getMemoryBytes());
+
+    cache.invalidate(BUCKET, "a");
+    assertEquals(0, cache.getMemoryBytes());
+  }
+
+  @Test
+  void testConcurrentMissesAreCoalesced() throws Exception {
+    var release = new CountDownLatch(1);
+    var started = new CountDownLatch(1);
+    doAnswer(
+            inv -> {
+              started.countDown();
+              release.await(5, TimeUnit.SECONDS);
+              return serve(inv.getArgument(0));
+            })
+        .when(s3Client)
+        .getObjectAsBytes(any(GetObjectRequest.class));
+    var cache = cache(1024, null);
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<byte[]> first = executor.submit(() -> cache.getRange(BUCKET, "a", 0, 8));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<byte[]> second = executor.submit(() -> cache.getRange(BUCKET, "a", 4, 12));
+      while (cache.getCacheStats().getInflightCoalesced() == 0) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+      assertArrayEquals(Arrays.copyOfRange(object, 0, 8), first.get());
+      assertArrayEquals(Arrays.copyOfRange(object, 4, 12), second.get());
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(s3Client, times(1)).getObjectAsBytes(any(GetObjectRequest.class));
+  }
+
+  @Test
+  void testFailedRunDoesNotStrandLaterRuns() throws IOException {
+    var cache = cache(1024, null);
+    // block 1 is cached, so reading blocks 0-3 needs the runs {0} and {2, 3}
+    cache.getRange(BUCKET, "a", 16, 32);
+    doThrow(S3Exception.builder().message("boom").build())
+        .doAnswer(inv -> serve(inv.getArgument(0)))
+        .when(s3Client)
+        .getObjectAsBytes(any(GetObjectRequest.class));
+    assertThrows(IOException.class, () -> cache.getRange(BUCKET, "a", 0, 64));
+
+    var again =
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5), () -> cache.getRange(BUCKET, "a", 32, 64));
+    assertArrayEquals(Arrays.copyOfRange(object, 32, 64), again);
+  }
+}
@@ -21,6 +21,7 @@ import org.junit.jupiter.api.io.TempDir;
 import org.okapi.ch.CreateChTablesSpec;
 import org.okapi.chtest.ChTestOnlyUtils;
 import org.okapi.metrics.ch.ChConstants;
+import org.okapi.metrics.ch.ChRollupCatalog;
 import org.okapi.metrics.pojos.RES_TYPE;
 import org.okapi.rest.traces.TimestampFilter;
 import org.okapi.rest.traces.red.ListServicesRequest;
@@ -35,6 +36,7 @@ import org.okapi.timeutils.TimeUtils;
 import org.okapi.traces.OtelTestFactory;
 import org.okapi.traces.ch.ChTracesIngester;
 import org.okapi.traces.ch.ChTracesWalConsumerDriver;
+import org.okapi.traces.ch.template.ChTraceTemplateEngine;
 
 public class ChRedIntegrationNormalTests {
 
@@ -52,6 +54,7 @@ public class ChRedIntegrationNormalTests {
     client = injector.getInstance(Client.class);
     CreateChTablesSpec.migrate(client);
     ChTestOnlyUtils.truncateTable(client, ChConstants.TBL_SERVICE_RED_EVENTS);
+    ChTestOnlyUtils.truncateTable(client, ChConstants.TBL_SERVICE_RED_1M);
     redQueryService = injector.getInstance(ChRedQueryService.class);
     baseMs = TimeUtils.roundToNearestHour(1_700_000_000_000L);
     otelTestFactory = new OtelTestFactory();
@@ -88,6 +91,73 @@ public class ChRedIntegrationNormalTests {
     assertPeerRed(response.getPeerReds(), "svc-C", opSearchHourly());
   }
 
+  @Test
+  void testServiceRedFromRollup() {
+    // the rollup is read for every whole minute of the window, the events table for the rest.
+    redQueryService =
+        new ChRedQueryService(
+            client,
+            injector.getInstance(ChTraceTemplateEngine.class),
+            new ChRollupCatalog(rollup -> 0L));
+    var minutely = queryRed(RES_TYPE.MINUTELY);
+    assertEquals(serviceRedMinutely(), minutely.getServiceRed());
+    assertOpRed(minutely.getServiceOpReds(), "op.login", opLoginMinutely());
+    assertPeerRed(minutely.getPeerReds(), "svc-C", opSearchMinutely());
+    var hourly = queryRed(RES_TYPE.HOURLY);
+    assertEquals(serviceRedHourly(), hourly.getServiceRed());
+    assertOpRed(hourly.getServiceOpReds(), "op.search", opSearchHourly());
+    assertPeerRed(hourly.getPeerReds(), "svc-B", opLoginHourly());
+  }
+
+  @Test
+  void testRollupAgreesWithEventsAtWindowEnd() throws Exception {
+    // both start in the window's last rolled-up minute, only the first also ends in the window.
+    var ingester = injector.getInstance(ChTracesIngester.class);
+    ingester.ingest(
+        otelTestFactory.buildRequest(
+            List.of(
+                otelTestFactory.resourceSpans(
+                    "svc-A",
+                    List.of(
+                        otelTestFactory.span(
+                            "op.login",
+                            "svc-B",
+                            baseMs + 3_599_000L,
+                            1_500L,
+                            Status.StatusCode.STATUS_CODE_OK),
+                        otelTestFactory.span(
+                            "op.login",
+                            "svc-B",
+                            baseMs + 3_599_500L,
+                            2_000L,
+                            Status.StatusCode.STATUS_CODE_OK))))));
+    injector.getInstance(ChTracesWalConsumerDriver.class).onTick();
+    var engine = injector.getInstance(ChTraceTemplateEngine.class);
+    var fromEvents =
+        new ChRedQueryService(client, engine, new ChRollupCatalog(rollup -> Long.MAX_VALUE));
+    var fromRollup = new ChRedQueryService(client, engine, new ChRollupCatalog(rollup -> 0L));
+    for (var resType : List.of(RES_TYPE.MINUTELY, RES_TYPE.HOURLY)) {
+      var expected = fromEvents.queryRed(redRequest(resType)).getServiceRed();
+      var actual = fromRollup.queryRed(redRequest(resType)).getServiceRed();
+      assertEquals(expected.getTs(), actual.getTs(), resType.name());
+      assertEquals(expected.getCounts(), actual.getCounts(), resType.name());
+      assertEquals(expected.getErrors(), actual.getErrors(), resType.name());
+      // t-digests merged from per-minute states may land apart from one built over all spans.
+      assertClose(expected.getDurationsP50(), actual.getDurationsP50());
+      assertClose(expected.getDurationsP99(), actual.getDurationsP99());
+    }
+    var minutely = fromRollup.queryRed(redRequest(RES_TYPE.MINUTELY)).getServiceRed();
+    var lastMinute = minutely.getTs().indexOf(baseMs + 3_540_000L);
+    assertEquals(1L, minutely.getCounts().get(lastMinute));
+  }
+
+  private static void assertClose(List<Double> expected, List<Double> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), actual.get(i), expected.get(i) * 0.05);
+    }
+  }
+
   @Test
   void serviceListReturnsServices() {
     var filter =
@@ -102,18 +172,20 @@ public class ChRedIntegrationNormalTests {
   }
 
   private ServiceRedResponse queryRed(RES_TYPE resType) {
+    return redQueryService.queryRed(redRequest(resType));
+  }
+
+  private ServiceRedRequest redRequest(RES_TYPE resType) {
     var filter =
         TimestampFilter.builder()
             .tsStartNanos(TimeUtils.millisToNanos(baseMs))
             .tsEndNanos(TimeUtils.millisToNanos(baseMs + 3_600_000L + 1_000L))
             .build();
-    var request =
-        ServiceRedRequest.builder()
-            .service("svc-A")
-            .resType(resType)
-            .timestampFilter(filter)
-            .build();
-    return redQueryService.queryRed(request);
+    return ServiceRedRequest.builder()
+        .service("svc-A")
+        .resType(resType)
+        .timestampFilter(filter)
+        .build();
   }
 
   private void ingestCorpus() throws Exception {
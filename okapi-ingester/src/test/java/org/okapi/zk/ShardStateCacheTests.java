@@ -0,0 +1,112 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.zk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.okapi.sharding.ShardMetadata;
+import org.okapi.sharding.ShardState;
+
+public class ShardStateCacheTests {
+  static final String ROOT = "/okapi/test/LOGS/shards";
+
+  TestingServer testingServer;
+  CuratorFramework curatorFramework;
+  ZkClient zkClient;
+  ShardStateCache cache;
+  Gson gson = new Gson();
+
+  @BeforeEach
+  void setup() throws Exception {
+    testingServer = new TestingServer();
+    testingServer.start();
+    curatorFramework =
+        CuratorFrameworkFactory.builder()
+            .connectString(testingServer.getConnectString())
+            .retryPolicy(new ExponentialBackoffRetry(1000, 3))
+            .build();
+    curatorFramework.start();
+    zkClient = new ZkClient(curatorFramework);
+    cache = new ShardStateCache(curatorFramework, ROOT, "LOGS", new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    cache.close();
+    curatorFramework.close();
+    testingServer.close();
+  }
+
+  void writeShard(int shard, ShardMetadata md) throws Exception {
+    var path = ROOT + "/" + shard;
+    var data = gson.toJson(md).getBytes();
+    if (zkClient.checkExists(path)) {
+      curatorFramework.setData().forPath(path, data);
+    } else {
+      curatorFramework.create().creatingParentsIfNeeded().forPath(path, data);
+    }
+  }
+
+  static ShardMetadata steady(String owner) {
+    return ShardMetadata.builder().epoch(1).owner(owner).state(ShardState.STEADY).build();
+  }
+
+  void awaitVersion(long version) throws InterruptedException {
+    var deadline = System.currentTimeMillis() + 5_000;
+    while (cache.snapshot().version() < version && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(cache.snapshot().version() >= version);
+  }
+
+  @Test
+  void testLoadsExistingShardsOnStart() throws Exception {
+    writeShard(1, steady("node-a"));
+    writeShard(2, steady("node-b"));
+    cache.start(Duration.ofSeconds(5));
+    assertTrue(cache.isInitialized());
+    assertEquals("node-a", cache.get(1).getOwner());
+    assertEquals("node-b", cache.get(2).getOwner());
+    assertNull(cache.get(3));
+  }
+
+  @Test
+  void testFollowsUpdatesAndDeletes() throws Exception {
+    writeShard(1, steady("node-a"));
+    cache.start(Duration.ofSeconds(5));
+    var before = cache.snapshot();
+
+    writeShard(1, steady("node-a").toBuilder().state(ShardState.MOVING).target("node-b").build());
+    awaitVersion(before.version() + 1);
+    assertEquals(ShardState.MOVING, cache.get(1).getState());
+    // snapshots handed out earlier don't change underneath their readers.
+    assertEquals(ShardState.STEADY, before.get(1).getState());
+
+    var updated = cache.snapshot().version();
+    curatorFramework.delete().forPath(ROOT + "/1");
+    awaitVersion(updated + 1);
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  void testClientFallsBackToZkForUnseenShards() throws Exception {
+    var paths = new ZkPaths("test");
+    writeShard(1, steady("node-a"));
+    var client = new NamespacedZkClientImpl(paths, zkClient, "node-a", ZkPaths.APP.LOGS, cache);
+    assertEquals("node-a", client.getShardState(1).getOwner());
+    cache.start(Duration.ofSeconds(5));
+    assertEquals("node-a", client.getShardState(1).getOwner());
+  }
+}
@@ -0,0 +1,9 @@
+INSERT INTO okapi_metrics.metric_series
+    (fingerprint, event_type, metric, tags, temporality, ts_start, ts_end)
+SELECT cityHash64(toString(event_type), metric, mapKeys(tags), mapValues(tags)),
+    event_type, metric, tags,
+    any(temporality),
+    min(ts_start),
+    max(ts_end)
+FROM okapi_metrics.metric_events_stream_meta
+GROUP BY event_type, metric, tags;
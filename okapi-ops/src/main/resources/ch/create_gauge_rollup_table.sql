@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS {table} (
+    metric LowCardinality(String),
+    fingerprint UInt64,
+    tags_key UInt64,
+    bucket DateTime('UTC'),
+    on_edge UInt8,
+    tags Map(String, String),
+    samples SimpleAggregateFunction(sum, UInt64),
+    total SimpleAggregateFunction(sum, Float64),
+    min_value SimpleAggregateFunction(min, Float32),
+    max_value SimpleAggregateFunction(max, Float32),
+    first_ts SimpleAggregateFunction(min, DateTime64(3, 'UTC')),
+    last_ts SimpleAggregateFunction(max, DateTime64(3, 'UTC')),
+    first_value AggregateFunction(argMin, Float32, DateTime64(3, 'UTC')),
+    last_value AggregateFunction(argMax, Float32, DateTime64(3, 'UTC')),
+    quantiles AggregateFunction(quantilesTDigest(0.5, 0.75, 0.9, 0.95, 0.99), Float32)
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(bucket)
+ORDER BY (metric, fingerprint, tags_key, bucket, on_edge);
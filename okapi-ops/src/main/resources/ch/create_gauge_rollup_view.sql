@@ -0,0 +1,16 @@
+CREATE MATERIALIZED VIEW IF NOT EXISTS {view} TO {table} AS
+SELECT metric, fingerprint,
+    if(fingerprint = 0, cityHash64(mapKeys(tags), mapValues(tags)), 0) AS tags_key,
+    {bucket}(timestamp) AS bucket, tags,
+    timestamp = {bucket}(timestamp) AS on_edge,
+    count() AS samples,
+    sum(toFloat64(value)) AS total,
+    min(value) AS min_value,
+    max(value) AS max_value,
+    min(timestamp) AS first_ts,
+    max(timestamp) AS last_ts,
+    argMinState(value, timestamp) AS first_value,
+    argMaxState(value, timestamp) AS last_value,
+    quantilesTDigestState(0.5, 0.75, 0.9, 0.95, 0.99)(value) AS quantiles
+FROM okapi_metrics.gauge_raw_samples
+GROUP BY metric, fingerprint, tags, bucket, on_edge;
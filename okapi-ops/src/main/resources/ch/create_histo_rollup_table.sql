@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS {table} (
+    metric_name LowCardinality(String),
+    fingerprint UInt64,
+    tags_key UInt64,
+    bucket DateTime('UTC'),
+    buckets Array(Float32),
+    tags Map(String, String),
+    ts_start_min SimpleAggregateFunction(min, DateTime64(3, 'UTC')),
+    ts_end_max SimpleAggregateFunction(max, DateTime64(3, 'UTC')),
+    counts AggregateFunction(sumForEach, Array(Int64))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(bucket)
+ORDER BY (metric_name, fingerprint, tags_key, bucket, buckets);
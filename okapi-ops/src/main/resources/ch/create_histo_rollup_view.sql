@@ -0,0 +1,10 @@
+CREATE MATERIALIZED VIEW IF NOT EXISTS {view} TO {table} AS
+SELECT metric_name, fingerprint,
+    if(fingerprint = 0, cityHash64(mapKeys(tags), mapValues(tags)), 0) AS tags_key,
+    {bucket}(ts_start) AS bucket, buckets, tags,
+    min(ts_start) AS ts_start_min,
+    max(ts_end) AS ts_end_max,
+    sumForEachState(arrayMap(c -> toInt64(c), counts)) AS counts
+FROM okapi_metrics.histo_raw_samples
+WHERE histo_type = 'DELTA'
+GROUP BY metric_name, fingerprint, tags, bucket, buckets;
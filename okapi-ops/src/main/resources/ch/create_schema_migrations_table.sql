@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS okapi_metrics.schema_migrations (
+    name String,
+    applied_at DateTime64(3, 'UTC')
+)
+ENGINE = MergeTree
+ORDER BY name;
@@ -17,7 +17,7 @@ public class CorpusAwait {
           "okapi_metrics.histo_raw_samples",
           "okapi_metrics.sums_raw_samples",
           "okapi_metrics.metric_exemplars",
-          "okapi_metrics.metric_events_stream_meta",
+          "okapi_metrics.metric_series",
           "okapi_traces.service_red_events",
           "okapi_traces.spans_table_v1",
           "okapi_traces.spans_ingested_attribs");
@@ -0,0 +1,92 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.promql.eval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.okapi.metrics.pojos.results.GaugeScan;
+import org.okapi.metrics.pojos.results.Scan;
+
+/**
+ * A gauge series pre-aggregated into buckets {@code (endMs - bucketMs, endMs]}, for evaluators that
+ * only read it through windows made of whole buckets. Carries enough per bucket (count, sum,
+ * min/max, first/last sample) to evaluate the *_over_time functions, delta, deriv and instant
+ * lookups exactly as over the raw samples.
+ */
+public final class GaugeBucketScan extends Scan {
+
+  /** Empty buckets are left out, buckets are in ascending {@code endMs} order. */
+  public record Bucket(
+      long endMs,
+      long count,
+      double sum,
+      float min,
+      float max,
+      long firstTs,
+      float firstValue,
+      long lastTs,
+      float lastValue) {
+
+    public Bucket merge(Bucket other) {
+      var first = other.firstTs < firstTs ? other : this;
+      var last = other.lastTs > lastTs ? other : this;
+      return new Bucket(
+          endMs,
+          count + other.count,
+          sum + other.sum,
+          Math.min(min, other.min),
+          Math.max(max, other.max),
+          first.firstTs,
+          first.firstValue,
+          last.lastTs,
+          last.lastValue);
+    }
+  }
+
+  private final String universalPath;
+  private final long bucketMs;
+  private final List<Bucket> buckets;
+
+  public GaugeBucketScan(String universalPath, long bucketMs, List<Bucket> buckets) {
+    this.universalPath = universalPath;
+    this.bucketMs = bucketMs;
+    this.buckets = Objects.requireNonNull(buckets, "buckets");
+  }
+
+  /** Buckets {@code raw}'s samples, which must be in timestamp order, on ends {@code originMs}. */
+  public static GaugeBucketScan of(GaugeScan raw, long originMs, long bucketMs) {
+    var ts = raw.getTimestamps();
+    var values = raw.getValues();
+    var buckets = new ArrayList<Bucket>();
+    Bucket current = null;
+    for (int i = 0; i < ts.size(); i++) {
+      long t = ts.get(i);
+      float v = values.get(i);
+      long endMs = originMs + Math.ceilDiv(t - originMs, bucketMs) * bucketMs;
+      var sample = new Bucket(endMs, 1, v, v, v, t, v, t, v);
+      if (current != null && current.endMs() == endMs) {
+        current = current.merge(sample);
+      } else {
+        if (current != null) buckets.add(current);
+        current = sample;
+      }
+    }
+    if (current != null) buckets.add(current);
+    return new GaugeBucketScan(raw.getUniversalPath(), bucketMs, buckets);
+  }
+
+  public String getUniversalPath() {
+    return universalPath;
+  }
+
+  public long getBucketMs() {
+    return bucketMs;
+  }
+
+  public List<Bucket> getBuckets() {
+    return buckets;
+  }
+}
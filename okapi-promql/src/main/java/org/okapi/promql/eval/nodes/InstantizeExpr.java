@@ -7,6 +7,7 @@ package org.okapi.promql.eval.nodes;
 import org.okapi.promql.eval.Evaluable;
 import org.okapi.promql.eval.LogicalExpr;
 import org.okapi.promql.eval.ops.InstantizeEval;
+import org.okapi.promql.eval.ops.SelectorEval;
 
 public final class InstantizeExpr implements LogicalExpr {
   public final LogicalExpr inner;
@@ -17,6 +18,11 @@ public final class InstantizeExpr implements LogicalExpr {
 
   @Override
   public Evaluable lower() {
+    // the latest sample of each step's bucket is all an instant lookup needs. An offset would
+    // move the buckets off the step grid.
+    if (inner instanceof SelectorExpr sel && sel.offsetMs == null) {
+      return new InstantizeEval(ctx -> new SelectorEval(sel, ctx.stepMs).eval(ctx));
+    }
     return new InstantizeEval(inner.lower());
   }
 }
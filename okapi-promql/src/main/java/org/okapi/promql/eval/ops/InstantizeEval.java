@@ -44,6 +44,19 @@ public final class InstantizeEval implements Evaluable {
             out.add(new VectorData.SeriesSample(w.id(), new VectorData.Sample(t, v)));
           }
         }
+      } else if (s instanceof GaugeBucketScan gb) {
+        var buckets = gb.getBuckets();
+        int n = buckets.size();
+        int idx = 0;
+        for (long t = ctx.startMs; t <= ctx.endMs; t += ctx.stepMs) {
+          if (n == 0) break;
+          while (idx + 1 < n && buckets.get(idx + 1).lastTs() <= t) idx++;
+          var last = buckets.get(idx);
+          if (last.lastTs() <= t && last.lastTs() > t - DEFAULT_STALENESS_MS) {
+            out.add(
+                new VectorData.SeriesSample(w.id(), new VectorData.Sample(t, last.lastValue())));
+          }
+        }
       }
       // For non-gauge scans, instantize is not defined here; skip.
     }
@@ -99,14 +99,42 @@ public class RangeFuncEval implements Evaluable {
     return d / seconds;
   }
 
+  private static float delta(GaugeBucketScan gb, long start, long end) {
+    GaugeBucketScan.Bucket first = null, last = null;
+    for (var b : gb.getBuckets()) {
+      if (b.endMs() <= start || b.endMs() > end) continue;
+      if (first == null) first = b;
+      last = b;
+    }
+    if (first == null) return Float.NaN;
+    return last.lastValue() - first.firstValue();
+  }
+
+  private static float deriv(GaugeBucketScan gb, long start, long end) {
+    GaugeBucketScan.Bucket first = null, last = null;
+    for (var b : gb.getBuckets()) {
+      if (b.endMs() <= start || b.endMs() > end) continue;
+      if (first == null) first = b;
+      last = b;
+    }
+    if (first == null) return Float.NaN;
+    float d = last.lastValue() - first.firstValue();
+    float seconds = Math.max((last.lastTs() - first.firstTs()) / 1000f, 1f);
+    return d / seconds;
+  }
+
   @Override
   public ExpressionResult eval(EvalContext ctx) throws EvaluationException {
     if (fn.args.size() != 1) throw new IllegalArgumentException(kind + " expects one arg");
-    var argRes = fn.args.get(0).lower().eval(ctx);
+    var arg = fn.args.get(0);
+    var argRes =
+        kind.bucketable && arg instanceof RangeSelectorExpr r
+            ? new RangeSelectorEval(r, true).eval(ctx)
+            : arg.lower().eval(ctx);
     if (!(argRes instanceof RangeVectorResult rv))
       throw new IllegalArgumentException(kind + " expects range vector");
 
-    long rangeMs = inferRangeFromArg(fn.args.get(0));
+    long rangeMs = inferRangeFromArg(arg);
     List<SeriesSample> out = new ArrayList<>();
     for (SeriesWindow w : rv.data()) {
       Scan s = w.scan();
@@ -123,9 +151,21 @@ public class RangeFuncEval implements Evaluable {
             } else value = Float.NaN;
           }
           case IRATE -> value = (s instanceof SumScan ss) ? irate(ss, winStart, t) : Float.NaN;
-          case DELTA -> value = (s instanceof GaugeScan gs) ? delta(gs, winStart, t) : Float.NaN;
+          case DELTA ->
+              value =
+                  switch (s) {
+                    case GaugeScan gs -> delta(gs, winStart, t);
+                    case GaugeBucketScan gb -> delta(gb, winStart, t);
+                    default -> Float.NaN;
+                  };
           case IDELTA -> value = (s instanceof GaugeScan gs) ? idelta(gs, winStart, t) : Float.NaN;
-          case DERIV -> value = (s instanceof GaugeScan gs) ? deriv(gs, winStart, t) : Float.NaN;
+          case DERIV ->
+              value =
+                  switch (s) {
+                    case GaugeScan gs -> deriv(gs, winStart, t);
+                    case GaugeBucketScan gb -> deriv(gb, winStart, t);
+                    default -> Float.NaN;
+                  };
           default -> value = Float.NaN;
         }
         out.add(new SeriesSample(w.id(), new Sample(t, value)));
@@ -141,11 +181,19 @@ public class RangeFuncEval implements Evaluable {
   }
 
   enum Kind {
-    RATE,
-    IRATE,
-    INCREASE,
-    DELTA,
-    IDELTA,
-    DERIV
+    RATE(true),
+    IRATE(false),
+    INCREASE(true),
+    DELTA(true),
+    IDELTA(false),
+    DERIV(true);
+
+    // whether it can be computed from per-bucket aggregates: per-bucket counter increases for
+    // sums, GaugeBucketScan for gauges. irate/idelta need the last two raw samples.
+    final boolean bucketable;
+
+    Kind(boolean bucketable) {
+      this.bucketable = bucketable;
+    }
   }
 }
@@ -14,6 +14,12 @@ import org.okapi.promql.eval.nodes.SelectorExpr;
 @AllArgsConstructor
 public class RangeSelectorEval implements Evaluable {
   private final RangeSelectorExpr node;
+  // set by range functions that can be evaluated from per-bucket aggregates of the samples.
+  private final boolean bucketed;
+
+  public RangeSelectorEval(RangeSelectorExpr node) {
+    this(node, false);
+  }
 
   @Override
   public ExpressionResult eval(EvalContext ctx) {
@@ -28,10 +34,31 @@ public class RangeSelectorEval implements Evaluable {
     var baseSel =
         new SelectorExpr(node.base.metricOrNull, node.base.matchers, node.base.atTsMs, null);
     var baseRes =
-        new SelectorEval(baseSel)
+        new SelectorEval(baseSel, bucketed ? bucketMs(ctx) : 0L)
             .eval(
                 new EvalContext(
                     start, end, ctx.stepMs, ctx.resolution, ctx.client, ctx.discovery, ctx.exec));
     return baseRes; // range fns will slide windows of length rangeMs per step
   }
+
+  /**
+   * Widest buckets that tile every window {@code (t - range, t]} of the step grid: the gcd of step
+   * and range, or the range itself when there is a single step. 0 when the windows don't line up
+   * with buckets ending on the grid, which the offset may shift by a fraction of a bucket.
+   */
+  private long bucketMs(EvalContext ctx) {
+    long width = ctx.startMs == ctx.endMs ? node.rangeMs : gcd(ctx.stepMs, node.rangeMs);
+    if (width <= 0) return 0L;
+    if (node.offsetMs != null && node.offsetMs % width != 0) return 0L;
+    return width;
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long r = a % b;
+      a = b;
+      b = r;
+    }
+    return a;
+  }
 }
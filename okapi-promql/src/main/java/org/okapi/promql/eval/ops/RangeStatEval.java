@@ -35,11 +35,15 @@ public class RangeStatEval implements Evaluable {
       q = s.value;
       argIdx = 1;
     }
-    var vec = fn.args.get(argIdx).lower().eval(ctx);
+    var arg = fn.args.get(argIdx);
+    var vec =
+        kind.bucketable && arg instanceof RangeSelectorExpr r
+            ? new RangeSelectorEval(r, true).eval(ctx)
+            : arg.lower().eval(ctx);
     if (!(vec instanceof RangeVectorResult rv))
       throw new IllegalArgumentException(kind + " expects range vector");
 
-    long rangeMs = inferRange(fn.args.get(argIdx));
+    long rangeMs = inferRange(arg);
     List<SeriesSample> out = new ArrayList<>();
     for (SeriesWindow w : rv.data()) {
       Scan s = w.scan();
@@ -116,6 +120,37 @@ public class RangeStatEval implements Evaluable {
           }
           out.add(new SeriesSample(w.id(), new Sample(t, value)));
         }
+      } else if (s instanceof GaugeBucketScan gb) {
+        var buckets = gb.getBuckets();
+        for (long t = ctx.startMs; t <= ctx.endMs; t += ctx.stepMs) {
+          long winStart = t - rangeMs;
+          // buckets tile the window, so one is in it iff its end is.
+          double sum = 0;
+          long count = 0;
+          float min = Float.POSITIVE_INFINITY;
+          float max = Float.NEGATIVE_INFINITY;
+          float last = Float.NaN;
+          for (var b : buckets) {
+            if (b.endMs() <= winStart || b.endMs() > t) continue;
+            sum += b.sum();
+            count += b.count();
+            if (b.min() < min) min = b.min();
+            if (b.max() > max) max = b.max();
+            last = b.lastValue();
+          }
+          float value =
+              switch (kind) {
+                case AVG -> count > 0 ? (float) (sum / count) : Float.NaN;
+                case MIN -> count > 0 ? min : Float.NaN;
+                case MAX -> count > 0 ? max : Float.NaN;
+                case SUM -> (float) sum;
+                case COUNT -> count;
+                case LAST -> last;
+                case PRESENT -> count > 0 ? 1f : 0f;
+                default -> Float.NaN;
+              };
+          out.add(new SeriesSample(w.id(), new Sample(t, value)));
+        }
       } else {
         // Non-gauge scans: range stat functions are not defined here; emit NaN per step.
         for (long t = ctx.startMs; t <= ctx.endMs; t += ctx.stepMs) {
@@ -133,13 +168,20 @@ public class RangeStatEval implements Evaluable {
   }
 
   enum Kind {
-    AVG,
-    MIN,
-    MAX,
-    SUM,
-    COUNT,
-    QUANTILE,
-    LAST,
-    PRESENT
+    AVG(true),
+    MIN(true),
+    MAX(true),
+    SUM(true),
+    COUNT(true),
+    QUANTILE(false),
+    LAST(true),
+    PRESENT(true);
+
+    // whether it can be computed from per-bucket aggregates, see GaugeBucketScan.
+    final boolean bucketable;
+
+    Kind(boolean bucketable) {
+      this.bucketable = bucketable;
+    }
   }
 }
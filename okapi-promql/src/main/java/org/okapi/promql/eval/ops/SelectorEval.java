@@ -17,6 +17,13 @@ import org.okapi.promql.eval.nodes.SelectorExpr;
 @AllArgsConstructor
 public class SelectorEval implements Evaluable {
   private final SelectorExpr node;
+  // > 0 when the caller only reads samples through buckets of this width ending on the step grid,
+  // see TsClient#getAllBucketed.
+  private final long bucketMs;
+
+  public SelectorEval(SelectorExpr node) {
+    this(node, 0L);
+  }
 
   @Override
   public ExpressionResult eval(EvalContext ctx) {
@@ -30,10 +37,13 @@ public class SelectorEval implements Evaluable {
     }
 
     var series = ctx.discovery.expand(node.metricOrNull, node.matchers, start, end);
+    List<Scan> scans =
+        bucketMs > 0 && node.atTsMs == null
+            ? ctx.client.getAllBucketed(series, ctx.resolution, start, end, bucketMs)
+            : ctx.client.getAll(series, ctx.resolution, start, end);
     List<SeriesWindow> windows = new ArrayList<>(series.size());
-    for (SeriesId id : series) {
-      Scan scan = ctx.client.get(id.metric(), id.labels().tags(), ctx.resolution, start, end);
-      windows.add(new SeriesWindow(id, scan));
+    for (int i = 0; i < series.size(); i++) {
+      windows.add(new SeriesWindow(series.get(i), scans.get(i)));
     }
     return new RangeVectorResult(windows);
   }
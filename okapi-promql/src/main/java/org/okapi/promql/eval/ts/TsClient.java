@@ -4,11 +4,32 @@
  */
 package org.okapi.promql.eval.ts;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.okapi.metrics.pojos.results.Scan;
+import org.okapi.promql.eval.VectorData.SeriesId;
 
 public interface TsClient {
   // Returns a Scan representing the data for the matched time series over [startMs, endMs].
   // The concrete Scan may be GaugeScan, HistoScan, or SumScan.
   Scan get(String name, Map<String, String> tags, RESOLUTION res, long startMs, long endMs);
+
+  // Scans for every series of a selector, in the order of series. Clients backed by a remote
+  // store should override this to fetch all of them in as few round trips as possible.
+  default List<Scan> getAll(List<SeriesId> series, RESOLUTION res, long startMs, long endMs) {
+    var scans = new ArrayList<Scan>(series.size());
+    for (var id : series) {
+      scans.add(get(id.metric(), id.labels().tags(), res, startMs, endMs));
+    }
+    return scans;
+  }
+
+  // Like getAll, for callers that only read the samples through windows made of whole buckets
+  // (t - bucketMs, t] with t = startMs + k * bucketMs. Clients may aggregate each bucket server
+  // side and return a GaugeBucketScan for gauges, or one point per bucket at its end for sums.
+  default List<Scan> getAllBucketed(
+      List<SeriesId> series, RESOLUTION res, long startMs, long endMs, long bucketMs) {
+    return getAll(series, res, startMs, endMs);
+  }
 }
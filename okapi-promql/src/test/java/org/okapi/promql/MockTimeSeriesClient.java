@@ -8,6 +8,9 @@ import java.util.*;
 import org.okapi.metrics.pojos.results.GaugeScan;
 import org.okapi.metrics.pojos.results.HistoScan;
 import org.okapi.metrics.pojos.results.Scan;
+import org.okapi.metrics.pojos.results.SumScan;
+import org.okapi.promql.eval.GaugeBucketScan;
+import org.okapi.promql.eval.VectorData.SeriesId;
 import org.okapi.promql.eval.ts.RESOLUTION;
 import org.okapi.promql.eval.ts.TsClient;
 
@@ -18,6 +21,23 @@ public final class MockTimeSeriesClient implements TsClient {
   //  - for counters: the count observed over the bucket starting at timestamp)
   private final Map<Key, NavigableMap<Long, Float>> store = new HashMap<>();
   private final Map<Key, HistoScan> histoStore = new HashMap<>();
+  // whether getAllBucketed pre-aggregates like a real store would, or returns raw samples.
+  private final boolean bucketing;
+  // width of the rollup gauge buckets are merged from where the grid allows, 0 for none.
+  private final long rollupMs;
+
+  public MockTimeSeriesClient() {
+    this(true);
+  }
+
+  public MockTimeSeriesClient(boolean bucketing) {
+    this(bucketing, 0L);
+  }
+
+  public MockTimeSeriesClient(boolean bucketing, long rollupMs) {
+    this.bucketing = bucketing;
+    this.rollupMs = rollupMs;
+  }
 
   public void put(String metric, Map<String, String> tags, long ts, float value) {
     var key = new Key(metric, tags);
@@ -86,6 +106,60 @@ public final class MockTimeSeriesClient implements TsClient {
     }
   }
 
+  @Override
+  public List<Scan> getAllBucketed(
+      List<SeriesId> series, RESOLUTION res, long startMs, long endMs, long bucketMs) {
+    var scans = getAll(series, res, startMs, endMs);
+    if (!bucketing) return scans;
+    var out = new ArrayList<Scan>(scans.size());
+    for (var scan : scans) {
+      if (scan instanceof GaugeScan gs) {
+        if (rollupMs > 0 && bucketMs % rollupMs == 0 && startMs % rollupMs == 0) {
+          out.add(mergeRollups(gs, startMs, bucketMs));
+        } else {
+          out.add(GaugeBucketScan.of(gs, startMs, bucketMs));
+        }
+      } else if (scan instanceof SumScan ss) {
+        out.add(bucketSums(ss, startMs, bucketMs));
+      } else {
+        out.add(scan);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Step buckets merged from rollup rows the way ClickHouse reads them: a row per left-closed
+   * rollup bucket, and one for the samples exactly on its start, which end the bucket before.
+   */
+  private GaugeBucketScan mergeRollups(GaugeScan gs, long originMs, long bucketMs) {
+    var steps = new TreeMap<Long, GaugeBucketScan.Bucket>();
+    for (int i = 0; i < gs.getTimestamps().size(); i++) {
+      long t = gs.getTimestamps().get(i);
+      float v = gs.getValues().get(i);
+      long bucket = Math.floorDiv(t, rollupMs) * rollupMs;
+      long rowEnd = t == bucket ? bucket : bucket + rollupMs;
+      long end = originMs + Math.ceilDiv(rowEnd - originMs, bucketMs) * bucketMs;
+      var sample = new GaugeBucketScan.Bucket(end, 1, v, v, v, t, v, t, v);
+      steps.merge(end, sample, GaugeBucketScan.Bucket::merge);
+    }
+    return new GaugeBucketScan(gs.getUniversalPath(), bucketMs, List.copyOf(steps.values()));
+  }
+
+  private static SumScan bucketSums(SumScan ss, long originMs, long bucketMs) {
+    var sums = new TreeMap<Long, Integer>();
+    for (int i = 0; i < ss.getTs().size(); i++) {
+      long end = originMs + Math.ceilDiv(ss.getTs().get(i) - originMs, bucketMs) * bucketMs;
+      sums.merge(end, ss.getCounts().get(i), Integer::sum);
+    }
+    return SumScan.builder()
+        .universalPath(ss.getUniversalPath())
+        .ts(List.copyOf(sums.keySet()))
+        .windowSize(bucketMs)
+        .counts(List.copyOf(sums.values()))
+        .build();
+  }
+
   public static final class Key {
     public final String metric;
     public final Map<String, String> tags;
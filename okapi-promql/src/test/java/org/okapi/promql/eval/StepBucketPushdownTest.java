@@ -0,0 +1,119 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.promql.eval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import org.okapi.promql.MockSeriesDiscovery;
+import org.okapi.promql.MockStatsMerger;
+import org.okapi.promql.MockTimeSeriesClient;
+import org.okapi.promql.eval.VectorData.*;
+import org.okapi.promql.eval.exceptions.EvaluationException;
+import org.okapi.promql.parser.PromQLLexer;
+import org.okapi.promql.parser.PromQLParser;
+
+/** Evaluating from per-step-bucket aggregates gives the same answers as from raw samples. */
+public class StepBucketPushdownTest {
+  static final long T0 = 1_700_000_000_000L;
+  static final long MINUTE_ALIGNED = T0 + 40_000L;
+  static final Map<String, String> TAGS = Map.of("job", "api");
+  static final List<SeriesId> SERIES =
+      List.of(
+          new SeriesId("cpu_usage", new Labels(TAGS)),
+          new SeriesId("http_requests_counter", new Labels(TAGS)));
+
+  private static MockTimeSeriesClient client(boolean bucketing, long rollupMs) {
+    var client = new MockTimeSeriesClient(bucketing, rollupMs);
+    // irregular samples, several per minute, some exactly on minute boundaries.
+    long ts = T0 - 10 * 60_000L;
+    for (int i = 0; ts <= T0 + 20 * 60_000L; i++) {
+      client.put("cpu_usage", TAGS, ts, (i * 37) % 101 / 3f);
+      client.put("http_requests_counter", TAGS, ts, (i * 13) % 7);
+      ts += i % 3 == 0 ? 60_000L : 17_000L;
+    }
+    // and on whole minutes, where rollup buckets start and end.
+    for (long m = MINUTE_ALIGNED - 10 * 60_000L; m <= T0 + 20 * 60_000L; m += 60_000L) {
+      client.put("cpu_usage", TAGS, m, m / 60_000L % 7 * 2f);
+    }
+    return client;
+  }
+
+  private static List<SeriesSample> eval(
+      boolean bucketing, long rollupMs, String promql, long start, long end, long step)
+      throws EvaluationException {
+    var evaluator =
+        new ExpressionEvaluator(
+            client(bucketing, rollupMs),
+            new MockSeriesDiscovery(SERIES),
+            Executors.newSingleThreadExecutor(),
+            new MockStatsMerger());
+    var lexer = new PromQLLexer(CharStreams.fromString(promql));
+    var parser = new PromQLParser(new CommonTokenStream(lexer));
+    var result =
+        start == end
+            ? evaluator.evaluateAt(promql, start, parser)
+            : evaluator.evaluate(promql, start, end, step, parser);
+    return ((InstantVectorResult) result).data();
+  }
+
+  static final List<String> QUERIES =
+      List.of(
+          "cpu_usage",
+          "avg_over_time(cpu_usage[5m])",
+          "min_over_time(cpu_usage[5m])",
+          "max_over_time(cpu_usage[5m])",
+          "sum_over_time(cpu_usage[5m])",
+          "count_over_time(cpu_usage[5m])",
+          "last_over_time(cpu_usage[5m])",
+          "present_over_time(cpu_usage[5m])",
+          "delta(cpu_usage[5m])",
+          "deriv(cpu_usage[5m])",
+          "rate(http_requests_counter[5m])",
+          "increase(http_requests_counter[3m])");
+
+  @Test
+  void bucketedMatchesRaw() throws EvaluationException {
+    // step 2m and range 5m give 1m buckets; the instant query gets a single range-wide bucket.
+    long[][] grids = {{T0, T0 + 10 * 60_000L, 120_000L}, {T0 + 7_000L, T0 + 7_000L, 1_000L}};
+    assertBucketedMatchesRaw(grids, 0L);
+  }
+
+  @Test
+  void mergedRollupsMatchRaw() throws EvaluationException {
+    // grids on whole minutes, so 1m rollup buckets nest in the step buckets.
+    long[][] grids = {
+      {MINUTE_ALIGNED, MINUTE_ALIGNED + 10 * 60_000L, 120_000L},
+      {MINUTE_ALIGNED, MINUTE_ALIGNED + 10 * 60_000L, 60_000L}
+    };
+    assertBucketedMatchesRaw(grids, 60_000L);
+  }
+
+  private static void assertBucketedMatchesRaw(long[][] grids, long rollupMs)
+      throws EvaluationException {
+    for (var promql : QUERIES) {
+      for (var grid : grids) {
+        var raw = eval(false, 0L, promql, grid[0], grid[1], grid[2]);
+        var bucketed = eval(true, rollupMs, promql, grid[0], grid[1], grid[2]);
+        // an instant selector only reads samples exactly at an instant query's time.
+        if (grid[0] != grid[1]) assertFalse(raw.isEmpty(), promql);
+        assertEquals(raw.size(), bucketed.size(), promql);
+        for (int i = 0; i < raw.size(); i++) {
+          var expected = raw.get(i);
+          var actual = bucketed.get(i);
+          assertEquals(expected.series(), actual.series(), promql);
+          assertEquals(expected.sample().ts(), actual.sample().ts(), promql);
+          assertEquals(expected.sample().value(), actual.sample().value(), 1e-3, promql);
+        }
+      }
+    }
+  }
+}
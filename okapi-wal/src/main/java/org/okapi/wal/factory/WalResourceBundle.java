@@ -4,10 +4,13 @@
  */
 package org.okapi.wal.factory;
 
+import java.io.Closeable;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import org.okapi.wal.LsnSupplier;
+import org.okapi.wal.io.GroupCommitWalWriter;
 import org.okapi.wal.io.WalReader;
 import org.okapi.wal.io.WalWriter;
 import org.okapi.wal.manager.WalManager;
@@ -15,9 +18,24 @@ import org.okapi.wal.manager.WalManager;
 @AllArgsConstructor
 @Builder
 @Getter
-public class WalResourceBundle {
+public class WalResourceBundle implements Closeable {
   WalReader reader;
   WalWriter writer;
+  GroupCommitWalWriter groupCommitWriter;
   WalManager manager;
   LsnSupplier lsnSupplier;
+
+  /** Commits queued appends, then closes the writer and releases the WAL directory's lock. */
+  @Override
+  public void close() throws IOException {
+    try {
+      groupCommitWriter.close();
+    } finally {
+      try {
+        writer.close();
+      } finally {
+        manager.close();
+      }
+    }
+  }
 }
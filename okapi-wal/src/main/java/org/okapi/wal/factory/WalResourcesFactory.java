@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import lombok.AllArgsConstructor;
 import org.okapi.wal.commit.WalCommit;
+import org.okapi.wal.io.GroupCommitWalWriter;
 import org.okapi.wal.io.WalReader;
 import org.okapi.wal.io.WalWriter;
 import org.okapi.wal.lsn.Lsn;
@@ -44,6 +45,7 @@ public class WalResourcesFactory {
     return WalResourceBundle.builder()
         .manager(walManager)
         .writer(walWriter)
+        .groupCommitWriter(new GroupCommitWalWriter(walWriter, lsnSupplier))
         .reader(walReader)
         .lsnSupplier(lsnSupplier)
         .build();
@@ -0,0 +1,19 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** A block of entries compressed by {@link WalCompression}, encoded as one batch frame. */
+@AllArgsConstructor
+@Getter
+public class CompressedBatch {
+  private final long maxLsn;
+  private final int count;
+  private final int rawLength;
+  private final int dictionaryId;
+  private final byte[] compressed;
+}
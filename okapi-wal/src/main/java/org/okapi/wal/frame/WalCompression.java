@@ -0,0 +1,125 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Whether and how {@link org.okapi.wal.io.WalWriter} compresses appended batches. An enabled
+ * compression writes each batch as one zstd block (split every {@link #getMaxBlockBytes()}
+ * uncompressed bytes) instead of one frame per entry. Payloads of the same stream repeat a lot
+ * across entries, so an optional dictionary trained on samples of that stream improves the ratio
+ * further, most of all for small batches.
+ */
+@Getter
+@ToString(onlyExplicitlyIncluded = true)
+public class WalCompression {
+  public static final int DEFAULT_LEVEL = 3;
+  public static final int DEFAULT_MAX_BLOCK_BYTES = 1024 * 1024;
+
+  @ToString.Include private final boolean enabled;
+  @ToString.Include private final int level;
+  @ToString.Include private final int maxBlockBytes;
+  private final byte[] dictionary;
+  @ToString.Include private final int dictionaryId;
+  private final ZstdDictCompress dictCompress;
+
+  private WalCompression(boolean enabled, int level, int maxBlockBytes, byte[] dictionary) {
+    Preconditions.checkArgument(maxBlockBytes > 0, "maxBlockBytes should be >0");
+    this.enabled = enabled;
+    this.level = level;
+    this.maxBlockBytes = maxBlockBytes;
+    this.dictionary = dictionary;
+    this.dictionaryId = dictionary == null ? 0 : dictionaryId(dictionary);
+    this.dictCompress = dictionary == null ? null : new ZstdDictCompress(dictionary, level);
+  }
+
+  public static WalCompression none() {
+    return new WalCompression(false, 0, DEFAULT_MAX_BLOCK_BYTES, null);
+  }
+
+  public static WalCompression zstd(int level) {
+    return new WalCompression(true, level, DEFAULT_MAX_BLOCK_BYTES, null);
+  }
+
+  public static WalCompression zstd(int level, byte[] dictionary) {
+    Preconditions.checkNotNull(dictionary, "dictionary is required");
+    return new WalCompression(true, level, DEFAULT_MAX_BLOCK_BYTES, dictionary);
+  }
+
+  public boolean hasDictionary() {
+    return dictionary != null;
+  }
+
+  /**
+   * Trains a dictionary for {@link #zstd(int, byte[])} from sample payloads of one stream, e.g. a
+   * few thousand entries read back from an existing WAL.
+   */
+  public static byte[] trainDictionary(List<byte[]> samples, int dictionaryBytes) {
+    var sampleBytes = samples.stream().mapToInt(s -> s.length).sum();
+    var trainer = new ZstdDictTrainer(sampleBytes, dictionaryBytes);
+    for (var sample : samples) {
+      trainer.addSample(sample);
+    }
+    return trainer.trainSamples();
+  }
+
+  /** Identifies a dictionary in batch frames, never 0 which stands for "no dictionary". */
+  public static int dictionaryId(byte[] dictionary) {
+    var crc = new CRC32C();
+    crc.update(dictionary);
+    var id = (int) crc.getValue();
+    return id == 0 ? 1 : id;
+  }
+
+  /** Splits {@code entries} into consecutive runs of at most {@link #getMaxBlockBytes()}. */
+  public List<List<WalEntry>> blocks(List<WalEntry> entries) {
+    var blocks = new ArrayList<List<WalEntry>>();
+    int from = 0;
+    int rawBytes = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      var entryBytes = WalFrameCodec.BATCH_ENTRY_HEADER_BYTES + entries.get(i).getPayloadLength();
+      if (i > from && rawBytes + entryBytes > maxBlockBytes) {
+        blocks.add(entries.subList(from, i));
+        from = i;
+        rawBytes = 0;
+      }
+      rawBytes += entryBytes;
+    }
+    if (from < entries.size()) {
+      blocks.add(entries.subList(from, entries.size()));
+    }
+    return blocks;
+  }
+
+  public CompressedBatch compress(List<WalEntry> block) {
+    Preconditions.checkArgument(!block.isEmpty(), "cannot compress an empty block");
+    int rawLength = 0;
+    for (var entry : block) {
+      rawLength += WalFrameCodec.BATCH_ENTRY_HEADER_BYTES + entry.getPayloadLength();
+    }
+    var raw = ByteBuffer.allocate(rawLength);
+    for (var entry : block) {
+      raw.putLong(entry.getLsn().getNumber());
+      raw.putInt(entry.getPayloadLength());
+      raw.put(entry.getPayloadBuffer());
+    }
+    var compressed =
+        dictCompress == null
+            ? Zstd.compress(raw.array(), level)
+            : Zstd.compress(raw.array(), dictCompress);
+    var maxLsn = block.get(block.size() - 1).getLsn().getNumber();
+    return new CompressedBatch(maxLsn, block.size(), rawLength, dictionaryId, compressed);
+  }
+}
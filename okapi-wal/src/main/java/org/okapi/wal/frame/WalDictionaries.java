@@ -0,0 +1,40 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import com.github.luben.zstd.ZstdDictDecompress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Dictionaries that batch frames of a WAL may reference, keyed by {@link
+ * WalCompression#dictionaryId(byte[])}. Readers need every dictionary that was ever used for the
+ * segments they replay, not only the configured one.
+ */
+public class WalDictionaries {
+  private final Map<Integer, ZstdDictDecompress> byId;
+
+  private WalDictionaries(Map<Integer, ZstdDictDecompress> byId) {
+    this.byId = byId;
+  }
+
+  public static WalDictionaries empty() {
+    return new WalDictionaries(Map.of());
+  }
+
+  public static WalDictionaries of(Collection<byte[]> dictionaries) {
+    var byId = new HashMap<Integer, ZstdDictDecompress>();
+    for (var dictionary : dictionaries) {
+      byId.put(WalCompression.dictionaryId(dictionary), new ZstdDictDecompress(dictionary));
+    }
+    return new WalDictionaries(Map.copyOf(byId));
+  }
+
+  public Optional<ZstdDictDecompress> get(int dictionaryId) {
+    return Optional.ofNullable(byId.get(dictionaryId));
+  }
+}
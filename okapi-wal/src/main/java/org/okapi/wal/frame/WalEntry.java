@@ -5,8 +5,6 @@
 package org.okapi.wal.frame;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import lombok.Getter;
@@ -15,14 +13,29 @@ import org.okapi.wal.exceptions.VeryHugeRecordException;
 import org.okapi.wal.lsn.Lsn;
 
 /**
- * Frame format:
+ * Frame format (VERSION 2):
  *
  * <pre>
- * MAGIC(4) | VERSION(1) | FRAME_LEN(4) | HEADER_LEN(2) | EPOCH(4) | NUMBER(8) | PAYLOAD(FRAME_LEN - HEADER_LEN) | MAGIC_END(4)
+ * MAGIC(4) | VERSION(1) | FRAME_LEN(4) | HEADER_LEN(2) | NUMBER(8) | PAYLOAD(FRAME_LEN - HEADER_LEN) | CRC32C(4) | MAGIC_END(4)
  * </pre>
  *
- * FRAME_LEN = HEADER_LEN + PAYLOAD_LEN + CRC32_LEN + MAGIC_END.length HEADER_LEN = bytes from
- * VERSION through PAYLOAD_LEN (inclusive) to make resync possible.
+ * FRAME_LEN = HEADER_LEN + PAYLOAD_LEN. HEADER_LEN = bytes of the header fields following it
+ * (NUMBER) to make resync possible. CRC32C covers VERSION through PAYLOAD (inclusive).
+ *
+ * <p>VERSION 1 frames have the same layout without the CRC32C field, they are still readable.
+ *
+ * <p>A compressed batch frame (VERSION 3, see {@link WalCompression}) carries several entries:
+ *
+ * <pre>
+ * MAGIC(4) | VERSION(1) | FRAME_LEN(4) | HEADER_LEN(2) | NUMBER(8) | COUNT(4) | RAW_LEN(4) | DICT_ID(4) | ZSTD(FRAME_LEN - HEADER_LEN) | CRC32C(4) | MAGIC_END(4)
+ * </pre>
+ *
+ * NUMBER is the largest LSN of the batch, DICT_ID is 0 when no dictionary was used. The RAW_LEN
+ * bytes decompress to COUNT times {@code NUMBER(8) | PAYLOAD_LEN(4) | PAYLOAD}.
+ *
+ * <p>The payload is held as a read-only {@link ByteBuffer}. Entries decoded by {@link
+ * WalFrameCodec} point into the buffer they were decoded from, use {@link #getPayloadBuffer()} to
+ * consume them without copying.
  */
 public class WalEntry {
   // static configuration
@@ -31,110 +44,84 @@ public class WalEntry {
   public static final byte[] MAGIC = new byte[] {'W', 'A', 'L', 'S'};
   public static final byte[] MAGIC_END = new byte[] {'W', 'A', 'L', 'E'};
 
-  private static final byte VERSION = 1;
-  private static final short HEADER_LENGTH = 8; // NUMBER
-  private static final int MIN_FRAME_SIZE =
+  static final byte VERSION_1 = 1;
+  static final byte VERSION_2 = 2;
+  static final byte VERSION_BATCH = 3;
+  static final byte VERSION = VERSION_2;
+  static final short HEADER_LENGTH = 8; // NUMBER
+  static final short BATCH_HEADER_LENGTH = 20; // NUMBER | COUNT | RAW_LEN | DICT_ID
+  static final int CRC_LENGTH = 4;
+  static final int MIN_FRAME_SIZE_V1 =
       MAGIC.length
           + 1 /* version */
           + 4 /* frame */
           + 2 /* header */
           + HEADER_LENGTH
           + MAGIC_END.length;
+  static final int MIN_FRAME_SIZE = MIN_FRAME_SIZE_V1 + CRC_LENGTH;
+  static final int MIN_BATCH_FRAME_SIZE = MIN_FRAME_SIZE - HEADER_LENGTH + BATCH_HEADER_LENGTH;
 
   @Getter private final Lsn lsn;
-  @Getter private final byte[] payload;
+  private final ByteBuffer payload;
+  private byte[] payloadArray;
 
   @Override
   public boolean equals(Object rhs) {
     if (rhs instanceof WalEntry right) {
-      return right.getLsn().equals(lsn) && Arrays.equals(payload, right.payload);
+      return right.getLsn().equals(lsn) && payload.equals(right.payload);
     } else return false;
   }
 
-  public WalEntry(Lsn lsn, byte[] payload) {
-    this.lsn = Objects.requireNonNull(lsn, "lsn is required");
-    this.payload = Objects.requireNonNull(payload, "payload is required");
-    if (payload.length > MAX_PAYLOAD_BYTES) {
-      throw new VeryHugeRecordException("Payload too large: " + payload.length);
-    }
+  @Override
+  public int hashCode() {
+    return Objects.hash(lsn, payload);
   }
 
-  public byte[] serialize() {
-    int frameLength = HEADER_LENGTH + payload.length;
-    var buffer = ByteBuffer.allocate(MIN_FRAME_SIZE + payload.length).order(ByteOrder.BIG_ENDIAN);
-
-    // put magic first
-    buffer.put(MAGIC);
-    buffer.put(VERSION);
-    buffer.putInt(frameLength);
-    buffer.putShort(HEADER_LENGTH);
-    buffer.putLong(lsn.getNumber());
-    buffer.put(payload);
-    buffer.put(MAGIC_END);
-    return buffer.array();
+  public WalEntry(Lsn lsn, byte[] payload) {
+    this(lsn, ByteBuffer.wrap(Objects.requireNonNull(payload, "payload is required")));
+    this.payloadArray = payload;
   }
 
-  public static WalEntry deserialize(byte[] frameBytes) throws CorruptedRecordException {
-    Objects.requireNonNull(frameBytes, "frame is required");
-    if (frameBytes.length < MIN_FRAME_SIZE) {
-      throw new CorruptedRecordException("Frame too small: " + frameBytes.length);
-    }
-
-    var buffer = ByteBuffer.wrap(frameBytes).order(ByteOrder.BIG_ENDIAN);
-    validateMagic(buffer);
-
-    byte version = buffer.get();
-    if (version != VERSION) {
-      throw new CorruptedRecordException("Unsupported WAL frame version: " + version);
-    }
-
-    int frameLength = buffer.getInt();
-    short headerLength = buffer.getShort();
-    if (headerLength != HEADER_LENGTH) {
-      throw new CorruptedRecordException("Unexpected header length: " + headerLength);
-    }
-
-    long number = buffer.getLong();
-    int payloadLength = frameLength - headerLength;
-    if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES) {
-      throw new CorruptedRecordException("Invalid payload length: " + payloadLength);
+  public WalEntry(Lsn lsn, ByteBuffer payload) {
+    this.lsn = Objects.requireNonNull(lsn, "lsn is required");
+    Objects.requireNonNull(payload, "payload is required");
+    if (payload.remaining() > MAX_PAYLOAD_BYTES) {
+      throw new VeryHugeRecordException("Payload too large: " + payload.remaining());
     }
+    this.payload = payload.slice().asReadOnlyBuffer();
+  }
 
-    if (frameLength < headerLength) {
-      throw new CorruptedRecordException("Frame length should be greater than header length.");
+  /**
+   * Payload as a byte array. Entries built from an array return it as is, entries decoded from a
+   * segment copy their payload once and cache it.
+   */
+  public byte[] getPayload() {
+    if (payloadArray == null) {
+      var copy = new byte[payload.remaining()];
+      payload.duplicate().get(copy);
+      payloadArray = copy;
     }
+    return payloadArray;
+  }
 
-    if (buffer.remaining() < payloadLength) {
-      throw new CorruptedRecordException("Truncated frame content");
-    }
+  /** Read-only view of the payload, positioned at its first byte. */
+  public ByteBuffer getPayloadBuffer() {
+    return payload.duplicate();
+  }
 
-    byte[] payload = new byte[payloadLength];
-    buffer.get(payload);
-    validateMagicEnd(buffer);
-    try {
-      return new WalEntry(new Lsn(number), payload);
-    } catch (IllegalArgumentException e) {
-      throw new CorruptedRecordException("Invalid LSN values", e);
-    }
+  public int getPayloadLength() {
+    return payload.remaining();
   }
 
-  private static void validateMagic(ByteBuffer buffer) throws CorruptedRecordException {
-    byte[] magic = new byte[MAGIC.length];
-    buffer.get(magic);
-    if (!Arrays.equals(magic, MAGIC)) {
-      throw new CorruptedRecordException("Invalid WAL frame magic");
-    }
+  public byte[] serialize() {
+    var buffer = ByteBuffer.allocate(WalFrameCodec.encodedFrameSize(payload.remaining()));
+    WalFrameCodec.encodeFrame(buffer, lsn.getNumber(), payload);
+    return buffer.array();
   }
 
-  private static void validateMagicEnd(ByteBuffer buffer) throws CorruptedRecordException {
-    byte[] magicEnd = new byte[MAGIC_END.length];
-    if (buffer.remaining() < MAGIC_END.length) {
-      throw new CorruptedRecordException("Not enough bytes to read MAGIC_END");
-    }
-    buffer.get(magicEnd);
-    if (!Arrays.equals(magicEnd, MAGIC_END)) {
-      throw new CorruptedRecordException("Invalid WAL frame end magic");
-    }
+  public static WalEntry deserialize(byte[] frameBytes) throws CorruptedRecordException {
+    Objects.requireNonNull(frameBytes, "frame is required");
+    return WalFrameCodec.decodeFrame(ByteBuffer.wrap(frameBytes));
   }
 
   public static Lsn getMaxLsn(List<WalEntry> walEntry) {
@@ -0,0 +1,268 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.zip.CRC32C;
+import org.okapi.wal.exceptions.CorruptedRecordException;
+import org.okapi.wal.lsn.Lsn;
+
+/**
+ * Encodes and decodes WAL frames (see {@link WalEntry} for the layout) in place, without
+ * intermediate arrays.
+ *
+ * <p>Segments store records as {@code FRAME_LEN_PREFIX(4) | FRAME}. Encoding writes a whole record
+ * straight into a caller-owned (typically pooled, direct) buffer. Decoding returns entries whose
+ * payloads are read-only slices of the buffer that was decoded, so the payload is never copied.
+ */
+public final class WalFrameCodec {
+  public static final int LENGTH_PREFIX_BYTES = 4;
+  // NUMBER(8) | PAYLOAD_LEN(4) in front of every payload of a decompressed batch.
+  public static final int BATCH_ENTRY_HEADER_BYTES = 12;
+
+  private WalFrameCodec() {}
+
+  public static int encodedFrameSize(int payloadLength) {
+    return WalEntry.MIN_FRAME_SIZE + payloadLength;
+  }
+
+  public static int encodedRecordSize(int payloadLength) {
+    return LENGTH_PREFIX_BYTES + encodedFrameSize(payloadLength);
+  }
+
+  /** Writes the length-prefixed frame for {@code entry} at the position of {@code dst}. */
+  public static void encodeRecord(ByteBuffer dst, WalEntry entry) {
+    var payload = entry.getPayloadBuffer();
+    dst.order(ByteOrder.BIG_ENDIAN);
+    dst.putInt(encodedFrameSize(payload.remaining()));
+    encodeFrame(dst, entry.getLsn().getNumber(), payload);
+  }
+
+  public static void encodeFrame(ByteBuffer dst, long lsn, ByteBuffer payload) {
+    dst.order(ByteOrder.BIG_ENDIAN);
+    dst.put(WalEntry.MAGIC);
+    var checksummedFrom = dst.position();
+    dst.put(WalEntry.VERSION);
+    dst.putInt(WalEntry.HEADER_LENGTH + payload.remaining());
+    dst.putShort(WalEntry.HEADER_LENGTH);
+    dst.putLong(lsn);
+    dst.put(payload.duplicate());
+    dst.putInt(crc32c(dst, checksummedFrom, dst.position()));
+    dst.put(WalEntry.MAGIC_END);
+  }
+
+  public static int encodedRecordSize(CompressedBatch batch) {
+    return LENGTH_PREFIX_BYTES + encodedFrameSize(batch);
+  }
+
+  private static int encodedFrameSize(CompressedBatch batch) {
+    return WalEntry.MIN_BATCH_FRAME_SIZE + batch.getCompressed().length;
+  }
+
+  /** Writes the length-prefixed batch frame for {@code batch} at the position of {@code dst}. */
+  public static void encodeRecord(ByteBuffer dst, CompressedBatch batch) {
+    dst.order(ByteOrder.BIG_ENDIAN);
+    dst.putInt(encodedFrameSize(batch));
+    dst.put(WalEntry.MAGIC);
+    var checksummedFrom = dst.position();
+    dst.put(WalEntry.VERSION_BATCH);
+    dst.putInt(WalEntry.BATCH_HEADER_LENGTH + batch.getCompressed().length);
+    dst.putShort(WalEntry.BATCH_HEADER_LENGTH);
+    dst.putLong(batch.getMaxLsn());
+    dst.putInt(batch.getCount());
+    dst.putInt(batch.getRawLength());
+    dst.putInt(batch.getDictionaryId());
+    dst.put(batch.getCompressed());
+    dst.putInt(crc32c(dst, checksummedFrom, dst.position()));
+    dst.put(WalEntry.MAGIC_END);
+  }
+
+  // CRC32C is intrinsified by the JVM (SSE4.2 / ARMv8 CRC instructions).
+  private static int crc32c(ByteBuffer buffer, int from, int to) {
+    var crc = new CRC32C();
+    crc.update(buffer.slice(from, to - from));
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Decodes the frame spanning {@code frame.position()} to {@code frame.limit()} into {@code out},
+   * one entry for a plain frame and every entry of a compressed batch frame. Batch entries point
+   * into a heap buffer holding the decompressed block.
+   */
+  public static void decodeFrameInto(
+      ByteBuffer frame, WalDictionaries dictionaries, Collection<WalEntry> out)
+      throws CorruptedRecordException {
+    var versionAt = frame.position() + WalEntry.MAGIC.length;
+    if (frame.remaining() > WalEntry.MAGIC.length
+        && frame.get(versionAt) == WalEntry.VERSION_BATCH) {
+      decodeBatchFrame(frame, dictionaries, out);
+    } else {
+      out.add(decodeFrame(frame));
+    }
+  }
+
+  private static void decodeBatchFrame(
+      ByteBuffer frame, WalDictionaries dictionaries, Collection<WalEntry> out)
+      throws CorruptedRecordException {
+    var buffer = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+    if (buffer.remaining() < WalEntry.MIN_BATCH_FRAME_SIZE) {
+      throw new CorruptedRecordException("Batch frame too small: " + buffer.remaining());
+    }
+    checkMagic(buffer, WalEntry.MAGIC, "Invalid WAL frame magic");
+    var checksummedFrom = buffer.position();
+    buffer.get(); // version
+    int frameLength = buffer.getInt();
+    short headerLength = buffer.getShort();
+    if (headerLength != WalEntry.BATCH_HEADER_LENGTH) {
+      throw new CorruptedRecordException("Unexpected batch header length: " + headerLength);
+    }
+    long maxLsn = buffer.getLong();
+    int count = buffer.getInt();
+    int rawLength = buffer.getInt();
+    int dictionaryId = buffer.getInt();
+    int compressedLength = frameLength - headerLength;
+    if (compressedLength < 0 || buffer.remaining() < compressedLength + WalEntry.CRC_LENGTH) {
+      throw new CorruptedRecordException("Truncated batch frame content");
+    }
+    if (count <= 0 || rawLength < (long) count * BATCH_ENTRY_HEADER_BYTES) {
+      throw new CorruptedRecordException("Invalid batch of " + count + " entries");
+    }
+    var compressed = new byte[compressedLength];
+    buffer.get(compressed);
+    var expected = crc32c(buffer, checksummedFrom, buffer.position());
+    if (expected != buffer.getInt()) {
+      throw new CorruptedRecordException("CRC32C mismatch for batch ending at LSN " + maxLsn);
+    }
+    if (buffer.remaining() < WalEntry.MAGIC_END.length) {
+      throw new CorruptedRecordException("Not enough bytes to read MAGIC_END");
+    }
+    checkMagic(buffer, WalEntry.MAGIC_END, "Invalid WAL frame end magic");
+
+    var raw = ByteBuffer.wrap(decompress(compressed, rawLength, dictionaryId, dictionaries));
+    // nothing reaches out unless the whole batch decodes.
+    var entries = new ArrayList<WalEntry>(count);
+    long previous = Long.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      if (raw.remaining() < BATCH_ENTRY_HEADER_BYTES) {
+        throw new CorruptedRecordException("Batch ended after " + i + " of " + count + " entries");
+      }
+      long number = raw.getLong();
+      int payloadLength = raw.getInt();
+      if (number <= previous || payloadLength < 0 || payloadLength > raw.remaining()) {
+        throw new CorruptedRecordException("Invalid batch entry at LSN " + number);
+      }
+      previous = number;
+      var payload = raw.slice(raw.position(), payloadLength).asReadOnlyBuffer();
+      raw.position(raw.position() + payloadLength);
+      try {
+        entries.add(new WalEntry(new Lsn(number), payload));
+      } catch (IllegalArgumentException e) {
+        throw new CorruptedRecordException("Invalid LSN values", e);
+      }
+    }
+    if (previous != maxLsn || raw.hasRemaining()) {
+      throw new CorruptedRecordException("Batch content does not match its header");
+    }
+    out.addAll(entries);
+  }
+
+  private static byte[] decompress(
+      byte[] compressed, int rawLength, int dictionaryId, WalDictionaries dictionaries)
+      throws CorruptedRecordException {
+    try {
+      if (dictionaryId == 0) {
+        return Zstd.decompress(compressed, rawLength);
+      }
+      var dictionary = dictionaries.get(dictionaryId);
+      if (dictionary.isEmpty()) {
+        throw new CorruptedRecordException("Unknown zstd dictionary: " + dictionaryId);
+      }
+      return Zstd.decompress(compressed, dictionary.get(), rawLength);
+    } catch (ZstdException e) {
+      throw new CorruptedRecordException("Could not decompress batch frame", e);
+    }
+  }
+
+  private static void checkMagic(ByteBuffer buffer, byte[] magic, String message)
+      throws CorruptedRecordException {
+    for (var b : magic) {
+      if (buffer.get() != b) {
+        throw new CorruptedRecordException(message);
+      }
+    }
+  }
+
+  /**
+   * Decodes one frame spanning {@code frame.position()} to {@code frame.limit()}. The returned
+   * entry's payload is a read-only view into {@code frame}.
+   */
+  public static WalEntry decodeFrame(ByteBuffer frame) throws CorruptedRecordException {
+    var buffer = frame.duplicate().order(ByteOrder.BIG_ENDIAN);
+    if (buffer.remaining() < WalEntry.MIN_FRAME_SIZE_V1) {
+      throw new CorruptedRecordException("Frame too small: " + buffer.remaining());
+    }
+    for (var b : WalEntry.MAGIC) {
+      if (buffer.get() != b) {
+        throw new CorruptedRecordException("Invalid WAL frame magic");
+      }
+    }
+
+    var checksummedFrom = buffer.position();
+    byte version = buffer.get();
+    if (version == WalEntry.VERSION_BATCH) {
+      throw new CorruptedRecordException("Batch frames hold several entries, use decodeFrameInto");
+    }
+    if (version != WalEntry.VERSION_1 && version != WalEntry.VERSION_2) {
+      throw new CorruptedRecordException("Unsupported WAL frame version: " + version);
+    }
+
+    int frameLength = buffer.getInt();
+    short headerLength = buffer.getShort();
+    if (headerLength != WalEntry.HEADER_LENGTH) {
+      throw new CorruptedRecordException("Unexpected header length: " + headerLength);
+    }
+
+    long number = buffer.getLong();
+    int payloadLength = frameLength - headerLength;
+    if (payloadLength < 0 || payloadLength > WalEntry.MAX_PAYLOAD_BYTES) {
+      throw new CorruptedRecordException("Invalid payload length: " + payloadLength);
+    }
+
+    if (buffer.remaining() < payloadLength) {
+      throw new CorruptedRecordException("Truncated frame content");
+    }
+
+    var payload = buffer.slice(buffer.position(), payloadLength).asReadOnlyBuffer();
+    buffer.position(buffer.position() + payloadLength);
+    if (version == WalEntry.VERSION_2) {
+      if (buffer.remaining() < WalEntry.CRC_LENGTH) {
+        throw new CorruptedRecordException("Not enough bytes to read CRC32C");
+      }
+      var expected = crc32c(buffer, checksummedFrom, buffer.position());
+      var actual = buffer.getInt();
+      if (expected != actual) {
+        throw new CorruptedRecordException("CRC32C mismatch for LSN " + number);
+      }
+    }
+    if (buffer.remaining() < WalEntry.MAGIC_END.length) {
+      throw new CorruptedRecordException("Not enough bytes to read MAGIC_END");
+    }
+    for (var b : WalEntry.MAGIC_END) {
+      if (buffer.get() != b) {
+        throw new CorruptedRecordException("Invalid WAL frame end magic");
+      }
+    }
+    try {
+      return new WalEntry(new Lsn(number), payload);
+    } catch (IllegalArgumentException e) {
+      throw new CorruptedRecordException("Invalid LSN values", e);
+    }
+  }
+}
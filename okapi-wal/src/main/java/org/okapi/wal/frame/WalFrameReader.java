@@ -0,0 +1,65 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import org.okapi.wal.exceptions.CorruptedRecordException;
+
+/**
+ * Iterates the length-prefixed records of a segment image held in a {@link ByteBuffer} (heap,
+ * direct or mapped). Entries are returned as views into that buffer, nothing is copied. Entries of
+ * a compressed batch frame are decompressed together and handed out one by one.
+ *
+ * <p>An incomplete trailing record (a frame still being written, or a torn write) ends the
+ * iteration without consuming it, so a later call can pick it up once it is complete.
+ */
+public class WalFrameReader {
+  private final ByteBuffer records;
+  private final WalDictionaries dictionaries;
+  // remaining entries of the last decoded batch frame.
+  private final ArrayDeque<WalEntry> pending;
+
+  public WalFrameReader(ByteBuffer records) {
+    this(records, WalDictionaries.empty());
+  }
+
+  public WalFrameReader(ByteBuffer records, WalDictionaries dictionaries) {
+    this.records = records.duplicate().order(ByteOrder.BIG_ENDIAN);
+    this.dictionaries = dictionaries;
+    this.pending = new ArrayDeque<>();
+  }
+
+  public Optional<WalEntry> next() throws CorruptedRecordException {
+    if (!pending.isEmpty()) return Optional.of(pending.pollFirst());
+    if (records.remaining() < WalFrameCodec.LENGTH_PREFIX_BYTES) return Optional.empty();
+    var start = records.position();
+    var frameLength = records.getInt(start);
+    if (frameLength <= 0) {
+      throw new CorruptedRecordException("Invalid frame length: " + frameLength);
+    }
+    if (records.remaining() - WalFrameCodec.LENGTH_PREFIX_BYTES < frameLength) {
+      return Optional.empty();
+    }
+    var frameStart = start + WalFrameCodec.LENGTH_PREFIX_BYTES;
+    WalFrameCodec.decodeFrameInto(records.slice(frameStart, frameLength), dictionaries, pending);
+    records.position(frameStart + frameLength);
+    return Optional.ofNullable(pending.pollFirst());
+  }
+
+  /**
+   * Index of the next undecoded record in the wrapped buffer. Entries of a batch frame that were
+   * not returned yet are already behind it.
+   */
+  public int position() {
+    return records.position();
+  }
+
+  public boolean hasRemaining() {
+    return !pending.isEmpty() || records.hasRemaining();
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.io;
+
+import com.google.common.base.Preconditions;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Decides when {@link WalWriter} forces written frames to disk.
+ *
+ * <ul>
+ *   <li>NONE: never fsync, entries are durable only once the OS flushes its page cache.
+ *   <li>PER_BATCH: fsync after every append call (one per group-commit batch).
+ *   <li>INTERVAL: fsync once at least {@code intervalMs} elapsed since the previous fsync.
+ *   <li>BYTES: fsync once at least {@code bytes} were written since the previous fsync.
+ * </ul>
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FsyncPolicy {
+  public enum MODE {
+    NONE,
+    PER_BATCH,
+    INTERVAL,
+    BYTES
+  }
+
+  private final MODE mode;
+  private final long intervalMs;
+  private final long bytes;
+
+  public static FsyncPolicy none() {
+    return new FsyncPolicy(MODE.NONE, 0L, 0L);
+  }
+
+  public static FsyncPolicy perBatch() {
+    return new FsyncPolicy(MODE.PER_BATCH, 0L, 0L);
+  }
+
+  public static FsyncPolicy everyMillis(long intervalMs) {
+    Preconditions.checkArgument(intervalMs > 0, "intervalMs should be > 0");
+    return new FsyncPolicy(MODE.INTERVAL, intervalMs, 0L);
+  }
+
+  public static FsyncPolicy everyBytes(long bytes) {
+    Preconditions.checkArgument(bytes > 0, "bytes should be > 0");
+    return new FsyncPolicy(MODE.BYTES, 0L, bytes);
+  }
+
+  public static FsyncPolicy of(MODE mode, long intervalMs, long bytes) {
+    return switch (mode) {
+      case NONE -> none();
+      case PER_BATCH -> perBatch();
+      case INTERVAL -> everyMillis(intervalMs);
+      case BYTES -> everyBytes(bytes);
+    };
+  }
+
+  public boolean syncs() {
+    return mode != MODE.NONE;
+  }
+
+  public boolean shouldSync(long bytesSinceSync, long nanosSinceSync) {
+    return switch (mode) {
+      case NONE -> false;
+      case PER_BATCH -> bytesSinceSync > 0;
+      case INTERVAL -> bytesSinceSync > 0 && nanosSinceSync >= intervalMs * 1_000_000L;
+      case BYTES -> bytesSinceSync >= bytes;
+    };
+  }
+}
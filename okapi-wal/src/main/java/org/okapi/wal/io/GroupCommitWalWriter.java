@@ -0,0 +1,194 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.io;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.okapi.wal.LsnSupplier;
+import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.lsn.Lsn;
+
+/**
+ * Coalesces appends from many ingest threads into batched writes on a single committer thread.
+ *
+ * <p>Callers hand over payloads, LSNs are assigned under a short enqueue lock so that queue order
+ * always matches LSN order. The committer drains whatever is queued, issues a single {@link
+ * WalWriter#appendBatch(Iterable)} (one gathering write per segment) and lets the writer's {@link
+ * FsyncPolicy} decide whether to fsync. Each caller's future completes once the LSN of its last
+ * entry is durable under that policy.
+ *
+ * <p>All appends on the underlying writer should go through this class once it is in use, direct
+ * appends would race with the LSNs handed out here. The committer thread is started by the first
+ * append, so writers that are never appended to don't hold one.
+ */
+@Slf4j
+public class GroupCommitWalWriter implements Closeable {
+  public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+  public static final int DEFAULT_MAX_APPENDS_PER_BATCH = 1024;
+  private static final long IDLE_POLL_MS = 100;
+  private static final long LINGER_BEFORE_SYNC_MS = 1;
+
+  record PendingAppend(List<WalEntry> entries, Lsn lastLsn, CompletableFuture<Lsn> durable) {}
+
+  private final WalWriter walWriter;
+  private final LsnSupplier lsnSupplier;
+  private final BlockingQueue<PendingAppend> queue;
+  private final ArrayDeque<PendingAppend> awaitingSync;
+  private final int maxAppendsPerBatch;
+  private final Object enqueueLock = new Object();
+  // started on the first append, guarded by enqueueLock.
+  private Thread committer;
+  private volatile boolean closed;
+
+  public GroupCommitWalWriter(WalWriter walWriter, LsnSupplier lsnSupplier) {
+    this(walWriter, lsnSupplier, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_APPENDS_PER_BATCH);
+  }
+
+  public GroupCommitWalWriter(
+      WalWriter walWriter, LsnSupplier lsnSupplier, int queueCapacity, int maxAppendsPerBatch) {
+    Preconditions.checkArgument(queueCapacity > 0, "queueCapacity should be > 0");
+    Preconditions.checkArgument(maxAppendsPerBatch > 0, "maxAppendsPerBatch should be > 0");
+    this.walWriter = walWriter;
+    this.lsnSupplier = lsnSupplier;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.awaitingSync = new ArrayDeque<>();
+    this.maxAppendsPerBatch = maxAppendsPerBatch;
+  }
+
+  /**
+   * Enqueues payloads for the next group commit. Blocks while the queue is full, which is the
+   * backpressure signal to ingest.
+   *
+   * @return a future completing with the LSN of the last payload once it is durable.
+   */
+  public CompletableFuture<Lsn> append(List<byte[]> payloads) throws InterruptedException {
+    if (payloads.isEmpty()) {
+      return CompletableFuture.completedFuture(walWriter.getDurableLsn());
+    }
+    synchronized (enqueueLock) {
+      Preconditions.checkState(!closed, "Group commit writer is closed.");
+      if (committer == null) {
+        committer = new Thread(this::runCommitter, "wal-group-committer");
+        committer.setDaemon(true);
+        committer.start();
+      }
+      var entries = new ArrayList<WalEntry>(payloads.size());
+      for (var payload : payloads) {
+        entries.add(new WalEntry(lsnSupplier.next(), payload));
+      }
+      var pending =
+          new PendingAppend(
+              entries, entries.get(entries.size() - 1).getLsn(), new CompletableFuture<>());
+      queue.put(pending);
+      return pending.durable();
+    }
+  }
+
+  /** Synchronous variant of {@link #append(List)}, returns once all payloads are durable. */
+  public Lsn appendAndWait(List<byte[]> payloads) throws IOException, IllegalWalEntryException {
+    try {
+      return append(payloads).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for group commit.");
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof IOException io) throw io;
+      if (cause instanceof IllegalWalEntryException illegal) throw illegal;
+      throw new IOException("Group commit failed.", cause);
+    }
+  }
+
+  private void runCommitter() {
+    while (true) {
+      PendingAppend first;
+      try {
+        first = queue.poll(pollTimeoutMs(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        first = null;
+      }
+      if (first == null) {
+        syncAwaiting();
+        if (closed && queue.isEmpty()) break;
+        continue;
+      }
+
+      var batch = new ArrayList<PendingAppend>();
+      batch.add(first);
+      queue.drainTo(batch, maxAppendsPerBatch - 1);
+      var entries = new ArrayList<WalEntry>();
+      for (var pending : batch) {
+        entries.addAll(pending.entries());
+      }
+      try {
+        walWriter.appendBatch(entries);
+      } catch (Exception e) {
+        log.error("Group commit of {} entries failed.", entries.size(), e);
+        batch.forEach(pending -> pending.durable().completeExceptionally(e));
+        continue;
+      }
+      awaitingSync.addAll(batch);
+      completeDurable();
+    }
+  }
+
+  private long pollTimeoutMs() {
+    if (awaitingSync.isEmpty()) return IDLE_POLL_MS;
+    var policy = walWriter.getFsyncPolicy();
+    return policy.getMode() == FsyncPolicy.MODE.INTERVAL
+        ? policy.getIntervalMs()
+        : LINGER_BEFORE_SYNC_MS;
+  }
+
+  // the queue went quiet with unsynced appends: don't make callers wait on future traffic.
+  private void syncAwaiting() {
+    if (awaitingSync.isEmpty()) return;
+    try {
+      walWriter.sync();
+      completeDurable();
+    } catch (IOException e) {
+      log.error("WAL fsync failed.", e);
+      while (!awaitingSync.isEmpty()) {
+        awaitingSync.poll().durable().completeExceptionally(e);
+      }
+    }
+  }
+
+  private void completeDurable() {
+    var durableLsn = walWriter.getDurableLsn();
+    while (!awaitingSync.isEmpty() && awaitingSync.peek().lastLsn().compareTo(durableLsn) <= 0) {
+      var pending = awaitingSync.poll();
+      pending.durable().complete(pending.lastLsn());
+    }
+  }
+
+  /** Waits for queued appends to be committed, then stops the committer. */
+  @Override
+  public void close() throws IOException {
+    Thread started;
+    synchronized (enqueueLock) {
+      this.closed = true;
+      started = this.committer;
+    }
+    if (started == null) return;
+    try {
+      started.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while draining group commit queue.");
+    }
+  }
+}
@@ -5,43 +5,130 @@
 package org.okapi.wal.io;
 
 import java.io.Closeable;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import lombok.Getter;
-import org.okapi.io.OkapiIo;
-import org.okapi.io.StreamReadingException;
 import org.okapi.wal.exceptions.CorruptedRecordException;
+import org.okapi.wal.frame.WalDictionaries;
 import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.frame.WalFrameReader;
 
+/**
+ * Reads a segment. A sealed segment no longer changes, it is mapped read-only once and decoded
+ * without syscalls or copies. The active segment is tailed with positional reads into a buffer the
+ * reader reuses, so its growth creates no new mappings and truncating it cannot fault a reader.
+ *
+ * <p>Entries of a sealed segment are views into the mapping, entries of the active segment are
+ * copied out of the read buffer. Both stay valid after the reader is closed.
+ */
 public class SegmentReader implements Closeable {
+  static final int INITIAL_READ_BUFFER_BYTES = 64 * 1024;
+  static final int MAX_READ_BYTES = 1024 * 1024;
 
   Path segmentFile;
-  FileInputStream fileInputStream;
+  FileChannel fc;
+  boolean sealed;
+  WalFrameReader frames;
+  WalDictionaries dictionaries;
   @Getter int segment;
 
-  public SegmentReader(int segment, Path segmentFile) throws FileNotFoundException {
+  // active segment only: bytes read but not decoded yet are at [0, filled) of readBuffer, followed
+  // in the file by readTo.
+  ByteBuffer readBuffer;
+  int filled;
+  long readTo;
+
+  public SegmentReader(int segment, Path segmentFile) throws IOException {
+    this(segment, segmentFile, WalDictionaries.empty(), false);
+  }
+
+  public SegmentReader(int segment, Path segmentFile, WalDictionaries dictionaries)
+      throws IOException {
+    this(segment, segmentFile, dictionaries, false);
+  }
+
+  /**
+   * @param sealed whether the writer moved past this segment, only then it is mapped
+   */
+  public SegmentReader(
+      int segment, Path segmentFile, WalDictionaries dictionaries, boolean sealed)
+      throws IOException {
     this.segmentFile = segmentFile;
-    this.fileInputStream = new FileInputStream(segmentFile.toFile());
+    this.fc = FileChannel.open(segmentFile, StandardOpenOption.READ);
     this.segment = segment;
+    this.dictionaries = dictionaries;
+    this.sealed = sealed;
   }
 
+  /**
+   * Decodes the record at the current position. A record that is not fully on disk yet is left in
+   * place so that a later call can read it.
+   */
   public Optional<WalEntry> readNextRecord() {
     try {
-      var entry = OkapiIo.readBytes(this.fileInputStream);
-      return Optional.of(WalEntry.deserialize(entry));
-    } catch (StreamReadingException e) {
-      // EOF or truncated bytes; caller can stop iteration.
-      return Optional.empty();
+      if (frames != null) {
+        var next = frames.next();
+        if (next.isPresent()) return copyIfTailed(next);
+      }
+      if (sealed ? !mapOnce() : !readAppended()) return Optional.empty();
+      return copyIfTailed(frames.next());
     } catch (IOException | CorruptedRecordException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private boolean mapOnce() throws IOException {
+    if (frames != null) return false;
+    var length = Math.min(fc.size(), Integer.MAX_VALUE);
+    var mapped = fc.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    this.frames = new WalFrameReader(mapped, dictionaries);
+    return true;
+  }
+
+  /**
+   * Moves the undecoded tail of the read buffer to its front and reads what was appended after it,
+   * at most {@link #MAX_READ_BYTES} per call. The buffer grows when a record does not fit.
+   */
+  private boolean readAppended() throws IOException {
+    var available = fc.size() - readTo;
+    if (available <= 0) return false;
+    var consumed = frames == null ? 0 : frames.position();
+    var carried = filled - consumed;
+    var toRead = (int) Math.min(available, MAX_READ_BYTES);
+    if (readBuffer == null || readBuffer.capacity() < carried + toRead) {
+      var capacity = readBuffer == null ? INITIAL_READ_BUFFER_BYTES : readBuffer.capacity() * 2;
+      var grown = ByteBuffer.allocateDirect(Math.max(capacity, carried + toRead));
+      if (readBuffer != null) grown.put(0, readBuffer, consumed, carried);
+      readBuffer = grown;
+    } else if (carried > 0 && consumed > 0) {
+      readBuffer.limit(filled).position(consumed);
+      readBuffer.compact();
+    }
+    var read = 0;
+    while (read < toRead) {
+      var dst = readBuffer.duplicate().limit(carried + toRead).position(carried + read);
+      var n = fc.read(dst, readTo + read);
+      if (n <= 0) break;
+      read += n;
+    }
+    this.filled = carried + read;
+    this.readTo += read;
+    this.frames = new WalFrameReader(readBuffer.slice(0, filled), dictionaries);
+    return read > 0;
+  }
+
+  /** The read buffer is overwritten by the next read, entries must not point into it. */
+  private Optional<WalEntry> copyIfTailed(Optional<WalEntry> entry) {
+    if (sealed || entry.isEmpty()) return entry;
+    return Optional.of(new WalEntry(entry.get().getLsn(), entry.get().getPayload()));
+  }
+
   @Override
   public void close() throws IOException {
-    this.fileInputStream.close();
+    this.fc.close();
   }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.lsn.Lsn;
+
+/**
+ * Reusable container filled by {@link WalReader#readBatchInto(WalBatch, int)}. Consumers keep one
+ * per reader so catching up does not allocate a list per batch; entries must not be retained past
+ * the next fill.
+ */
+public class WalBatch {
+  private final ArrayList<WalEntry> entries = new ArrayList<>();
+  private final List<WalEntry> view = Collections.unmodifiableList(entries);
+  @Getter private Lsn maxLsn = Lsn.zeroLsn();
+  @Getter private long payloadBytes;
+
+  void add(WalEntry entry) {
+    entries.add(entry);
+    maxLsn = Lsn.max(maxLsn, entry.getLsn());
+    payloadBytes += entry.getPayloadLength();
+  }
+
+  public void clear() {
+    entries.clear();
+    maxLsn = Lsn.zeroLsn();
+    payloadBytes = 0;
+  }
+
+  public List<WalEntry> getEntries() {
+    return view;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+}
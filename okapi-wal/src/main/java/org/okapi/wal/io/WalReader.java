@@ -5,6 +5,7 @@
 package org.okapi.wal.io;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -22,8 +23,12 @@ public class WalReader {
   Lsn fromLsn;
   Lsn lastReadLsn;
   SegmentReader currentReader;
+  // largest LSN of the current segment once it is sealed, null while the writer still appends to
+  // it. Looked up once per segment instead of once per record.
+  Long sealedMaxLsn;
 
-  WalEntry previous;
+  // entries decoded ahead of the consumer, head is what readNext() returns.
+  ArrayDeque<WalEntry> decoded;
 
   public WalReader(
       WalManager walManager,
@@ -40,57 +45,102 @@ public class WalReader {
       throw new IllegalStateException("Lsn larger than any found in the segments.");
     }
     this.lastReadLsn = Lsn.getStart();
-    this.currentReader =
-        new SegmentReader(
-            segmentContainingLsn.get(), walDirectory.getWalSegment(segmentContainingLsn.get()));
+    this.decoded = new ArrayDeque<>();
+    openSegment(segmentContainingLsn.get());
   }
 
   public Optional<WalEntry> readNext() throws IOException {
-    if (previous != null) {
-      return Optional.of(previous);
+    if (decoded.isEmpty()) {
+      decode(1);
     }
+    return Optional.ofNullable(decoded.peekFirst());
+  }
+
+  public void advance() {
+    decoded.pollFirst();
+  }
+
+  public List<WalEntry> readBatchAndAdvance(int n) throws IOException {
+    var batch = new WalBatch();
+    readBatchInto(batch, n);
+    return new ArrayList<>(batch.getEntries());
+  }
+
+  /**
+   * Clears {@code batch} and fills it with up to {@code n} entries, decoding as many frames as are
+   * available in one pass over the segments.
+   */
+  public WalBatch readBatchInto(WalBatch batch, int n) throws IOException {
+    batch.clear();
+    if (decoded.size() < n) {
+      decode(n - decoded.size());
+    }
+    while (batch.size() < n && !decoded.isEmpty()) {
+      batch.add(decoded.pollFirst());
+    }
+    return batch;
+  }
+
+  /**
+   * Entries written but not yet handed out by this reader. LSNs are allocated contiguously so this
+   * is exact once the reader has passed its start LSN; entries lost to truncation make it an upper
+   * bound.
+   */
+  public long pendingEntries() {
+    var readUpTo = Math.max(lastReadLsn.getNumber(), fromLsn.getNumber());
+    return decoded.size() + Math.max(0, lastWrittenLsn.get().getNumber() - readUpTo);
+  }
+
+  private void decode(int n) throws IOException {
     var lastWritten = lastWrittenLsn.get();
-    if (lastWritten.compareTo(fromLsn) < 0 || lastReadLsn == lastWritten) return Optional.empty();
-    while (true) {
-      var maxLsnInSegment =
-          walManager.getMaxLsnInSegment(currentReader.getSegment()).orElse(Long.MAX_VALUE);
-      if (this.lastReadLsn.getNumber() == maxLsnInSegment) {
-        if (currentReader.getSegment() == walManager.getCurrentSegment()) {
-          return Optional.empty();
-        } else {
-          currentReader.close();
-          var nextSeg = walDirectory.getSegmentImmediatelyAfter(currentReader.getSegment());
-          if (nextSeg.isEmpty()) return Optional.empty();
-          var segFile = walDirectory.getWalSegment(nextSeg.get());
-          currentReader = new SegmentReader(nextSeg.get(), segFile);
+    var target = decoded.size() + n;
+    while (decoded.size() < target) {
+      if (lastReadLsn.compareTo(lastWritten) >= 0) return;
+      if (sealedMaxLsn != null && lastReadLsn.getNumber() >= sealedMaxLsn) {
+        if (!openNextSegment()) return;
+        continue;
+      }
+      var entry = currentReader.readNextRecord();
+      if (entry.isEmpty()) {
+        if (sealedMaxLsn == null) {
+          // caught up with the active segment, unless it was sealed in the meantime.
+          sealedMaxLsn = lookupSealedMaxLsn(currentReader.getSegment());
+          if (sealedMaxLsn == null) return;
           continue;
         }
+        if (!openNextSegment()) return;
+        continue;
       }
-      var entry = currentReader.readNextRecord();
-      if (entry.isEmpty()) return Optional.empty();
       var walEntry = entry.get();
       lastReadLsn = walEntry.getLsn();
       if (lastReadLsn.compareTo(fromLsn) <= 0) {
         // skip entries prior to or at the requested start LSN
         continue;
       }
-      previous = walEntry;
-      return Optional.of(previous);
+      decoded.addLast(walEntry);
     }
   }
 
-  public void advance() {
-    previous = null;
+  private boolean openNextSegment() throws IOException {
+    var nextSeg = walDirectory.getSegmentImmediatelyAfter(currentReader.getSegment());
+    if (nextSeg.isEmpty()) return false;
+    currentReader.close();
+    openSegment(nextSeg.get());
+    return true;
   }
 
-  public List<WalEntry> readBatchAndAdvance(int n) throws IOException {
-    var batch = new ArrayList<WalEntry>();
-    for (int i = 0; i < n; i++) {
-      var entry = readNext();
-      if (entry.isEmpty()) break;
-      else batch.add(entry.get());
-      advance();
-    }
-    return batch;
+  private void openSegment(int segment) throws IOException {
+    this.sealedMaxLsn = lookupSealedMaxLsn(segment);
+    this.currentReader =
+        new SegmentReader(
+            segment,
+            walDirectory.getWalSegment(segment),
+            walManager.getDictionaries(),
+            sealedMaxLsn != null);
+  }
+
+  private Long lookupSealedMaxLsn(int segment) {
+    if (segment == walManager.getCurrentSegment()) return null;
+    return walManager.getMaxLsnInSegment(segment).orElse(Long.MAX_VALUE);
   }
 }
@@ -10,33 +10,53 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.Locked;
+import org.okapi.wal.frame.WalCompression;
 import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.frame.WalFrameCodec;
 import org.okapi.wal.lsn.Lsn;
 import org.okapi.wal.manager.WalDirectory;
 import org.okapi.wal.manager.WalManager;
 
 public class WalWriter implements Closeable {
+  private static final int INITIAL_WRITE_BUFFER_BYTES = 1024 * 1024;
+
   WalManager walManager;
   WalDirectory walDirectory;
   FileChannel fc;
+  @Getter FsyncPolicy fsyncPolicy;
+  @Getter WalCompression compression;
 
   @Getter long bytesWrittenInCurSeg;
-  @Getter Lsn lastWrittenLsn;
+  @Getter volatile Lsn lastWrittenLsn;
+  @Getter volatile Lsn lastSyncedLsn;
+  long bytesSinceSync;
+  long lastSyncNanos;
   ReadWriteLock walAppendLock;
-  ByteBuffer walEntryLenBuff;
+  // frames are encoded straight into this reused buffer and written with a single call.
+  ByteBuffer writeBuffer;
+  // largest LSN encoded into writeBuffer but not written yet.
+  Lsn pendingLsn;
 
   public WalWriter(WalManager walManager, WalDirectory walDirectory) throws IOException {
     this.walManager = walManager;
     this.walAppendLock = new ReentrantReadWriteLock();
+    this.writeBuffer = ByteBuffer.allocateDirect(INITIAL_WRITE_BUFFER_BYTES);
     var currentFile = walManager.allocateOrGetSegment();
     this.fc = openChannel(currentFile);
-    this.walEntryLenBuff = ByteBuffer.allocateDirect(4);
     this.walDirectory = walDirectory;
+    this.fsyncPolicy = walManager.getWalConfig().getFsyncPolicy();
+    this.compression = walManager.getWalConfig().getCompression();
     this.lastWrittenLsn = walManager.getLastWrittenLsn();
+    // whatever survived repair on startup is already on disk.
+    this.lastSyncedLsn = this.lastWrittenLsn;
+    this.lastSyncNanos = System.nanoTime();
   }
 
   protected FileChannel openChannel(Path fp) throws IOException {
@@ -47,44 +67,131 @@ public class WalWriter implements Closeable {
 
   @Locked.Write("walAppendLock")
   public void append(WalEntry entry) throws IllegalWalEntryException, IOException {
-    this.appendWithoutLock(entry);
+    this.appendWithoutLock(List.of(entry));
+  }
+
+  /**
+   * Encodes all entries into a reused direct buffer and writes it with one call per segment, then
+   * applies the configured {@link FsyncPolicy}. The batch is validated up-front so an out-of-order
+   * entry rejects the whole batch without writing any part of it. With {@link WalCompression}
+   * enabled the batch is written as compressed blocks rather than one frame per entry.
+   */
+  @Locked.Write("walAppendLock")
+  public void appendBatch(Iterable<WalEntry> entries) throws IllegalWalEntryException, IOException {
+    this.appendWithoutLock(entries);
+  }
+
+  private void appendWithoutLock(Iterable<WalEntry> entries)
+      throws IllegalWalEntryException, IOException {
+    var previous = this.lastWrittenLsn;
+    var batch = new ArrayList<WalEntry>();
+    for (var entry : entries) {
+      if (entry.getLsn().compareTo(previous) <= 0) {
+        throw new IllegalWalEntryException(
+            "Entry Lsn : " + entry.getLsn() + " is earlier than " + previous);
+      }
+      previous = entry.getLsn();
+      batch.add(entry);
+    }
+
+    if (compression.isEnabled()) {
+      for (var block : compression.blocks(batch)) {
+        var compressed = compression.compress(block);
+        writeRecord(
+            WalFrameCodec.encodedRecordSize(compressed),
+            block.getLast().getLsn(),
+            dst -> WalFrameCodec.encodeRecord(dst, compressed));
+      }
+    } else {
+      for (var entry : batch) {
+        writeRecord(
+            WalFrameCodec.encodedRecordSize(entry.getPayloadLength()),
+            entry.getLsn(),
+            dst -> WalFrameCodec.encodeRecord(dst, entry));
+      }
+    }
+    if (pendingLsn != null) {
+      flushPending();
+    }
+    if (fsyncPolicy.shouldSync(bytesSinceSync, System.nanoTime() - lastSyncNanos)) {
+      syncWithoutLock();
+    }
   }
 
-  private void appendWithoutLock(WalEntry entry) throws IllegalWalEntryException, IOException {
-    if (entry.getLsn().compareTo(this.lastWrittenLsn) <= 0) {
-      throw new IllegalWalEntryException(
-          "Entry Lsn : " + entry.getLsn() + " is earlier than " + this.lastWrittenLsn);
+  private void writeRecord(int recordSize, Lsn lastLsn, Consumer<ByteBuffer> encoder)
+      throws IOException {
+    if (writeBuffer.remaining() < recordSize) {
+      if (pendingLsn != null) {
+        flushPending();
+      }
+      ensureWriteBufferCapacity(recordSize);
     }
-    var serialized = entry.serialize();
-    this.walEntryLenBuff.clear();
-    this.walEntryLenBuff.putInt(serialized.length);
-    this.walEntryLenBuff.flip(); // reset position so the length prefix is written
-    this.fc.write(this.walEntryLenBuff);
-    this.fc.write(ByteBuffer.wrap(serialized));
-    this.bytesWrittenInCurSeg += (4 + serialized.length);
-    this.lastWrittenLsn = entry.getLsn();
-    this.walManager.setLastWrittenLsn(entry.getLsn());
+    encoder.accept(writeBuffer);
+    this.bytesWrittenInCurSeg += recordSize;
+    this.bytesSinceSync += recordSize;
+    this.pendingLsn = lastLsn;
     if (bytesWrittenInCurSeg > walManager.getWalConfig().getSegmentSize()) {
+      // the segment is full: flush what belongs to it before the manager seals it.
+      flushPending();
+      if (fsyncPolicy.syncs()) {
+        syncWithoutLock();
+      }
       this.fc.close();
       var nextPath = walManager.allocateOrGetSegment();
       this.fc = openChannel(nextPath);
     }
   }
 
-  public WalReader getReaderFromCurrent() throws IOException {
-    return new WalReader(
-        this.walManager, this.walDirectory, this.lastWrittenLsn, this::getLastWrittenLsn);
+  private void flushPending() throws IOException {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining()) {
+      this.fc.write(writeBuffer);
+    }
+    writeBuffer.clear();
+    // only publish the LSN once its bytes are in the segment, readers tail up to it.
+    this.lastWrittenLsn = pendingLsn;
+    this.walManager.setLastWrittenLsn(pendingLsn);
+    this.pendingLsn = null;
+  }
+
+  private void ensureWriteBufferCapacity(int recordSize) {
+    if (writeBuffer.capacity() >= recordSize) return;
+    var capacity = Math.max(recordSize, 2 * writeBuffer.capacity());
+    this.writeBuffer = ByteBuffer.allocateDirect(capacity);
   }
 
+  /** Forces every written frame to disk, regardless of the configured {@link FsyncPolicy}. */
   @Locked.Write("walAppendLock")
-  public void appendBatch(Iterable<WalEntry> entries) throws IllegalWalEntryException, IOException {
-    for (var entry : entries) {
-      this.appendWithoutLock(entry);
-    }
+  public void sync() throws IOException {
+    if (bytesSinceSync == 0) return;
+    syncWithoutLock();
+  }
+
+  private void syncWithoutLock() throws IOException {
+    this.fc.force(false);
+    this.bytesSinceSync = 0;
+    this.lastSyncNanos = System.nanoTime();
+    this.lastSyncedLsn = this.lastWrittenLsn;
+  }
+
+  /**
+   * Largest LSN that is durable under the configured policy. Without fsync, an entry counts as
+   * durable once it has been handed to the OS.
+   */
+  public Lsn getDurableLsn() {
+    return fsyncPolicy.syncs() ? lastSyncedLsn : lastWrittenLsn;
+  }
+
+  public WalReader getReaderFromCurrent() throws IOException {
+    return new WalReader(
+        this.walManager, this.walDirectory, this.lastWrittenLsn, this::getLastWrittenLsn);
   }
 
   @Override
   public void close() throws IOException {
+    if (fsyncPolicy.syncs() && bytesSinceSync > 0) {
+      syncWithoutLock();
+    }
     this.fc.close();
   }
 }
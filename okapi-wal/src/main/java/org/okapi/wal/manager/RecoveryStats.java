@@ -0,0 +1,26 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/** What {@link WalManager} did to bring its directory to a consistent state at startup. */
+@AllArgsConstructor
+@Getter
+@Builder
+@ToString
+public class RecoveryStats {
+  long durationMs;
+  // sealed segments holding uncommitted LSNs, validated in parallel.
+  int segmentsValidated;
+  int corruptSegments;
+  long bytesScanned;
+  long framesScanned;
+  // bytes dropped from torn or corrupt segment tails.
+  long truncatedBytes;
+}
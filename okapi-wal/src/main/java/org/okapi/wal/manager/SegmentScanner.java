@@ -0,0 +1,72 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.manager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.okapi.wal.exceptions.CorruptedRecordException;
+import org.okapi.wal.frame.WalDictionaries;
+import org.okapi.wal.frame.WalFrameReader;
+import org.okapi.wal.lsn.Lsn;
+
+/**
+ * Validates every frame of a segment through a read-only mapping. Stops at the first corrupt frame
+ * or at an incomplete trailing record, {@link ScanResult#getValidBytes()} is the offset up to which
+ * the segment can be trusted.
+ */
+public class SegmentScanner {
+
+  @AllArgsConstructor
+  @Getter
+  public static class ScanResult {
+    private final Optional<Lsn> lastGoodLsn;
+    private final long validBytes;
+    private final long fileBytes;
+    private final long frames;
+    // a frame failed validation, as opposed to the segment ending in a torn write.
+    private final boolean corrupt;
+
+    public boolean isClean() {
+      return !corrupt && validBytes == fileBytes;
+    }
+  }
+
+  public static ScanResult scan(Path segmentFile) throws IOException {
+    return scan(segmentFile, WalDictionaries.empty());
+  }
+
+  public static ScanResult scan(Path segmentFile, WalDictionaries dictionaries)
+      throws IOException {
+    try (var fc = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+      var size = fc.size();
+      Optional<Lsn> lastGood = Optional.empty();
+      long frames = 0;
+      long offset = 0;
+      boolean corrupt = false;
+      // segments are bounded by WalConfig.segmentSize, chunking only matters for huge configs.
+      while (offset < size && !corrupt) {
+        var length = Math.min(size - offset, Integer.MAX_VALUE);
+        var mapped = fc.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        var reader = new WalFrameReader(mapped, dictionaries);
+        try {
+          for (var next = reader.next(); next.isPresent(); next = reader.next()) {
+            lastGood = Optional.of(next.get().getLsn());
+            frames++;
+          }
+        } catch (CorruptedRecordException e) {
+          corrupt = true;
+        }
+        if (reader.position() == 0) break;
+        offset += reader.position();
+      }
+      return new ScanResult(lastGood, offset, size, frames, corrupt);
+    }
+  }
+}
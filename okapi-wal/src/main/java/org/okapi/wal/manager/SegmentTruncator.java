@@ -4,15 +4,13 @@
  */
 package org.okapi.wal.manager;
 
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import org.okapi.wal.exceptions.CorruptedRecordException;
-import org.okapi.wal.frame.WalEntry;
 import org.okapi.wal.lsn.Lsn;
 
 /**
@@ -29,43 +27,17 @@ public class SegmentTruncator {
   }
 
   public static TruncationResult truncate(Path segmentFile) throws IOException {
-    Optional<Lsn> lastGood = Optional.empty();
-    long truncateTo = 0L;
-    try (var raf = new RandomAccessFile(segmentFile.toFile(), "rw")) {
-      while (true) {
-        truncateTo = raf.getFilePointer();
-        int len;
-        try {
-          len = raf.readInt();
-        } catch (EOFException eof) {
-          break;
-        }
-
-        long remaining = raf.length() - raf.getFilePointer();
-        if (len <= 0 || len > remaining) {
-          break;
-        }
-
-        byte[] bytes = new byte[len];
-        try {
-          raf.readFully(bytes);
-        } catch (EOFException eof) {
-          break;
-        }
-
-        try {
-          var walEntry = WalEntry.deserialize(bytes);
-          lastGood = Optional.of(walEntry.getLsn());
-          truncateTo = raf.getFilePointer();
-        } catch (CorruptedRecordException e) {
-          break;
-        }
-      }
+    return truncate(segmentFile, SegmentScanner.scan(segmentFile));
+  }
 
-      if (truncateTo < raf.length()) {
-        raf.setLength(truncateTo);
+  /** Truncates {@code segmentFile} to the valid prefix found by an earlier scan. */
+  public static TruncationResult truncate(Path segmentFile, SegmentScanner.ScanResult scan)
+      throws IOException {
+    if (scan.getValidBytes() < scan.getFileBytes()) {
+      try (var fc = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+        fc.truncate(scan.getValidBytes());
       }
     }
-    return new TruncationResult(lastGood, truncateTo);
+    return new TruncationResult(scan.getLastGoodLsn(), scan.getValidBytes());
   }
 }
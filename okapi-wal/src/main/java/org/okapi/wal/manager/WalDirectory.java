@@ -8,6 +8,7 @@ import com.google.gson.Gson;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import lombok.Getter;
 import org.okapi.wal.commit.WalCommit;
@@ -42,6 +43,22 @@ public class WalDirectory {
     return root.resolve("wal_commit.json");
   }
 
+  public Path getDictionaryFile(int dictionaryId) {
+    return root.resolve("zstd_dict_" + Integer.toUnsignedString(dictionaryId) + ".bin");
+  }
+
+  public List<Path> getDictionaryFiles() throws IOException {
+    try (var allFiles = Files.list(root)) {
+      return allFiles
+          .filter(
+              f -> {
+                var fname = f.getFileName().toString();
+                return fname.startsWith("zstd_dict_") && fname.endsWith(".bin");
+              })
+          .toList();
+    }
+  }
+
   public Optional<WalCommit> getLatestCommit() throws IOException {
     var commitPath = getWalCommit();
     if (!Files.exists(commitPath)) return Optional.empty();
@@ -13,13 +13,22 @@ import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.okapi.wal.commit.WalCommit;
 import org.okapi.wal.filelock.FileLockException;
 import org.okapi.wal.filelock.FileLockUtils;
+import org.okapi.wal.frame.WalCompression;
+import org.okapi.wal.frame.WalDictionaries;
+import org.okapi.wal.io.FsyncPolicy;
 import org.okapi.wal.lsn.Lsn;
 
 /**
@@ -33,24 +42,59 @@ public class WalManager implements Closeable {
   @Getter
   public static class WalConfig {
     long segmentSize;
+    FsyncPolicy fsyncPolicy;
+    // threads used to validate sealed segments at startup.
+    int recoveryParallelism;
+    WalCompression compression;
 
     public WalConfig(long maxSegSize) {
+      this(maxSegSize, FsyncPolicy.none());
+    }
+
+    public WalConfig(long maxSegSize, FsyncPolicy fsyncPolicy) {
+      this(maxSegSize, fsyncPolicy, Runtime.getRuntime().availableProcessors());
+    }
+
+    public WalConfig(long maxSegSize, FsyncPolicy fsyncPolicy, int recoveryParallelism) {
+      this(maxSegSize, fsyncPolicy, recoveryParallelism, WalCompression.none());
+    }
+
+    public WalConfig(
+        long maxSegSize,
+        FsyncPolicy fsyncPolicy,
+        int recoveryParallelism,
+        WalCompression compression) {
       Preconditions.checkArgument(maxSegSize > 0, "maxSegSize should be >0");
+      Preconditions.checkArgument(recoveryParallelism > 0, "recoveryParallelism should be >0");
       this.segmentSize = maxSegSize;
+      this.fsyncPolicy = Preconditions.checkNotNull(fsyncPolicy, "fsyncPolicy is required");
+      this.recoveryParallelism = recoveryParallelism;
+      this.compression = Preconditions.checkNotNull(compression, "compression is required");
     }
   }
 
   private final WalDirectory walDirectory;
-  @Getter private int currentSegment;
+  @Getter private volatile int currentSegment;
   private Path currentWal;
   @Getter private final WalConfig walConfig;
   private final FileLock fileLock;
   private final FileChannel lockFileFc;
   private final WalSegmentsMetadata walSegmentsMetadata;
+  // sealed segment -> largest LSN, mirrors walSegmentsMetadata for O(log n) lookups on read paths.
+  private final ConcurrentSkipListMap<Integer, Long> maxLsnBySegment;
 
-  @Getter @Setter private Lsn lastWrittenLsn;
+  @Getter @Setter private volatile Lsn lastWrittenLsn;
+  @Getter private RecoveryStats recoveryStats;
+  // every dictionary referenced by batch frames in this directory.
+  @Getter private final WalDictionaries dictionaries;
   Gson gson;
 
+  // accumulated while recovering, published as recoveryStats once done.
+  private int corruptSegments;
+  private long bytesScanned;
+  private long framesScanned;
+  private long truncatedBytes;
+
   public WalManager(Path dir, WalConfig config) throws IOException, FileLockException {
     this(new WalDirectory(dir), config);
   }
@@ -81,9 +125,26 @@ public class WalManager implements Closeable {
     var current = walDirectory.getSegmentMetadata();
     this.walSegmentsMetadata =
         current.map(WalSegmentsMetadata::fromExisting).orElseGet(WalSegmentsMetadata::ofEmpty);
+    this.maxLsnBySegment = new ConcurrentSkipListMap<>();
+    for (var meta : walSegmentsMetadata.getSegmentMetadata()) {
+      maxLsnBySegment.put(meta.getSegmentNumber(), meta.getLargestLsn());
+    }
     this.gson = new Gson();
+    this.dictionaries = loadDictionaries(this.walDirectory, walConfig.getCompression());
+    var recoveryStart = System.nanoTime();
     var latestLsn = repairLatestSegmentAndMetadata(this.walDirectory);
     checkCommitConsistency(this.walDirectory, latestLsn);
+    var validated = validateSealedSegments(this.walDirectory);
+    this.recoveryStats =
+        RecoveryStats.builder()
+            .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart))
+            .segmentsValidated(validated)
+            .corruptSegments(corruptSegments)
+            .bytesScanned(bytesScanned)
+            .framesScanned(framesScanned)
+            .truncatedBytes(truncatedBytes)
+            .build();
+    log.info("Recovered WAL in {}: {}", dir, recoveryStats);
     this.setLastWrittenLsn(latestLsn);
     this.currentSegment = walDirectory.getNextEpoch();
     this.currentWal = walDirectory.getWalSegment(currentSegment);
@@ -93,16 +154,13 @@ public class WalManager implements Closeable {
     if (segment == currentSegment) {
       return Optional.of(this.lastWrittenLsn.getNumber());
     }
-    return walSegmentsMetadata.getSegmentMetadata().stream()
-        .filter(meta -> meta.getSegmentNumber() == segment)
-        .findFirst()
-        .map(WalSegmentMetadata::getLargestLsn);
+    return Optional.ofNullable(maxLsnBySegment.get(segment));
   }
 
   public Optional<Integer> getSegmentContainingLsn(Lsn lsn) {
-    for (var entry : walSegmentsMetadata.getSegmentMetadata()) {
-      if (entry.getLargestLsn() >= lsn.getNumber()) {
-        return Optional.of(entry.getSegmentNumber());
+    for (var entry : maxLsnBySegment.entrySet()) {
+      if (entry.getValue() >= lsn.getNumber()) {
+        return Optional.of(entry.getKey());
       }
     }
     if (this.lastWrittenLsn.equals(lsn)) {
@@ -151,6 +209,7 @@ public class WalManager implements Closeable {
             .segmentNumber(prevEpoch)
             .largestLsn(this.lastWrittenLsn.getNumber())
             .build());
+    this.maxLsnBySegment.put(prevEpoch, this.lastWrittenLsn.getNumber());
     var serialized = gson.toJson(this.walSegmentsMetadata);
     Files.writeString(this.walDirectory.getSegmentTable(), serialized);
   }
@@ -161,11 +220,17 @@ public class WalManager implements Closeable {
     this.lockFileFc.close();
   }
 
+  /**
+   * Only the tail segment can hold a torn write, it is scanned and truncated to its last complete
+   * frame. Empty tail segments are dropped.
+   */
   private Lsn repairLatestSegmentAndMetadata(WalDirectory walDirectory) throws IOException {
     int latestSegment = walDirectory.getCurrentMaxEpoch();
     while (latestSegment >= 0) {
       var walSegment = walDirectory.getWalSegment(latestSegment);
-      var result = SegmentTruncator.truncate(walSegment);
+      var scan = SegmentScanner.scan(walSegment, dictionaries);
+      recordScan(scan);
+      var result = SegmentTruncator.truncate(walSegment, scan);
       if (result.getLastGoodLsn().isPresent()) {
         var lastGoodLsn = result.getLastGoodLsn().get();
         walSegmentsMetadata.upsertMetadata(
@@ -173,10 +238,12 @@ public class WalManager implements Closeable {
                 .segmentNumber(latestSegment)
                 .largestLsn(lastGoodLsn.getNumber())
                 .build());
+        maxLsnBySegment.put(latestSegment, lastGoodLsn.getNumber());
         persistSegmentTable();
         return lastGoodLsn;
       }
       Files.deleteIfExists(walSegment);
+      maxLsnBySegment.remove(latestSegment);
       latestSegment--;
     }
 
@@ -184,6 +251,99 @@ public class WalManager implements Closeable {
     return Lsn.getStart();
   }
 
+  /**
+   * Validates the sealed segments that still hold uncommitted frames (or that lost their metadata)
+   * on {@link WalConfig#getRecoveryParallelism()} threads. Fully committed segments are skipped.
+   * Corrupt segments are truncated to their last valid frame so readers move on to the next
+   * segment instead of failing.
+   *
+   * @return number of segments validated
+   */
+  private int validateSealedSegments(WalDirectory walDirectory) throws IOException {
+    var commitLsn =
+        walDirectory.getLatestCommit().map(c -> c.getLsn().getNumber()).orElse(Long.MIN_VALUE);
+    var tail = walDirectory.getCurrentMaxEpoch();
+    var toValidate = new ArrayList<Integer>();
+    for (int segment = 0; segment < tail; segment++) {
+      if (!Files.exists(walDirectory.getWalSegment(segment))) continue;
+      var maxLsn = maxLsnBySegment.get(segment);
+      if (maxLsn == null || maxLsn > commitLsn) {
+        toValidate.add(segment);
+      }
+    }
+    if (toValidate.isEmpty()) return 0;
+
+    var parallelism = Math.min(walConfig.getRecoveryParallelism(), toValidate.size());
+    var scans = new ArrayList<Future<SegmentScanner.ScanResult>>();
+    try (var pool = Executors.newFixedThreadPool(parallelism)) {
+      for (var segment : toValidate) {
+        var path = walDirectory.getWalSegment(segment);
+        scans.add(pool.submit(() -> SegmentScanner.scan(path, dictionaries)));
+      }
+      for (int i = 0; i < toValidate.size(); i++) {
+        var segment = toValidate.get(i);
+        var scan = getScan(scans.get(i));
+        recordScan(scan);
+        if (!scan.isClean()) {
+          log.error(
+              "WAL segment {} is corrupt after {} frames, truncating {} bytes",
+              segment,
+              scan.getFrames(),
+              scan.getFileBytes() - scan.getValidBytes());
+          corruptSegments++;
+          SegmentTruncator.truncate(walDirectory.getWalSegment(segment), scan);
+        }
+        if (scan.getLastGoodLsn().isEmpty()) continue;
+        var largestLsn = scan.getLastGoodLsn().get().getNumber();
+        if (!Long.valueOf(largestLsn).equals(maxLsnBySegment.get(segment))) {
+          walSegmentsMetadata.upsertMetadata(
+              WalSegmentMetadata.builder().segmentNumber(segment).largestLsn(largestLsn).build());
+          maxLsnBySegment.put(segment, largestLsn);
+        }
+      }
+    }
+    persistSegmentTable();
+    return toValidate.size();
+  }
+
+  /**
+   * Persists the configured dictionary next to the segments, so that they stay readable after the
+   * configuration changes, and loads every dictionary found in the directory.
+   */
+  private static WalDictionaries loadDictionaries(
+      WalDirectory walDirectory, WalCompression compression) throws IOException {
+    if (compression.hasDictionary()) {
+      var dictionaryFile = walDirectory.getDictionaryFile(compression.getDictionaryId());
+      if (!Files.exists(dictionaryFile)) {
+        Files.write(dictionaryFile, compression.getDictionary());
+      }
+    }
+    var dictionaries = new ArrayList<byte[]>();
+    for (var dictionaryFile : walDirectory.getDictionaryFiles()) {
+      dictionaries.add(Files.readAllBytes(dictionaryFile));
+    }
+    return WalDictionaries.of(dictionaries);
+  }
+
+  private static SegmentScanner.ScanResult getScan(Future<SegmentScanner.ScanResult> scan)
+      throws IOException {
+    try {
+      return scan.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while validating WAL segments", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException io) throw io;
+      throw new IOException("Failed to validate WAL segment", e.getCause());
+    }
+  }
+
+  private void recordScan(SegmentScanner.ScanResult scan) {
+    bytesScanned += scan.getFileBytes();
+    framesScanned += scan.getFrames();
+    truncatedBytes += scan.getFileBytes() - scan.getValidBytes();
+  }
+
   private void checkCommitConsistency(WalDirectory walDirectory, Lsn latestLsn) throws IOException {
     var existingCommit = walDirectory.getLatestCommit();
     if (existingCommit.isEmpty()) {
@@ -50,6 +50,20 @@ public class WalResourcesFactoryTests {
     Assertions.assertEquals(31L, bundle.getLsnSupplier().getLsn().getNumber());
   }
 
+  @Test
+  void closedBundleCanBeReopened() throws Exception {
+    var resourceFactory = new WalResourcesFactory(normalConfig);
+    var bundle = resourceFactory.createResourcesFromScratch(dir);
+    bundle.getGroupCommitWriter().appendAndWait(List.of("4".getBytes()));
+    bundle.close();
+
+    try (var reopened = resourceFactory.createResourcesFromScratch(dir)) {
+      var batch = reopened.getReader().readBatchAndAdvance(5);
+      var cmds = batch.stream().map(e -> new String(e.getPayload())).toList();
+      Assertions.assertEquals(List.of("1", "2", "3", "4"), cmds);
+    }
+  }
+
   @Test
   void walCommitIsBeforeExpected() {
     var resourceFactory = new WalResourcesFactory(normalConfig);
@@ -4,6 +4,7 @@
  */
 package org.okapi.wal.frame;
 
+import java.nio.ByteBuffer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.okapi.wal.exceptions.CorruptedRecordException;
@@ -61,4 +62,29 @@ public class WalEntryTests {
     System.arraycopy(serialized, 0, truncated, 0, truncated.length);
     Assertions.assertThrows(CorruptedRecordException.class, () -> WalEntry.deserialize(truncated));
   }
+
+  @Test
+  public void testMalformed_checksumMismatch() {
+    var entry = new WalEntry(Lsn.fromNumber(100L), new byte[] {0x0, 0x1, 0x2});
+    var serialized = entry.serialize();
+    // first payload byte: MAGIC(4) | VERSION(1) | FRAME_LEN(4) | HEADER_LEN(2) | NUMBER(8)
+    serialized[19] ^= 0x1;
+    Assertions.assertThrows(CorruptedRecordException.class, () -> WalEntry.deserialize(serialized));
+  }
+
+  @Test
+  public void testReadsVersion1Frames() throws CorruptedRecordException {
+    var payload = new byte[] {0x0, 0x1, 0x2};
+    var buffer = ByteBuffer.allocate(WalEntry.MIN_FRAME_SIZE_V1 + payload.length);
+    buffer.put(WalEntry.MAGIC);
+    buffer.put(WalEntry.VERSION_1);
+    buffer.putInt(WalEntry.HEADER_LENGTH + payload.length);
+    buffer.putShort(WalEntry.HEADER_LENGTH);
+    buffer.putLong(100L);
+    buffer.put(payload);
+    buffer.put(WalEntry.MAGIC_END);
+
+    var deserialized = WalEntry.deserialize(buffer.array());
+    Assertions.assertEquals(new WalEntry(Lsn.fromNumber(100L), payload), deserialized);
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.okapi.wal.exceptions.CorruptedRecordException;
+import org.okapi.wal.lsn.Lsn;
+
+public class WalFrameCodecTests {
+
+  @Test
+  public void testEncodeMatchesSerialize() throws CorruptedRecordException {
+    var entry = new WalEntry(Lsn.fromNumber(7L), "payload".getBytes());
+    var direct = ByteBuffer.allocateDirect(WalFrameCodec.encodedFrameSize(7));
+    WalFrameCodec.encodeFrame(direct, 7L, entry.getPayloadBuffer());
+    direct.flip();
+    var bytes = new byte[direct.remaining()];
+    direct.duplicate().get(bytes);
+    Assertions.assertArrayEquals(entry.serialize(), bytes);
+    Assertions.assertEquals(entry, WalFrameCodec.decodeFrame(direct));
+  }
+
+  @Test
+  public void testReaderReturnsSlices() throws CorruptedRecordException {
+    var entries =
+        List.of(
+            new WalEntry(Lsn.fromNumber(1L), "ONE".getBytes()),
+            new WalEntry(Lsn.fromNumber(2L), new byte[] {}),
+            new WalEntry(Lsn.fromNumber(3L), "THREE".getBytes()));
+    var segment = ByteBuffer.allocateDirect(1024);
+    for (var entry : entries) {
+      WalFrameCodec.encodeRecord(segment, entry);
+    }
+    segment.flip();
+
+    var reader = new WalFrameReader(segment);
+    for (var expected : entries) {
+      var decoded = reader.next().orElseThrow();
+      Assertions.assertEquals(expected, decoded);
+      Assertions.assertTrue(decoded.getPayloadBuffer().isReadOnly());
+      Assertions.assertTrue(decoded.getPayloadBuffer().isDirect());
+    }
+    Assertions.assertTrue(reader.next().isEmpty());
+    Assertions.assertEquals(segment.limit(), reader.position());
+  }
+
+  @Test
+  public void testReaderStopsAtTornTail() throws CorruptedRecordException {
+    var first = new WalEntry(Lsn.fromNumber(1L), "ONE".getBytes());
+    var second = new WalEntry(Lsn.fromNumber(2L), "TWO".getBytes());
+    var segment = ByteBuffer.allocate(1024);
+    WalFrameCodec.encodeRecord(segment, first);
+    var tornAt = segment.position() + WalFrameCodec.encodedRecordSize(3) - 5;
+    WalFrameCodec.encodeRecord(segment, second);
+    segment.flip().limit(tornAt);
+
+    var reader = new WalFrameReader(segment);
+    Assertions.assertEquals(first, reader.next().orElseThrow());
+    var positionBeforeTail = reader.position();
+    Assertions.assertTrue(reader.next().isEmpty());
+    Assertions.assertEquals(positionBeforeTail, reader.position());
+  }
+
+  @Test
+  public void testCorruptedMagic() {
+    var entry = new WalEntry(Lsn.fromNumber(1L), "ONE".getBytes());
+    var serialized = entry.serialize();
+    serialized[0] = 'X';
+    var frame = ByteBuffer.wrap(serialized);
+    Assertions.assertThrows(
+        CorruptedRecordException.class, () -> WalFrameCodec.decodeFrame(frame));
+  }
+
+  @Test
+  public void testCompressedBatchRoundTrip() throws CorruptedRecordException {
+    var entries = sampleBatch();
+    var compression = WalCompression.zstd(3);
+    var segment = ByteBuffer.allocate(4096);
+    var batch = compression.compress(entries);
+    WalFrameCodec.encodeRecord(segment, batch);
+    Assertions.assertEquals(WalFrameCodec.encodedRecordSize(batch), segment.position());
+    segment.flip();
+
+    var reader = new WalFrameReader(segment);
+    for (var expected : entries) {
+      Assertions.assertEquals(expected, reader.next().orElseThrow());
+    }
+    Assertions.assertTrue(reader.next().isEmpty());
+    Assertions.assertEquals(segment.limit(), reader.position());
+  }
+
+  @Test
+  public void testCompressedBatchWithDictionary() throws CorruptedRecordException {
+    var entries = sampleBatch();
+    // zstd accepts raw content as a dictionary, trained ones work the same way.
+    var dictionary = "{\"resource\":\"host-0\",\"gauge\":0}".repeat(8).getBytes();
+    var segment = ByteBuffer.allocate(4096);
+    WalFrameCodec.encodeRecord(segment, WalCompression.zstd(3, dictionary).compress(entries));
+    segment.flip();
+
+    Assertions.assertThrows(
+        CorruptedRecordException.class, () -> new WalFrameReader(segment).next());
+    var reader = new WalFrameReader(segment, WalDictionaries.of(List.of(dictionary)));
+    for (var expected : entries) {
+      Assertions.assertEquals(expected, reader.next().orElseThrow());
+    }
+  }
+
+  @Test
+  public void testCompressedBatchChecksum() {
+    var segment = ByteBuffer.allocate(4096);
+    WalFrameCodec.encodeRecord(segment, WalCompression.zstd(3).compress(sampleBatch()));
+    segment.flip();
+    // last byte of the compressed block, just ahead of CRC32C(4) | MAGIC_END(4).
+    var corruptAt = segment.limit() - 9;
+    segment.put(corruptAt, (byte) (segment.get(corruptAt) ^ 0x1));
+    Assertions.assertThrows(
+        CorruptedRecordException.class, () -> new WalFrameReader(segment).next());
+  }
+
+  private static List<WalEntry> sampleBatch() {
+    var entries = new ArrayList<WalEntry>();
+    for (int i = 1; i <= 20; i++) {
+      var payload = "{\"resource\":\"host-" + (i % 3) + "\",\"gauge\":" + i + "}";
+      entries.add(new WalEntry(Lsn.fromNumber(i), payload.getBytes()));
+    }
+    return entries;
+  }
+}
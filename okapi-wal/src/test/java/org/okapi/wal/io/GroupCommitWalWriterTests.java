@@ -0,0 +1,132 @@
+/*
+ * Copyright The OkapiCore Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.okapi.wal.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.okapi.wal.lsn.Lsn;
+import org.okapi.wal.lsn.MonoticLsnSupplier;
+import org.okapi.wal.manager.WalDirectory;
+import org.okapi.wal.manager.WalManager;
+
+public class GroupCommitWalWriterTests {
+  @TempDir Path temp;
+
+  @Test
+  void testSingleAppendIsDurable() throws Exception {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(1024L, FsyncPolicy.perBatch()));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    var reader = walWriter.getReaderFromCurrent();
+    try (var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier())) {
+      var lsn = groupWriter.appendAndWait(List.of("ONE".getBytes(), "TWO".getBytes()));
+      Assertions.assertEquals(2L, lsn.getNumber());
+      Assertions.assertEquals(Lsn.fromNumber(2L), walWriter.getLastSyncedLsn());
+    }
+    var batch = reader.readBatchAndAdvance(5);
+    Assertions.assertEquals(
+        List.of("ONE", "TWO"), batch.stream().map(e -> new String(e.getPayload())).toList());
+  }
+
+  @Test
+  void testCommitterStartsOnFirstAppend() throws Exception {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(1024L, FsyncPolicy.perBatch()));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    var before = committerThreads();
+    var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier());
+    Assertions.assertEquals(before, committerThreads());
+    groupWriter.appendAndWait(List.of("ONE".getBytes()));
+    Assertions.assertEquals(before + 1, committerThreads());
+    groupWriter.close();
+    Assertions.assertEquals(before, committerThreads());
+  }
+
+  @Test
+  void testCloseWithoutAppends() throws Exception {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(1024L, FsyncPolicy.perBatch()));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier());
+    groupWriter.close();
+    Assertions.assertThrows(
+        IllegalStateException.class, () -> groupWriter.append(List.of("ONE".getBytes())));
+  }
+
+  @Test
+  void testConcurrentAppendsAreOrdered() throws Exception {
+    var walManager =
+        new WalManager(temp, new WalManager.WalConfig(4096L, FsyncPolicy.everyBytes(512)));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    var reader = walWriter.getReaderFromCurrent();
+    var pool = Executors.newFixedThreadPool(8);
+    var futures = new ArrayList<CompletableFuture<Lsn>>();
+    try (var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier())) {
+      for (int i = 0; i < 200; i++) {
+        var payload = ("cmd-" + i).getBytes();
+        futures.add(
+            CompletableFuture.supplyAsync(
+                    () -> {
+                      try {
+                        return groupWriter.append(List.of(payload));
+                      } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                      }
+                    },
+                    pool)
+                .thenCompose(f -> f));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdown();
+    }
+
+    Assertions.assertEquals(200L, walWriter.getLastSyncedLsn().getNumber());
+    var lsns = new ArrayList<Long>();
+    while (true) {
+      var batch = reader.readBatchAndAdvance(64);
+      if (batch.isEmpty()) break;
+      batch.forEach(e -> lsns.add(e.getLsn().getNumber()));
+    }
+    Assertions.assertEquals(200, lsns.size());
+    for (int i = 0; i < lsns.size(); i++) {
+      Assertions.assertEquals(i + 1L, lsns.get(i));
+    }
+  }
+
+  @Test
+  void testIntervalPolicySyncsWhenIdle() throws Exception {
+    var walManager =
+        new WalManager(temp, new WalManager.WalConfig(1024L, FsyncPolicy.everyMillis(50)));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    try (var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier())) {
+      var lsn = groupWriter.append(List.of("ONE".getBytes())).get(5, TimeUnit.SECONDS);
+      Assertions.assertEquals(1L, lsn.getNumber());
+      Assertions.assertEquals(lsn, walWriter.getDurableLsn());
+    }
+  }
+
+  @Test
+  void testNoFsyncPolicyCompletesOnWrite() throws IOException, IllegalWalEntryException {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(1024L));
+    var walWriter = new WalWriter(walManager, new WalDirectory(temp));
+    try (var groupWriter = new GroupCommitWalWriter(walWriter, new MonoticLsnSupplier())) {
+      var lsn = groupWriter.appendAndWait(List.of("ONE".getBytes()));
+      Assertions.assertEquals(lsn, walWriter.getDurableLsn());
+      Assertions.assertEquals(Lsn.getStart(), walWriter.getLastSyncedLsn());
+    }
+  }
+
+  private static long committerThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(t -> t.getName().equals("wal-group-committer"))
+        .count();
+  }
+}
@@ -6,10 +6,12 @@ package org.okapi.wal.io;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.okapi.wal.frame.WalCompression;
 import org.okapi.wal.frame.WalEntry;
 import org.okapi.wal.lsn.Lsn;
 import org.okapi.wal.manager.WalDirectory;
@@ -36,6 +38,25 @@ public class WalReaderTests {
     Assertions.assertEquals(List.of("ONE"), collectPayloads(batch));
   }
 
+  @Test
+  void testPendingEntries() throws IOException, IllegalWalEntryException {
+    var walManager = new WalManager(temp, sampleConfig());
+    var walDir = new WalDirectory(temp);
+    var walWriter = new WalWriter(walManager, walDir);
+    var reader = walWriter.getReaderFromCurrent();
+    Assertions.assertEquals(0, reader.pendingEntries());
+
+    walWriter.append(makeWalEntry(1, "ONE"));
+    walWriter.append(makeWalEntry(2, "TWO"));
+    walWriter.append(makeWalEntry(3, "THREE"));
+    Assertions.assertEquals(3, reader.pendingEntries());
+
+    reader.readBatchAndAdvance(2);
+    Assertions.assertEquals(1, reader.pendingEntries());
+    reader.readBatchAndAdvance(2);
+    Assertions.assertEquals(0, reader.pendingEntries());
+  }
+
   @Test
   void testReadFromTwoDifferentPoints() throws IOException, IllegalWalEntryException {
     // test should write two records and create a reader after writing each. First reader should
@@ -178,6 +199,97 @@ public class WalReaderTests {
     Assertions.assertTrue(lateReader.readBatchAndAdvance(1).isEmpty());
   }
 
+  @Test
+  void testReadBatchIntoReusesContainer() throws IOException, IllegalWalEntryException {
+    var walManager = new WalManager(temp, rotationConfig());
+    var walDir = new WalDirectory(temp);
+    var walWriter = new WalWriter(walManager, walDir);
+    var reader = walWriter.getReaderFromCurrent();
+    walWriter.appendBatch(
+        List.of(
+            makeWalEntry(1, "A"),
+            makeWalEntry(2, "B"),
+            makeWalEntry(3, "C"),
+            makeWalEntry(4, "D"),
+            makeWalEntry(5, "E")));
+
+    var batch = new WalBatch();
+    reader.readBatchInto(batch, 3);
+    Assertions.assertEquals(List.of(1L, 2L, 3L), collectLsn(batch.getEntries()));
+    Assertions.assertEquals(Lsn.fromNumber(3L), batch.getMaxLsn());
+    Assertions.assertEquals(3L, batch.getPayloadBytes());
+
+    reader.readBatchInto(batch, 3);
+    Assertions.assertEquals(List.of(4L, 5L), collectLsn(batch.getEntries()));
+    Assertions.assertEquals(List.of("D", "E"), collectPayloads(batch.getEntries()));
+
+    reader.readBatchInto(batch, 3);
+    Assertions.assertTrue(batch.isEmpty());
+    Assertions.assertEquals(Lsn.zeroLsn(), batch.getMaxLsn());
+  }
+
+  @Test
+  void testTailsActiveSegment() throws IOException, IllegalWalEntryException {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(10_000L));
+    var walDir = new WalDirectory(temp);
+    var walWriter = new WalWriter(walManager, walDir);
+    var reader = walWriter.getReaderFromCurrent();
+    var batch = new WalBatch();
+    for (int i = 1; i <= 20; i++) {
+      walWriter.append(makeWalEntry(i, "cmd-" + i));
+      reader.readBatchInto(batch, 5);
+      Assertions.assertEquals(List.of((long) i), collectLsn(batch.getEntries()));
+      Assertions.assertEquals(List.of("cmd-" + i), collectPayloads(batch.getEntries()));
+    }
+  }
+
+  @Test
+  void testReadsCompressedBatchesAcrossSegments() throws IOException, IllegalWalEntryException {
+    var config =
+        new WalManager.WalConfig(200L, FsyncPolicy.none(), 1, WalCompression.zstd(3));
+    var walManager = new WalManager(temp, config);
+    var walDir = new WalDirectory(temp);
+    var walWriter = new WalWriter(walManager, walDir);
+    var reader = walWriter.getReaderFromCurrent();
+    var expected = new ArrayList<Long>();
+    for (int batch = 0; batch < 10; batch++) {
+      var entries = new ArrayList<WalEntry>();
+      for (int i = 1; i <= 10; i++) {
+        var lsn = batch * 10L + i;
+        entries.add(makeWalEntry(lsn, "metric.cpu.usage{host=a} " + lsn));
+        expected.add(lsn);
+      }
+      walWriter.appendBatch(entries);
+    }
+    Assertions.assertTrue(walDir.getCurrentMaxEpoch() > 0);
+
+    var read = reader.readBatchAndAdvance(200);
+    Assertions.assertEquals(expected, collectLsn(read));
+    Assertions.assertEquals("metric.cpu.usage{host=a} 42", new String(read.get(41).getPayload()));
+  }
+
+  @Test
+  void testTailedEntriesSurviveLaterReads() throws IOException, IllegalWalEntryException {
+    var walManager = new WalManager(temp, new WalManager.WalConfig(1024 * 1024L));
+    var walDir = new WalDirectory(temp);
+    var walWriter = new WalWriter(walManager, walDir);
+    var reader = walWriter.getReaderFromCurrent();
+
+    walWriter.append(makeWalEntry(1, "ONE"));
+    var first = reader.readBatchAndAdvance(1);
+    // larger than the initial read buffer, the reader has to grow it
+    var large = "x".repeat(SegmentReader.INITIAL_READ_BUFFER_BYTES + 1000);
+    walWriter.append(makeWalEntry(2, large));
+    walWriter.append(makeWalEntry(3, "THREE"));
+    var second = reader.readBatchAndAdvance(2);
+    walWriter.append(makeWalEntry(4, "FOUR"));
+    var third = reader.readBatchAndAdvance(2);
+
+    Assertions.assertEquals(List.of("ONE"), collectPayloads(first));
+    Assertions.assertEquals(List.of(large, "THREE"), collectPayloads(second));
+    Assertions.assertEquals(List.of("FOUR"), collectPayloads(third));
+  }
+
   public WalEntry makeWalEntry(long number, String cmd) {
     return new WalEntry(Lsn.fromNumber(number), cmd.getBytes());
   }
@@ -6,12 +6,14 @@ package org.okapi.wal.io;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.okapi.wal.frame.WalEntry;
+import org.okapi.wal.frame.WalFrameCodec;
 import org.okapi.wal.lsn.Lsn;
 import org.okapi.wal.manager.WalDirectory;
 import org.okapi.wal.manager.WalManager;
@@ -60,7 +62,7 @@ public class WalWriterTests {
   void testAppendBatch() throws IOException, IllegalWalEntryException {
     var lsn = new AtomicLong(0L);
     var batch =
-        List.of(sampleCmd(), sampleCmd(), sampleCmd(), sampleCmd()).stream()
+        Collections.nCopies(8, sampleCmd()).stream()
             .map(
                 cmd -> {
                   return new WalEntry(new Lsn(lsn.incrementAndGet()), cmd.getBytes());
@@ -70,7 +72,11 @@ public class WalWriterTests {
     var walDir = new WalDirectory(temp);
     var walWriter = new WalWriter(walManager, walDir);
     walWriter.appendBatch(batch);
-    Assertions.assertEquals(4, walManager.getMaxLsnInSegment(0).get());
+    // a segment rolls over after the record that takes it past its size.
+    var recordSize = WalFrameCodec.encodedRecordSize(sampleCmd().getBytes().length);
+    var perSegment = sampleConfig().getSegmentSize() / recordSize + 1;
+    Assertions.assertEquals(perSegment, walManager.getMaxLsnInSegment(0).get());
+    Assertions.assertEquals(8L, walWriter.getLastWrittenLsn().getNumber());
   }
 
   @Test
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -75,6 +76,35 @@ public class WalManagerTornDirTests {
     }
   }
 
+  @Test
+  void truncatesCorruptSealedSegment() throws Exception {
+    // flip the first payload byte of e20: e10's record, then LEN(4) | MAGIC(4) | VERSION(1) |
+    // FRAME_LEN(4) | HEADER_LEN(2) | NUMBER(8).
+    var bytes = Files.readAllBytes(seg0);
+    var e20Offset = 4 + e10.serialize().length;
+    bytes[e20Offset + 23] ^= 0x1;
+    Files.write(seg0, bytes);
+
+    try (var walManager = new WalManager(dir, config)) {
+      var stats = walManager.getRecoveryStats();
+      assertEquals(1, stats.getSegmentsValidated());
+      assertEquals(1, stats.getCorruptSegments());
+      assertEquals(e40.getLsn(), walManager.getLastWrittenLsn());
+      assertEquals(Optional.of(10L), walManager.getMaxLsnInSegment(0));
+      assertEquals(e20Offset, Files.size(seg0));
+    }
+  }
+
+  @Test
+  void skipsCommittedSealedSegments() throws Exception {
+    try (var walManager = new WalManager(dir, config)) {
+      walManager.commitLsn(e20.getLsn());
+    }
+    try (var walManager = new WalManager(dir, config)) {
+      assertEquals(0, walManager.getRecoveryStats().getSegmentsValidated());
+    }
+  }
+
   @Test
   void readsSequenceFromStartAndMiddle() throws Exception {
     try (var walManager = new WalManager(dir, config);